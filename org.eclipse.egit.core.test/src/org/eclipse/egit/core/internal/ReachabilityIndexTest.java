@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReachabilityIndexTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private Git git;
+
+	private RevCommit first;
+
+	private RevCommit second;
+
+	private RevCommit third;
+
+	private RevCommit side;
+
+	private final IProgressMonitor monitor = new NullProgressMonitor();
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repository = createWorkRepository();
+		git = new Git(repository);
+		// first - second - third (master)
+		// \_ side (side)
+		first = git.commit().setMessage("first").call();
+		git.branchCreate().setName("side").call();
+		second = git.commit().setMessage("second").call();
+		third = git.commit().setMessage("third").call();
+		git.checkout().setName("side").call();
+		side = git.commit().setMessage("side").call();
+	}
+
+	private void createTag(String name, RevCommit commit) throws Exception {
+		git.tag().setName(name).setObjectId(commit).setMessage(name).call();
+	}
+
+	private String getName(Ref ref) {
+		return ref == null ? null : ref.getName();
+	}
+
+	@Test
+	public void testContainingRefs() throws Exception {
+		Ref master = repository.getRef("refs/heads/master");
+		Ref sideBranch = repository.getRef("refs/heads/side");
+		List<Ref> branches = Arrays.asList(master, sideBranch);
+		ReachabilityIndex index = ReachabilityIndex.get(repository);
+
+		assertEquals(branches, index
+				.getContainingRefs(first, branches, monitor));
+		assertEquals(Collections.singletonList(master), index
+				.getContainingRefs(second, branches, monitor));
+		assertEquals(Collections.singletonList(master), index
+				.getContainingRefs(third, branches, monitor));
+		assertEquals(Collections.singletonList(sideBranch), index
+				.getContainingRefs(side, branches, monitor));
+	}
+
+	@Test
+	public void testNearestTags() throws Exception {
+		createTag("v1", first);
+		createTag("v3", third);
+		RefIndex.get(repository).invalidate();
+		ReachabilityIndex index = ReachabilityIndex.get(repository);
+		index.invalidate();
+		index = ReachabilityIndex.get(repository);
+
+		assertEquals("refs/tags/v1", getName(index
+				.getNearestAncestorTag(second, monitor)));
+		assertEquals("refs/tags/v3", getName(index
+				.getNearestDescendantTag(second, monitor)));
+		assertEquals("refs/tags/v1", getName(index.getNearestAncestorTag(side,
+				monitor)));
+		assertNull(index.getNearestDescendantTag(side, monitor));
+		// the tag of the commit itself is not taken into account
+		assertNull(index.getNearestAncestorTag(first, monitor));
+		assertEquals("refs/tags/v3", getName(index
+				.getNearestDescendantTag(first, monitor)));
+
+		createTag("v2", second);
+		RefIndex.get(repository).invalidate();
+		index.invalidate();
+		index = ReachabilityIndex.get(repository);
+		assertEquals("refs/tags/v2", getName(index
+				.getNearestAncestorTag(third, monitor)));
+		assertEquals("refs/tags/v2", getName(index
+				.getNearestDescendantTag(first, monitor)));
+	}
+
+	@Test(expected = OperationCanceledException.class)
+	public void testCanceled() throws Exception {
+		IProgressMonitor canceled = new NullProgressMonitor();
+		canceled.setCanceled(true);
+		ReachabilityIndex.get(repository).getContainingRefs(third,
+				Collections.singletonList(repository.getRef("refs/heads/side")),
+				canceled);
+	}
+
+}
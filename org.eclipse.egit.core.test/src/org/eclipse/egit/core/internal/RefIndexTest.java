@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefIndexTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private Git git;
+
+	private RevCommit first;
+
+	private RevCommit second;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repository = createWorkRepository();
+		git = new Git(repository);
+		first = git.commit().setMessage("first").call();
+		second = git.commit().setMessage("second").call();
+	}
+
+	private void createRef(String name, ObjectId id) throws Exception {
+		RefUpdate update = repository.updateRef(name);
+		update.setNewObjectId(id);
+		update.forceUpdate();
+	}
+
+	private void createTag(String name, RevCommit commit, long time)
+			throws Exception {
+		git.tag().setName(name).setObjectId(commit).setMessage(name)
+				.setTagger(new PersonIdent("Tagger", "tagger@example.org",
+						new Date(time), 0)).call();
+	}
+
+	@Test
+	public void testBranchPrecedence() throws Exception {
+		createRef("refs/remotes/origin/a", first);
+		createRef("refs/remotes/origin/b", first);
+		RefIndex index = RefIndex.get(repository);
+		// master points to the second commit
+		assertEquals("refs/heads/master", index.getRef(second));
+		assertEquals("refs/remotes/origin/b", index.getRef(first));
+
+		createRef("refs/heads/local", first);
+		index.invalidate();
+		assertEquals("refs/heads/local", RefIndex.get(repository)
+				.getRef(first));
+	}
+
+	@Test
+	public void testTagPrecedence() throws Exception {
+		createRef("refs/tags/light", first);
+		RefIndex index = RefIndex.get(repository);
+		assertEquals("refs/tags/light", index.getRef(first));
+
+		// the lightweight tag is dated by the commit, the annotated tags
+		// are newer
+		long now = System.currentTimeMillis();
+		createTag("old", first, now + 1000000);
+		createTag("new", first, now + 2000000);
+		index.invalidate();
+		index = RefIndex.get(repository);
+		assertEquals("refs/tags/new", index.getRef(first));
+		assertEquals(new HashSet<String>(Arrays.asList("refs/tags/light",
+				"refs/tags/old", "refs/tags/new")), new HashSet<String>(
+				index.getTags(first)));
+		assertEquals(Collections.emptyList(), index.getTags(second));
+	}
+
+	@Test
+	public void testRefsByPrefix() throws Exception {
+		createRef("refs/heads/topic", first);
+		createRef("refs/remotes/origin/master", first);
+		createRef("refs/tags/light", first);
+		RefIndex index = RefIndex.get(repository);
+		assertEquals(Arrays.asList("refs/heads/master", "refs/heads/topic"),
+				new ArrayList<String>(index.getRefs("refs/heads/").keySet()));
+		assertEquals(Arrays.asList("refs/tags/light"), new ArrayList<String>(
+				index.getRefs("refs/tags/").keySet()));
+		assertTrue(index.getRefs(RefDatabase.ALL).containsKey("HEAD"));
+		assertTrue(index.hasRefs("refs/remotes/"));
+		assertFalse(index.hasRefs("refs/notes/"));
+	}
+
+	@Test
+	public void testPeeledIds() throws Exception {
+		createRef("refs/tags/light", first);
+		createTag("annotated", first, System.currentTimeMillis());
+		RefIndex index = RefIndex.get(repository);
+		assertEquals(first, index.getPeeledId("refs/tags/light"));
+		assertEquals(first, index.getPeeledId("refs/tags/annotated"));
+		assertEquals(second, index.getPeeledId("refs/heads/master"));
+		assertNull(index.getPeeledId("refs/heads/unknown"));
+		assertTrue(index.isAnnotatedTag("refs/tags/annotated"));
+		assertFalse(index.isAnnotatedTag("refs/tags/light"));
+		assertFalse(index.isAnnotatedTag("refs/heads/master"));
+	}
+
+	@Test
+	public void testRemovedRef() throws Exception {
+		createRef("refs/tags/removed", first);
+		assertEquals("refs/tags/removed", RefIndex.get(repository)
+				.getRef(first));
+		RefUpdate delete = repository.updateRef("refs/tags/removed");
+		delete.setForceUpdate(true);
+		delete.delete();
+		RefIndex.get(repository).invalidate();
+		assertNull(RefIndex.get(repository).getRef(first));
+	}
+
+	@Test
+	public void testCurrentIndexDoesNotBlock() throws Exception {
+		final RefIndex index = RefIndex.get(repository);
+		createRef("refs/heads/topic", first);
+		index.invalidate();
+		final CountDownLatch updated = new CountDownLatch(1);
+		RefIndex.UpdateListener listener = new RefIndex.UpdateListener() {
+			public void indexUpdated(Repository updatedRepository) {
+				if (updatedRepository == repository)
+					updated.countDown();
+			}
+		};
+		RefIndex.addUpdateListener(listener);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Map<String, Ref>> refs;
+			// an update needs the lock of the index, the current index must
+			// be returned without waiting for it
+			synchronized (index) {
+				refs = executor.submit(new Callable<Map<String, Ref>>() {
+					public Map<String, Ref> call() throws Exception {
+						return RefIndex.getCurrent(repository).getRefs(
+								Constants.R_HEADS);
+					}
+				});
+				assertEquals(Collections.singleton("refs/heads/master"), refs
+						.get(10, TimeUnit.SECONDS).keySet());
+			}
+			assertTrue(updated.await(10, TimeUnit.SECONDS));
+			assertTrue(RefIndex.getCurrent(repository)
+					.getRefs(Constants.R_HEADS).containsKey("refs/heads/topic"));
+		} finally {
+			executor.shutdown();
+			RefIndex.removeUpdateListener(listener);
+		}
+	}
+
+}
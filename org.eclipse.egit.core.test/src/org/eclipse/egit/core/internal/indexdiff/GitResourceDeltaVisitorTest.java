@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.JobFamilies;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.egit.core.test.TestUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitResourceDeltaVisitorTest {
+
+	private static final int REPOSITORY_COUNT = 10;
+
+	private final TestUtils testUtils = new TestUtils();
+
+	private final List<TestRepository> testRepositories = new ArrayList<TestRepository>();
+
+	private final List<IProject> projects = new ArrayList<IProject>();
+
+	@Before
+	public void setUp() throws Exception {
+		Activator.getDefault().getRepositoryCache().clear();
+		for (int i = 0; i < REPOSITORY_COUNT; i++) {
+			File workdir = testUtils.createTempDir("DeltaRepository" + i);
+			TestRepository testRepository = new TestRepository(new File(
+					workdir, Constants.DOT_GIT));
+			IProject project = testUtils.createProjectInLocalFileSystem(
+					workdir, "DeltaProject" + i);
+			testUtils.addFileToProject(project, "folder/file.txt", "content");
+			testRepository.connect(project);
+			testRepositories.add(testRepository);
+			projects.add(project);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (IProject project : projects)
+			project.delete(false, false, null);
+		for (TestRepository testRepository : testRepositories)
+			testRepository.dispose();
+		Activator.getDefault().getRepositoryCache().clear();
+		testUtils.deleteTempDirs();
+	}
+
+	@Test
+	public void testIndexDiffCacheWalksDeltaOnce() throws Exception {
+		for (int i = 0; i < REPOSITORY_COUNT; i++) {
+			IProject project = projects.get(i);
+			testRepositories.get(i).addAndCommit(project,
+					project.getFile("folder/file.txt").getLocation().toFile(),
+					"add file");
+		}
+		final AtomicInteger walks = new AtomicInteger();
+		final Map<Repository, IndexDiffData> indexDiffs = new ConcurrentHashMap<Repository, IndexDiffData>();
+		IndexDiffCache cache = new IndexDiffCache() {
+			@Override
+			GitResourceDeltaVisitor createDeltaVisitor(
+					Collection<Repository> repositories) {
+				return new GitResourceDeltaVisitor(repositories) {
+					@Override
+					public boolean visit(IResourceDelta delta)
+							throws CoreException {
+						if (delta.getResource().getType() == IResource.ROOT)
+							walks.incrementAndGet();
+						return super.visit(delta);
+					}
+				};
+			}
+		};
+		try {
+			cache.addIndexDiffChangedListener(new IndexDiffChangedListener() {
+				public void indexDiffChanged(Repository repository,
+						IndexDiffData indexDiffData) {
+					indexDiffs.put(repository, indexDiffData);
+				}
+			});
+			for (TestRepository testRepository : testRepositories)
+				cache.getIndexDiffCacheEntry(testRepository.getRepository());
+			Job.getJobManager().join(JobFamilies.INDEX_DIFF_CACHE_UPDATE,
+					null);
+			walks.set(0);
+			indexDiffs.clear();
+
+			changeFileInEveryProject();
+			Job.getJobManager().join(JobFamilies.INDEX_DIFF_CACHE_UPDATE,
+					null);
+
+			assertEquals(1, walks.get());
+			for (int i = 0; i < REPOSITORY_COUNT; i++) {
+				IndexDiffData indexDiff = indexDiffs.get(testRepositories
+						.get(i).getRepository());
+				assertNotNull(indexDiff);
+				assertEquals(Collections.singleton("DeltaProject" + i
+						+ "/folder/file.txt"), indexDiff.getModified());
+			}
+		} finally {
+			cache.dispose();
+		}
+	}
+
+	@Test
+	public void testOnlyRequestedRepositoriesAreCollected() throws Exception {
+		Repository repository = testRepositories.get(0).getRepository();
+		GitResourceDeltaVisitor visitor = new GitResourceDeltaVisitor(
+				repository);
+		changeFileInEveryProject(visitor);
+
+		assertEquals(1, visitor.getChangedRepositories().size());
+		assertEquals(1, visitor.getFilesToUpdate().size());
+		assertTrue(visitor.getFilesToUpdate(
+				testRepositories.get(1).getRepository()).isEmpty());
+	}
+
+	private void changeFileInEveryProject(
+			final IResourceDeltaVisitor... visitors) throws CoreException {
+		final AtomicBoolean notified = new AtomicBoolean(false);
+		// deltas are only valid during notification, visit them right away
+		IResourceChangeListener listener = new IResourceChangeListener() {
+			public void resourceChanged(IResourceChangeEvent event) {
+				try {
+					for (IResourceDeltaVisitor visitor : visitors)
+						event.getDelta().accept(visitor);
+				} catch (CoreException e) {
+					throw new RuntimeException(e);
+				}
+				notified.set(true);
+			}
+		};
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(listener,
+				IResourceChangeEvent.POST_CHANGE);
+		try {
+			ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					for (IProject project : projects) {
+						IFile file = project.getFile("folder/file.txt");
+						try {
+							testUtils.changeContentOfFile(project, file,
+									"changed content");
+						} catch (Exception e) {
+							throw new CoreException(Activator.error(
+									e.getMessage(), e));
+						}
+					}
+				}
+			}, null);
+		} finally {
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(
+					listener);
+		}
+		assertTrue(notified.get());
+	}
+
+}
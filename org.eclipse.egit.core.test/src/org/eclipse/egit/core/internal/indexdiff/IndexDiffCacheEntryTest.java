@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.core.JobFamilies;
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.events.IndexChangedEvent;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexDiffCacheEntryTest extends GitTestCase {
+
+	// files staged by one command of the staging view
+	private static final int BATCH_SIZE = 500;
+
+	private TestRepository testRepository;
+
+	private Repository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testRepository = new TestRepository(gitDir);
+		repository = testRepository.getRepository();
+		testRepository.connect(project.getProject());
+		testRepository.createInitialCommit("first commit\n");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		testRepository.dispose();
+		repository = null;
+		super.tearDown();
+	}
+
+	@Test
+	public void testIndexEditUpdatesEditedFilesOnly() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < 600; i++) {
+			File file = testRepository.createFile(project.getProject(),
+					"folder" + i / 6 + "/file" + i + ".txt");
+			paths.add(testRepository.getRepoRelativePath(new Path(file
+					.getPath()).toString()));
+		}
+		IndexDiffCacheEntry entry = new IndexDiffCacheEntry(repository);
+		Job.getJobManager().join(JobFamilies.INDEX_DIFF_CACHE_UPDATE, null);
+		IndexDiffData before = entry.getIndexDiff();
+		assertTrue(before.getUntracked().containsAll(paths));
+		// a full reload is expected to be expensive, so that the edited
+		// files are updated by a partial update
+		entry.getCostModel().fullReloadFinished(60000);
+		long diffs = entry.getExecutedDiffCount();
+
+		entry.beginIndexEdit(paths);
+		try {
+			Git git = new Git(repository);
+			for (int i = 0; i < paths.size(); i += BATCH_SIZE) {
+				AddCommand add = git.add();
+				for (String path : paths.subList(i,
+						Math.min(i + BATCH_SIZE, paths.size())))
+					add.addFilepattern(path);
+				add.call();
+			}
+		} finally {
+			entry.endIndexEdit();
+		}
+		// the repository change scanner detects the modified index file later
+		repository.scanForRepoChanges();
+		repository.fireEvent(new IndexChangedEvent());
+		Job.getJobManager().join(JobFamilies.INDEX_DIFF_CACHE_UPDATE, null);
+
+		assertEquals(diffs + 1, entry.getExecutedDiffCount());
+		IndexDiffData after = entry.getIndexDiff();
+		assertNotNull("Index diff was reloaded", after
+				.getChangedFilesSince(before));
+		assertEquals(new HashSet<String>(paths), after.getAdded());
+		Set<String> untracked = new HashSet<String>(after.getUntracked());
+		untracked.retainAll(paths);
+		assertTrue(untracked.isEmpty());
+	}
+
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexDiffDataTest extends GitTestCase {
+
+	private TestRepository testRepository;
+
+	private Repository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testRepository = new TestRepository(gitDir);
+		repository = testRepository.getRepository();
+		testRepository.connect(project.getProject());
+		testRepository.createInitialCommit("first commit\n");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		testRepository.dispose();
+		repository = null;
+		super.tearDown();
+	}
+
+	@Test
+	public void testChangedFilesSinceSameData() throws Exception {
+		IndexDiffData data = calculateIndexDiffData();
+		assertEquals(Collections.emptySet(), data.getChangedFilesSince(data));
+
+		IndexDiffData update = updateIndexDiffData(data, "a.txt");
+		assertEquals(Collections.emptySet(), update
+				.getChangedFilesSince(update));
+	}
+
+	@Test
+	public void testChangedFilesSinceBase() throws Exception {
+		IndexDiffData data = calculateIndexDiffData();
+		IndexDiffData first = updateIndexDiffData(data, "a.txt");
+		IndexDiffData second = updateIndexDiffData(first, "b.txt",
+				"folder/");
+
+		assertEquals(set("a.txt"), first.getChangedFilesSince(data));
+		assertEquals(set("b.txt", "folder/"), second
+				.getChangedFilesSince(first));
+		assertEquals(set("a.txt", "b.txt", "folder/"), second
+				.getChangedFilesSince(data));
+	}
+
+	@Test
+	public void testChangedFilesSinceForeignData() throws Exception {
+		IndexDiffData data = calculateIndexDiffData();
+		IndexDiffData update = updateIndexDiffData(data, "a.txt");
+
+		// neither a full diff nor a diff which is not the base can be
+		// compared by the changed files
+		assertNull(update.getChangedFilesSince(calculateIndexDiffData()));
+		assertNull(data.getChangedFilesSince(update));
+		assertNull(update.getChangedFilesSince(updateIndexDiffData(data,
+				"a.txt")));
+	}
+
+	@Test
+	public void testChangedFilesSinceCollectedData() throws Exception {
+		IndexDiffData data = calculateIndexDiffData();
+		IndexDiffData first = updateIndexDiffData(data, "a.txt");
+		IndexDiffData second = updateIndexDiffData(first, "b.txt");
+		WeakReference<IndexDiffData> collected = new WeakReference<IndexDiffData>(
+				first);
+		first = null;
+		for (int i = 0; i < 10 && collected.get() != null; i++)
+			System.gc();
+		assumeTrue(collected.get() == null);
+
+		// the chain of partial updates is broken
+		assertNull(second.getChangedFilesSince(data));
+	}
+
+	@Test
+	public void testFilesMovingBetweenSets() throws Exception {
+		File untracked = testRepository.createFile(project.getProject(),
+				"untracked.txt");
+		File modified = testRepository.createFile(project.getProject(),
+				"modified.txt");
+		File removed = testRepository.createFile(project.getProject(),
+				"removed.txt");
+		testRepository.addAndCommit(project.getProject(), modified, "add");
+		testRepository.addAndCommit(project.getProject(), removed, "add");
+		testRepository.appendFileContent(modified, "changed");
+		String untrackedPath = getRepoRelativePath(untracked);
+		String modifiedPath = getRepoRelativePath(modified);
+		String removedPath = getRepoRelativePath(removed);
+
+		IndexDiffData data = calculateIndexDiffData();
+		assertTrue(data.getUntracked().contains(untrackedPath));
+		assertTrue(data.getModified().contains(modifiedPath));
+
+		// untracked to staged
+		testRepository.track(untracked);
+		IndexDiffData first = updateIndexDiffData(data, untrackedPath);
+		assertFalse(first.getUntracked().contains(untrackedPath));
+		assertTrue(first.getAdded().contains(untrackedPath));
+
+		// unstaged to staged
+		testRepository.addToIndex(project.getProject(), modified);
+		IndexDiffData second = updateIndexDiffData(first, modifiedPath);
+		assertFalse(second.getModified().contains(modifiedPath));
+		assertTrue(second.getChanged().contains(modifiedPath));
+
+		// committed to staged deletion
+		testRepository.untrack(removed);
+		IndexDiffData third = updateIndexDiffData(second, removedPath);
+		assertTrue(third.getRemoved().contains(removedPath));
+
+		assertEquals(set(untrackedPath, modifiedPath, removedPath), third
+				.getChangedFilesSince(data));
+		assertEquals(set(modifiedPath, removedPath), third
+				.getChangedFilesSince(first));
+		// the merged data equals a full diff
+		IndexDiffData expected = calculateIndexDiffData();
+		assertEquals(expected.getAdded(), third.getAdded());
+		assertEquals(expected.getChanged(), third.getChanged());
+		assertEquals(expected.getRemoved(), third.getRemoved());
+		assertEquals(expected.getModified(), third.getModified());
+		assertEquals(expected.getUntracked(), third.getUntracked());
+	}
+
+	private String getRepoRelativePath(File file) {
+		return testRepository.getRepoRelativePath(new Path(file.getPath())
+				.toString());
+	}
+
+	private static Collection<String> set(String... paths) {
+		return new HashSet<String>(Arrays.asList(paths));
+	}
+
+	private IndexDiffData calculateIndexDiffData() throws Exception {
+		IndexDiff indexDiff = new IndexDiff(repository, Constants.HEAD,
+				new FileTreeIterator(repository));
+		indexDiff.diff();
+		return new IndexDiffData(indexDiff);
+	}
+
+	private IndexDiffData updateIndexDiffData(IndexDiffData base,
+			String... files) throws Exception {
+		Collection<String> paths = Arrays.asList(files);
+		IndexDiff indexDiff = new IndexDiff(repository, Constants.HEAD,
+				new FileTreeIterator(repository));
+		indexDiff.setFilter(PathFilterGroup.createFromStrings(paths));
+		indexDiff.diff();
+		return new IndexDiffData(base, paths,
+				Collections.<IResource> emptyList(), indexDiff);
+	}
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexDiffSnapshotTest extends GitTestCase {
+
+	private TestRepository testRepository;
+
+	private Repository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testRepository = new TestRepository(gitDir);
+		repository = testRepository.getRepository();
+		testRepository.connect(project.getProject());
+		testRepository.createInitialCommit("first commit\n");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		testRepository.dispose();
+		repository = null;
+		super.tearDown();
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		testRepository.createFile(project.getProject(), "untracked.txt");
+		File added = testRepository.createFile(project.getProject(),
+				"folder/added.txt");
+		testRepository.track(added);
+		IndexDiffData data = calculateIndexDiffData();
+		assertFalse(data.getUntracked().isEmpty());
+		assertFalse(data.getAdded().isEmpty());
+
+		String key = IndexDiffSnapshot.computeKey(repository);
+		IndexDiffSnapshot.save(repository, data, key);
+		IndexDiffData loaded = IndexDiffSnapshot.load(repository, key);
+
+		assertNotNull(loaded);
+		assertEquals(data.getAdded(), loaded.getAdded());
+		assertEquals(data.getChanged(), loaded.getChanged());
+		assertEquals(data.getRemoved(), loaded.getRemoved());
+		assertEquals(data.getMissing(), loaded.getMissing());
+		assertEquals(data.getModified(), loaded.getModified());
+		assertEquals(data.getUntracked(), loaded.getUntracked());
+		assertEquals(data.getUntrackedFolders(), loaded.getUntrackedFolders());
+		assertEquals(data.getConflicting(), loaded.getConflicting());
+		assertEquals(data.getIgnoredNotInIndex(),
+				loaded.getIgnoredNotInIndex());
+	}
+
+	@Test
+	public void testSnapshotIsNotLoadedAfterIndexChanged() throws Exception {
+		IndexDiffData data = calculateIndexDiffData();
+		String key = IndexDiffSnapshot.computeKey(repository);
+		IndexDiffSnapshot.save(repository, data, key);
+
+		File file = testRepository.createFile(project.getProject(), "new.txt");
+		testRepository.track(file);
+		String newKey = IndexDiffSnapshot.computeKey(repository);
+
+		assertFalse(key.equals(newKey));
+		assertNull(IndexDiffSnapshot.load(repository, newKey));
+	}
+
+	private IndexDiffData calculateIndexDiffData() throws Exception {
+		IndexDiff indexDiff = new IndexDiff(repository, Constants.HEAD,
+				new FileTreeIterator(repository));
+		indexDiff.diff();
+		return new IndexDiffData(indexDiff);
+	}
+
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.egit.core.IteratorService;
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelIndexDiffTest extends GitTestCase {
+
+	private TestRepository testRepository;
+
+	private Repository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testRepository = new TestRepository(gitDir);
+		repository = testRepository.getRepository();
+		testRepository.connect(project.getProject());
+		testRepository.createInitialCommit("first commit\n");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		testRepository.dispose();
+		repository = null;
+		testUtils.deleteTempDirs();
+		super.tearDown();
+	}
+
+	@Test
+	public void testShardsContainAllTopLevelEntries() throws Exception {
+		for (int i = 0; i < 5; i++)
+			testRepository.createFile(project.getProject(), "folder" + i
+					+ "/file.txt");
+		List<Collection<String>> shards = ParallelIndexDiff.computeShards(
+				repository, 2);
+		assertEquals(2, shards.size());
+		Set<String> names = new HashSet<String>();
+		for (Collection<String> shard : shards) {
+			assertFalse(shard.isEmpty());
+			for (String name : shard)
+				assertTrue(names.add(name));
+		}
+		assertTrue(names.contains("dummy"));
+		assertTrue(names.contains(project.getProject().getName()));
+		assertFalse(names.contains(Constants.DOT_GIT));
+	}
+
+	@Test
+	public void testResultEqualsSequentialIndexDiff() throws Exception {
+		File modified = testRepository.createFile(project.getProject(),
+				"a/modified.txt");
+		File removed = testRepository.createFile(project.getProject(),
+				"b/removed.txt");
+		testRepository.addAndCommit(project.getProject(), modified, "add");
+		testRepository.addAndCommit(project.getProject(), removed, "add");
+		testRepository.appendFileContent(modified, "changed");
+		testRepository.untrack(removed);
+		testRepository.track(testRepository.createFile(project.getProject(),
+				"c/added.txt"));
+		testRepository.createFile(project.getProject(), "d/untracked.txt");
+		testRepository.createFile(project.getProject(),
+				"e/untracked/folder/file.txt");
+		testRepository.createFile(project.getProject(), "untracked.txt");
+
+		IndexDiffData expected = calculateSequential();
+		assertFalse(expected.getModified().isEmpty());
+		assertFalse(expected.getRemoved().isEmpty());
+		assertFalse(expected.getAdded().isEmpty());
+		assertFalse(expected.getUntrackedFolders().isEmpty());
+		for (int shards = 1; shards <= 16; shards *= 2)
+			assertSameData(expected, ParallelIndexDiff.calculate(repository,
+					new NullProgressMonitor(), "", shards));
+	}
+
+	@Test
+	public void testCanceledCalculationReturnsNull() throws Exception {
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		assertEquals(null, ParallelIndexDiff.calculate(repository, monitor,
+				"", 4));
+	}
+
+	@Test
+	public void testCanceledShardStopsWalk() throws Exception {
+		testRepository.createFile(project.getProject(), "a/untracked.txt");
+		testRepository.createFile(project.getProject(), "b/untracked.txt");
+		Collection<String> shard = Collections.singletonList(project
+				.getProject().getName());
+		AtomicBoolean canceled = new AtomicBoolean();
+		assertFalse(ParallelIndexDiff.diffShard(repository, shard, canceled)
+				.getUntracked().isEmpty());
+
+		// a shard which is still running when the calculation is canceled
+		// doesn't walk any further
+		canceled.set(true);
+		IndexDiff diff = ParallelIndexDiff.diffShard(repository, shard,
+				canceled);
+		assertTrue(diff.getUntracked().isEmpty());
+		assertTrue(diff.getUntrackedFolders().isEmpty());
+	}
+
+	/**
+	 * Compares sequential and parallel full index diffs on a generated
+	 * repository with 200000 files. The parallel diff is run with 1, 2 and as
+	 * many shards as there are worker threads; each shard is diffed by one
+	 * worker, so the number of shards is the number of busy threads. Only
+	 * runs with -Degit.benchmark=true.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void benchmarkFullIndexDiff() throws Exception {
+		assumeTrue(Boolean.getBoolean("egit.benchmark"));
+		File workdir = testUtils.createTempDir("ParallelIndexDiffBenchmark");
+		TestRepository benchmarkRepository = new TestRepository(new File(
+				workdir, Constants.DOT_GIT));
+		try {
+			Repository benchmark = benchmarkRepository.getRepository();
+			for (int i = 0; i < 200; i++) {
+				File folder = new File(workdir, "module" + i + "/src");
+				folder.mkdirs();
+				for (int j = 0; j < 1000; j++) {
+					FileWriter writer = new FileWriter(new File(folder, "File"
+							+ j + ".txt"));
+					writer.write("content " + i + " " + j);
+					writer.close();
+				}
+			}
+			Git git = new Git(benchmark);
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("benchmark").call();
+			for (int i = 0; i < 200; i += 10)
+				benchmarkRepository.appendFileContent(new File(workdir,
+						"module" + i + "/src/File0.txt"), "changed");
+
+			long start = System.currentTimeMillis();
+			IndexDiff sequential = new IndexDiff(benchmark, Constants.HEAD,
+					IteratorService.createInitialIterator(benchmark));
+			sequential.diff();
+			long sequentialTime = System.currentTimeMillis() - start;
+			IndexDiffData expected = new IndexDiffData(sequential);
+			System.out.println("sequential: " + sequentialTime + " ms");
+
+			int maxThreads = ParallelIndexDiff.getThreadCount();
+			Set<Integer> threadCounts = new TreeSet<Integer>(Arrays.asList(
+					Integer.valueOf(1),
+					Integer.valueOf(Math.min(2, maxThreads)),
+					Integer.valueOf(maxThreads)));
+			for (Integer threads : threadCounts) {
+				start = System.currentTimeMillis();
+				IndexDiffData parallel = ParallelIndexDiff.calculate(
+						benchmark, new NullProgressMonitor(), "",
+						threads.intValue());
+				long parallelTime = System.currentTimeMillis() - start;
+				System.out.println("parallel (" + threads + " threads): "
+						+ parallelTime + " ms");
+				assertSameData(expected, parallel);
+			}
+		} finally {
+			benchmarkRepository.dispose();
+		}
+	}
+
+	private IndexDiffData calculateSequential() throws Exception {
+		IndexDiff indexDiff = new IndexDiff(repository, Constants.HEAD,
+				IteratorService.createInitialIterator(repository));
+		indexDiff.diff();
+		return new IndexDiffData(indexDiff);
+	}
+
+	private static void assertSameData(IndexDiffData expected,
+			IndexDiffData actual) {
+		assertEquals(expected.getAdded(), actual.getAdded());
+		assertEquals(expected.getChanged(), actual.getChanged());
+		assertEquals(expected.getRemoved(), actual.getRemoved());
+		assertEquals(expected.getMissing(), actual.getMissing());
+		assertEquals(expected.getModified(), actual.getModified());
+		assertEquals(expected.getUntracked(), actual.getUntracked());
+		assertEquals(expected.getUntrackedFolders(),
+				actual.getUntrackedFolders());
+		assertEquals(expected.getConflicting(), actual.getConflicting());
+		assertEquals(expected.getIgnoredNotInIndex(),
+				actual.getIgnoredNotInIndex());
+	}
+
+}
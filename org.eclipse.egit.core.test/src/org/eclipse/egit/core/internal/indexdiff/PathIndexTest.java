@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PathIndexTest {
+
+	private static final int BENCHMARK_PATHS = 100000;
+
+	@Test
+	public void testContainsPathUnder() {
+		PathIndex index = createIndex("a/b/c.txt", "a/d.txt", "ab/e.txt");
+		assertTrue(index.containsPathUnder("a/"));
+		assertTrue(index.containsPathUnder("a/b/"));
+		assertTrue(index.containsPathUnder("ab/"));
+		assertFalse(index.containsPathUnder("a/c/"));
+		assertFalse(index.containsPathUnder("b/"));
+		assertFalse(index.containsPathUnder("a/b/c.txt/"));
+	}
+
+	@Test
+	public void testContainsPathUnderRoot() {
+		assertTrue(createIndex("a.txt").containsPathUnder("/"));
+		assertTrue(createIndex("a.txt").containsPathUnder(""));
+		assertFalse(createIndex().containsPathUnder("/"));
+	}
+
+	@Test
+	public void testContainsPathOrParent() {
+		PathIndex index = createIndex("bin", "a/target/", "c/d.txt");
+		assertTrue(index.containsPathOrParent("bin/"));
+		assertTrue(index.containsPathOrParent("bin/x/y.class"));
+		assertTrue(index.containsPathOrParent("a/target/"));
+		assertTrue(index.containsPathOrParent("a/target/x.jar"));
+		assertTrue(index.containsPathOrParent("c/d.txt"));
+		assertFalse(index.containsPathOrParent("a/"));
+		assertFalse(index.containsPathOrParent("binary/x"));
+		assertFalse(index.containsPathOrParent("c/e.txt"));
+	}
+
+	/**
+	 * Compares the folder decoration lookups done by the decorator before the
+	 * introduction of {@link PathIndex} (copying the staged sets and scanning
+	 * all paths per folder) with the lookups done on the index. Both must
+	 * return the same results; the timings are printed for comparison. Only
+	 * runs with -Degit.benchmark=true.
+	 */
+	@Test
+	public void benchmarkFolderDecoration() {
+		assumeTrue(Boolean.getBoolean("egit.benchmark"));
+		Set<String> changed = new HashSet<String>();
+		Set<String> added = new HashSet<String>();
+		List<String> folders = new ArrayList<String>();
+		for (int i = 0; i < BENCHMARK_PATHS; i++) {
+			String folder = "module" + (i % 50) + "/src/pkg" + (i % 997)
+					+ "/";
+			if (i < 200)
+				folders.add(folder);
+			if (i % 2 == 0)
+				changed.add(folder + "File" + i + ".java");
+			else
+				added.add(folder + "File" + i + ".java");
+		}
+		for (int i = 0; i < 100; i++)
+			folders.add("module" + i + "/clean/");
+
+		long start = System.nanoTime();
+		boolean[] expected = new boolean[folders.size()];
+		for (int i = 0; i < folders.size(); i++) {
+			Set<String> staged = new HashSet<String>(changed);
+			staged.addAll(added);
+			expected[i] = containsPrefix(staged, folders.get(i));
+		}
+		long linearTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Set<String> staged = new HashSet<String>(changed);
+		staged.addAll(added);
+		PathIndex index = new PathIndex(staged);
+		boolean[] actual = new boolean[folders.size()];
+		for (int i = 0; i < folders.size(); i++)
+			actual[i] = index.containsPathUnder(folders.get(i));
+		long indexTime = System.nanoTime() - start;
+
+		assertTrue(Arrays.equals(expected, actual));
+		assertEquals(BENCHMARK_PATHS, staged.size());
+		System.out.println("Decorating " + folders.size() + " folders with "
+				+ BENCHMARK_PATHS + " staged paths: linear scan "
+				+ linearTime / 1000000 + " ms, path index " + indexTime
+				/ 1000000 + " ms");
+	}
+
+	private static boolean containsPrefix(Set<String> collection, String prefix) {
+		for (String path : collection)
+			if (path.startsWith(prefix))
+				return true;
+		return false;
+	}
+
+	private static PathIndex createIndex(String... paths) {
+		return new PathIndex(new HashSet<String>(Arrays.asList(paths)));
+	}
+
+}
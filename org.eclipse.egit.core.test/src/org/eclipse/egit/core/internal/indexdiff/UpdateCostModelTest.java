@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class UpdateCostModelTest {
+
+	@Test
+	public void testSingleFilesAreNotCollapsed() {
+		List<String> paths = Arrays.asList("a/b/c.txt", "a/d.txt", "e.txt");
+		assertEquals(new HashSet<String>(paths), new HashSet<String>(
+				UpdateCostModel.collapse(paths)));
+	}
+
+	@Test
+	public void testCollapseToFolders() {
+		Set<String> paths = new HashSet<String>();
+		for (int i = 0; i < UpdateCostModel.COLLAPSE_THRESHOLD; i++)
+			paths.add("src/pkg/File" + i + ".java");
+		paths.add("src/other/Single.java");
+		paths.add("README");
+		Collection<String> collapsed = UpdateCostModel.collapse(paths);
+		assertEquals(new HashSet<String>(Arrays.asList("src/pkg/",
+				"src/other/Single.java", "README")), new HashSet<String>(
+				collapsed));
+	}
+
+	@Test
+	public void testCollapseRecursively() {
+		Set<String> paths = new HashSet<String>();
+		for (int i = 0; i < UpdateCostModel.COLLAPSE_THRESHOLD; i++)
+			for (int j = 0; j < UpdateCostModel.COLLAPSE_THRESHOLD; j++)
+				paths.add("bin/pkg" + i + "/File" + j + ".class");
+		assertEquals(Arrays.asList("bin/"), UpdateCostModel.collapse(paths));
+	}
+
+	@Test
+	public void testNestedPathsAreRemoved() {
+		List<String> paths = Arrays.asList("new/", "new/a.txt", "new/b/c.txt");
+		assertEquals(Arrays.asList("new/"), UpdateCostModel.collapse(paths));
+	}
+
+	@Test
+	public void testIsBelow() {
+		Set<String> folders = new HashSet<String>(Arrays.asList("a/b/"));
+		assertTrue(UpdateCostModel.isBelow("a/b/c.txt", folders));
+		assertTrue(UpdateCostModel.isBelow("a/b/c/", folders));
+		assertFalse(UpdateCostModel.isBelow("a/b/", folders));
+		assertFalse(UpdateCostModel.isBelow("a/bc.txt", folders));
+	}
+
+	@Test
+	public void testDecisionFollowsMeasuredCosts() {
+		UpdateCostModel model = new UpdateCostModel();
+		List<String> paths = Arrays.asList("a.txt", "b.txt", "c.txt");
+		assertFalse(model.preferFullReload(paths));
+		// full reloads are cheap in this repository
+		model.fullReloadFinished(1);
+		// and partial updates are slow
+		for (int i = 0; i < 20; i++)
+			model.partialUpdateFinished(paths, 100);
+		assertTrue(model.preferFullReload(paths));
+	}
+
+}
@@ -18,7 +18,10 @@
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.eclipse.core.resources.IProject;
@@ -76,6 +79,38 @@ public void testRefreshValidProjects() throws Exception {
 				any(IProgressMonitor.class));
 	}
 
+	@Test
+	public void testRefreshValidProjectsWithPaths() throws Exception {
+		IProject p = project.getProject();
+		project.createFile("removed.txt", "removed".getBytes("UTF-8"));
+		File root = p.getLocation().toFile();
+		FileUtils.delete(new File(root, "removed.txt"));
+		write(new File(root, "added.txt"));
+		write(new File(root, "folder/sub/added.txt"));
+		write(new File(root, "unchanged.txt"));
+
+		String prefix = p.getName() + "/";
+		ProjectUtil.refreshValidProjects(new IProject[] { p }, true,
+				repository.getRepository(), Arrays.asList(prefix + "added.txt",
+						prefix + "folder/sub/added.txt", prefix
+								+ "removed.txt"), new NullProgressMonitor());
+		assertTrue(p.getFile("added.txt").exists());
+		assertTrue(p.getFile("folder/sub/added.txt").exists());
+		assertFalse(p.getFile("removed.txt").exists());
+		// not among the changed paths
+		assertFalse(p.getFile("unchanged.txt").exists());
+	}
+
+	private static void write(File file) throws IOException {
+		FileUtils.mkdirs(file.getParentFile(), true);
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write("content");
+		} finally {
+			writer.close();
+		}
+	}
+
 	@Test
 	public void testCloseMissingProject() throws Exception {
 		IProject p = mock(IProject.class);
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkingTreeChangesTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private Git git;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repository = createWorkRepository();
+		git = new Git(repository);
+		for (String path : Arrays.asList("a.txt", "b.txt", "folder/c.txt",
+				"folder/d.txt"))
+			write(new File(repository.getWorkTree(), path), path);
+		git.add().addFilepattern(".").call();
+		git.commit().setMessage("initial").call();
+	}
+
+	@Test
+	public void testUnchangedIndex() throws Exception {
+		DirCache before = repository.readDirCache();
+		assertTrue(WorkingTreeChanges.getChangedPaths(repository, before,
+				repository.readDirCache()).isEmpty());
+	}
+
+	@Test
+	public void testChangedEntries() throws Exception {
+		DirCache before = repository.readDirCache();
+		write(new File(repository.getWorkTree(), "a.txt"), "changed");
+		write(new File(repository.getWorkTree(), "folder/e.txt"), "added");
+		git.add().addFilepattern("a.txt").addFilepattern("folder").call();
+		git.rm().addFilepattern("b.txt").call();
+
+		assertEquals(new HashSet<String>(Arrays.asList("a.txt", "b.txt",
+				"folder/e.txt")), WorkingTreeChanges.getChangedPaths(
+				repository, before, repository.readDirCache()));
+	}
+
+	@Test
+	public void testCheckedOutAgain() throws Exception {
+		File file = new File(repository.getWorkTree(), "folder/d.txt");
+		file.setLastModified(System.currentTimeMillis() - 10000);
+		git.add().addFilepattern("folder/d.txt").call();
+		write(file, "changed");
+		DirCache before = repository.readDirCache();
+		// restores the content and updates the modification time in the
+		// index without changing its id
+		git.checkout().addPath("folder/d.txt").call();
+
+		assertEquals(new HashSet<String>(Arrays.asList("folder/d.txt")),
+				WorkingTreeChanges.getChangedPaths(repository, before,
+						repository.readDirCache()));
+	}
+
+}
@@ -13,17 +13,21 @@
 import static org.eclipse.egit.core.synchronize.GitCommitsModelCache.DELETION;
 import static org.eclipse.egit.core.synchronize.GitCommitsModelCache.LEFT;
 import static org.eclipse.egit.core.synchronize.GitCommitsModelCache.RIGHT;
+import static org.eclipse.jgit.lib.Constants.HEAD;
 import static org.eclipse.jgit.junit.JGitTestUtil.deleteTrashFile;
 import static org.eclipse.jgit.junit.JGitTestUtil.writeTrashFile;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.synchronize.GitCommitsModelCache.Change;
 import org.eclipse.egit.core.synchronize.GitCommitsModelCache.Commit;
 import org.eclipse.jgit.api.Git;
@@ -182,6 +186,45 @@ public void shouldApplyPathFilter() throws Exception {
 				LEFT);
 	}
 
+	@Test
+	public void shouldComputeChangesOnDemand() throws Exception {
+		// given
+		Git git = new Git(db);
+		writeTrashFile(db, "a.txt", "content");
+		git.add().addFilepattern("a.txt").call();
+		RevCommit c = commit(git, "first commit");
+		// when
+		List<Commit> result = GitCommitsModelCache.build(db, initialTagId(),
+				c, null);
+		// then
+		assertThat(result.size(), is(1));
+		assertThat(result.get(0).isLoaded(), is(false));
+		Map<String, Change> children = result.get(0).getChildren();
+		assertThat(result.get(0).isLoaded(), is(true));
+		assertThat(children.size(), is(1));
+		assertThat(result.get(0).getChildren(), sameInstance(children));
+	}
+
+	@Test
+	public void shouldPrefetchChanges() throws Exception {
+		// given
+		Git git = new Git(db);
+		for (int i = 0; i < 10; i++) {
+			writeTrashFile(db, "file" + i + ".txt", "content");
+			git.add().addFilepattern("file" + i + ".txt").call();
+			commit(git, "commit " + i);
+		}
+		List<Commit> result = GitCommitsModelCache.build(db, initialTagId(),
+				db.resolve(HEAD), null);
+		// when
+		GitCommitsModelCache.prefetch(result);
+		Job.getJobManager().join(result, null);
+		// then
+		assertThat(result.size(), is(10));
+		for (Commit commit : result)
+			assertThat(commit.isLoaded(), is(true));
+	}
+
 	@Test
 	public void shouldListAdditionsOrDeletionsInsideFolderInCommit()
 			throws Exception {
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.synchronize;
+
+import static org.eclipse.jgit.lib.Constants.HEAD;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Test;
+
+public class GitSyncCacheTest extends GitTestCase {
+
+	private final List<TestRepository> repositories = new ArrayList<TestRepository>();
+
+	@After
+	public void tearDown() throws Exception {
+		for (TestRepository repository : repositories)
+			repository.dispose();
+		testUtils.deleteTempDirs();
+		super.tearDown();
+	}
+
+	@Test
+	public void shouldLoadAllRepositories() throws Exception {
+		Map<GitSynchronizeData, Collection<String>> requests = new HashMap<GitSynchronizeData, Collection<String>>();
+		for (int i = 0; i < 5; i++) {
+			Repository repository = createRepository("repo" + i, 10);
+			modify(repository, "folder/file0.txt");
+			requests.put(new GitSynchronizeData(repository, HEAD, MASTER,
+					true), Collections.<String> emptyList());
+		}
+
+		GitSyncCache cache = GitSyncCache.getAllData(requests,
+				new NullProgressMonitor());
+
+		for (GitSynchronizeData data : requests.keySet()) {
+			GitSyncObjectCache repoCache = cache.get(data.getRepository());
+			assertNotNull(repoCache);
+			assertNotNull(repoCache.get("folder/file0.txt"));
+			assertNull(repoCache.get("folder/file1.txt"));
+		}
+	}
+
+	@Test
+	public void shouldOnlyLoadRequestedPaths() throws Exception {
+		Repository repository = createRepository("repo", 0);
+		for (String path : Arrays.asList("a/file.txt", "b/file.txt",
+				"c/file.txt", "a.txt"))
+			write(repository, path, "content");
+		Git git = new Git(repository);
+		git.add().addFilepattern(".").call();
+		git.commit().setMessage("files").call();
+		for (String path : Arrays.asList("a/file.txt", "b/file.txt",
+				"c/file.txt", "a.txt"))
+			modify(repository, path);
+
+		Map<GitSynchronizeData, Collection<String>> requests = new HashMap<GitSynchronizeData, Collection<String>>();
+		requests.put(new GitSynchronizeData(repository, HEAD, MASTER, true),
+				Arrays.asList("b/file.txt", "a/"));
+		GitSyncObjectCache repoCache = GitSyncCache.getAllData(requests,
+				new NullProgressMonitor()).get(repository);
+
+		assertNotNull(repoCache.get("a/file.txt"));
+		assertNotNull(repoCache.get("b/file.txt"));
+		assertNull(repoCache.get("c/file.txt"));
+		assertNull(repoCache.get("a.txt"));
+	}
+
+	/**
+	 * Compares sequential and parallel loading of 25 repositories with 2000
+	 * files each. Only runs with -Degit.benchmark=true.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void benchmarkManyRepositories() throws Exception {
+		assumeTrue(Boolean.getBoolean("egit.benchmark"));
+		Map<GitSynchronizeData, Collection<String>> requests = new HashMap<GitSynchronizeData, Collection<String>>();
+		for (int i = 0; i < 25; i++) {
+			Repository repository = createRepository("repo" + i, 2000);
+			for (int j = 0; j < 2000; j += 100)
+				modify(repository, "folder/file" + j + ".txt");
+			requests.put(new GitSynchronizeData(repository, HEAD, MASTER,
+					true), Collections.<String> emptyList());
+		}
+
+		long start = System.currentTimeMillis();
+		for (Map.Entry<GitSynchronizeData, Collection<String>> entry : requests
+				.entrySet())
+			GitSyncCache.getAllData(
+					Collections.singletonMap(entry.getKey(), entry.getValue()),
+					new NullProgressMonitor());
+		long sequentialTime = System.currentTimeMillis() - start;
+		System.out.println("sequential: " + sequentialTime + " ms");
+
+		start = System.currentTimeMillis();
+		GitSyncCache cache = GitSyncCache.getAllData(requests,
+				new NullProgressMonitor());
+		long parallelTime = System.currentTimeMillis() - start;
+		System.out.println("parallel (" + GitSyncCache.getThreadCount()
+				+ " threads): " + parallelTime + " ms");
+
+		for (GitSynchronizeData data : requests.keySet())
+			assertEquals(20, cache.get(data.getRepository()).get("folder")
+					.membersCount());
+	}
+
+	private Repository createRepository(String name, int files)
+			throws Exception {
+		File workdir = testUtils.createTempDir(name);
+		TestRepository testRepository = new TestRepository(new File(workdir,
+				Constants.DOT_GIT));
+		repositories.add(testRepository);
+		Repository repository = testRepository.getRepository();
+		for (int i = 0; i < files; i++)
+			write(repository, "folder/file" + i + ".txt", "content " + i);
+		Git git = new Git(repository);
+		git.add().addFilepattern(".").call();
+		git.commit().setMessage("initial").call();
+		return repository;
+	}
+
+	private static void modify(Repository repository, String path)
+			throws IOException {
+		write(repository, path, "changed");
+	}
+
+	private static void write(Repository repository, String path,
+			String content) throws IOException {
+		File file = new File(repository.getWorkTree(), path);
+		file.getParentFile().mkdirs();
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+}
@@ -14,7 +14,9 @@
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.JobFamilies;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffCache;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffCacheEntry;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffChangedListener;
@@ -93,6 +95,28 @@ public void indexDiffChanged(Repository repo,
 			fail("IndexDiffData does not contain aFile as added");
 	}
 
+	@Test
+	public void testEventsAreMerged() throws Exception {
+		new ConnectProviderOperation(project.project, repository.getDirectory())
+				.execute(null);
+		testRepository
+				.createInitialCommit("testEventsAreMerged\n\nfirst commit\n");
+		IndexDiffCacheEntry cacheEntry = Activator.getDefault()
+				.getIndexDiffCache().getIndexDiffCacheEntry(repository);
+		Job.getJobManager().join(JobFamilies.INDEX_DIFF_CACHE_UPDATE, null);
+		long diffsBefore = cacheEntry.getExecutedDiffCount();
+		long mergedBefore = cacheEntry.getMergedEventCount();
+		int events = 20;
+		for (int i = 0; i < events; i++)
+			repository.fireEvent(new IndexChangedEvent());
+		Job.getJobManager().join(JobFamilies.INDEX_DIFF_CACHE_UPDATE, null);
+		long diffs = cacheEntry.getExecutedDiffCount() - diffsBefore;
+		assertTrue("Expected merged index diff updates, but " + diffs
+				+ " diffs were executed for " + events + " events",
+				diffs > 0 && diffs < events);
+		assertTrue(cacheEntry.getMergedEventCount() > mergedBefore);
+	}
+
 	private void waitForListenerCalled(final AtomicBoolean listenerCalled)
 			throws InterruptedException {
 		long time = 0;
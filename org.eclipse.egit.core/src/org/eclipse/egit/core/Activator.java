@@ -172,9 +172,10 @@ public EGitSecureStore getSecureStore() {
 	}
 
 	public void stop(final BundleContext context) throws Exception {
+		indexDiffCache.dispose();
+		indexDiffCache = null;
 		GitProjectData.detachFromWorkspace();
 		repositoryCache = null;
-		indexDiffCache = null;
 		repositoryUtil.dispose();
 		repositoryUtil = null;
 		secureStore = null;
@@ -269,6 +269,9 @@ public class CoreText extends NLS {
 	/** */
 	public static String ProjectUtil_taskCheckingDirectory;
 
+	/** */
+	public static String RefIndex_updateJobName;
+
 	/** */
 	public static String PullOperation_DetachedHeadMessage;
 
@@ -380,6 +383,9 @@ public class CoreText extends NLS {
 	/** */
 	public static String GitResourceVariantTreeSubscriber_fetchTaskName;
 
+	/** */
+	public static String GitCommitsModelCache_prefetchJobName;
+
 	/** */
 	public static String GitSyncObjectCache_noData;
 
@@ -29,6 +29,12 @@ public class GitCorePreferences {
 	/** */
 	public static final String core_autoShareProjects =
 		"core_autoShareProjects";  //$NON-NLS-1$
+	/** Quiet period in milliseconds before an index diff update starts */
+	public static final String core_indexDiffUpdateDelay =
+		"core_indexDiffUpdateDelay"; //$NON-NLS-1$
+	/** Calculate full index diffs on several threads */
+	public static final String core_parallelIndexDiff =
+		"core_parallelIndexDiff"; //$NON-NLS-1$
 	/** */
 	public static final String core_gitPrefix =
 		"core_gitPrefix"; //$NON-NLS-1$
@@ -14,29 +14,21 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.lib.Constants;
+import org.eclipse.egit.core.internal.RefIndex;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache.FileKey;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.revwalk.RevTag;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.util.FS;
 import org.osgi.service.prefs.BackingStoreException;
 
@@ -48,8 +40,6 @@ public class RepositoryUtil {
 	/** The preferences to store the directories known to the Git Repositories view */
 	public static final String PREFS_DIRECTORIES = "GitRepositoriesView.GitDirectories"; //$NON-NLS-1$
 
-	private final Map<String, Map<String, String>> commitMappingCache = new HashMap<String, Map<String, String>>();
-
 	private final Map<String, String> repositoryNameCache = new HashMap<String, String>();
 
 	private final IEclipsePreferences prefs = new InstanceScope()
@@ -66,16 +56,16 @@ public class RepositoryUtil {
 	 * Used by {@link Activator}
 	 */
 	void dispose() {
-		commitMappingCache.clear();
 		repositoryNameCache.clear();
 	}
 
 	/**
 	 * Tries to map a commit to a symbolic reference.
 	 * <p>
-	 * This value will be cached for the given commit ID unless refresh is
-	 * specified. The return value will be the full name, e.g.
-	 * "refs/remotes/someBranch", "refs/tags/v.1.0"
+	 * The commit is looked up in the {@link RefIndex} of the repository which
+	 * is updated when the references change. If refresh is specified the
+	 * references are compared again in any case. The return value will be
+	 * the full name, e.g. "refs/remotes/someBranch", "refs/tags/v.1.0"
 	 * <p>
 	 * Since this mapping is not unique, the following precedence rules are
 	 * used:
@@ -94,137 +84,16 @@ void dispose() {
 	 * @param commitId
 	 *            a commit
 	 * @param refresh
-	 *            if true, the cache will be invalidated
+	 *            if true, the index will be updated
 	 * @return the symbolic reference, or <code>null</code> if no such reference
 	 *         can be found
 	 */
 	public String mapCommitToRef(Repository repository, String commitId,
 			boolean refresh) {
-		synchronized (commitMappingCache) {
-
-			if (!ObjectId.isId(commitId)) {
-				return null;
-			}
-
-			Map<String, String> cacheEntry = commitMappingCache.get(repository
-					.getDirectory().toString());
-			if (!refresh && cacheEntry != null
-					&& cacheEntry.containsKey(commitId)) {
-				// this may be null in fact
-				return cacheEntry.get(commitId);
-			}
-			if (cacheEntry == null) {
-				cacheEntry = new HashMap<String, String>();
-				commitMappingCache.put(repository.getDirectory().getPath(),
-						cacheEntry);
-			} else {
-				cacheEntry.clear();
-			}
-
-			Map<String, Date> tagMap = new HashMap<String, Date>();
-			try {
-				RevWalk rw = new RevWalk(repository);
-				Map<String, Ref> tags = repository.getRefDatabase().getRefs(
-						Constants.R_TAGS);
-				for (Ref tagRef : tags.values()) {
-					RevObject any = rw.parseAny(repository.resolve(tagRef.getName()));
-					if (any instanceof RevTag) {
-						RevTag tag = (RevTag) any;
-						if (tag.getObject().name().equals(commitId)) {
-							Date timestamp;
-							if (tag.getTaggerIdent() != null) {
-								timestamp = tag.getTaggerIdent().getWhen();
-							} else {
-								try {
-									RevCommit commit = rw.parseCommit(tag.getObject());
-									timestamp = commit.getCommitterIdent().getWhen();
-								} catch (IncorrectObjectTypeException e) {
-									// not referencing a comit.
-									timestamp = null;
-								}
-							}
-							tagMap.put(tagRef.getName(), timestamp);
-						}
-					} else if (any instanceof RevCommit) {
-						RevCommit commit = ((RevCommit)any);
-						if (commit.name().equals(commitId))
-							tagMap.put(tagRef.getName(), commit.getCommitterIdent().getWhen());
-					} // else ignore here
-				}
-			} catch (IOException e) {
-				// ignore here
-			}
-
-			String cacheValue = null;
-
-			if (!tagMap.isEmpty()) {
-				// we try to obtain the "latest" tag
-				Date compareDate = new Date(0);
-				for (Map.Entry<String, Date> tagEntry : tagMap.entrySet()) {
-					if (tagEntry.getValue() != null
-							&& tagEntry.getValue().after(compareDate)) {
-						compareDate = tagEntry.getValue();
-						cacheValue = tagEntry.getKey();
-					}
-				}
-				// if we don't have time stamps, we sort
-				if (cacheValue == null) {
-					String compareString = ""; //$NON-NLS-1$
-					for (String tagName : tagMap.keySet()) {
-						if (tagName.compareTo(compareString) >= 0) {
-							cacheValue = tagName;
-							compareString = tagName;
-						}
-					}
-				}
-			}
-
-			if (cacheValue == null) {
-				// we didnt't find a tag, so let's look for local branches
-				Set<String> branchNames = new TreeSet<String>();
-				// put this into a sorted set
-				try {
-					Map<String, Ref> remoteBranches = repository
-							.getRefDatabase().getRefs(Constants.R_HEADS);
-					for (Ref branch : remoteBranches.values()) {
-						if (branch.getObjectId().name().equals(commitId)) {
-							branchNames.add(branch.getName());
-						}
-					}
-				} catch (IOException e) {
-					// ignore here
-				}
-				if (!branchNames.isEmpty()) {
-					// get the last (sorted) entry
-					cacheValue = branchNames.toArray(new String[branchNames
-							.size()])[branchNames.size() - 1];
-				}
-			}
-
-			if (cacheValue == null) {
-				// last try: remote branches
-				Set<String> branchNames = new TreeSet<String>();
-				// put this into a sorted set
-				try {
-					Map<String, Ref> remoteBranches = repository
-							.getRefDatabase().getRefs(Constants.R_REMOTES);
-					for (Ref branch : remoteBranches.values()) {
-						if (branch.getObjectId().name().equals(commitId)) {
-							branchNames.add(branch.getName());
-						}
-					}
-					if (!branchNames.isEmpty()) {
-						// get the last (sorted) entry
-						cacheValue = branchNames.toArray(new String[branchNames
-								.size()])[branchNames.size() - 1];
-					}
-				} catch (IOException e) {
-					// ignore here
-				}
-			}
-			cacheEntry.put(commitId, cacheValue);
-			return cacheValue;
-		}
+		if (!ObjectId.isId(commitId))
+			return null;
+		RefIndex index = RefIndex.get(repository, refresh);
+		return index.getRef(ObjectId.fromString(commitId));
 	}
 
 	/**
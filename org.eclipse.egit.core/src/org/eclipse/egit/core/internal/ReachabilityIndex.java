@@ -0,0 +1,482 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Answers reachability queries between the commits of a repository, e.g.
+ * which branches contain a commit or which tag is the nearest one before or
+ * after a commit.
+ * <p>
+ * The index keeps the commits it has seen with their parents and their
+ * generation number, which is one more than the highest generation number of
+ * the parents. A commit can only reach commits with a lower generation
+ * number, so searches stop at the generation of the commit they look for
+ * instead of walking the whole history. Since commits never change, the
+ * commit graph is kept between queries and only extended by commits which
+ * were not seen before. It is softly referenced, so it is dropped and built
+ * again when memory gets low. The peeled commits of the tags are looked up
+ * again after the references changed.
+ * <p>
+ * Commits are added to the graph in batches, the lock of the index is
+ * released between them so that queries of other threads are not blocked
+ * while a long history is read.
+ */
+public class ReachabilityIndex {
+
+	private static final Map<Repository, ReachabilityIndex> indexes = new WeakHashMap<Repository, ReachabilityIndex>();
+
+	// number of commits added to the graph while holding the lock
+	private static final int BATCH_SIZE = 1000;
+
+	private static class Node extends ObjectId {
+
+		Node[] parents;
+
+		int generation;
+
+		Node(AnyObjectId id) {
+			super(id);
+		}
+	}
+
+	private static class Graph {
+
+		final ObjectIdSubclassMap<Node> nodes = new ObjectIdSubclassMap<Node>();
+
+		// lazily resolved from the tags, null after the tags changed
+		TaggedNodes taggedNodes;
+	}
+
+	private static class TaggedNodes {
+
+		// sorted by generation
+		final List<Node> nodes;
+
+		final Map<Node, Ref> tags;
+
+		TaggedNodes(List<Node> nodes, Map<Node, Ref> tags) {
+			this.nodes = nodes;
+			this.tags = tags;
+		}
+	}
+
+	private static final Comparator<Node> BY_GENERATION = new Comparator<Node>() {
+		public int compare(Node a, Node b) {
+			return a.generation - b.generation;
+		}
+	};
+
+	private final ObjectDatabase objectDatabase;
+
+	private SoftReference<Graph> graph = new SoftReference<Graph>(null);
+
+	// ids of tagged objects which are no commits
+	private final ObjectIdSubclassMap<ObjectId> nonCommits = new ObjectIdSubclassMap<ObjectId>();
+
+	private volatile boolean tagsDirty = true;
+
+	// the tags and their peeled ids, read from the RefIndex
+	private List<Ref> tags = Collections.emptyList();
+
+	private List<ObjectId> tagIds = Collections.emptyList();
+
+	// incremented whenever the tags are read again
+	private int tagsVersion;
+
+	private ReachabilityIndex(ObjectDatabase objectDatabase) {
+		this.objectDatabase = objectDatabase;
+	}
+
+	/**
+	 * @param repository
+	 * @return the index of the repository
+	 */
+	public static ReachabilityIndex get(Repository repository) {
+		ReachabilityIndex index;
+		synchronized (indexes) {
+			index = indexes.get(repository);
+			if (index == null) {
+				index = new ReachabilityIndex(repository.getObjectDatabase());
+				final ReachabilityIndex listener = index;
+				repository.getListenerList().addRefsChangedListener(
+						new RefsChangedListener() {
+							public void onRefsChanged(RefsChangedEvent event) {
+								listener.invalidate();
+							}
+						});
+				indexes.put(repository, index);
+			}
+		}
+		index.updateTags(repository);
+		return index;
+	}
+
+	/**
+	 * Forces the tags to be read again on the next {@link #get(Repository)}
+	 */
+	public void invalidate() {
+		tagsDirty = true;
+	}
+
+	private synchronized void updateTags(Repository repository) {
+		if (!tagsDirty)
+			return;
+		tagsDirty = false;
+		RefIndex refIndex = RefIndex.get(repository);
+		List<Ref> newTags = new ArrayList<Ref>();
+		List<ObjectId> newTagIds = new ArrayList<ObjectId>();
+		for (Ref tag : refIndex.getRefs(Constants.R_TAGS).values()) {
+			ObjectId peeledId = refIndex.getPeeledId(tag.getName());
+			if (peeledId == null || nonCommits.contains(peeledId))
+				continue;
+			newTags.add(tag);
+			newTagIds.add(peeledId);
+		}
+		tags = newTags;
+		tagIds = newTagIds;
+		tagsVersion++;
+		Graph current = graph.get();
+		if (current != null)
+			current.taggedNodes = null;
+	}
+
+	/**
+	 * @param commit
+	 * @param refs
+	 *            references to commits, e.g. the local and remote branches
+	 * @param monitor
+	 * @return the references from which the commit is reachable
+	 * @throws IOException
+	 * @throws OperationCanceledException
+	 *             if the monitor was canceled
+	 */
+	public List<Ref> getContainingRefs(AnyObjectId commit,
+			Collection<Ref> refs, IProgressMonitor monitor) throws IOException {
+		List<Ref> result = new ArrayList<Ref>();
+		Graph current = getGraph();
+		RevWalk walk = createWalk();
+		try {
+			Node target = getNode(current, walk, commit, monitor);
+			Map<Node, Boolean> reachable = new HashMap<Node, Boolean>();
+			for (Ref ref : refs) {
+				ObjectId id = ref.getObjectId();
+				if (id == null)
+					continue;
+				Node tip = getCommitNode(current, walk, id, monitor);
+				if (tip != null && reaches(tip, target, reachable, monitor))
+					result.add(ref);
+			}
+		} finally {
+			walk.release();
+		}
+		return result;
+	}
+
+	/**
+	 * @param commit
+	 * @param monitor
+	 * @return the tag of the nearest ancestor of the commit which is tagged,
+	 *         or {@code null} if no ancestor is tagged
+	 * @throws IOException
+	 * @throws OperationCanceledException
+	 *             if the monitor was canceled
+	 */
+	public Ref getNearestAncestorTag(AnyObjectId commit,
+			IProgressMonitor monitor) throws IOException {
+		Graph current = getGraph();
+		RevWalk walk = createWalk();
+		try {
+			TaggedNodes tagged = resolveTags(current, walk, monitor);
+			Node start = getNode(current, walk, commit, monitor);
+			// visit the ancestors from the highest to the lowest generation,
+			// the first tagged one cannot be an ancestor of another tagged
+			// ancestor
+			PriorityQueue<Node> queue = new PriorityQueue<Node>(11,
+					Collections.reverseOrder(BY_GENERATION));
+			Set<Node> seen = new HashSet<Node>();
+			for (Node parent : start.parents)
+				if (seen.add(parent))
+					queue.add(parent);
+			Node node;
+			while ((node = queue.poll()) != null) {
+				checkCanceled(monitor);
+				Ref tag = tagged.tags.get(node);
+				if (tag != null)
+					return tag;
+				for (Node parent : node.parents)
+					if (seen.add(parent))
+						queue.add(parent);
+			}
+			return null;
+		} finally {
+			walk.release();
+		}
+	}
+
+	/**
+	 * @param commit
+	 * @param monitor
+	 * @return the tag of the nearest descendant of the commit which is
+	 *         tagged, or {@code null} if no descendant is tagged
+	 * @throws IOException
+	 * @throws OperationCanceledException
+	 *             if the monitor was canceled
+	 */
+	public Ref getNearestDescendantTag(AnyObjectId commit,
+			IProgressMonitor monitor) throws IOException {
+		Graph current = getGraph();
+		RevWalk walk = createWalk();
+		try {
+			TaggedNodes tagged = resolveTags(current, walk, monitor);
+			Node target = getNode(current, walk, commit, monitor);
+			// test the tagged commits from the lowest to the highest
+			// generation above the one of the commit, the first one
+			// containing the commit cannot contain another tagged descendant
+			Map<Node, Boolean> reachable = new HashMap<Node, Boolean>();
+			List<Node> nodes = tagged.nodes;
+			for (int i = firstAbove(nodes, target.generation); i < nodes
+					.size(); i++)
+				if (reaches(nodes.get(i), target, reachable, monitor))
+					return tagged.tags.get(nodes.get(i));
+			return null;
+		} finally {
+			walk.release();
+		}
+	}
+
+	/**
+	 * @return the position of the first node with a generation above the
+	 *         given one in the nodes sorted by generation
+	 */
+	private static int firstAbove(List<Node> nodes, int generation) {
+		int low = 0;
+		int high = nodes.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (nodes.get(mid).generation <= generation)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private synchronized Graph getGraph() {
+		Graph current = graph.get();
+		if (current == null) {
+			current = new Graph();
+			graph = new SoftReference<Graph>(current);
+		}
+		return current;
+	}
+
+	private RevWalk createWalk() {
+		RevWalk walk = new RevWalk(objectDatabase.newReader());
+		walk.setRetainBody(false);
+		return walk;
+	}
+
+	private TaggedNodes resolveTags(Graph current, RevWalk walk,
+			IProgressMonitor monitor) throws IOException {
+		List<Ref> currentTags;
+		List<ObjectId> currentTagIds;
+		int version;
+		synchronized (this) {
+			if (current.taggedNodes != null)
+				return current.taggedNodes;
+			currentTags = tags;
+			currentTagIds = tagIds;
+			version = tagsVersion;
+		}
+		Map<Node, Ref> byNode = new HashMap<Node, Ref>();
+		for (int i = 0; i < currentTags.size(); i++) {
+			Node node = getCommitNode(current, walk, currentTagIds.get(i),
+					monitor);
+			// the tags are sorted by name, keep the first one of a commit
+			if (node != null && !byNode.containsKey(node))
+				byNode.put(node, currentTags.get(i));
+		}
+		List<Node> sorted = new ArrayList<Node>(byNode.keySet());
+		Collections.sort(sorted, BY_GENERATION);
+		TaggedNodes result = new TaggedNodes(sorted, byNode);
+		synchronized (this) {
+			// the tags may have been read again in the meantime
+			if (version == tagsVersion)
+				current.taggedNodes = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the node of the commit, or {@code null} if the object is
+	 *         missing or no commit
+	 */
+	private Node getCommitNode(Graph current, RevWalk walk, ObjectId id,
+			IProgressMonitor monitor) throws IOException {
+		synchronized (this) {
+			if (nonCommits.contains(id))
+				return null;
+		}
+		try {
+			return getNode(current, walk, id, monitor);
+		} catch (IncorrectObjectTypeException e) {
+			synchronized (this) {
+				nonCommits.add(id.copy());
+			}
+			return null;
+		} catch (MissingObjectException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the commit and all its ancestors which are not yet known to the
+	 * graph. A node is only created after the nodes of its parents, hence the
+	 * explicit stack instead of a recursion which may overflow on a long
+	 * history.
+	 */
+	private Node getNode(Graph current, RevWalk walk, AnyObjectId id,
+			IProgressMonitor monitor) throws IOException {
+		ObjectIdSubclassMap<Node> nodes = current.nodes;
+		synchronized (this) {
+			Node node = nodes.get(id);
+			if (node != null)
+				return node;
+		}
+		List<RevCommit> stack = new ArrayList<RevCommit>();
+		stack.add(walk.parseCommit(id));
+		while (!stack.isEmpty()) {
+			checkCanceled(monitor);
+			synchronized (this) {
+				for (int n = 0; n < BATCH_SIZE && !stack.isEmpty(); n++)
+					addTop(nodes, walk, stack);
+			}
+		}
+		synchronized (this) {
+			return nodes.get(id);
+		}
+	}
+
+	/**
+	 * Creates the node of the commit on top of the stack if the nodes of its
+	 * parents exist, otherwise pushes the parents without node
+	 */
+	private static void addTop(ObjectIdSubclassMap<Node> nodes, RevWalk walk,
+			List<RevCommit> stack) throws IOException {
+		RevCommit top = stack.get(stack.size() - 1);
+		if (nodes.contains(top)) {
+			stack.remove(stack.size() - 1);
+			return;
+		}
+		walk.parseHeaders(top);
+		RevCommit[] parents = top.getParents();
+		Node[] parentNodes = new Node[parents.length];
+		int generation = 0;
+		boolean complete = true;
+		for (int i = 0; i < parents.length; i++) {
+			parentNodes[i] = nodes.get(parents[i]);
+			if (parentNodes[i] == null) {
+				complete = false;
+				stack.add(parents[i]);
+			} else
+				generation = Math.max(generation, parentNodes[i].generation);
+		}
+		if (complete) {
+			stack.remove(stack.size() - 1);
+			Node created = new Node(top);
+			created.parents = parentNodes;
+			created.generation = generation + 1;
+			nodes.add(created);
+		}
+	}
+
+	/**
+	 * Depth first search from the start node which does not descend below
+	 * the generation of the target. The results are remembered in
+	 * {@code reachable} for further searches of the same target.
+	 */
+	private static boolean reaches(Node start, Node target,
+			Map<Node, Boolean> reachable, IProgressMonitor monitor) {
+		if (start == target)
+			return true;
+		if (start.generation <= target.generation)
+			return false;
+		Boolean known = reachable.get(start);
+		if (known != null)
+			return known.booleanValue();
+		List<Node> path = new ArrayList<Node>();
+		List<Integer> nextParent = new ArrayList<Integer>();
+		path.add(start);
+		nextParent.add(Integer.valueOf(0));
+		while (!path.isEmpty()) {
+			checkCanceled(monitor);
+			int last = path.size() - 1;
+			Node node = path.get(last);
+			int next = nextParent.get(last).intValue();
+			if (next == node.parents.length) {
+				reachable.put(node, Boolean.FALSE);
+				path.remove(last);
+				nextParent.remove(last);
+				continue;
+			}
+			nextParent.set(last, Integer.valueOf(next + 1));
+			Node parent = node.parents[next];
+			if (parent.generation < target.generation
+					|| (parent.generation == target.generation && parent != target))
+				continue;
+			known = parent == target ? Boolean.TRUE : reachable.get(parent);
+			if (known == null) {
+				path.add(parent);
+				nextParent.add(Integer.valueOf(0));
+			} else if (known.booleanValue()) {
+				// all nodes on the path reach the target
+				for (Node onPath : path)
+					reachable.put(onPath, Boolean.TRUE);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void checkCanceled(IProgressMonitor monitor) {
+		if (monitor.isCanceled())
+			throw new OperationCanceledException();
+	}
+
+}
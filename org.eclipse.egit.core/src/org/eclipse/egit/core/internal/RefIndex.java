@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.CoreText;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Reverse index from the peeled object id of the tags, local and remote
+ * branches of a repository to the references. The index also holds all
+ * references sorted by name and the peeled id of the tags and branches.
+ * <p>
+ * The index is built on first use and updated on the next lookup after the
+ * references of the repository changed. An update only peels the references
+ * which were added or moved since the last update. Lookups read an immutable
+ * snapshot of the index and do not lock. After
+ * {@link #updateInBackground(Repository)} the index is updated by a job
+ * whenever the references change. Callers in the UI thread use
+ * {@link #getCurrent(Repository)}, which never updates the index itself.
+ */
+public class RefIndex {
+
+	private static final Map<Repository, RefIndex> indexes = new WeakHashMap<Repository, RefIndex>();
+
+	private static final List<UpdateListener> updateListeners = new CopyOnWriteArrayList<UpdateListener>();
+
+	/**
+	 * Notified when an index was updated by a job
+	 */
+	public interface UpdateListener {
+
+		/**
+		 * @param repository
+		 *            the repository whose index was updated
+		 */
+		void indexUpdated(Repository repository);
+	}
+
+	private static final int TAG = 0;
+
+	private static final int HEAD = 1;
+
+	private static final int REMOTE = 2;
+
+	private static class Entry {
+
+		final String name;
+
+		final int kind;
+
+		final ObjectId id;
+
+		final ObjectId peeledId;
+
+		// only loaded for tags sharing their commit with other references
+		volatile Date date;
+
+		volatile boolean dateLoaded;
+
+		Entry(String name, int kind, ObjectId id, ObjectId peeledId) {
+			this.name = name;
+			this.kind = kind;
+			this.id = id;
+			this.peeledId = peeledId;
+		}
+	}
+
+	private static class Snapshot {
+
+		final SortedMap<String, Ref> refs;
+
+		final Map<String, Entry> byName;
+
+		final Map<ObjectId, Entry[]> byId;
+
+		Snapshot(SortedMap<String, Ref> refs, Map<String, Entry> byName,
+				Map<ObjectId, Entry[]> byId) {
+			this.refs = refs;
+			this.byName = byName;
+			this.byId = byId;
+		}
+	}
+
+	private volatile Snapshot snapshot = new Snapshot(
+			new TreeMap<String, Ref>(), Collections.<String, Entry> emptyMap(),
+			Collections.<ObjectId, Entry[]> emptyMap());
+
+	private volatile boolean dirty = true;
+
+	private volatile boolean background;
+
+	private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+	private RefIndex() {
+		// use get(Repository)
+	}
+
+	/**
+	 * @param repository
+	 * @return the index of the repository, updated if the references changed
+	 *         since the last update
+	 */
+	public static RefIndex get(Repository repository) {
+		return get(repository, false);
+	}
+
+	/**
+	 * @param repository
+	 * @param refresh
+	 *            whether the references are compared even if no change was
+	 *            reported since the last update
+	 * @return the updated index of the repository
+	 */
+	public static RefIndex get(Repository repository, boolean refresh) {
+		RefIndex index = getIndex(repository);
+		if (refresh)
+			index.invalidate();
+		index.update(repository);
+		return index;
+	}
+
+	/**
+	 * Returns the index without updating it, so the caller is never blocked
+	 * by reading the references. While the references changed since the
+	 * last update, the index contains the previous references, or none
+	 * before the first update, and an update is scheduled. The
+	 * {@link UpdateListener}s are notified when it is done.
+	 *
+	 * @param repository
+	 * @return the index of the repository, which may be outdated
+	 */
+	public static RefIndex getCurrent(Repository repository) {
+		RefIndex index = getIndex(repository);
+		if (index.dirty)
+			index.scheduleUpdate(repository);
+		return index;
+	}
+
+	/**
+	 * @param listener
+	 */
+	public static void addUpdateListener(UpdateListener listener) {
+		updateListeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 */
+	public static void removeUpdateListener(UpdateListener listener) {
+		updateListeners.remove(listener);
+	}
+
+	/**
+	 * Updates the index of the repository by a job now and whenever the
+	 * references change, so that lookups in the UI thread rarely need to
+	 * update it
+	 *
+	 * @param repository
+	 */
+	public static void updateInBackground(Repository repository) {
+		RefIndex index = getIndex(repository);
+		index.background = true;
+		if (index.dirty)
+			index.scheduleUpdate(repository);
+	}
+
+	private static RefIndex getIndex(Repository repository) {
+		synchronized (indexes) {
+			RefIndex index = indexes.get(repository);
+			if (index == null) {
+				index = new RefIndex();
+				final RefIndex listener = index;
+				repository.getListenerList().addRefsChangedListener(
+						new RefsChangedListener() {
+							public void onRefsChanged(RefsChangedEvent event) {
+								listener.invalidate();
+								if (listener.background)
+									listener.scheduleUpdate(event
+											.getRepository());
+							}
+						});
+				indexes.put(repository, index);
+			}
+			return index;
+		}
+	}
+
+	private void scheduleUpdate(final Repository repository) {
+		if (!updateScheduled.compareAndSet(false, true))
+			return;
+		Job job = new Job(CoreText.RefIndex_updateJobName) {
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				updateScheduled.set(false);
+				if (update(repository))
+					for (UpdateListener listener : updateListeners)
+						listener.indexUpdated(repository);
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 * Forces the references to be compared again on the next
+	 * {@link #get(Repository)}
+	 */
+	public void invalidate() {
+		dirty = true;
+	}
+
+	/**
+	 * Maps a commit to a reference using the precedence rules of
+	 * {@link org.eclipse.egit.core.RepositoryUtil#mapCommitToRef(Repository, String, boolean)}
+	 *
+	 * @param commit
+	 * @return the full name of the reference, or {@code null} if no tag or
+	 *         branch references the commit
+	 */
+	public String getRef(AnyObjectId commit) {
+		Entry[] entries = snapshot.byId.get(commit);
+		if (entries == null)
+			return null;
+		Entry best = null;
+		for (Entry entry : entries)
+			if (best == null || compare(entry, best) > 0)
+				best = entry;
+		return best.name;
+	}
+
+	/**
+	 * @param prefix
+	 *            a prefix like {@link Constants#R_TAGS} or
+	 *            {@link RefDatabase#ALL}
+	 * @return the references whose names start with the prefix, sorted by
+	 *         their full names
+	 */
+	public SortedMap<String, Ref> getRefs(String prefix) {
+		SortedMap<String, Ref> refs = snapshot.refs;
+		if (prefix.length() == 0)
+			return Collections.unmodifiableSortedMap(refs);
+		return Collections.unmodifiableSortedMap(refs.subMap(prefix, prefix
+				+ Character.MAX_VALUE));
+	}
+
+	/**
+	 * @param prefix
+	 * @return whether any reference name starts with the prefix
+	 */
+	public boolean hasRefs(String prefix) {
+		SortedMap<String, Ref> tail = snapshot.refs.tailMap(prefix);
+		return !tail.isEmpty() && tail.firstKey().startsWith(prefix);
+	}
+
+	/**
+	 * @param name
+	 *            the full name of a tag, local or remote branch
+	 * @return the id of the object the tag or branch points to after peeling
+	 *         annotated tags, or {@code null} if the reference is unknown
+	 */
+	public ObjectId getPeeledId(String name) {
+		Entry entry = snapshot.byName.get(name);
+		return entry != null ? entry.peeledId : null;
+	}
+
+	/**
+	 * @param name
+	 *            the full name of a tag
+	 * @return whether the tag is known and annotated
+	 */
+	public boolean isAnnotatedTag(String name) {
+		Entry entry = snapshot.byName.get(name);
+		return entry != null && entry.kind == TAG
+				&& !entry.id.equals(entry.peeledId);
+	}
+
+	/**
+	 * @param commit
+	 * @return the full names of the tags which reference the commit
+	 */
+	public List<String> getTags(AnyObjectId commit) {
+		Entry[] entries = snapshot.byId.get(commit);
+		if (entries == null)
+			return Collections.emptyList();
+		List<String> tags = new ArrayList<String>();
+		for (Entry entry : entries)
+			if (entry.kind == TAG)
+				tags.add(entry.name);
+		return tags;
+	}
+
+	/**
+	 * Tags are preferred to local branches, local branches to remote ones.
+	 * Newer tags are preferred to older ones, all other ties are resolved by
+	 * the highest name.
+	 */
+	private static int compare(Entry a, Entry b) {
+		if (a.kind != b.kind)
+			return b.kind - a.kind;
+		if (a.kind == TAG) {
+			if (a.date != null && b.date == null)
+				return 1;
+			if (a.date == null && b.date != null)
+				return -1;
+			if (a.date != null && !a.date.equals(b.date))
+				return a.date.compareTo(b.date);
+		}
+		return a.name.compareTo(b.name);
+	}
+
+	/**
+	 * @return whether a new snapshot was created
+	 */
+	private boolean update(Repository repository) {
+		if (!dirty)
+			return false;
+		synchronized (this) {
+			if (!dirty)
+				return false;
+			dirty = false;
+			try {
+				snapshot = createSnapshot(repository, snapshot);
+				return true;
+			} catch (IOException e) {
+				dirty = true;
+				Activator.logError(e.getMessage(), e);
+				return false;
+			}
+		}
+	}
+
+	private static Snapshot createSnapshot(Repository repository,
+			Snapshot old) throws IOException {
+		SortedMap<String, Ref> refs = new TreeMap<String, Ref>(repository
+				.getRefDatabase().getRefs(RefDatabase.ALL));
+		Map<String, Entry> byName = new HashMap<String, Entry>();
+		for (Ref ref : refs.values()) {
+			ObjectId id = ref.getObjectId();
+			if (id == null || ref.isSymbolic())
+				continue;
+			String name = ref.getName();
+			int kind;
+			if (name.startsWith(Constants.R_TAGS))
+				kind = TAG;
+			else if (name.startsWith(Constants.R_HEADS))
+				kind = HEAD;
+			else if (name.startsWith(Constants.R_REMOTES))
+				kind = REMOTE;
+			else
+				continue;
+			Entry entry = old.byName.get(name);
+			if (entry == null || !entry.id.equals(id)) {
+				ObjectId peeledId = id;
+				if (kind == TAG) {
+					Ref peeled = repository.peel(ref);
+					if (peeled.getPeeledObjectId() != null)
+						peeledId = peeled.getPeeledObjectId();
+				}
+				entry = new Entry(name, kind, id, peeledId);
+			}
+			byName.put(name, entry);
+		}
+
+		Map<ObjectId, List<Entry>> groups = new HashMap<ObjectId, List<Entry>>();
+		for (Entry entry : byName.values()) {
+			List<Entry> group = groups.get(entry.peeledId);
+			if (group == null) {
+				group = new ArrayList<Entry>(1);
+				groups.put(entry.peeledId, group);
+			}
+			group.add(entry);
+		}
+		Map<ObjectId, Entry[]> byId = new HashMap<ObjectId, Entry[]>(
+				groups.size() * 4 / 3 + 1);
+		RevWalk walk = new RevWalk(repository);
+		try {
+			for (Map.Entry<ObjectId, List<Entry>> group : groups.entrySet()) {
+				List<Entry> entries = group.getValue();
+				if (entries.size() > 1)
+					loadTagDates(walk, entries);
+				byId.put(group.getKey(),
+						entries.toArray(new Entry[entries.size()]));
+			}
+		} finally {
+			walk.release();
+		}
+		return new Snapshot(refs, byName, byId);
+	}
+
+	/**
+	 * Tag dates are only needed to choose between several tags of the same
+	 * commit. The date of a tag is its tagger date or the committer date of
+	 * the tagged commit.
+	 */
+	private static void loadTagDates(RevWalk walk, List<Entry> entries)
+			throws IOException {
+		for (Entry entry : entries) {
+			if (entry.kind != TAG || entry.dateLoaded)
+				continue;
+			try {
+				RevObject any = walk.parseAny(entry.id);
+				if (any instanceof RevTag
+						&& ((RevTag) any).getTaggerIdent() != null)
+					entry.date = ((RevTag) any).getTaggerIdent().getWhen();
+				else {
+					RevObject peeled = walk.peel(any);
+					if (peeled instanceof RevCommit)
+						entry.date = ((RevCommit) peeled).getCommitterIdent()
+								.getWhen();
+				}
+			} catch (MissingObjectException e) {
+				// no date
+			}
+			entry.dateLoaded = true;
+		}
+	}
+
+}
@@ -14,7 +14,11 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -22,13 +26,19 @@
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.egit.core.GitProvider;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.team.core.RepositoryProvider;
 import org.eclipse.team.core.Team;
 
 /**
  * Git specific implementation of {@link IResourceDeltaVisitor} that ignores not
- * interesting resources. Also collects list of paths and resources to update
+ * interesting resources. Also collects list of paths and resources to update.
+ * <p>
+ * The visitor can collect the changes for several repositories at once so
+ * that a resource delta has to be walked only once. Projects which are not
+ * shared with Git are skipped completely.
  */
 public class GitResourceDeltaVisitor implements IResourceDeltaVisitor {
 
@@ -45,11 +55,17 @@ public class GitResourceDeltaVisitor implements IResourceDeltaVisitor {
 
 	private final Repository repository;
 
-	private final Collection<String> filesToUpdate;
+	private final Set<Repository> repositories;
 
-	private final Collection<IResource> resourcesToUpdate;
+	private final Map<Repository, Collection<String>> filesToUpdate;
 
-	private boolean gitIgnoreChanged = false;
+	private final Map<Repository, Collection<IResource>> resourcesToUpdate;
+
+	private final Set<Repository> gitIgnoreChanged;
+
+	// mappings of the containers visited so far, files use the mapping of
+	// their parent
+	private final Map<IResource, RepositoryMapping> containerMappings;
 
 	/**
 	 * Constructs {@link GitResourceDeltaVisitor}
@@ -59,29 +75,57 @@ public class GitResourceDeltaVisitor implements IResourceDeltaVisitor {
 	 *            {@link IResourceDelta}s
 	 */
 	public GitResourceDeltaVisitor(Repository repository) {
+		this(repository, Collections.singleton(repository));
+	}
+
+	/**
+	 * Constructs a {@link GitResourceDeltaVisitor} collecting the changes of
+	 * several repositories in one pass. Use the methods taking a
+	 * {@link Repository} parameter to retrieve the changes.
+	 *
+	 * @param repositories
+	 *            which should be considered during visiting
+	 *            {@link IResourceDelta}s
+	 */
+	public GitResourceDeltaVisitor(Collection<Repository> repositories) {
+		this(null, repositories);
+	}
+
+	private GitResourceDeltaVisitor(Repository repository,
+			Collection<Repository> repositories) {
 		this.repository = repository;
+		this.repositories = new HashSet<Repository>(repositories);
 
-		filesToUpdate = new HashSet<String>();
-		resourcesToUpdate = new HashSet<IResource>();
+		filesToUpdate = new HashMap<Repository, Collection<String>>();
+		resourcesToUpdate = new HashMap<Repository, Collection<IResource>>();
+		gitIgnoreChanged = new HashSet<Repository>();
+		containerMappings = new HashMap<IResource, RepositoryMapping>();
 	}
 
 	public boolean visit(IResourceDelta delta) throws CoreException {
 		final IResource resource = delta.getResource();
+		if (resource.getType() == IResource.ROOT)
+			return true;
+		// Don't walk projects which are not shared with Git at all
+		if (resource.getType() == IResource.PROJECT
+				&& !(RepositoryProvider.getProvider(resource.getProject()) instanceof GitProvider))
+			return false;
 		// Don't include ignored resources
 		if (Team.isIgnoredHint(resource))
 			return false;
 		// If the resource is not part of a project under
 		// Git revision control
-		final RepositoryMapping mapping = RepositoryMapping
-				.getMapping(resource);
-		if (mapping == null || mapping.getRepository() != repository)
+		final RepositoryMapping mapping = getMapping(resource);
+		if (mapping == null
+				|| !repositories.contains(mapping.getRepository()))
 			// Ignore the change
 			return true;
+		final Repository repo = mapping.getRepository();
 
 		if (resource instanceof IFolder
 				&& delta.getKind() == IResourceDelta.ADDED) {
-			filesToUpdate.add(mapping.getRepoRelativePath(resource) + "/"); //$NON-NLS-1$
-			resourcesToUpdate.add(resource);
+			getFiles(repo).add(mapping.getRepoRelativePath(resource) + "/"); //$NON-NLS-1$
+			getResources(repo).add(resource);
 			return true;
 		}
 
@@ -97,23 +141,63 @@ public boolean visit(IResourceDelta delta) throws CoreException {
 			return true;
 
 		if (resource.getName().equals(GITIGNORE_NAME)) {
-			gitIgnoreChanged = true;
+			gitIgnoreChanged.add(repo);
 			return false;
 		}
 
 		String repoRelativePath = mapping.getRepoRelativePath(resource);
-		filesToUpdate.add(repoRelativePath);
-		resourcesToUpdate.add(resource);
+		getFiles(repo).add(repoRelativePath);
+		getResources(repo).add(resource);
 
 		return true;
 	}
 
+	private RepositoryMapping getMapping(IResource resource) {
+		if (resource.getType() == IResource.FILE) {
+			IResource parent = resource.getParent();
+			if (containerMappings.containsKey(parent))
+				return containerMappings.get(parent);
+			return RepositoryMapping.getMapping(resource);
+		}
+		RepositoryMapping mapping = RepositoryMapping.getMapping(resource);
+		containerMappings.put(resource, mapping);
+		return mapping;
+	}
+
+	private Collection<String> getFiles(Repository repo) {
+		Collection<String> files = filesToUpdate.get(repo);
+		if (files == null) {
+			files = new HashSet<String>();
+			filesToUpdate.put(repo, files);
+		}
+		return files;
+	}
+
+	private Collection<IResource> getResources(Repository repo) {
+		Collection<IResource> resources = resourcesToUpdate.get(repo);
+		if (resources == null) {
+			resources = new HashSet<IResource>();
+			resourcesToUpdate.put(repo, resources);
+		}
+		return resources;
+	}
+
+	/**
+	 * @return the repositories for which changes were collected
+	 */
+	public Set<Repository> getChangedRepositories() {
+		Set<Repository> result = new HashSet<Repository>(filesToUpdate
+				.keySet());
+		result.addAll(gitIgnoreChanged);
+		return result;
+	}
+
 	/**
 	 * @return collection of files to update
 	 */
 	public Collection<IFile> getFileResourcesToUpdate() {
 		Collection<IFile> result = new ArrayList<IFile>();
-		for (IResource resource : resourcesToUpdate)
+		for (IResource resource : getResourcesToUpdate())
 			if (resource instanceof IFile)
 				result.add((IFile) resource);
 		return result;
@@ -123,14 +207,37 @@ public Collection<IFile> getFileResourcesToUpdate() {
 	 * @return collection of resources to update
 	 */
 	public Collection<IResource> getResourcesToUpdate() {
-		return resourcesToUpdate;
+		return getResourcesToUpdate(repository);
+	}
+
+	/**
+	 * @param repo
+	 * @return collection of resources of the given repository to update
+	 */
+	public Collection<IResource> getResourcesToUpdate(Repository repo) {
+		Collection<IResource> resources = resourcesToUpdate.get(repo);
+		if (resources == null)
+			return Collections.<IResource> emptySet();
+		return resources;
 	}
 
 	/**
 	 * @return collection of files / folders to update. Folder paths end with /
 	 */
 	public Collection<String> getFilesToUpdate() {
-		return filesToUpdate;
+		return getFilesToUpdate(repository);
+	}
+
+	/**
+	 * @param repo
+	 * @return collection of files / folders of the given repository to
+	 *         update. Folder paths end with /
+	 */
+	public Collection<String> getFilesToUpdate(Repository repo) {
+		Collection<String> files = filesToUpdate.get(repo);
+		if (files == null)
+			return Collections.<String> emptySet();
+		return files;
 	}
 
 	/**
@@ -138,6 +245,15 @@ public Collection<String> getFilesToUpdate() {
 	 *         otherwise
 	 */
 	public boolean getGitIgnoreChanged() {
-		return gitIgnoreChanged;
+		return getGitIgnoreChanged(repository);
+	}
+
+	/**
+	 * @param repo
+	 * @return {@code true} when content of a .gitignore file of the given
+	 *         repository changed, {@code false} otherwise
+	 */
+	public boolean getGitIgnoreChanged(Repository repo) {
+		return gitIgnoreChanged.contains(repo);
 	}
-}
\ No newline at end of file
+}
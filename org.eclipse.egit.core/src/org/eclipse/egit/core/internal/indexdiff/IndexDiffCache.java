@@ -8,12 +8,18 @@
  *******************************************************************************/
 package org.eclipse.egit.core.internal.indexdiff;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.trace.GitTraceLocation;
 import org.eclipse.jgit.lib.IndexDiff;
 import org.eclipse.jgit.lib.Repository;
 
@@ -29,11 +35,14 @@ public class IndexDiffCache {
 
 	private IndexDiffChangedListener globalListener;
 
+	private IResourceChangeListener resourceChangeListener;
+
 	/**
 	 * constructor
 	 */
 	public IndexDiffCache() {
 		createGlobalListener();
+		createResourceChangeListener();
 	}
 
 	/**
@@ -75,6 +84,75 @@ public void removeIndexDiffChangedListener(IndexDiffChangedListener listener) {
 		}
 	}
 
+	/**
+	 * Removes the resource change listener from the workspace and stores the
+	 * current index diffs for the next start
+	 */
+	public void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(
+				resourceChangeListener);
+		IndexDiffCacheEntry[] entriesCopy;
+		synchronized (entries) {
+			entriesCopy = entries.values().toArray(
+					new IndexDiffCacheEntry[entries.size()]);
+		}
+		for (IndexDiffCacheEntry entry : entriesCopy)
+			entry.saveSnapshot();
+		ParallelIndexDiff.dispose();
+	}
+
+	private void createResourceChangeListener() {
+		// a single listener walks the delta once for all cache entries and
+		// dispatches the changed paths to the entries of their repository
+		resourceChangeListener = new IResourceChangeListener() {
+			public void resourceChanged(IResourceChangeEvent event) {
+				Map<Repository, IndexDiffCacheEntry> entriesCopy;
+				synchronized (entries) {
+					if (entries.isEmpty())
+						return;
+					entriesCopy = new HashMap<Repository, IndexDiffCacheEntry>(
+							entries);
+				}
+				long startTime = System.currentTimeMillis();
+				GitResourceDeltaVisitor visitor = createDeltaVisitor(entriesCopy
+						.keySet());
+				try {
+					event.getDelta().accept(visitor);
+				} catch (CoreException e) {
+					Activator.logError(e.getMessage(), e);
+					return;
+				}
+				Set<Repository> changedRepositories = visitor
+						.getChangedRepositories();
+				if (GitTraceLocation.INDEXDIFFCACHE.isActive())
+					GitTraceLocation.getTrace().trace(
+							GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+							"Dispatched resource delta to " //$NON-NLS-1$
+									+ changedRepositories.size() + " of " //$NON-NLS-1$
+									+ entriesCopy.size() + " repositories in " //$NON-NLS-1$
+									+ (System.currentTimeMillis() - startTime)
+									+ " ms"); //$NON-NLS-1$
+				for (Repository repository : changedRepositories)
+					entriesCopy.get(repository).resourcesChanged(
+							visitor.getFilesToUpdate(repository),
+							visitor.getResourcesToUpdate(repository),
+							visitor.getGitIgnoreChanged(repository));
+			}
+		};
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(
+				resourceChangeListener, IResourceChangeEvent.POST_CHANGE);
+	}
+
+	/**
+	 * @param repositories
+	 * @return the visitor collecting the changes of the given repositories
+	 *         from a resource delta
+	 */
+	GitResourceDeltaVisitor createDeltaVisitor(
+			Collection<Repository> repositories) {
+		return new GitResourceDeltaVisitor(repositories);
+	}
+
 	private void createGlobalListener() {
 		globalListener = new IndexDiffChangedListener() {
 			public void indexDiffChanged(Repository repository,
@@ -13,23 +13,28 @@
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IResourceChangeEvent;
-import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.EclipseGitProgressTransformer;
+import org.eclipse.egit.core.GitCorePreferences;
 import org.eclipse.egit.core.IteratorService;
 import org.eclipse.egit.core.JobFamilies;
 import org.eclipse.egit.core.internal.trace.GitTraceLocation;
@@ -49,24 +54,55 @@
  * This class caches the {@link IndexDiff} for a given repository. The cache
  * listens for changes in the related repository and notifies listeners about
  * changes.
+ * <p>
+ * Updates are processed by a single job per repository which starts after a
+ * short quiet period (see {@link GitCorePreferences#core_indexDiffUpdateDelay}).
+ * Changes arriving while the job is waiting or running are merged into one
+ * batch, and a requested full reload supersedes all pending partial updates.
  *
  */
 public class IndexDiffCacheEntry {
 
-	private static final int RESOURCE_LIST_UPDATE_LIMIT = 1000;
-
 	private Repository repository;
 
 	private volatile IndexDiffData indexDiffData;
 
-	private Job reloadJob;
+	private final UpdateCostModel costModel = new UpdateCostModel();
 
-	// used to serialize index diff update jobs
-	private ReentrantLock lock = new ReentrantLock(true);
+	// guards the pending update state and the counters
+	private final Object updateLock = new Object();
 
-	private Set<IndexDiffChangedListener> listeners = new HashSet<IndexDiffChangedListener>();
+	private Job updateJob;
+
+	private boolean pendingReload;
+
+	private String pendingTrigger;
+
+	private final Set<String> pendingFiles = new HashSet<String>();
+
+	private final Set<IResource> pendingResources = new HashSet<IResource>();
+
+	private long mergedEvents;
+
+	private long executedDiffs;
+
+	private long diffTime;
+
+	// key of the state indexDiffData was calculated for, see
+	// IndexDiffSnapshot
+	private String indexDiffKey;
+
+	private boolean snapshotOutdated;
+
+	// files whose index entries are edited by the current thread, see
+	// beginIndexEdit
+	private final ThreadLocal<Collection<String>> indexEdits = new ThreadLocal<Collection<String>>();
 
-	private IResourceChangeListener resourceChangeListener;
+	// key of the index written by the last index edit, see
+	// IndexDiffSnapshot
+	private String editedIndexKey;
+
+	private Set<IndexDiffChangedListener> listeners = new HashSet<IndexDiffChangedListener>();
 
 	/**
 	 * @param repository
@@ -76,7 +112,9 @@ public IndexDiffCacheEntry(Repository repository) {
 		repository.getListenerList().addIndexChangedListener(
 				new IndexChangedListener() {
 					public void onIndexChanged(IndexChangedEvent event) {
-						scheduleReloadJob("IndexChanged"); //$NON-NLS-1$
+						// the files of an index edit are updated when it ends
+						if (indexEdits.get() == null && !isEditedIndex())
+							scheduleReloadJob("IndexChanged"); //$NON-NLS-1$
 					}
 				});
 		repository.getListenerList().addRefsChangedListener(
@@ -85,8 +123,8 @@ public void onRefsChanged(RefsChangedEvent event) {
 						scheduleReloadJob("RefsChanged"); //$NON-NLS-1$
 					}
 				});
+		scheduleSnapshotLoadJob();
 		scheduleReloadJob("IndexDiffCacheEntry construction"); //$NON-NLS-1$
-		createResourceChangeListener();
 	}
 
 	/**
@@ -150,6 +188,71 @@ public void refresh() {
 		scheduleReloadJob("Refresh called"); //$NON-NLS-1$
 	}
 
+	/**
+	 * Announces that the current thread is going to change the index entries
+	 * of the given files only. Changes of the index by the current thread do
+	 * not trigger a full reload of the index diff until
+	 * {@link #endIndexEdit()} is called, which updates the index diff for
+	 * these files only. Calls must be paired in a try/finally block.
+	 *
+	 * @param files
+	 *            repository relative paths of the edited files
+	 */
+	public void beginIndexEdit(Collection<String> files) {
+		indexEdits.set(new HashSet<String>(files));
+	}
+
+	/**
+	 * Ends an index edit of the current thread started with
+	 * {@link #beginIndexEdit(Collection)} and schedules the update of the
+	 * index diff for the edited files
+	 */
+	public void endIndexEdit() {
+		Collection<String> files = indexEdits.get();
+		indexEdits.remove();
+		if (files == null || files.isEmpty())
+			return;
+		String key;
+		try {
+			key = IndexDiffSnapshot.computeKey(repository);
+		} catch (IOException e) {
+			key = null;
+		}
+		synchronized (updateLock) {
+			editedIndexKey = key;
+		}
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+		IPath workTree = new Path(repository.getWorkTree().getAbsolutePath());
+		Set<IResource> resources = new HashSet<IResource>();
+		for (String file : files) {
+			IFile resource = root.getFileForLocation(workTree.append(file));
+			if (resource != null)
+				resources.add(resource);
+		}
+		scheduleUpdateJob(files, resources);
+	}
+
+	/**
+	 * A change of the index file may be detected again later, e.g. by the
+	 * repository change scanner of the UI. The event is handled already if
+	 * the index is still the one written by the last index edit.
+	 *
+	 * @return whether the index was written by the last index edit
+	 */
+	private boolean isEditedIndex() {
+		String key;
+		synchronized (updateLock) {
+			key = editedIndexKey;
+		}
+		if (key == null)
+			return false;
+		try {
+			return key.equals(IndexDiffSnapshot.computeKey(repository));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * The method returns the current index diff or null. Null is returned if
 	 * the first index diff calculation has not completed yet.
@@ -160,28 +263,240 @@ public IndexDiffData getIndexDiff() {
 		return indexDiffData;
 	}
 
+	/**
+	 * @return number of resource change, index and ref events which were
+	 *         merged into an already pending index diff update
+	 */
+	public long getMergedEventCount() {
+		synchronized (updateLock) {
+			return mergedEvents;
+		}
+	}
+
+	/**
+	 * @return number of index diff calculations executed so far
+	 */
+	public long getExecutedDiffCount() {
+		synchronized (updateLock) {
+			return executedDiffs;
+		}
+	}
+
+	/**
+	 * @return total time in milliseconds spent in index diff calculations
+	 */
+	public long getDiffTime() {
+		synchronized (updateLock) {
+			return diffTime;
+		}
+	}
+
+	/**
+	 * @return the model deciding between partial updates and full reloads
+	 */
+	UpdateCostModel getCostModel() {
+		return costModel;
+	}
+
+	/**
+	 * Stores the current index diff in the plug-in state location so that it
+	 * can be shown immediately after the next start. Nothing is written if
+	 * the stored snapshot is up to date.
+	 */
+	void saveSnapshot() {
+		IndexDiffData data;
+		String key;
+		synchronized (updateLock) {
+			if (!snapshotOutdated || indexDiffData == null)
+				return;
+			data = indexDiffData;
+			key = indexDiffKey;
+			snapshotOutdated = false;
+		}
+		try {
+			long startTime = System.currentTimeMillis();
+			IndexDiffSnapshot.save(repository, data, key);
+			if (GitTraceLocation.INDEXDIFFCACHE.isActive())
+				GitTraceLocation.getTrace().trace(
+						GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+						NLS.bind("Stored IndexDiffData snapshot of {0} in {1} ms", //$NON-NLS-1$
+								repository.getWorkTree().getName(),
+								Long.valueOf(System.currentTimeMillis()
+										- startTime)));
+		} catch (IOException e) {
+			Activator.logError(e.getMessage(), e);
+		}
+	}
+
+	private void scheduleSnapshotLoadJob() {
+		if (!checkRepository())
+			return;
+		// publishes the index diff stored at the last shutdown if the index
+		// and HEAD did not move in between. The reload scheduled on
+		// construction verifies it against the working tree.
+		Job job = new Job(getReloadJobName()) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					long startTime = System.currentTimeMillis();
+					String key = IndexDiffSnapshot.computeKey(repository);
+					IndexDiffData snapshot = IndexDiffSnapshot.load(
+							repository, key);
+					if (snapshot == null)
+						return Status.OK_STATUS;
+					synchronized (updateLock) {
+						// a calculated index diff is always more recent
+						if (indexDiffData != null)
+							return Status.OK_STATUS;
+						indexDiffData = snapshot;
+						indexDiffKey = key;
+					}
+					if (GitTraceLocation.INDEXDIFFCACHE.isActive())
+						GitTraceLocation.getTrace().trace(
+								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+								NLS.bind("Loaded IndexDiffData snapshot of {0} in {1} ms", //$NON-NLS-1$
+										repository.getWorkTree().getName(),
+										Long.valueOf(System.currentTimeMillis()
+												- startTime)));
+					notifyListeners();
+				} catch (IOException e) {
+					if (GitTraceLocation.INDEXDIFFCACHE.isActive())
+						GitTraceLocation.getTrace().trace(
+								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+								"Loading IndexDiffData snapshot failed", e); //$NON-NLS-1$
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				if (family.equals(JobFamilies.INDEX_DIFF_CACHE_UPDATE))
+					return true;
+				return super.belongsTo(family);
+			}
+		};
+		job.schedule();
+	}
+
 	private void scheduleReloadJob(final String trigger) {
-		if (reloadJob != null)
-			reloadJob.cancel();
 		if (!checkRepository())
 			return;
-		reloadJob = new Job(getReloadJobName()) {
+		Job job;
+		synchronized (updateLock) {
+			if (pendingReload || !pendingFiles.isEmpty())
+				mergedEvents++;
+			// a full reload supersedes all pending partial updates
+			pendingReload = true;
+			pendingTrigger = trigger;
+			pendingFiles.clear();
+			pendingResources.clear();
+			job = getUpdateJob();
+		}
+		// the result of a running calculation would be outdated
+		if (job.getState() == Job.RUNNING)
+			job.cancel();
+		job.schedule(getUpdateDelay());
+	}
+
+	private void scheduleUpdateJob(final Collection<String> filesToUpdate,
+			final Collection<IResource> resourcesToUpdate) {
+		if (!checkRepository())
+			return;
+		Job job;
+		synchronized (updateLock) {
+			if (pendingReload || !pendingFiles.isEmpty())
+				mergedEvents++;
+			if (!pendingReload) {
+				pendingFiles.addAll(filesToUpdate);
+				pendingResources.addAll(resourcesToUpdate);
+			}
+			job = getUpdateJob();
+		}
+		job.schedule(getUpdateDelay());
+	}
+
+	private long getUpdateDelay() {
+		IEclipsePreferences d = new DefaultScope().getNode(Activator
+				.getPluginId());
+		IEclipsePreferences p = new InstanceScope().getNode(Activator
+				.getPluginId());
+		return p.getInt(GitCorePreferences.core_indexDiffUpdateDelay, d
+				.getInt(GitCorePreferences.core_indexDiffUpdateDelay, 0));
+	}
+
+	private Job getUpdateJob() {
+		if (updateJob == null)
+			updateJob = createUpdateJob();
+		return updateJob;
+	}
+
+	private Job createUpdateJob() {
+		// a single job per repository processes all pending updates, events
+		// arriving while the job waits or runs are merged into the next batch
+		Job job = new Job(getReloadJobName()) {
 			@Override
 			protected IStatus run(IProgressMonitor monitor) {
 				waitForWorkspaceLock(monitor);
 				if (monitor.isCanceled())
 					return Status.CANCEL_STATUS;
-				lock.lock();
+				boolean reload;
+				String trigger;
+				Collection<String> filesToUpdate;
+				Collection<IResource> resourcesToUpdate;
+				synchronized (updateLock) {
+					reload = pendingReload || indexDiffData == null;
+					if (!reload && pendingFiles.isEmpty())
+						return Status.OK_STATUS;
+					trigger = pendingReload ? pendingTrigger
+							: "Resources changed"; //$NON-NLS-1$
+					filesToUpdate = new HashSet<String>(pendingFiles);
+					resourcesToUpdate = new HashSet<IResource>(
+							pendingResources);
+					pendingReload = false;
+					pendingTrigger = null;
+					pendingFiles.clear();
+					pendingResources.clear();
+				}
+				if (!reload) {
+					filesToUpdate = UpdateCostModel.collapse(filesToUpdate);
+					reload = costModel.preferFullReload(filesToUpdate);
+					if (GitTraceLocation.INDEXDIFFCACHE.isActive())
+						GitTraceLocation.getTrace().trace(
+								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+								getCostTraceMessage(filesToUpdate, reload));
+					if (reload)
+						trigger = "Partial update estimated more expensive than full reload"; //$NON-NLS-1$
+				}
 				try {
 					long startTime = System.currentTimeMillis();
-					IndexDiff result = calcIndexDiff(monitor, getName());
-					if (monitor.isCanceled())
+					String key = IndexDiffSnapshot.computeKey(repository);
+					IndexDiffData result;
+					if (reload)
+						result = calcFullIndexDiffData(monitor, getName());
+					else
+						result = calcIndexDiffData(monitor, getName(),
+								filesToUpdate, resourcesToUpdate);
+					if (result == null || monitor.isCanceled()) {
+						restorePending(reload, trigger, filesToUpdate,
+								resourcesToUpdate);
 						return Status.CANCEL_STATUS;
-					indexDiffData = new IndexDiffData(result);
+					}
+					long time = System.currentTimeMillis() - startTime;
+					if (reload)
+						costModel.fullReloadFinished(time);
+					else
+						costModel.partialUpdateFinished(filesToUpdate, time);
+					synchronized (updateLock) {
+						indexDiffData = result;
+						indexDiffKey = key;
+						snapshotOutdated = true;
+						executedDiffs++;
+						diffTime += time;
+					}
 					if (GitTraceLocation.INDEXDIFFCACHE.isActive()) {
-						long time = System.currentTimeMillis() - startTime;
 						StringBuilder message = new StringBuilder(
-								getTraceMessage(time));
+								getTraceMessage(time, reload, trigger,
+										filesToUpdate.size()));
 						GitTraceLocation.getTrace().trace(
 								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
 								message.append(indexDiffData.toString())
@@ -195,16 +510,32 @@ protected IStatus run(IProgressMonitor monitor) {
 								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
 								"Calculating IndexDiff failed", e); //$NON-NLS-1$
 					return Status.OK_STATUS;
-				} finally {
-					lock.unlock();
 				}
 			}
 
-			private String getTraceMessage(long time) {
+			private String getCostTraceMessage(
+					Collection<String> collapsedFiles, boolean fullReload) {
 				return NLS
-						.bind("\nUpdated IndexDiffData in {0} ms\nReason: {1}\nRepository: {2}\n", //$NON-NLS-1$
+						.bind("Update of {0}: {1} collapsed paths, estimated partial update {2} ms, {3} -> {4}", //$NON-NLS-1$
+								new Object[] {
+										repository.getWorkTree().getName(),
+										Integer.valueOf(collapsedFiles.size()),
+										Long.valueOf(Math.round(costModel
+												.estimatePartialCost(collapsedFiles))),
+										costModel.toString(),
+										fullReload ? "full reload" : "partial update" }); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+
+			private String getTraceMessage(long time, boolean reload,
+					String trigger, int fileCount) {
+				return NLS
+						.bind("\nUpdated IndexDiffData in {0} ms\nReason: {1}\nRepository: {2}\nPartial update: {3} files\nMerged events: {4}, executed diffs: {5}, total diff time: {6} ms\n", //$NON-NLS-1$
 						new Object[] { Long.valueOf(time), trigger,
-								repository.getWorkTree().getName() });
+								repository.getWorkTree().getName(),
+								reload ? "-" : Integer.valueOf(fileCount), //$NON-NLS-1$
+								Long.valueOf(getMergedEventCount()),
+								Long.valueOf(getExecutedDiffCount()),
+								Long.valueOf(getDiffTime()) });
 			}
 
 			@Override
@@ -215,7 +546,25 @@ public boolean belongsTo(Object family) {
 			}
 
 		};
-		reloadJob.schedule();
+		return job;
+	}
+
+	private void restorePending(boolean reload, String trigger,
+			Collection<String> filesToUpdate,
+			Collection<IResource> resourcesToUpdate) {
+		synchronized (updateLock) {
+			if (pendingReload)
+				return;
+			if (reload) {
+				pendingReload = true;
+				pendingTrigger = trigger;
+				pendingFiles.clear();
+				pendingResources.clear();
+			} else {
+				pendingFiles.addAll(filesToUpdate);
+				pendingResources.addAll(resourcesToUpdate);
+			}
+		}
 	}
 
 	private boolean checkRepository() {
@@ -246,59 +595,6 @@ public void run(IProgressMonitor innerMonitor) throws CoreException {
 		}
 	}
 
-	private void scheduleUpdateJob(final Collection<String> filesToUpdate,
-			final Collection<IResource> resourcesToUpdate) {
-		if (!checkRepository())
-			return;
-		Job job = new Job(getReloadJobName()) {
-			@Override
-			protected IStatus run(IProgressMonitor monitor) {
-				waitForWorkspaceLock(monitor);
-				if (monitor.isCanceled())
-					return Status.CANCEL_STATUS;
-				lock.lock();
-				try {
-					long startTime = System.currentTimeMillis();
-					IndexDiffData result = calcIndexDiffData(monitor,
-							getName(), filesToUpdate, resourcesToUpdate);
-					if (monitor.isCanceled())
-						return Status.CANCEL_STATUS;
-					indexDiffData = result;
-					if (GitTraceLocation.INDEXDIFFCACHE.isActive()) {
-						long time = System.currentTimeMillis() - startTime;
-						StringBuilder message = new StringBuilder(
-								NLS.bind(
-										"Updated IndexDiffData based on resource list (length = {0}) in {1} ms\n", //$NON-NLS-1$
-										Integer.valueOf(resourcesToUpdate
-												.size()), Long.valueOf(time)));
-						GitTraceLocation.getTrace().trace(
-								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
-								message.append(indexDiffData.toString())
-								.toString());
-					}
-					notifyListeners();
-					return Status.OK_STATUS;
-				} catch (IOException e) {
-					if (GitTraceLocation.INDEXDIFFCACHE.isActive())
-						GitTraceLocation.getTrace().trace(
-								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
-								"Calculating IndexDiff failed", e); //$NON-NLS-1$
-					return Status.OK_STATUS;
-				} finally {
-					lock.unlock();
-				}
-			}
-			@Override
-			public boolean belongsTo(Object family) {
-				if (family.equals(JobFamilies.INDEX_DIFF_CACHE_UPDATE))
-					return true;
-				return super.belongsTo(family);
-			}
-
-		};
-		job.schedule();
-	}
-
 	private IndexDiffData calcIndexDiffData(IProgressMonitor monitor,
 			String jobName, Collection<String> filesToUpdate,
 			Collection<IResource> resourcesToUpdate) throws IOException {
@@ -331,6 +627,23 @@ private void notifyListeners() {
 			}
 	}
 
+	private IndexDiffData calcFullIndexDiffData(IProgressMonitor monitor,
+			String jobName) throws IOException {
+		if (isParallelIndexDiff())
+			return ParallelIndexDiff.calculate(repository, monitor, jobName,
+					2 * ParallelIndexDiff.getThreadCount());
+		return new IndexDiffData(calcIndexDiff(monitor, jobName));
+	}
+
+	private boolean isParallelIndexDiff() {
+		IEclipsePreferences d = new DefaultScope().getNode(Activator
+				.getPluginId());
+		IEclipsePreferences p = new InstanceScope().getNode(Activator
+				.getPluginId());
+		return p.getBoolean(GitCorePreferences.core_parallelIndexDiff, d
+				.getBoolean(GitCorePreferences.core_parallelIndexDiff, false));
+	}
+
 	private IndexDiff calcIndexDiff(IProgressMonitor monitor, String jobName)
 			throws IOException {
 		EclipseGitProgressTransformer jgitMonitor = new EclipseGitProgressTransformer(
@@ -350,33 +663,28 @@ private String getReloadJobName() {
 		return MessageFormat.format(CoreText.IndexDiffCacheEntry_reindexing, repoName);
 	}
 
-	private void createResourceChangeListener() {
-		resourceChangeListener = new IResourceChangeListener() {
-			public void resourceChanged(IResourceChangeEvent event) {
-				GitResourceDeltaVisitor visitor = new GitResourceDeltaVisitor(repository);
-				try {
-					event.getDelta().accept(visitor);
-				} catch (CoreException e) {
-					Activator.logError(e.getMessage(), e);
-					return;
-				}
-				Collection<String> filesToUpdate = visitor.getFilesToUpdate();
-				if (visitor.getGitIgnoreChanged())
-					scheduleReloadJob("A .gitignore changed"); //$NON-NLS-1$
-				else if (indexDiffData == null)
-					scheduleReloadJob("Resource changed, no diff available"); //$NON-NLS-1$
-				else if (!filesToUpdate.isEmpty())
-					if (filesToUpdate.size() < RESOURCE_LIST_UPDATE_LIMIT)
-						scheduleUpdateJob(filesToUpdate, visitor.getResourcesToUpdate());
-					else
-						// Calculate new IndexDiff if too many resources changed
-						// This happens e.g. when a project is opened
-						scheduleReloadJob("Too many resources changed"); //$NON-NLS-1$
-			}
-
-		};
-		ResourcesPlugin.getWorkspace().addResourceChangeListener(
-				resourceChangeListener, IResourceChangeEvent.POST_CHANGE);
+	/**
+	 * Called by {@link IndexDiffCache} with the changes of a resource change
+	 * event which belong to the repository of this entry.
+	 *
+	 * @param filesToUpdate
+	 *            repository relative paths of changed files / folders.
+	 *            Folder paths end with /
+	 * @param resourcesToUpdate
+	 *            the changed resources
+	 * @param gitIgnoreChanged
+	 *            {@code true} if a .gitignore file changed
+	 */
+	void resourcesChanged(Collection<String> filesToUpdate,
+			Collection<IResource> resourcesToUpdate, boolean gitIgnoreChanged) {
+		if (gitIgnoreChanged)
+			scheduleReloadJob("A .gitignore changed"); //$NON-NLS-1$
+		else if (indexDiffData == null)
+			scheduleReloadJob("Resource changed, no diff available"); //$NON-NLS-1$
+		else if (!filesToUpdate.isEmpty())
+			// whether the update is done partially or by a full reload is
+			// decided by the update job based on the UpdateCostModel
+			scheduleUpdateJob(filesToUpdate, resourcesToUpdate);
 	}
 
 }
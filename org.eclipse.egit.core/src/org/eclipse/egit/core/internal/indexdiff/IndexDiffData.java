@@ -8,9 +8,11 @@
  *******************************************************************************/
 package org.eclipse.egit.core.internal.indexdiff;
 
+import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 import org.eclipse.core.resources.IResource;
@@ -45,6 +47,24 @@ public class IndexDiffData {
 
 	private final Collection<IResource> changedResources;
 
+	// files and folders updated when merging this data from base
+	private final Collection<String> changedFiles;
+
+	private final WeakReference<IndexDiffData> base;
+
+	// prefix indexes are built lazily on first access
+	private volatile PathIndex stagedIndex;
+
+	private volatile PathIndex conflictsIndex;
+
+	private volatile PathIndex modifiedIndex;
+
+	private volatile PathIndex untrackedIndex;
+
+	private volatile PathIndex untrackedFoldersIndex;
+
+	private volatile PathIndex ignoredIndex;
+
 	/**
 	 * @param indexDiff
 	 */
@@ -67,6 +87,71 @@ public IndexDiffData(IndexDiff indexDiff) {
 		ignored = Collections.unmodifiableSet(new HashSet<String>(indexDiff
 				.getIgnoredNotInIndex()));
 		changedResources = null;
+		changedFiles = null;
+		base = null;
+	}
+
+	/**
+	 * Creates an {@link IndexDiffData} from previously stored lists, see
+	 * {@link IndexDiffSnapshot}. The sets are not copied.
+	 */
+	IndexDiffData(Set<String> added, Set<String> changed, Set<String> removed,
+			Set<String> missing, Set<String> modified, Set<String> untracked,
+			Set<String> untrackedFolders, Set<String> conflicts,
+			Set<String> ignored) {
+		this.added = Collections.unmodifiableSet(added);
+		this.changed = Collections.unmodifiableSet(changed);
+		this.removed = Collections.unmodifiableSet(removed);
+		this.missing = Collections.unmodifiableSet(missing);
+		this.modified = Collections.unmodifiableSet(modified);
+		this.untracked = Collections.unmodifiableSet(untracked);
+		this.untrackedFolders = Collections.unmodifiableSet(untrackedFolders);
+		this.conflicts = Collections.unmodifiableSet(conflicts);
+		this.ignored = Collections.unmodifiableSet(ignored);
+		changedResources = null;
+		changedFiles = null;
+		base = null;
+	}
+
+	/**
+	 * Creates an {@link IndexDiffData} from index diffs which were calculated
+	 * for disjoint parts of the working tree, see {@link ParallelIndexDiff}.
+	 *
+	 * @param indexDiffs
+	 */
+	IndexDiffData(Collection<IndexDiff> indexDiffs) {
+		Set<String> added2 = new HashSet<String>();
+		Set<String> changed2 = new HashSet<String>();
+		Set<String> removed2 = new HashSet<String>();
+		Set<String> missing2 = new HashSet<String>();
+		Set<String> modified2 = new HashSet<String>();
+		Set<String> untracked2 = new HashSet<String>();
+		Set<String> untrackedFolders2 = new HashSet<String>();
+		Set<String> conflicts2 = new HashSet<String>();
+		Set<String> ignored2 = new HashSet<String>();
+		for (IndexDiff indexDiff : indexDiffs) {
+			added2.addAll(indexDiff.getAdded());
+			changed2.addAll(indexDiff.getChanged());
+			removed2.addAll(indexDiff.getRemoved());
+			missing2.addAll(indexDiff.getMissing());
+			modified2.addAll(indexDiff.getModified());
+			untracked2.addAll(indexDiff.getUntracked());
+			untrackedFolders2.addAll(getUntrackedFolders(indexDiff));
+			conflicts2.addAll(indexDiff.getConflicting());
+			ignored2.addAll(indexDiff.getIgnoredNotInIndex());
+		}
+		added = Collections.unmodifiableSet(added2);
+		changed = Collections.unmodifiableSet(changed2);
+		removed = Collections.unmodifiableSet(removed2);
+		missing = Collections.unmodifiableSet(missing2);
+		modified = Collections.unmodifiableSet(modified2);
+		untracked = Collections.unmodifiableSet(untracked2);
+		untrackedFolders = Collections.unmodifiableSet(untrackedFolders2);
+		conflicts = Collections.unmodifiableSet(conflicts2);
+		ignored = Collections.unmodifiableSet(ignored2);
+		changedResources = null;
+		changedFiles = null;
+		base = null;
 	}
 
 	private Set<String> getUntrackedFolders(IndexDiff indexDiff) {
@@ -93,6 +178,9 @@ public IndexDiffData(IndexDiffData baseDiff,
 			IndexDiff diffForChangedFiles) {
 		this.changedResources = Collections
 				.unmodifiableCollection(new HashSet<IResource>(changedResources));
+		this.changedFiles = Collections
+				.unmodifiableCollection(new HashSet<String>(changedFiles));
+		this.base = new WeakReference<IndexDiffData>(baseDiff);
 		Set<String> added2 = new HashSet<String>(baseDiff.getAdded());
 		Set<String> changed2 = new HashSet<String>(baseDiff.getChanged());
 		Set<String> removed2 = new HashSet<String>(baseDiff.getRemoved());
@@ -103,16 +191,28 @@ public IndexDiffData(IndexDiffData baseDiff,
 		Set<String> conflicts2 = new HashSet<String>(baseDiff.getConflicting());
 		Set<String> ignored2 = new HashSet<String>(baseDiff.getIgnoredNotInIndex());
 
-		mergeList(added2, changedFiles, diffForChangedFiles.getAdded());
-		mergeList(changed2, changedFiles, diffForChangedFiles.getChanged());
-		mergeList(removed2, changedFiles, diffForChangedFiles.getRemoved());
-		mergeList(missing2, changedFiles, diffForChangedFiles.getMissing());
-		mergeList(modified2, changedFiles, diffForChangedFiles.getModified());
-		mergeList(untracked2, changedFiles, diffForChangedFiles.getUntracked());
-		mergeList(untrackedFolders2, changedFiles, getUntrackedFolders(diffForChangedFiles));
-		mergeList(conflicts2, changedFiles,
+		Set<String> changedFolders = new HashSet<String>();
+		for (String file : changedFiles)
+			if (file.endsWith("/")) //$NON-NLS-1$
+				changedFolders.add(file);
+
+		mergeList(added2, changedFiles, changedFolders,
+				diffForChangedFiles.getAdded());
+		mergeList(changed2, changedFiles, changedFolders,
+				diffForChangedFiles.getChanged());
+		mergeList(removed2, changedFiles, changedFolders,
+				diffForChangedFiles.getRemoved());
+		mergeList(missing2, changedFiles, changedFolders,
+				diffForChangedFiles.getMissing());
+		mergeList(modified2, changedFiles, changedFolders,
+				diffForChangedFiles.getModified());
+		mergeList(untracked2, changedFiles, changedFolders,
+				diffForChangedFiles.getUntracked());
+		mergeList(untrackedFolders2, changedFiles, changedFolders,
+				getUntrackedFolders(diffForChangedFiles));
+		mergeList(conflicts2, changedFiles, changedFolders,
 				diffForChangedFiles.getConflicting());
-		mergeList(ignored2, changedFiles,
+		mergeList(ignored2, changedFiles, changedFolders,
 				diffForChangedFiles.getIgnoredNotInIndex());
 
 		added = Collections.unmodifiableSet(added2);
@@ -127,7 +227,8 @@ public IndexDiffData(IndexDiffData baseDiff,
 	}
 
 	private void mergeList(Set<String> baseList,
-			Collection<String> changedFiles, Set<String> listForChangedFiles) {
+			Collection<String> changedFiles, Set<String> changedFolders,
+			Set<String> listForChangedFiles) {
 		for (String file : changedFiles) {
 			if (baseList.contains(file)) {
 				if (!listForChangedFiles.contains(file))
@@ -137,6 +238,18 @@ private void mergeList(Set<String> baseList,
 					baseList.add(file);
 			}
 		}
+		if (changedFolders.isEmpty())
+			return;
+		// everything below a changed folder was diffed again
+		for (Iterator<String> it = baseList.iterator(); it.hasNext();) {
+			String path = it.next();
+			if (UpdateCostModel.isBelow(path, changedFolders)
+					&& !listForChangedFiles.contains(path))
+				it.remove();
+		}
+		for (String path : listForChangedFiles)
+			if (UpdateCostModel.isBelow(path, changedFolders))
+				baseList.add(path);
 	}
 
 	/**
@@ -211,6 +324,104 @@ public Collection<IResource> getChangedResources() {
 		return changedResources;
 	}
 
+	/**
+	 * @param older
+	 *            an older {@link IndexDiffData} of the same repository
+	 * @return the files and folders (ending with /) whose state may differ
+	 *         between {@code older} and this data, or {@code null} if this
+	 *         data was not derived from {@code older} by partial updates only
+	 */
+	public Collection<String> getChangedFilesSince(IndexDiffData older) {
+		Set<String> result = new HashSet<String>();
+		IndexDiffData data = this;
+		while (data != older) {
+			if (data.base == null)
+				return null;
+			result.addAll(data.changedFiles);
+			data = data.base.get();
+			if (data == null)
+				return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @return index over all files which are added, changed or removed in the
+	 *         index. Containers are decorated as staged whenever they contain
+	 *         one of these files.
+	 */
+	public PathIndex getStagedPathIndex() {
+		PathIndex index = stagedIndex;
+		if (index == null) {
+			Set<String> staged = new HashSet<String>(added);
+			staged.addAll(changed);
+			staged.addAll(removed);
+			index = new PathIndex(staged);
+			stagedIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * @return index over {@link #getConflicting()}
+	 */
+	public PathIndex getConflictingPathIndex() {
+		PathIndex index = conflictsIndex;
+		if (index == null) {
+			index = new PathIndex(conflicts);
+			conflictsIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * @return index over {@link #getModified()}
+	 */
+	public PathIndex getModifiedPathIndex() {
+		PathIndex index = modifiedIndex;
+		if (index == null) {
+			index = new PathIndex(modified);
+			modifiedIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * @return index over {@link #getUntracked()}
+	 */
+	public PathIndex getUntrackedPathIndex() {
+		PathIndex index = untrackedIndex;
+		if (index == null) {
+			index = new PathIndex(untracked);
+			untrackedIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * @return index over {@link #getUntrackedFolders()}
+	 */
+	public PathIndex getUntrackedFoldersPathIndex() {
+		PathIndex index = untrackedFoldersIndex;
+		if (index == null) {
+			index = new PathIndex(untrackedFolders);
+			untrackedFoldersIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * @return index over {@link #getIgnoredNotInIndex()}
+	 */
+	public PathIndex getIgnoredPathIndex() {
+		PathIndex index = ignoredIndex;
+		if (index == null) {
+			index = new PathIndex(ignored);
+			ignoredIndex = index;
+		}
+		return index;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
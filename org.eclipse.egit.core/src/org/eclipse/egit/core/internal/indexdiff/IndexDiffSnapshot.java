@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.egit.core.Activator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Stores {@link IndexDiffData} in the state location of the core plug-in so
+ * that it can be shown right after startup, before the first index diff
+ * calculation has finished.
+ * <p>
+ * A snapshot is keyed by the checksum of the index file and the id of HEAD.
+ * It is only loaded if both are still the same. The paths of each list are
+ * stored sorted and prefix compressed.
+ */
+class IndexDiffSnapshot {
+
+	private static final int MAGIC = 0x45474944; // EGID
+
+	private static final int VERSION = 1;
+
+	private static final String SNAPSHOT_FOLDER = "indexdiff"; //$NON-NLS-1$
+
+	private static final String SNAPSHOT_EXTENSION = ".bin"; //$NON-NLS-1$
+
+	private IndexDiffSnapshot() {
+		// utility class
+	}
+
+	/**
+	 * @param repository
+	 * @return the checksum of the index file and the id of HEAD, identifying
+	 *         the state an {@link IndexDiffData} was calculated for
+	 * @throws IOException
+	 */
+	static String computeKey(Repository repository) throws IOException {
+		byte[] checksum = new byte[Constants.OBJECT_ID_LENGTH];
+		File indexFile = repository.getIndexFile();
+		if (indexFile.length() >= checksum.length) {
+			// the last bytes of the index file are its SHA-1 checksum
+			RandomAccessFile raf = new RandomAccessFile(indexFile, "r"); //$NON-NLS-1$
+			try {
+				raf.seek(raf.length() - checksum.length);
+				raf.readFully(checksum);
+			} finally {
+				raf.close();
+			}
+		}
+		ObjectId head = repository.resolve(Constants.HEAD);
+		if (head == null)
+			head = ObjectId.zeroId();
+		return ObjectId.fromRaw(checksum).name() + " " + head.name(); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param repository
+	 * @param expectedKey
+	 *            the current key of the repository, see
+	 *            {@link #computeKey(Repository)}
+	 * @return the stored index diff or {@code null} if there is no snapshot
+	 *         for the given key
+	 * @throws IOException
+	 */
+	static IndexDiffData load(Repository repository, String expectedKey)
+			throws IOException {
+		File file = getSnapshotFile(repository);
+		if (!file.isFile())
+			return null;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(new FileInputStream(file))));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			if (!getRepositoryKey(repository).equals(in.readUTF()))
+				return null;
+			if (!expectedKey.equals(in.readUTF()))
+				return null;
+			Set<String> added = readPaths(in);
+			Set<String> changed = readPaths(in);
+			Set<String> removed = readPaths(in);
+			Set<String> missing = readPaths(in);
+			Set<String> modified = readPaths(in);
+			Set<String> untracked = readPaths(in);
+			Set<String> untrackedFolders = readPaths(in);
+			Set<String> conflicts = readPaths(in);
+			Set<String> ignored = readPaths(in);
+			return new IndexDiffData(added, changed, removed, missing,
+					modified, untracked, untrackedFolders, conflicts, ignored);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @param repository
+	 * @param data
+	 * @param key
+	 *            the key of the state {@code data} was calculated for
+	 * @throws IOException
+	 */
+	static void save(Repository repository, IndexDiffData data, String key)
+			throws IOException {
+		File file = getSnapshotFile(repository);
+		File folder = file.getParentFile();
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException(folder.getPath());
+		File tmp = new File(folder, file.getName() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new DeflaterOutputStream(new FileOutputStream(tmp))));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(getRepositoryKey(repository));
+			out.writeUTF(key);
+			writePaths(out, data.getAdded());
+			writePaths(out, data.getChanged());
+			writePaths(out, data.getRemoved());
+			writePaths(out, data.getMissing());
+			writePaths(out, data.getModified());
+			writePaths(out, data.getUntracked());
+			writePaths(out, data.getUntrackedFolders());
+			writePaths(out, data.getConflicting());
+			writePaths(out, data.getIgnoredNotInIndex());
+		} finally {
+			out.close();
+		}
+		if (file.exists() && !file.delete())
+			throw new IOException(file.getPath());
+		if (!tmp.renameTo(file))
+			throw new IOException(tmp.getPath());
+	}
+
+	private static void writePaths(DataOutputStream out, Set<String> paths)
+			throws IOException {
+		String[] sorted = paths.toArray(new String[paths.size()]);
+		Arrays.sort(sorted);
+		out.writeInt(sorted.length);
+		String previous = ""; //$NON-NLS-1$
+		for (String path : sorted) {
+			int common = 0;
+			int max = Math.min(previous.length(), path.length());
+			while (common < max
+					&& previous.charAt(common) == path.charAt(common))
+				common++;
+			out.writeInt(common);
+			out.writeUTF(path.substring(common));
+			previous = path;
+		}
+	}
+
+	private static Set<String> readPaths(DataInputStream in)
+			throws IOException {
+		int count = in.readInt();
+		Set<String> paths = new HashSet<String>(Math.max(16, count * 2));
+		String previous = ""; //$NON-NLS-1$
+		for (int i = 0; i < count; i++) {
+			int common = in.readInt();
+			String path = previous.substring(0, common) + in.readUTF();
+			paths.add(path);
+			previous = path;
+		}
+		return paths;
+	}
+
+	private static String getRepositoryKey(Repository repository) {
+		return repository.getDirectory().getAbsolutePath();
+	}
+
+	private static File getSnapshotFile(Repository repository) {
+		File folder = Activator.getDefault().getStateLocation()
+				.append(SNAPSHOT_FOLDER).toFile();
+		String name = Integer.toHexString(getRepositoryKey(repository)
+				.hashCode());
+		return new File(folder, name + SNAPSHOT_EXTENSION);
+	}
+
+}
@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.egit.core.IteratorService;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Calculates the {@link IndexDiff} of a whole repository in parallel. The top
+ * level entries of the repository are distributed over several shards, each
+ * shard is diffed with its own {@link PathFilterGroup} on a bounded worker
+ * pool, and the results are merged into one {@link IndexDiffData}.
+ * <p>
+ * The shards are balanced by the number of index entries below each top level
+ * entry. If the calculation is canceled or fails, the running shards stop at
+ * their next tree entry.
+ */
+class ParallelIndexDiff {
+
+	private static final long POLL_INTERVAL = 100;
+
+	private static ExecutorService executor;
+
+	private ParallelIndexDiff() {
+		// utility class
+	}
+
+	/**
+	 * @return number of worker threads used for parallel index diffs
+	 */
+	static int getThreadCount() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Calculates the index diff of the complete working tree
+	 *
+	 * @param repository
+	 * @param monitor
+	 * @param jobName
+	 * @param shardCount
+	 *            the maximum number of shards the top level entries are
+	 *            distributed to
+	 * @return the index diff or {@code null} if the monitor was canceled
+	 * @throws IOException
+	 */
+	static IndexDiffData calculate(final Repository repository,
+			IProgressMonitor monitor, String jobName, int shardCount)
+			throws IOException {
+		List<Collection<String>> shards = computeShards(repository,
+				shardCount);
+		final AtomicBoolean canceled = new AtomicBoolean();
+		monitor.beginTask(jobName, shards.size());
+		try {
+			List<Future<IndexDiff>> futures = new ArrayList<Future<IndexDiff>>();
+			for (final Collection<String> shard : shards)
+				futures.add(getExecutor().submit(new Callable<IndexDiff>() {
+					public IndexDiff call() throws IOException {
+						return diffShard(repository, shard, canceled);
+					}
+				}));
+			List<IndexDiff> diffs = new ArrayList<IndexDiff>();
+			for (Future<IndexDiff> future : futures) {
+				IndexDiff diff = waitFor(future, monitor);
+				if (diff == null) {
+					for (Future<IndexDiff> f : futures)
+						f.cancel(true);
+					return null;
+				}
+				diffs.add(diff);
+				monitor.worked(1);
+			}
+			return new IndexDiffData(diffs);
+		} finally {
+			// stops the shards which are still running if the calculation
+			// was canceled or a shard failed
+			canceled.set(true);
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Calculates the index diff of the given top level entries
+	 *
+	 * @param repository
+	 * @param shard
+	 * @param canceled
+	 *            the walk stops at the next tree entry when this is set
+	 * @return the index diff, which is incomplete if the calculation was
+	 *         canceled
+	 * @throws IOException
+	 */
+	static IndexDiff diffShard(Repository repository, Collection<String> shard,
+			AtomicBoolean canceled) throws IOException {
+		IndexDiff diff = new IndexDiff(repository, Constants.HEAD,
+				IteratorService.createInitialIterator(repository));
+		diff.setFilter(AndTreeFilter.create(
+				PathFilterGroup.createFromStrings(shard), new CancelFilter(
+						canceled)));
+		diff.diff(new CancelMonitor(canceled), 0, 0, ""); //$NON-NLS-1$
+		return diff;
+	}
+
+	private static IndexDiff waitFor(Future<IndexDiff> future,
+			IProgressMonitor monitor) throws IOException {
+		while (!monitor.isCanceled()) {
+			try {
+				return future.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// check for cancellation and wait again
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new IOException(cause.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Distributes the top level entries of the repository over at most
+	 * {@code shardCount} shards. Top level entries are collected from the
+	 * index, the HEAD tree and the working tree.
+	 *
+	 * @param repository
+	 * @param shardCount
+	 * @return the shards, each a non empty collection of top level paths
+	 * @throws IOException
+	 */
+	static List<Collection<String>> computeShards(Repository repository,
+			int shardCount) throws IOException {
+		final Map<String, Integer> weights = new HashMap<String, Integer>();
+		DirCache dirCache = repository.readDirCache();
+		for (int i = 0; i < dirCache.getEntryCount(); i++) {
+			String name = getTopLevelName(dirCache.getEntry(i)
+					.getPathString());
+			Integer weight = weights.get(name);
+			weights.put(name, Integer.valueOf(weight == null ? 1 : weight
+					.intValue() + 1));
+		}
+		ObjectId headTree = repository.resolve(Constants.HEAD + "^{tree}"); //$NON-NLS-1$
+		if (headTree != null) {
+			TreeWalk walk = new TreeWalk(repository);
+			try {
+				walk.addTree(headTree);
+				while (walk.next())
+					addName(weights, walk.getPathString());
+			} finally {
+				walk.release();
+			}
+		}
+		File[] files = repository.getWorkTree().listFiles();
+		if (files != null)
+			for (File file : files)
+				if (!file.getName().equals(Constants.DOT_GIT))
+					addName(weights, file.getName());
+
+		List<String> names = new ArrayList<String>(weights.keySet());
+		// biggest entries first, each goes to the currently lightest shard
+		Collections.sort(names, new Comparator<String>() {
+			public int compare(String o1, String o2) {
+				return weights.get(o2).compareTo(weights.get(o1));
+			}
+		});
+		int count = Math.max(1, Math.min(shardCount, names.size()));
+		List<Collection<String>> shards = new ArrayList<Collection<String>>();
+		int[] shardWeights = new int[count];
+		for (int i = 0; i < count; i++)
+			shards.add(new ArrayList<String>());
+		for (String name : names) {
+			int lightest = 0;
+			for (int i = 1; i < count; i++)
+				if (shardWeights[i] < shardWeights[lightest])
+					lightest = i;
+			shards.get(lightest).add(name);
+			shardWeights[lightest] += weights.get(name).intValue();
+		}
+		List<Collection<String>> result = new ArrayList<Collection<String>>();
+		for (Collection<String> shard : shards)
+			if (!shard.isEmpty())
+				result.add(shard);
+		return result;
+	}
+
+	private static void addName(Map<String, Integer> weights, String name) {
+		if (!weights.containsKey(name))
+			weights.put(name, Integer.valueOf(1));
+	}
+
+	private static String getTopLevelName(String path) {
+		int pos = path.indexOf('/');
+		if (pos < 0)
+			return path;
+		return path.substring(0, pos);
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null)
+			executor = Executors.newFixedThreadPool(getThreadCount(),
+					new ThreadFactory() {
+						private int count;
+
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r,
+									"EGit IndexDiff worker " + (++count)); //$NON-NLS-1$
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		return executor;
+	}
+
+	/**
+	 * Reports the cancellation of the calculation to jgit
+	 */
+	private static class CancelMonitor implements ProgressMonitor {
+
+		private final AtomicBoolean canceled;
+
+		CancelMonitor(AtomicBoolean canceled) {
+			this.canceled = canceled;
+		}
+
+		public void start(int totalTasks) {
+			// no progress is reported for a shard
+		}
+
+		public void beginTask(String title, int totalWork) {
+			// no progress is reported for a shard
+		}
+
+		public void update(int completed) {
+			// no progress is reported for a shard
+		}
+
+		public void endTask() {
+			// no progress is reported for a shard
+		}
+
+		public boolean isCancelled() {
+			return canceled.get();
+		}
+	}
+
+	/**
+	 * Stops the tree walk of a shard when the calculation was canceled
+	 */
+	private static class CancelFilter extends TreeFilter {
+
+		private final AtomicBoolean canceled;
+
+		CancelFilter(AtomicBoolean canceled) {
+			this.canceled = canceled;
+		}
+
+		@Override
+		public boolean include(TreeWalk walker) {
+			if (canceled.get())
+				throw StopWalkException.INSTANCE;
+			return true;
+		}
+
+		@Override
+		public boolean shouldBeRecursive() {
+			return false;
+		}
+
+		@Override
+		public TreeFilter clone() {
+			return this;
+		}
+	}
+
+	/**
+	 * Stops the worker threads
+	 */
+	static synchronized void dispose() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * This immutable class indexes a set of repository relative paths so that
+ * folder related questions (is there any path below a given folder, is a path
+ * located below one of the indexed paths) can be answered without scanning
+ * all paths.
+ */
+public class PathIndex {
+
+	private static final char SEPARATOR = '/';
+
+	private final Set<String> paths;
+
+	private final String[] sortedPaths;
+
+	/**
+	 * @param paths
+	 *            the repository relative paths to index. The set is not
+	 *            copied and must not be modified afterwards.
+	 */
+	public PathIndex(Set<String> paths) {
+		this.paths = paths;
+		sortedPaths = paths.toArray(new String[paths.size()]);
+		Arrays.sort(sortedPaths);
+	}
+
+	/**
+	 * @return {@code true} if this index contains no paths
+	 */
+	public boolean isEmpty() {
+		return sortedPaths.length == 0;
+	}
+
+	/**
+	 * Checks whether any indexed path is located below the given folder. The
+	 * lookup is a binary search on the sorted paths.
+	 *
+	 * @param folder
+	 *            repository relative folder path ending with /. The empty
+	 *            string or "/" denote the repository root.
+	 * @return {@code true} if at least one indexed path starts with
+	 *         {@code folder}
+	 */
+	public boolean containsPathUnder(String folder) {
+		// when folder is empty we are handling repository root, therefore we
+		// should return true whenever the index isn't empty
+		if (folder.length() == 0
+				|| (folder.length() == 1 && folder.charAt(0) == SEPARATOR))
+			return !isEmpty();
+		int pos = Arrays.binarySearch(sortedPaths, folder);
+		if (pos >= 0)
+			return true;
+		pos = -(pos + 1);
+		return pos < sortedPaths.length && sortedPaths[pos].startsWith(folder);
+	}
+
+	/**
+	 * Checks whether the given path or one of its parent folders is indexed.
+	 * Indexed folder paths may or may not end with /. The cost of this lookup
+	 * is proportional to the depth of {@code path}.
+	 *
+	 * @param path
+	 *            repository relative path of a file, or of a folder ending
+	 *            with /
+	 * @return {@code true} if {@code path} or one of its parents is contained
+	 *         in this index
+	 */
+	public boolean containsPathOrParent(String path) {
+		if (isEmpty())
+			return false;
+		if (paths.contains(path))
+			return true;
+		int pos = path.indexOf(SEPARATOR);
+		while (pos >= 0) {
+			if (paths.contains(path.substring(0, pos))
+					|| paths.contains(path.substring(0, pos + 1)))
+				return true;
+			pos = path.indexOf(SEPARATOR, pos + 1);
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides whether a set of changed paths is better handled by a partial
+ * index diff update or by a full reload.
+ * <p>
+ * The changed paths are first collapsed to folders: if a folder contains at
+ * least {@link #COLLAPSE_THRESHOLD} changed paths, the folder is diffed as a
+ * whole instead of every single path. The cost of a partial update is
+ * estimated from the number of remaining file and folder paths, using costs
+ * per file and per folder which are learned from earlier partial updates. It
+ * is compared with the measured duration of the last full reloads.
+ */
+class UpdateCostModel {
+
+	/** Number of changed paths in a folder at which the folder is diffed */
+	static final int COLLAPSE_THRESHOLD = 10;
+
+	private static final String SEPARATOR = "/"; //$NON-NLS-1$
+
+	// weight of a new measurement in the moving averages
+	private static final double WEIGHT = 0.3;
+
+	// initial estimates in ms, matching the former fixed limit of 1000 files
+	private double fullCost = 1000;
+
+	private double fileCost = 1;
+
+	private double folderCost = COLLAPSE_THRESHOLD;
+
+	private boolean fullCostMeasured;
+
+	/**
+	 * @param paths
+	 *            repository relative paths of files and folders. Folder paths
+	 *            end with /
+	 * @return the paths collapsed to their folders where a folder contains at
+	 *         least {@link #COLLAPSE_THRESHOLD} paths. Folder paths end with
+	 *         /
+	 */
+	static Collection<String> collapse(Collection<String> paths) {
+		Collection<String> result = new HashSet<String>(paths);
+		int size;
+		do {
+			size = result.size();
+			Map<String, List<String>> byParent = new HashMap<String, List<String>>();
+			for (String path : result) {
+				String parent = getParent(path);
+				List<String> children = byParent.get(parent);
+				if (children == null) {
+					children = new ArrayList<String>();
+					byParent.put(parent, children);
+				}
+				children.add(path);
+			}
+			result = new HashSet<String>();
+			for (Map.Entry<String, List<String>> entry : byParent.entrySet()) {
+				String parent = entry.getKey();
+				// never collapse to the repository root
+				if (parent.length() > 0
+						&& entry.getValue().size() >= COLLAPSE_THRESHOLD)
+					result.add(parent);
+				else
+					result.addAll(entry.getValue());
+			}
+		} while (result.size() < size);
+		return removeNested(result);
+	}
+
+	private static Collection<String> removeNested(Collection<String> paths) {
+		Set<String> folders = new HashSet<String>();
+		for (String path : paths)
+			if (path.endsWith(SEPARATOR))
+				folders.add(path);
+		if (folders.isEmpty())
+			return paths;
+		Collection<String> result = new ArrayList<String>();
+		for (String path : paths)
+			if (!isBelow(path, folders))
+				result.add(path);
+		return result;
+	}
+
+	/**
+	 * @param path
+	 * @param folders
+	 *            folder paths ending with /
+	 * @return {@code true} if one of the parent folders of {@code path} is
+	 *         contained in {@code folders}
+	 */
+	static boolean isBelow(String path, Set<String> folders) {
+		int pos = path.indexOf('/');
+		// the path itself is not below itself
+		while (pos >= 0 && pos < path.length() - 1) {
+			if (folders.contains(path.substring(0, pos + 1)))
+				return true;
+			pos = path.indexOf('/', pos + 1);
+		}
+		return false;
+	}
+
+	private static String getParent(String path) {
+		int end = path.endsWith(SEPARATOR) ? path.length() - 1 : path
+				.length();
+		int pos = path.lastIndexOf('/', end - 1);
+		if (pos < 0)
+			return ""; //$NON-NLS-1$
+		return path.substring(0, pos + 1);
+	}
+
+	/**
+	 * @param collapsedPaths
+	 *            result of {@link #collapse(Collection)}
+	 * @return {@code true} if a full reload is expected to be cheaper than a
+	 *         partial update for the given paths
+	 */
+	synchronized boolean preferFullReload(Collection<String> collapsedPaths) {
+		return estimatePartialCost(collapsedPaths) >= fullCost;
+	}
+
+	/**
+	 * @param collapsedPaths
+	 * @return estimated duration of a partial update in ms
+	 */
+	synchronized double estimatePartialCost(Collection<String> collapsedPaths) {
+		int folders = countFolders(collapsedPaths);
+		int files = collapsedPaths.size() - folders;
+		return files * fileCost + folders * folderCost;
+	}
+
+	/**
+	 * @return estimated duration of a full reload in ms
+	 */
+	synchronized double getFullCost() {
+		return fullCost;
+	}
+
+	/**
+	 * Record the duration of a full reload
+	 *
+	 * @param time
+	 *            in ms
+	 */
+	synchronized void fullReloadFinished(long time) {
+		if (fullCostMeasured)
+			fullCost = average(fullCost, time);
+		else
+			fullCost = time;
+		fullCostMeasured = true;
+	}
+
+	/**
+	 * Record the duration of a partial update. The difference to the
+	 * estimation is distributed to the file and folder costs according to
+	 * their share of the estimation.
+	 *
+	 * @param collapsedPaths
+	 *            the paths the update was calculated for
+	 * @param time
+	 *            in ms
+	 */
+	synchronized void partialUpdateFinished(Collection<String> collapsedPaths,
+			long time) {
+		double estimated = estimatePartialCost(collapsedPaths);
+		if (estimated <= 0)
+			return;
+		double ratio = Math.max(time, 1) / estimated;
+		int folders = countFolders(collapsedPaths);
+		if (collapsedPaths.size() > folders)
+			fileCost = average(fileCost, fileCost * ratio);
+		if (folders > 0)
+			folderCost = average(folderCost, folderCost * ratio);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "full reload: " + Math.round(fullCost) + " ms, file: " //$NON-NLS-1$ //$NON-NLS-2$
+				+ fileCost + " ms, folder: " + folderCost + " ms"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static double average(double oldValue, double newValue) {
+		return (1 - WEIGHT) * oldValue + WEIGHT * newValue;
+	}
+
+	private static int countFolders(Collection<String> paths) {
+		int folders = 0;
+		for (String path : paths)
+			if (path.endsWith(SEPARATOR))
+				folders++;
+		return folders;
+	}
+
+}
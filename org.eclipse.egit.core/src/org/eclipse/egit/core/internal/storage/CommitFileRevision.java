@@ -12,7 +12,6 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
 
 import org.eclipse.core.resources.IStorage;
 import org.eclipse.core.runtime.CoreException;
@@ -20,10 +19,10 @@
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.GitTag;
-import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.egit.core.internal.RefIndex;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
-import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.TreeWalk;
@@ -94,15 +93,8 @@ public String toString() {
 
 	public ITag[] getTags() {
 		final Collection<GitTag> ret = new ArrayList<GitTag>();
-		for (final Map.Entry<String, Ref> tag : db.getTags().entrySet()) {
-			Ref ref = db.peel(tag.getValue());
-			ObjectId refId = ref.getPeeledObjectId();
-			if (refId == null)
-				refId = ref.getObjectId();
-			if (!AnyObjectId.equals(refId, commit))
-				continue;
-			ret.add(new GitTag(tag.getKey()));
-		}
+		for (String tag : RefIndex.get(db).getTags(commit))
+			ret.add(new GitTag(tag.substring(Constants.R_TAGS.length())));
 		return ret.toArray(new ITag[ret.size()]);
 	}
 
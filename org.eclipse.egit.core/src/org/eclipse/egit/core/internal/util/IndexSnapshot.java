@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * The data of the entries of an index which is needed to find the entries
+ * changed by a later version of the index: path, stage, mode, object id,
+ * modification time and length.
+ * <p>
+ * Unlike a {@link DirCache} the snapshot keeps the entries in a few flat
+ * arrays, so it can be kept between refreshes of a repository.
+ *
+ * @see WorkingTreeChanges#getChangedPaths(org.eclipse.jgit.lib.Repository,
+ *      DirCache, DirCache)
+ */
+public class IndexSnapshot {
+
+	private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+	private final int count;
+
+	// the UTF-8 encoded paths, the path of entry i ends at pathEnds[i]
+	private final byte[] paths;
+
+	private final int[] pathEnds;
+
+	// the stage in the upper bits, the raw mode in the lower ones
+	private final int[] stageAndModes;
+
+	private final byte[] ids;
+
+	private final long[] lastModified;
+
+	private final int[] lengths;
+
+	/**
+	 * @param index
+	 */
+	public IndexSnapshot(DirCache index) {
+		count = index.getEntryCount();
+		byte[][] encoded = new byte[count][];
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			encoded[i] = Constants.encode(index.getEntry(i).getPathString());
+			size += encoded[i].length;
+		}
+		paths = new byte[size];
+		pathEnds = new int[count];
+		stageAndModes = new int[count];
+		ids = new byte[count * ID_LENGTH];
+		lastModified = new long[count];
+		lengths = new int[count];
+		int end = 0;
+		for (int i = 0; i < count; i++) {
+			DirCacheEntry entry = index.getEntry(i);
+			System.arraycopy(encoded[i], 0, paths, end, encoded[i].length);
+			end += encoded[i].length;
+			pathEnds[i] = end;
+			stageAndModes[i] = entry.getStage() << 28 | entry.getRawMode();
+			entry.getObjectId().copyRawTo(ids, i * ID_LENGTH);
+			lastModified[i] = entry.getLastModified();
+			lengths[i] = entry.getLength();
+		}
+	}
+
+	/**
+	 * @param newer
+	 *            a later snapshot of the same index
+	 * @return the repository relative paths whose entries were added, removed
+	 *         or changed, or {@code null} if there are more than
+	 *         {@link WorkingTreeChanges#MAX_PATHS}
+	 */
+	public Collection<String> getChangedPaths(IndexSnapshot newer) {
+		// the position of the first entry of each path
+		Map<String, Integer> positions = new HashMap<String, Integer>(
+				count * 2);
+		for (int i = 0; i < count; i++) {
+			String path = getPath(i);
+			if (!positions.containsKey(path))
+				positions.put(path, Integer.valueOf(i));
+		}
+		Set<String> result = new HashSet<String>();
+		for (int i = 0; i < newer.count;) {
+			String path = newer.getPath(i);
+			int newEnd = newer.getEndOfPath(i);
+			Integer position = positions.remove(path);
+			if (position == null
+					|| !equalEntries(position.intValue(), newer, i, newEnd)) {
+				result.add(path);
+				if (result.size() > WorkingTreeChanges.MAX_PATHS)
+					return null;
+			}
+			i = newEnd;
+		}
+		// paths which were removed
+		for (String path : positions.keySet()) {
+			result.add(path);
+			if (result.size() > WorkingTreeChanges.MAX_PATHS)
+				return null;
+		}
+		return result;
+	}
+
+	private String getPath(int i) {
+		int start = i == 0 ? 0 : pathEnds[i - 1];
+		return RawParseUtils.decode(paths, start, pathEnds[i]);
+	}
+
+	/**
+	 * @return the index after the last entry with the same path as entry i,
+	 *         entries of different stages of a path follow each other
+	 */
+	private int getEndOfPath(int i) {
+		int end = i + 1;
+		while (end < count && samePath(i, end))
+			end++;
+		return end;
+	}
+
+	private boolean samePath(int a, int b) {
+		int aStart = a == 0 ? 0 : pathEnds[a - 1];
+		int bStart = b == 0 ? 0 : pathEnds[b - 1];
+		int length = pathEnds[a] - aStart;
+		if (length != pathEnds[b] - bStart)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (paths[aStart + i] != paths[bStart + i])
+				return false;
+		return true;
+	}
+
+	private boolean equalEntries(int start, IndexSnapshot newer,
+			int newerStart, int newerEnd) {
+		int end = getEndOfPath(start);
+		if (end - start != newerEnd - newerStart)
+			return false;
+		for (int i = 0; i < end - start; i++)
+			if (!equalEntry(start + i, newer, newerStart + i))
+				return false;
+		return true;
+	}
+
+	private boolean equalEntry(int i, IndexSnapshot newer, int j) {
+		if (stageAndModes[i] != newer.stageAndModes[j]
+				|| lastModified[i] != newer.lastModified[j]
+				|| lengths[i] != newer.lengths[j])
+			return false;
+		for (int k = 0; k < ID_LENGTH; k++)
+			if (ids[i * ID_LENGTH + k] != newer.ids[j * ID_LENGTH + k])
+				return false;
+		return true;
+	}
+
+}
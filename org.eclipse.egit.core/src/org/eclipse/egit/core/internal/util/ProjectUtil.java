@@ -16,9 +16,13 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
 import org.eclipse.core.resources.IResource;
@@ -27,6 +31,7 @@
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.CoreText;
@@ -120,6 +125,39 @@ public static void refreshValidProjects(IProject[] projects,
 	 */
 	public static void refreshValidProjects(IProject[] projects,
 			boolean delete, IProgressMonitor monitor) throws CoreException {
+		refreshValidProjects(projects, delete, null, null, monitor);
+	}
+
+	/**
+	 * The method refreshes the resources of the given projects which are
+	 * affected by the changed paths of a workdir checkout. Projects with
+	 * missing .project file are deleted or closed. The method should be called
+	 * in the following flow:<br>
+	 * <ol>
+	 * <li>Call {@link ProjectUtil#getValidOpenProjects(Repository)} and
+	 * {@link WorkingTreeChanges#record(Repository)}
+	 * <li>Perform a workdir checkout (e.g. branch, reset)
+	 * <li>Call
+	 * {@link ProjectUtil#refreshValidProjects(IProject[], boolean, Repository, Collection, IProgressMonitor)}
+	 * with {@link WorkingTreeChanges#getChangedPaths()}
+	 * </ol>
+	 *
+	 * @param projects
+	 *            list of valid projects before workdir checkout.
+	 * @param delete
+	 *            true to delete projects, false to close them
+	 * @param repository
+	 *            the repository of the changed paths
+	 * @param paths
+	 *            repository relative paths changed by the checkout, or
+	 *            <code>null</code> to refresh the projects completely
+	 * @param monitor
+	 *
+	 * @throws CoreException
+	 */
+	public static void refreshValidProjects(IProject[] projects,
+			boolean delete, Repository repository, Collection<String> paths,
+			IProgressMonitor monitor) throws CoreException {
 		try {
 			monitor.beginTask(CoreText.ProjectUtil_refreshingProjects,
 					projects.length);
@@ -132,10 +170,14 @@ public static void refreshValidProjects(IProject[] projects,
 				String projectFilePath = projectLocation.append(
 						IProjectDescription.DESCRIPTION_FILE_NAME).toOSString();
 				File projectFile = new File(projectFilePath);
-				if (projectFile.exists())
-					p.refreshLocal(IResource.DEPTH_INFINITE,
-							new SubProgressMonitor(monitor, 1));
-				else if (delete)
+				if (projectFile.exists()) {
+					if (paths != null)
+						refreshPaths(p, repository, paths,
+								new SubProgressMonitor(monitor, 1));
+					else
+						p.refreshLocal(IResource.DEPTH_INFINITE,
+								new SubProgressMonitor(monitor, 1));
+				} else if (delete)
 					p.delete(false, true, new SubProgressMonitor(monitor, 1));
 				else
 					closeMissingProject(p, projectFile, monitor);
@@ -146,6 +188,125 @@ else if (delete)
 		}
 	}
 
+	/**
+	 * @return the path of the location relative to the working tree with a
+	 *         trailing slash, an empty string for the working tree itself or
+	 *         <code>null</code> if the location is outside of the working
+	 *         tree
+	 */
+	private static String getRepositoryRelativePath(Repository repository,
+			IPath location) {
+		if (location == null)
+			return null;
+		IPath workTree = new Path(repository.getWorkTree().getAbsolutePath());
+		if (!workTree.isPrefixOf(location))
+			return null;
+		IPath relative = location.removeFirstSegments(
+				workTree.segmentCount()).setDevice(null);
+		if (relative.isEmpty())
+			return ""; //$NON-NLS-1$
+		return relative.makeRelative().addTrailingSeparator().toString();
+	}
+
+	/**
+	 * Refreshes the resources of the project at the given paths. Where a file
+	 * exists in the workspace and in the file system, it is only refreshed if
+	 * its modification time differs. Where a resource was added or removed,
+	 * the members of its parent folder are refreshed. Added folders are
+	 * refreshed completely. The project is refreshed completely if it is not
+	 * contained in the working tree of the repository.
+	 *
+	 * @param project
+	 * @param repository
+	 * @param paths
+	 *            repository relative paths
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	public static void refreshPaths(IProject project, Repository repository,
+			Collection<String> paths, IProgressMonitor monitor)
+			throws CoreException {
+		String prefix = getRepositoryRelativePath(repository,
+				project.getLocation());
+		if (prefix == null) {
+			project.refreshLocal(IResource.DEPTH_INFINITE, monitor);
+			return;
+		}
+		Map<IResource, Integer> resources = new LinkedHashMap<IResource, Integer>();
+		List<IFolder> addedFolders = new ArrayList<IFolder>();
+		File projectRoot = project.getLocation().toFile();
+		for (String path : paths)
+			if (path.startsWith(prefix) && path.length() > prefix.length())
+				addRefreshTarget(project, projectRoot,
+						path.substring(prefix.length()), resources,
+						addedFolders);
+		try {
+			monitor.beginTask(CoreText.ProjectUtil_refreshing,
+					resources.size() + addedFolders.size());
+			for (Map.Entry<IResource, Integer> entry : resources.entrySet()) {
+				if (monitor.isCanceled())
+					break;
+				entry.getKey().refreshLocal(entry.getValue().intValue(),
+						new SubProgressMonitor(monitor, 1));
+			}
+			// the folders were created by refreshing their parents
+			for (IFolder folder : addedFolders) {
+				if (monitor.isCanceled())
+					break;
+				folder.refreshLocal(IResource.DEPTH_INFINITE,
+						new SubProgressMonitor(monitor, 1));
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private static void addRefreshTarget(IProject project, File projectRoot,
+			String path, Map<IResource, Integer> resources,
+			List<IFolder> addedFolders) {
+		IContainer parent = project;
+		File parentFile = projectRoot;
+		String[] segments = path.split("/"); //$NON-NLS-1$
+		for (int i = 0; i < segments.length; i++) {
+			File file = new File(parentFile, segments[i]);
+			IResource member = parent.findMember(segments[i]);
+			boolean onDisk = file.exists();
+			if (member == null && !onDisk)
+				return;
+			if (member == null || !onDisk) {
+				// added or removed
+				addRefreshTarget(resources, parent, IResource.DEPTH_ONE);
+				if (member == null && file.isDirectory())
+					addedFolders.add(parent.getFolder(new Path(segments[i])));
+				return;
+			}
+			boolean isFile = member.getType() == IResource.FILE;
+			if (isFile != file.isFile()) {
+				// a file was replaced by a folder or vice versa
+				addRefreshTarget(resources, parent, IResource.DEPTH_INFINITE);
+				return;
+			}
+			if (isFile) {
+				if (member.getLocalTimeStamp() != file.lastModified())
+					addRefreshTarget(resources, member, IResource.DEPTH_ZERO);
+				return;
+			}
+			if (i == segments.length - 1) {
+				addRefreshTarget(resources, member, IResource.DEPTH_ZERO);
+				return;
+			}
+			parent = (IContainer) member;
+			parentFile = file;
+		}
+	}
+
+	private static void addRefreshTarget(Map<IResource, Integer> resources,
+			IResource resource, int depth) {
+		Integer previous = resources.get(resource);
+		if (previous == null || previous.intValue() < depth)
+			resources.put(resource, Integer.valueOf(depth));
+	}
+
 	/**
 	 * Close a project that has already been deleted on disk. This will fall
 	 * back to deleting the project if it cannot be successfully closed.
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.util;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Records the paths of a working tree which are changed by an operation like
+ * a checkout, merge or reset, so that only the affected resources need to be
+ * refreshed afterwards.
+ * <p>
+ * The index is read before the operation and compared with the index after
+ * it. The locally modified and missing paths known by the index diff cache
+ * are added as well since a hard reset restores them without changing the
+ * index.
+ *
+ * @see ProjectUtil#refreshValidProjects(org.eclipse.core.resources.IProject[],
+ *      boolean, Repository, Collection,
+ *      org.eclipse.core.runtime.IProgressMonitor)
+ */
+public class WorkingTreeChanges {
+
+	/**
+	 * Maximum number of changed paths, refreshing the projects completely is
+	 * cheaper for more paths
+	 */
+	public static final int MAX_PATHS = 1000;
+
+	/**
+	 * Includes the entries whose mode, id or file modification time and length
+	 * differ between the first and the second index. Subtrees are only skipped
+	 * if both indexes know their id.
+	 */
+	private static final TreeFilter CHANGED = new TreeFilter() {
+
+		@Override
+		public boolean include(TreeWalk walker) {
+			if (walker.getRawMode(0) != walker.getRawMode(1))
+				return true;
+			DirCacheIterator first = walker.getTree(0, DirCacheIterator.class);
+			DirCacheIterator second = walker.getTree(1, DirCacheIterator.class);
+			if (walker.isSubtree())
+				return !first.hasId() || !second.hasId()
+						|| !walker.idEqual(0, 1);
+			if (!walker.idEqual(0, 1))
+				return true;
+			// e.g. the file was checked out again
+			DirCacheEntry firstEntry = first.getDirCacheEntry();
+			DirCacheEntry secondEntry = second.getDirCacheEntry();
+			return firstEntry.getLastModified() != secondEntry
+					.getLastModified()
+					|| firstEntry.getLength() != secondEntry.getLength();
+		}
+
+		@Override
+		public boolean shouldBeRecursive() {
+			return false;
+		}
+
+		@Override
+		public TreeFilter clone() {
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return "CHANGED"; //$NON-NLS-1$
+		}
+	};
+
+	private final Repository repository;
+
+	private final DirCache before;
+
+	private final Set<String> paths = new HashSet<String>();
+
+	private WorkingTreeChanges(Repository repository, DirCache before) {
+		this.repository = repository;
+		this.before = before;
+	}
+
+	/**
+	 * Starts recording the changes, must be called before the operation
+	 * modifies the working tree
+	 *
+	 * @param repository
+	 * @return the recorded changes
+	 */
+	public static WorkingTreeChanges record(Repository repository) {
+		IndexDiffData indexDiff = Activator.getDefault().getIndexDiffCache()
+				.getIndexDiffCacheEntry(repository).getIndexDiff();
+		if (indexDiff == null)
+			// local changes unknown
+			return new WorkingTreeChanges(repository, null);
+		DirCache before;
+		try {
+			before = repository.readDirCache();
+		} catch (IOException e) {
+			Activator.logError(e.getMessage(), e);
+			return new WorkingTreeChanges(repository, null);
+		}
+		WorkingTreeChanges changes = new WorkingTreeChanges(repository,
+				before);
+		changes.paths.addAll(indexDiff.getModified());
+		changes.paths.addAll(indexDiff.getMissing());
+		changes.paths.addAll(indexDiff.getConflicting());
+		return changes;
+	}
+
+	/**
+	 * Adds paths which the operation changed without updating the index
+	 *
+	 * @param changedPaths
+	 *            repository relative paths
+	 */
+	public void addPaths(Collection<String> changedPaths) {
+		paths.addAll(changedPaths);
+	}
+
+	/**
+	 * Adds the paths changed by a commit compared with any of its parents,
+	 * e.g. the paths of a stashed commit which are applied to the working
+	 * tree without updating the index
+	 *
+	 * @param commit
+	 */
+	public void addChangedPaths(AnyObjectId commit) {
+		if (before == null)
+			return;
+		RevWalk walk = new RevWalk(repository);
+		TreeWalk treeWalk = new TreeWalk(repository);
+		try {
+			RevCommit parsed = walk.parseCommit(commit);
+			treeWalk.addTree(parsed.getTree());
+			for (RevCommit parent : parsed.getParents())
+				treeWalk.addTree(walk.parseCommit(parent).getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			while (treeWalk.next())
+				paths.add(treeWalk.getPathString());
+		} catch (IOException e) {
+			Activator.logError(e.getMessage(), e);
+		} finally {
+			treeWalk.release();
+			walk.release();
+		}
+	}
+
+	/**
+	 * Compares the index with the one read by {@link #record(Repository)},
+	 * must be called after the operation finished
+	 *
+	 * @return the repository relative paths which may have changed in the
+	 *         working tree, or {@code null} if they are unknown or more than
+	 *         {@link #MAX_PATHS}
+	 */
+	public Collection<String> getChangedPaths() {
+		if (before == null || paths.size() > MAX_PATHS)
+			return null;
+		try {
+			if (!addChangedPaths(repository, before,
+					repository.readDirCache(), paths))
+				return null;
+		} catch (IOException e) {
+			Activator.logError(e.getMessage(), e);
+			return null;
+		}
+		return paths;
+	}
+
+	/**
+	 * Compares two snapshots of the index of a repository
+	 *
+	 * @param repository
+	 * @param before
+	 * @param after
+	 * @return the repository relative paths whose entries were added,
+	 *         removed or changed, including changes of the file modification
+	 *         time and length recorded in the index, or {@code null} if there
+	 *         are more than {@link #MAX_PATHS}
+	 * @throws IOException
+	 */
+	public static Collection<String> getChangedPaths(Repository repository,
+			DirCache before, DirCache after) throws IOException {
+		Set<String> changedPaths = new HashSet<String>();
+		if (!addChangedPaths(repository, before, after, changedPaths))
+			return null;
+		return changedPaths;
+	}
+
+	private static boolean addChangedPaths(Repository repository,
+			DirCache before, DirCache after, Set<String> changedPaths)
+			throws IOException {
+		TreeWalk walk = new TreeWalk(repository);
+		try {
+			walk.addTree(new DirCacheIterator(before));
+			walk.addTree(new DirCacheIterator(after));
+			walk.setRecursive(true);
+			walk.setFilter(CHANGED);
+			while (walk.next()) {
+				changedPaths.add(walk.getPathString());
+				if (changedPaths.size() > MAX_PATHS)
+					return false;
+			}
+			return true;
+		} finally {
+			walk.release();
+		}
+	}
+
+}
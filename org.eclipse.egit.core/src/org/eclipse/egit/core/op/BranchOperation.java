@@ -33,6 +33,7 @@
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.internal.util.ProjectUtil;
+import org.eclipse.egit.core.internal.util.WorkingTreeChanges;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.CheckoutResult;
 import org.eclipse.jgit.api.CheckoutResult.Status;
@@ -108,6 +109,8 @@ public void run(IProgressMonitor pm) throws CoreException {
 				IProject[] validProjects = ProjectUtil
 						.getValidOpenProjects(repository);
 				IProject[] missing = getMissingProjects(target, validProjects);
+				WorkingTreeChanges changes = WorkingTreeChanges
+						.record(repository);
 
 				pm.beginTask(NLS.bind(
 						CoreText.BranchOperation_performingBranch, target),
@@ -144,6 +147,7 @@ public void run(IProgressMonitor pm) throws CoreException {
 					retryDelete(result.getUndeletedList());
 				pm.worked(1);
 				ProjectUtil.refreshValidProjects(validProjects, delete,
+						repository, changes.getChangedPaths(),
 						new SubProgressMonitor(pm, 1));
 				pm.worked(1);
 
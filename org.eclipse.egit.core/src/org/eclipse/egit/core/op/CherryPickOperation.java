@@ -21,6 +21,7 @@
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.internal.util.ProjectUtil;
+import org.eclipse.egit.core.internal.util.WorkingTreeChanges;
 import org.eclipse.jgit.api.CherryPickCommand;
 import org.eclipse.jgit.api.CherryPickResult;
 import org.eclipse.jgit.api.Git;
@@ -68,6 +69,7 @@ public void run(IProgressMonitor pm) throws CoreException {
 				pm.subTask(MessageFormat.format(
 						CoreText.CherryPickOperation_cherryPicking,
 						commit.name()));
+				WorkingTreeChanges changes = WorkingTreeChanges.record(repo);
 				CherryPickCommand command = new Git(repo).cherryPick().include(
 						commit.getId());
 				try {
@@ -79,8 +81,9 @@ public void run(IProgressMonitor pm) throws CoreException {
 				pm.worked(1);
 
 				ProjectUtil.refreshValidProjects(
-						ProjectUtil.getValidOpenProjects(repo),
-						new SubProgressMonitor(pm, 1));
+						ProjectUtil.getValidOpenProjects(repo), true, repo,
+						changes.getChangedPaths(), new SubProgressMonitor(pm,
+								1));
 
 				pm.done();
 			}
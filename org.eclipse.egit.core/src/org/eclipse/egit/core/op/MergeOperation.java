@@ -26,6 +26,7 @@
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.internal.util.ProjectUtil;
+import org.eclipse.egit.core.internal.util.WorkingTreeChanges;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeCommand;
 import org.eclipse.jgit.api.MergeResult;
@@ -90,6 +91,7 @@ public void execute(IProgressMonitor m) throws CoreException {
 
 			public void run(IProgressMonitor mymonitor) throws CoreException {
 				IProject[] validProjects = ProjectUtil.getValidOpenProjects(repository);
+				WorkingTreeChanges changes = WorkingTreeChanges.record(repository);
 				mymonitor.beginTask(NLS.bind(CoreText.MergeOperation_ProgressMerge, refName), 3);
 				Git git = new Git(repository);
 				mymonitor.worked(1);
@@ -132,8 +134,9 @@ else if (MergeResult.MergeStatus.NOT_SUPPORTED.equals(mergeResult.getMergeStatus
 				} catch (GitAPIException e) {
 					throw new TeamException(e.getLocalizedMessage(), e.getCause());
 				} finally {
-					ProjectUtil.refreshValidProjects(validProjects, new SubProgressMonitor(
-							mymonitor, 1));
+					ProjectUtil.refreshValidProjects(validProjects, true,
+							repository, changes.getChangedPaths(),
+							new SubProgressMonitor(mymonitor, 1));
 					mymonitor.done();
 				}
 			}
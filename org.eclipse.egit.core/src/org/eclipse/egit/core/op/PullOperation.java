@@ -28,6 +28,7 @@
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.EclipseGitProgressTransformer;
 import org.eclipse.egit.core.internal.util.ProjectUtil;
+import org.eclipse.egit.core.internal.util.WorkingTreeChanges;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.MergeResult.MergeStatus;
@@ -81,6 +82,7 @@ public void run(IProgressMonitor mymonitor) throws CoreException {
 					if (mymonitor.isCanceled())
 						throw new CoreException(Status.CANCEL_STATUS);
 					IProject[] validProjects = ProjectUtil.getValidOpenProjects(repository);
+					WorkingTreeChanges changes = WorkingTreeChanges.record(repository);
 					PullCommand pull = new Git(repository).pull();
 					PullResult pullResult = null;
 					try {
@@ -110,6 +112,8 @@ public void run(IProgressMonitor mymonitor) throws CoreException {
 						mymonitor.worked(1);
 						if (refreshNeeded(pullResult)) {
 							ProjectUtil.refreshValidProjects(validProjects,
+									true, repository,
+									changes.getChangedPaths(),
 									new SubProgressMonitor(mymonitor, 1));
 							mymonitor.worked(1);
 						}
@@ -24,6 +24,7 @@
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.EclipseGitProgressTransformer;
 import org.eclipse.egit.core.internal.util.ProjectUtil;
+import org.eclipse.egit.core.internal.util.WorkingTreeChanges;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.RebaseCommand;
 import org.eclipse.jgit.api.RebaseResult;
@@ -92,6 +93,8 @@ public void execute(IProgressMonitor m) throws CoreException {
 		final IProject[] validProjects = ProjectUtil.getValidOpenProjects(repository);
 		IWorkspaceRunnable action = new IWorkspaceRunnable() {
 			public void run(IProgressMonitor actMonitor) throws CoreException {
+				WorkingTreeChanges changes = WorkingTreeChanges
+						.record(repository);
 				RebaseCommand cmd = new Git(repository).rebase()
 						.setProgressMonitor(
 								new EclipseGitProgressTransformer(actMonitor));
@@ -111,7 +114,8 @@ public void run(IProgressMonitor actMonitor) throws CoreException {
 					throw new CoreException(Activator.error(e.getMessage(), e));
 				} finally {
 					if (refreshNeeded())
-						ProjectUtil.refreshValidProjects(validProjects,
+						ProjectUtil.refreshValidProjects(validProjects, true,
+								repository, changes.getChangedPaths(),
 								new SubProgressMonitor(actMonitor, 1));
 				}
 			}
@@ -23,6 +23,7 @@
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.egit.core.CoreText;
 import org.eclipse.egit.core.internal.util.ProjectUtil;
+import org.eclipse.egit.core.internal.util.WorkingTreeChanges;
 import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.dircache.DirCacheBuilder;
 import org.eclipse.jgit.dircache.DirCacheCheckout;
@@ -117,8 +118,11 @@ private void reset(IProgressMonitor monitor) throws CoreException {
 				type.toString().toLowerCase(), refName), 3);
 
 		IProject[] validProjects = null;
-		if (type == ResetType.HARD)
+		WorkingTreeChanges changes = null;
+		if (type == ResetType.HARD) {
 			validProjects = ProjectUtil.getValidOpenProjects(repository);
+			changes = WorkingTreeChanges.record(repository);
+		}
 		boolean merging = false;
 		if (repository.getRepositoryState().equals(RepositoryState.MERGING)
 				|| repository.getRepositoryState().equals(
@@ -143,8 +147,9 @@ private void reset(IProgressMonitor monitor) throws CoreException {
 				resetCherryPick();
 			monitor.worked(1);
 			// only refresh if working tree changes
-			ProjectUtil.refreshValidProjects(validProjects, new SubProgressMonitor(
-					monitor, 1));
+			ProjectUtil.refreshValidProjects(validProjects, true, repository,
+					changes.getChangedPaths(), new SubProgressMonitor(monitor,
+							1));
 			monitor.worked(1);
 			break;
 
@@ -19,6 +19,7 @@
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.egit.core.internal.util.ProjectUtil;
+import org.eclipse.egit.core.internal.util.WorkingTreeChanges;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
@@ -55,11 +56,17 @@ public void run(IProgressMonitor pm) throws CoreException {
 				try {
 					IProject[] validProjects = ProjectUtil
 							.getValidOpenProjects(repository);
+					WorkingTreeChanges changes = WorkingTreeChanges
+							.record(repository);
+					// the working tree changes of the stash are applied
+					// without updating the index
+					changes.addChangedPaths(commit);
 					pm.worked(1);
 					Git.wrap(repository).stashApply()
 							.setStashRef(commit.name()).call();
 					pm.worked(1);
-					ProjectUtil.refreshValidProjects(validProjects,
+					ProjectUtil.refreshValidProjects(validProjects, true,
+							repository, changes.getChangedPaths(),
 							new SubProgressMonitor(pm, 1));
 				} catch (JGitInternalException e) {
 					throw new TeamException(e.getLocalizedMessage(),
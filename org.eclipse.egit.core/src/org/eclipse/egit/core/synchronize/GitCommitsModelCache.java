@@ -16,6 +16,15 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.CoreText;
 
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.MutableObjectId;
@@ -84,6 +93,22 @@ public static class Commit {
 
 		private Map<String, Change> children;
 
+		private Repository repo;
+
+		private TreeFilter pathFilter;
+
+		private ObjectId actualCommit;
+
+		private ObjectId actualTree;
+
+		private ObjectId parentCommit;
+
+		private ObjectId parentTree;
+
+		private boolean loaded;
+
+		private boolean disposed;
+
 		private Commit() {
 			// reduce the visibility of the default constructor
 		}
@@ -135,18 +160,39 @@ public String getShortMessage() {
 		}
 
 		/**
+		 * The changes are computed on the first call and kept afterwards.
+		 *
 		 * @return list of changes made by this commit or {@code null} when
 		 *         commit doesn't have any changes
 		 */
-		public Map<String, Change> getChildren() {
+		public synchronized Map<String, Change> getChildren() {
+			if (!loaded && !disposed)
+				try {
+					children = getChangedObjects(repo, actualCommit,
+							actualTree, parentCommit, parentTree, pathFilter,
+							direction);
+					loaded = true;
+				} catch (IOException e) {
+					Activator.logError(e.getMessage(), e);
+				}
 			return children;
 		}
 
+		/**
+		 * @return {@code true} if the changes of this commit were already
+		 *         computed
+		 */
+		public synchronized boolean isLoaded() {
+			return loaded;
+		}
+
 		/**
 		 * Disposes nested resources
 		 */
-		public void dispose() {
-			children.clear();
+		public synchronized void dispose() {
+			disposed = true;
+			if (children != null)
+				children.clear();
 		}
 
 	}
@@ -297,7 +343,9 @@ private String getObjectId(AbbreviatedObjectId object) {
 
 	/**
 	 * Scans given {@code repo} and build list of commits between two given
-	 * RevCommit objectId's. Each commit contains list of changed resources
+	 * RevCommit objectId's. The changed resources of each commit are computed
+	 * when they are first requested, see {@link Commit#getChildren()} and
+	 * {@link #prefetch(List)}.
 	 *
 	 * @param repo
 	 *            repository that should be scanned
@@ -363,10 +411,17 @@ public static List<Commit> build(Repository repo, ObjectId srcId,
 			} else
 				throw new GitCommitsModelDirectionException();
 
-			commit.children = getChangedObjects(repo, actualCommit,
-					parentCommit, pathFilter, commit.direction);
-
-			if (commit.children != null)
+			commit.repo = repo;
+			commit.pathFilter = pathFilter;
+			commit.actualCommit = getId(actualCommit);
+			commit.actualTree = getTreeId(actualCommit);
+			commit.parentCommit = getId(parentCommit);
+			commit.parentTree = getTreeId(parentCommit);
+
+			// a commit without any changes has the same tree as its parent,
+			// with a path filter the walk already skipped such commits
+			if (pathFilter != null
+					|| !isSameTree(commit.actualTree, commit.parentTree))
 				result.add(commit);
 		}
 		rw.dispose();
@@ -374,6 +429,56 @@ public static List<Commit> build(Repository repo, ObjectId srcId,
 		return result;
 	}
 
+	/**
+	 * Computes the changes of the given commits in the background. The
+	 * computation runs in several jobs which belong to the family
+	 * {@code commits}, it can be canceled by
+	 * {@code Job.getJobManager().cancel(commits)}.
+	 *
+	 * @param commits
+	 *            commits returned by
+	 *            {@link #build(Repository, ObjectId, ObjectId, TreeFilter)}
+	 */
+	public static void prefetch(final List<Commit> commits) {
+		final Queue<Commit> queue = new ConcurrentLinkedQueue<Commit>(commits);
+		int jobs = Math.min(commits.size(), Runtime.getRuntime()
+				.availableProcessors());
+		for (int i = 0; i < jobs; i++) {
+			Job job = new Job(CoreText.GitCommitsModelCache_prefetchJobName) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					Commit commit;
+					while ((commit = queue.poll()) != null) {
+						if (monitor.isCanceled())
+							return Status.CANCEL_STATUS;
+						commit.getChildren();
+					}
+					return Status.OK_STATUS;
+				}
+
+				@Override
+				public boolean belongsTo(Object family) {
+					return family == commits;
+				}
+			};
+			job.setSystem(true);
+			job.setPriority(Job.DECORATE);
+			job.schedule();
+		}
+	}
+
+	private static ObjectId getId(RevCommit commit) {
+		return commit != null ? commit.copy() : null;
+	}
+
+	private static ObjectId getTreeId(RevCommit commit) {
+		return commit != null ? commit.getTree().copy() : null;
+	}
+
+	private static boolean isSameTree(ObjectId a, ObjectId b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
 	private static RevCommit getParentCommit(RevCommit commit) {
 		if (commit.getParents().length > 0)
 			return commit.getParents()[0];
@@ -382,17 +487,19 @@ private static RevCommit getParentCommit(RevCommit commit) {
 	}
 
 	private static Map<String, Change> getChangedObjects(Repository repo,
-			RevCommit parentCommit, RevCommit remoteCommit,
-			TreeFilter pathFilter, final int direction) throws IOException {
+			ObjectId parentCommit, ObjectId parentTree, ObjectId remoteCommit,
+			ObjectId remoteTree, TreeFilter pathFilter, final int direction)
+			throws IOException {
 		final TreeWalk tw = new TreeWalk(repo);
-		addTreeFilter(tw, parentCommit);
-		addTreeFilter(tw, remoteCommit);
+		addTree(tw, parentTree);
+		addTree(tw, remoteTree);
 
 		tw.setRecursive(true);
 		if (pathFilter == null)
 			tw.setFilter(TreeFilter.ANY_DIFF);
 		else
-			tw.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, pathFilter));
+			tw.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF,
+					pathFilter.clone()));
 
 		final int localTreeId = direction == LEFT ? 1 : 0;
 		final int remoteTreeId = direction == LEFT ? 0 : 1;
@@ -420,15 +527,15 @@ private static Map<String, Change> getChangedObjects(Repository repo,
 		return result.size() > 0 ? result : null;
 	}
 
-	private static void addTreeFilter(TreeWalk tw, RevCommit commit)
+	private static void addTree(TreeWalk tw, ObjectId tree)
 			throws IOException {
-		if (commit != null)
-			tw.addTree(commit.getTree());
+		if (tree != null)
+			tw.addTree(tree);
 		else
 			tw.addTree(new EmptyTreeIterator());
 	}
 
-	private static AbbreviatedObjectId getAbbreviatedObjectId(RevCommit commit) {
+	private static AbbreviatedObjectId getAbbreviatedObjectId(ObjectId commit) {
 		if (commit != null)
 			return AbbreviatedObjectId.fromObjectId(commit);
 		else
@@ -16,6 +16,12 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
@@ -31,12 +37,13 @@
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.NotIgnoredFilter;
-import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 /**
  * Simple and thin tree cache for git meta data about resources in repository.
+ * <p>
+ * The data of several repositories is loaded in parallel on a bounded number
+ * of threads.
  */
 class GitSyncCache {
 
@@ -55,21 +62,84 @@ public static GitSyncCache getAllData(
 			IProgressMonitor monitor) {
 		GitSyncCache cache = new GitSyncCache();
 		SubMonitor m = SubMonitor.convert(monitor, updateRequests.size());
-
-		for (Entry<GitSynchronizeData, Collection<String>> entry : updateRequests
-				.entrySet()) {
+		if (updateRequests.size() == 1) {
+			Entry<GitSynchronizeData, Collection<String>> entry = updateRequests
+					.entrySet().iterator().next();
 			cache.merge(getAllData(entry.getKey(), entry.getValue()));
-			m.worked(1);
+			m.done();
+			return cache;
+		}
+
+		// load the repositories in parallel, the results are merged by the
+		// calling thread; as before all repositories are loaded since the
+		// subscriber expects data for each of them
+		ExecutorService executor = createExecutor(Math.min(
+				updateRequests.size(), getThreadCount()));
+		try {
+			List<Future<GitSyncCache>> futures = new ArrayList<Future<GitSyncCache>>();
+			for (final Entry<GitSynchronizeData, Collection<String>> entry : updateRequests
+					.entrySet())
+				futures.add(executor.submit(new Callable<GitSyncCache>() {
+					public GitSyncCache call() {
+						return getAllData(entry.getKey(), entry.getValue());
+					}
+				}));
+			for (Future<GitSyncCache> future : futures) {
+				GitSyncCache repoCache = waitFor(future);
+				if (repoCache == null)
+					break;
+				cache.merge(repoCache);
+				m.worked(1);
+			}
+		} finally {
+			executor.shutdownNow();
 		}
 
 		m.done();
 		return cache;
 	}
 
+	/**
+	 * @return maximum number of repositories loaded in parallel
+	 */
+	static int getThreadCount() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private static ExecutorService createExecutor(int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r,
+						"EGit synchronize worker " + (++count)); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static GitSyncCache waitFor(Future<GitSyncCache> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
 	private static GitSyncCache getAllData(GitSynchronizeData gsd,
 			Collection<String> paths) {
 		GitSyncCache cache = new GitSyncCache();
-		TreeFilter filter = paths.isEmpty() ? null : createPathFilter(paths);
+		TreeFilter filter = paths.isEmpty() ? null : SortedPathFilter
+				.create(paths);
 
 		Repository repo = gsd.getRepository();
 		ObjectId baseTree = getTree(gsd.getSrcRevCommit());
@@ -87,19 +157,6 @@ else if (gsdFilter == null)
 		return cache;
 	}
 
-	private static TreeFilter createPathFilter(Collection<String> paths) {
-		// do not use PathFilterGroup to create the filter, see bug 362430
-		List<TreeFilter> filters = new ArrayList<TreeFilter>(paths.size());
-		for (String path : paths) {
-			if (path.length() == 0)
-				return null;
-			filters.add(PathFilter.create(path));
-		}
-		if (filters.size() == 1)
-			return filters.get(0);
-		return OrTreeFilter.create(filters);
-	}
-
 	private static void loadDataFromGit(GitSynchronizeData gsd,
 			TreeFilter filter, GitSyncObjectCache repoCache) {
 		Repository repo = gsd.getRepository();
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.synchronize;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Includes the entries which are equal to, below or a parent of one of a set
+ * of paths, like an {@code OrTreeFilter} of {@link PathFilter}s.
+ * <p>
+ * The paths are kept sorted so that each entry is matched by a binary search
+ * per path segment instead of testing every path. Unlike
+ * {@link PathFilterGroup} this filter never stops the walk early, since the
+ * order of the working tree iterator does not necessarily match the order of
+ * the paths (see bug 362430).
+ */
+class SortedPathFilter extends TreeFilter {
+
+	private static final Comparator<byte[]> PATH_ORDER = new Comparator<byte[]>() {
+		public int compare(byte[] o1, byte[] o2) {
+			return SortedPathFilter.compare(o1, o2, o2.length);
+		}
+	};
+
+	private final byte[][] paths;
+
+	/**
+	 * @param paths
+	 *            repository relative paths
+	 * @return the filter, or {@code null} if one of the paths is the root of
+	 *         the repository
+	 */
+	static TreeFilter create(Collection<String> paths) {
+		byte[][] sorted = new byte[paths.size()][];
+		String last = null;
+		int i = 0;
+		for (String path : paths) {
+			while (path.endsWith("/")) //$NON-NLS-1$
+				path = path.substring(0, path.length() - 1);
+			if (path.length() == 0)
+				return null;
+			sorted[i++] = Constants.encode(path);
+			last = path;
+		}
+		if (sorted.length == 1)
+			return PathFilter.create(last);
+		Arrays.sort(sorted, PATH_ORDER);
+		return new SortedPathFilter(sorted);
+	}
+
+	private SortedPathFilter(byte[][] paths) {
+		this.paths = paths;
+	}
+
+	@Override
+	public boolean include(TreeWalk walker) {
+		byte[] path = walker.getRawPath();
+		int length = walker.getPathLength();
+		// the entry itself or one of its parents is one of the paths
+		for (int i = 0; i <= length; i++)
+			if ((i == length || path[i] == '/') && contains(path, i))
+				return true;
+		if (!walker.isSubtree())
+			return false;
+		// one of the paths is below the entry
+		byte[] prefix = new byte[length + 1];
+		System.arraycopy(path, 0, prefix, 0, length);
+		prefix[length] = '/';
+		int index = Arrays.binarySearch(paths, prefix, PATH_ORDER);
+		if (index < 0)
+			index = -index - 1;
+		return index < paths.length && startsWith(paths[index], prefix);
+	}
+
+	private boolean contains(byte[] path, int length) {
+		int low = 0;
+		int high = paths.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(paths[mid], path, length);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return true;
+		}
+		return false;
+	}
+
+	private static int compare(byte[] a, byte[] b, int bLength) {
+		int length = Math.min(a.length, bLength);
+		for (int i = 0; i < length; i++) {
+			int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return a.length - bLength;
+	}
+
+	private static boolean startsWith(byte[] path, byte[] prefix) {
+		if (path.length < prefix.length)
+			return false;
+		for (int i = 0; i < prefix.length; i++)
+			if (path[i] != prefix[i])
+				return false;
+		return true;
+	}
+
+	@Override
+	public boolean shouldBeRecursive() {
+		for (byte[] path : paths)
+			for (byte b : path)
+				if (b == '/')
+					return true;
+		return false;
+	}
+
+	@Override
+	public TreeFilter clone() {
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("SORTED_PATHS("); //$NON-NLS-1$
+		for (int i = 0; i < paths.length; i++) {
+			if (i > 0)
+				builder.append(", "); //$NON-NLS-1$
+			builder.append('"').append(RawParseUtils.decode(paths[i]))
+					.append('"');
+		}
+		return builder.append(')').toString();
+	}
+
+}
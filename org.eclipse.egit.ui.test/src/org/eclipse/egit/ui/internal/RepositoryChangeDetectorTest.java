@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepositoryChangeDetectorTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private Git git;
+
+	private RepositoryChangeDetector detector;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repository = createWorkRepository();
+		git = new Git(repository);
+		git.commit().setMessage("initial").call();
+		detector = new RepositoryChangeDetector();
+		backdate(repository.getDirectory());
+		// the first check only takes the stamps
+		assertEquals(0, detector.check(repository));
+		assertEquals(0, detector.check(repository));
+	}
+
+	@Test
+	public void testIndexChange() throws Exception {
+		write(new File(repository.getWorkTree(), "file.txt"), "content");
+		git.add().addFilepattern("file.txt").call();
+		assertChanged(RepositoryChangeDetector.INDEX);
+	}
+
+	@Test
+	public void testRefChanges() throws Exception {
+		git.branchCreate().setName("topic").call();
+		assertChanged(RepositoryChangeDetector.REFS);
+		// creates the directory refs/heads/feature
+		git.branchCreate().setName("feature/one").call();
+		assertChanged(RepositoryChangeDetector.REFS);
+		git.branchCreate().setName("feature/two").call();
+		assertChanged(RepositoryChangeDetector.REFS);
+	}
+
+	@Test
+	public void testCheckout() throws Exception {
+		git.branchCreate().setName("topic").call();
+		assertChanged(RepositoryChangeDetector.REFS);
+		git.checkout().setName("topic").call();
+		// the index may be written again as well
+		int changes = detector.check(repository);
+		assertEquals(RepositoryChangeDetector.REFS, changes
+				& RepositoryChangeDetector.REFS);
+		assertEquals(0, changes & RepositoryChangeDetector.CONFIG);
+	}
+
+	@Test
+	public void testConfigChange() throws Exception {
+		StoredConfig config = repository.getConfig();
+		config.setString("user", null, "name", "Someone");
+		config.save();
+		assertChanged(RepositoryChangeDetector.CONFIG);
+	}
+
+	@Test
+	public void testRacyChange() throws Exception {
+		File configFile = new File(repository.getDirectory(), "config");
+		StoredConfig config = repository.getConfig();
+		config.setString("user", null, "name", "A");
+		config.save();
+		assertEquals(RepositoryChangeDetector.CONFIG,
+				detector.check(repository));
+		// written again within the resolution of the modification time
+		long lastModified = configFile.lastModified();
+		long length = configFile.length();
+		config.setString("user", null, "name", "B");
+		config.save();
+		configFile.setLastModified(lastModified);
+		assertEquals(length, configFile.length());
+
+		Thread.sleep(RepositoryChangeDetector.RACY_INTERVAL);
+		assertEquals(RepositoryChangeDetector.CONFIG,
+				detector.check(repository));
+		// the stamp taken again is no longer racy
+		assertEquals(0, detector.check(repository));
+	}
+
+	private void assertChanged(int change) {
+		assertEquals(change, detector.check(repository));
+		// no change is reported once the stamps were taken again
+		assertEquals(0, detector.check(repository));
+		// ensures the next change modifies the files even on file systems
+		// with a coarse modification time
+		backdate(repository.getDirectory());
+		detector.check(repository);
+	}
+
+	private static void backdate(File file) {
+		file.setLastModified(System.currentTimeMillis() - 10000);
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				backdate(child);
+	}
+
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.blame;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlameCacheTest extends LocalDiskRepositoryTestCase {
+
+	private static final String PATH = "folder/file.txt";
+
+	private Repository repository;
+
+	private Git git;
+
+	private RevCommit first;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repository = createWorkRepository();
+		git = new Git(repository);
+		first = commit("a\nb\nc\n");
+	}
+
+	private RevCommit commit(String content) throws Exception {
+		write(new File(repository.getWorkTree(), PATH), content);
+		git.add().addFilepattern(".").call();
+		return git.commit().setMessage(content).call();
+	}
+
+	private ObjectId[] blameWithCommand(RevCommit start) throws Exception {
+		BlameResult result = git.blame().setFilePath(PATH)
+				.setStartCommit(start).call();
+		ObjectId[] lines = new ObjectId[result.getResultContents().size()];
+		for (int i = 0; i < lines.length; i++)
+			lines[i] = result.getSourceCommit(i).copy();
+		return lines;
+	}
+
+	@Test
+	public void testBlame() throws Exception {
+		RevCommit second = commit("a\nB\nc\n");
+		BlameCache cache = BlameCache.getInstance();
+		ObjectId[] lines = cache
+				.getBlame(repository, second, PATH, false, null);
+		assertArrayEquals(new ObjectId[] { first, second, first }, lines);
+		// the result is cached
+		assertSame(lines,
+				cache.getBlame(repository, second, PATH, false, null));
+	}
+
+	@Test
+	public void testIncrementalBlame() throws Exception {
+		BlameCache cache = BlameCache.getInstance();
+		cache.getBlame(repository, first, PATH, false, null);
+		commit("x\na\nb\nc\n");
+		commit("x\na\nb\nc\nd\n");
+		RevCommit fourth = commit("x\nb\nC\nd\n");
+		assertArrayEquals(blameWithCommand(fourth),
+				cache.getBlame(repository, fourth, PATH, false, null));
+	}
+
+	@Test
+	public void testWorkingTreeBlame() throws Exception {
+		write(new File(repository.getWorkTree(), PATH), "a\nB\nc\n");
+		assertArrayEquals(new ObjectId[] { first, null, first }, BlameCache
+				.getInstance()
+				.getWorkingTreeBlame(repository, PATH, false, null));
+	}
+
+	@Test
+	public void testListener() throws Exception {
+		commit("a\nB\nc\n");
+		RevCommit third = commit("a\nB\nc\nd\n");
+		final ObjectId[] attributed = new ObjectId[4];
+		ObjectId[] lines = BlameCache.getInstance().getBlame(repository,
+				third, PATH, false, new BlameCache.Listener() {
+					public void linesAttributed(ObjectId[] partial, int start,
+							int end) {
+						for (int i = start; i < end; i++)
+							attributed[i] = partial[i];
+					}
+				});
+		// every line is reported once it is attributed
+		assertArrayEquals(lines, attributed);
+	}
+
+	@Test
+	public void testMissingPath() throws Exception {
+		assertNull(BlameCache.getInstance().getBlame(repository, first,
+				"folder/missing.txt", false, null));
+	}
+
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.decorators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BaselineCacheTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private RevCommit commit;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repository = createWorkRepository();
+		write(new File(repository.getWorkTree(), "folder/file.txt"),
+				"baseline content");
+		Git git = new Git(repository);
+		git.add().addFilepattern(".").call();
+		commit = git.commit().setMessage("Initial commit").call();
+	}
+
+	@Test
+	public void testBlobIdAndText() throws Exception {
+		BaselineCache cache = BaselineCache.getInstance();
+		ObjectId blobId = cache.getBlobId(repository, commit.getTree(),
+				"folder/file.txt");
+		assertEquals("baseline content", cache.getText(repository, blobId,
+				"UTF-8"));
+		// the decoded text is shared
+		assertSame(cache.getText(repository, blobId, "UTF-8"),
+				cache.getText(repository, blobId, "UTF-8"));
+	}
+
+	@Test
+	public void testMissingPath() throws Exception {
+		assertNull(BaselineCache.getInstance().getBlobId(repository,
+				commit.getTree(), "folder/missing.txt"));
+	}
+
+}
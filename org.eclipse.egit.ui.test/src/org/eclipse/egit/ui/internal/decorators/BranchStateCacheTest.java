@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.decorators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.eclipse.egit.ui.JobFamilies;
+import org.eclipse.egit.ui.internal.decorators.BranchStateCache.BranchState;
+import org.eclipse.egit.ui.test.TestUtil;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BranchStateCacheTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private Git git;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		BranchStateCache.dispose();
+		repository = createWorkRepository();
+		git = new Git(repository);
+		git.commit().setMessage("Initial commit").call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		BranchStateCache.dispose();
+		super.tearDown();
+	}
+
+	@Test
+	public void testStateIsCalculatedInBackground() throws Exception {
+		BranchStateCache cache = BranchStateCache.getInstance();
+		assertNull(cache.getState(repository));
+		TestUtil.joinJobs(JobFamilies.BRANCH_STATE);
+		BranchState state = cache.getState(repository);
+		assertNotNull(state);
+		assertEquals("master", state.getBranch());
+		assertNull(state.getBranchStatus());
+	}
+
+	@Test
+	public void testStateIsUpdatedWhenRefsChange() throws Exception {
+		BranchStateCache cache = BranchStateCache.getInstance();
+		cache.getState(repository);
+		TestUtil.joinJobs(JobFamilies.BRANCH_STATE);
+
+		git.checkout().setCreateBranch(true).setName("topic").call();
+		repository.scanForRepoChanges();
+		TestUtil.joinJobs(JobFamilies.BRANCH_STATE);
+
+		assertEquals("topic", cache.getState(repository).getBranch());
+	}
+
+}
@@ -12,11 +12,19 @@
 package org.eclipse.egit.ui.internal.decorators;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -24,6 +32,7 @@
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.GitProvider;
 import org.eclipse.egit.core.JobFamilies;
@@ -33,6 +42,12 @@
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.ui.internal.decorators.IDecoratableResource.Staged;
 import org.eclipse.egit.ui.test.TestUtil;
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.jface.viewers.DecorationContext;
+import org.eclipse.jface.viewers.IDecoration;
+import org.eclipse.jface.viewers.IDecorationContext;
+import org.eclipse.jface.viewers.ILabelProviderListener;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeResult.MergeStatus;
 import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
@@ -41,7 +56,13 @@
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.FileRepository;
 import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.team.core.RepositoryProvider;
+import org.eclipse.ui.IWorkingSet;
+import org.eclipse.ui.IWorkingSetManager;
+import org.eclipse.ui.PlatformUI;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -210,6 +231,79 @@ public void testDecorationNewFile() throws Exception {
 		assertArrayEquals(expectedDRs, actualDRs);
 	}
 
+	@Test
+	public void testChangedPathsForLabelEvents() throws Exception {
+		IndexDiffData oldData = indexDiffCacheEntry.getIndexDiff();
+		write(new File(project.getLocation().toFile(), TEST_FILE), "Something");
+		project.refreshLocal(IResource.DEPTH_INFINITE, null);
+		waitForIndexDiffUpdate(true);
+		IndexDiffData newData = indexDiffCacheEntry.getIndexDiff();
+
+		assertEquals(Collections.singleton(TEST_PROJECT + "/" + TEST_FILE),
+				GitLightweightDecorator.getChangedPaths(oldData, newData));
+		assertTrue(GitLightweightDecorator.getChangedPaths(newData, newData)
+				.isEmpty());
+	}
+
+	@Test
+	public void testLabelEventWithWorkingSets() throws Exception {
+		IProject otherProject = ResourcesPlugin.getWorkspace().getRoot()
+				.getProject("OtherProject");
+		otherProject.create(null);
+		otherProject.open(null);
+		IWorkingSetManager manager = PlatformUI.getWorkbench()
+				.getWorkingSetManager();
+		IWorkingSet shared = manager.createWorkingSet("Shared",
+				new IAdaptable[] { project });
+		IWorkingSet other = manager.createWorkingSet("Other",
+				new IAdaptable[] { otherProject });
+		GitLightweightDecorator decorator = new GitLightweightDecorator();
+		final List<LabelProviderChangedEvent> events = Collections
+				.synchronizedList(new ArrayList<LabelProviderChangedEvent>());
+		try {
+			decorator.decorate(shared, new TestDecoration());
+			decorator.decorate(other, new TestDecoration());
+			// the first index diff of a repository updates all labels
+			decorator.indexDiffChanged(repository,
+					indexDiffCacheEntry.getIndexDiff());
+			waitForLabelEvents();
+			decorator.addListener(new ILabelProviderListener() {
+				public void labelProviderChanged(LabelProviderChangedEvent event) {
+					events.add(event);
+				}
+			});
+
+			write(new File(project.getLocation().toFile(), TEST_FILE),
+					"Something");
+			project.refreshLocal(IResource.DEPTH_INFINITE, null);
+			waitForIndexDiffUpdate(true);
+			waitForLabelEvents();
+
+			assertFalse(events.isEmpty());
+			Set<Object> elements = new HashSet<Object>();
+			for (LabelProviderChangedEvent event : events) {
+				assertNotNull("generic label event", event.getElements());
+				elements.addAll(Arrays.asList(event.getElements()));
+			}
+			assertTrue(elements.contains(project.getFile(TEST_FILE)));
+			assertTrue(elements.contains(shared));
+			assertFalse(elements.contains(other));
+		} finally {
+			decorator.dispose();
+			otherProject.delete(true, true, null);
+		}
+	}
+
+	private void waitForLabelEvents() throws Exception {
+		LabelEventJob.getInstance().join();
+		// the events are fired asynchronously in the UI thread
+		Display.getDefault().syncExec(new Runnable() {
+			public void run() {
+				// nothing
+			}
+		});
+	}
+
 	@Test
 	public void testDecorationIgnoredFile() throws Exception {
 		// Create new file
@@ -482,3 +576,38 @@ public String toString() {
 		return "TestDecoratableResourceAdapter[" + getName() + (isTracked() ? ", tracked" : "") + (isIgnored() ? ", ignored" : "") + (isDirty() ? ", dirty" : "") + (hasConflicts() ? ",conflicts" : "") + ", staged=" + staged() + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$//$NON-NLS-7$//$NON-NLS-8$//$NON-NLS-9$//$NON-NLS-10$//$NON-NLS-11$
 	}
 }
+
+class TestDecoration implements IDecoration {
+
+	public void addPrefix(String prefix) {
+		// ignored
+	}
+
+	public void addSuffix(String suffix) {
+		// ignored
+	}
+
+	public void addOverlay(ImageDescriptor overlay) {
+		// ignored
+	}
+
+	public void addOverlay(ImageDescriptor overlay, int quadrant) {
+		// ignored
+	}
+
+	public void setForegroundColor(Color color) {
+		// ignored
+	}
+
+	public void setBackgroundColor(Color color) {
+		// ignored
+	}
+
+	public void setFont(Font font) {
+		// ignored
+	}
+
+	public IDecorationContext getDecorationContext() {
+		return DecorationContext.DEFAULT_CONTEXT;
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.staging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.egit.ui.internal.staging.StagingEntry.State;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StagingJobTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private Git git;
+
+	private RevCommit commit;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repository = createWorkRepository();
+		write(new File(repository.getWorkTree(), "committed.txt"), "content");
+		git = new Git(repository);
+		git.add().addFilepattern("committed.txt").call();
+		commit = git.commit().setMessage("Initial commit").call();
+	}
+
+	@Test
+	public void testStageInBatches() throws Exception {
+		// more files than are added by one command
+		List<StagingEntry> entries = new ArrayList<StagingEntry>();
+		for (int i = 0; i < 1200; i++) {
+			String path = "folder" + i / 100 + "/file" + i + ".txt";
+			write(new File(repository.getWorkTree(), path), "content " + i);
+			entries.add(new StagingEntry(repository, State.UNTRACKED, path));
+		}
+		write(new File(repository.getWorkTree(), "committed.txt"),
+				"changed content");
+		entries.add(new StagingEntry(repository, State.MODIFIED,
+				"committed.txt"));
+
+		run(new StagingJob(repository, entries, true));
+
+		DirCache dirCache = repository.readDirCache();
+		assertEquals(1201, dirCache.getEntryCount());
+		for (StagingEntry entry : entries)
+			assertNotNull(dirCache.getEntry(entry.getPath()));
+		assertTrue(git.status().call().getModified().isEmpty());
+	}
+
+	@Test
+	public void testUnstage() throws Exception {
+		write(new File(repository.getWorkTree(), "committed.txt"),
+				"changed content");
+		write(new File(repository.getWorkTree(), "added.txt"), "added");
+		git.add().addFilepattern("committed.txt").addFilepattern("added.txt")
+				.call();
+
+		run(new StagingJob(repository, Arrays.asList(new StagingEntry(
+				repository, State.CHANGED, "committed.txt"), new StagingEntry(
+				repository, State.ADDED, "added.txt")), false));
+
+		DirCache dirCache = repository.readDirCache();
+		assertNull(dirCache.getEntry("added.txt"));
+		assertEquals(getHeadId("committed.txt"), dirCache.getEntry(
+				"committed.txt").getObjectId());
+		// the working tree is not touched
+		assertEquals("changed content", read(new File(repository
+				.getWorkTree(), "committed.txt")));
+	}
+
+	private void run(StagingJob job) throws Exception {
+		assertTrue(job.hasPaths());
+		job.schedule();
+		job.join();
+		assertTrue(job.getResult().isOK());
+	}
+
+	private ObjectId getHeadId(String path) throws Exception {
+		TreeWalk walk = TreeWalk.forPath(repository, path, commit.getTree());
+		try {
+			return walk.getObjectId(0);
+		} finally {
+			walk.release();
+		}
+	}
+
+}
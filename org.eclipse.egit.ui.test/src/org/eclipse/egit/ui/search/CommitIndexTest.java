@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.egit.ui.internal.search.CommitIndex;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link CommitIndex}
+ */
+public class CommitIndexTest extends LocalDiskRepositoryTestCase {
+
+	private Repository repository;
+
+	private Git git;
+
+	private RevCommit first;
+
+	private RevCommit second;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		CommitIndex.dispose();
+		repository = createWorkRepository();
+		git = new Git(repository);
+		first = git.commit().setMessage("Fix the parser bug")
+				.setAuthor("Alice", "alice@example.org")
+				.setCommitter("Carol", "carol@example.org").call();
+		second = git.commit().setMessage("Add a feature")
+				.setAuthor("Bob", "bob@example.org")
+				.setCommitter("Carol", "carol@example.org").call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		CommitIndex.dispose();
+		super.tearDown();
+	}
+
+	private List<ObjectId> find(CommitIndex index, int fields, String text)
+			throws Exception {
+		Pattern pattern = Pattern.compile(Pattern.quote(text),
+				Pattern.CASE_INSENSITIVE);
+		BitSet candidates = index.find(fields, pattern,
+				Collections.singleton(text));
+		return index.getReachable(Collections.singleton(repository
+				.resolve("HEAD")), candidates);
+	}
+
+	@Test
+	public void testFindMessage() throws Exception {
+		CommitIndex index = CommitIndex.getIndex(repository);
+		assertTrue(index.update(repository, new NullProgressMonitor()));
+		assertEquals(Collections.singletonList(first),
+				find(index, CommitIndex.MESSAGE, "parser"));
+		// terms at the start and end of the text may be partial
+		assertEquals(Collections.singletonList(first),
+				find(index, CommitIndex.MESSAGE, "ARSER BU"));
+		assertTrue(find(index, CommitIndex.MESSAGE, "parsers").isEmpty());
+	}
+
+	@Test
+	public void testFindIdents() throws Exception {
+		CommitIndex index = CommitIndex.getIndex(repository);
+		assertTrue(index.update(repository, new NullProgressMonitor()));
+		assertEquals(Collections.singletonList(second),
+				find(index, CommitIndex.AUTHOR, "bob@"));
+		// the newest commit is found first
+		assertEquals(Arrays.asList(second, first),
+				find(index, CommitIndex.COMMITTER, "carol"));
+		assertTrue(find(index, CommitIndex.COMMITTER, "alice").isEmpty());
+	}
+
+	@Test
+	public void testIncrementalUpdateAndReload() throws Exception {
+		CommitIndex index = CommitIndex.getIndex(repository);
+		assertTrue(index.update(repository, new NullProgressMonitor()));
+		int ordinal = index.getOrdinal(first);
+		RevCommit third = git.commit().setMessage("Third commit").call();
+		assertEquals(-1, index.getOrdinal(third));
+		assertTrue(index.update(repository, new NullProgressMonitor()));
+		assertTrue(index.getOrdinal(third) > index.getOrdinal(second));
+
+		CommitIndex.dispose();
+		CommitIndex reloaded = CommitIndex.getIndex(repository);
+		assertFalse(reloaded == index);
+		assertTrue(reloaded.update(repository, new NullProgressMonitor()));
+		assertEquals(ordinal, reloaded.getOrdinal(first));
+		assertEquals(Collections.singletonList(third),
+				find(reloaded, CommitIndex.MESSAGE, "third"));
+	}
+
+	@Test
+	public void testCanceledUpdateIsSaved() throws Exception {
+		CommitIndex index = CommitIndex.getIndex(repository);
+		// cancels after the first commit was added
+		assertFalse(index.update(repository, new NullProgressMonitor() {
+			private int calls;
+
+			@Override
+			public boolean isCanceled() {
+				return calls++ > 0;
+			}
+		}));
+		assertEquals(0, index.getOrdinal(second));
+
+		// the commit of the canceled update becomes unreachable
+		git.reset().setMode(ResetType.HARD).setRef(first.name()).call();
+		CommitIndex.dispose();
+		CommitIndex reloaded = CommitIndex.getIndex(repository);
+		assertTrue(reloaded.update(repository, new NullProgressMonitor()));
+		assertEquals(0, reloaded.getOrdinal(second));
+		assertEquals(Arrays.asList((ObjectId) first),
+				find(reloaded, CommitIndex.MESSAGE, "parser"));
+	}
+
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.egit.ui.internal.commit.RepositoryCommit;
+import org.eclipse.egit.ui.internal.search.CommitIndex;
+import org.eclipse.egit.ui.internal.search.CommitSearchQuery;
+import org.eclipse.egit.ui.internal.search.CommitSearchResult;
+import org.eclipse.egit.ui.internal.search.CommitSearchSettings;
+import org.eclipse.egit.ui.internal.search.PatternUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the results of {@link CommitSearchQuery} with a sequential walk of
+ * all commits
+ */
+public class CommitSearchParallelTest extends LocalDiskRepositoryTestCase {
+
+	private static final int COMMITS = 120;
+
+	private static final String[] AUTHORS = { "Alice", "Bob", "Jürgen",
+			"Åsa" };
+
+	private static final String[] WORDS = { "Fix the parser",
+			"Add a feature", "Reduce the Größe of the buffer",
+			"Update the docs" };
+
+	private List<Repository> repositories = new ArrayList<Repository>();
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		CommitIndex.dispose();
+		// more repositories than search workers, so that a worker searches
+		// several of them
+		int count = Runtime.getRuntime().availableProcessors() + 2;
+		for (int r = 0; r < count; r++) {
+			Repository repository = createWorkRepository();
+			Git git = new Git(repository);
+			for (int i = 0; i < COMMITS; i++) {
+				String author = AUTHORS[(i + r) % AUTHORS.length];
+				String committer = AUTHORS[(i / 3 + r) % AUTHORS.length];
+				git.commit().setMessage(
+						WORDS[(i + 2 * r) % WORDS.length] + " " + i).setAuthor(
+						author, author.toLowerCase(Locale.US) + "@example.org")
+						.setCommitter(committer,
+								"committer" + r + "@example.org").call();
+			}
+			repositories.add(repository);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		CommitIndex.dispose();
+		super.tearDown();
+	}
+
+	@Test
+	public void testMatchAuthor() throws Exception {
+		assertSameResult("jürgen", true, false, false);
+		assertSameResult("bob@example", true, false, false);
+	}
+
+	@Test
+	public void testMatchCommitter() throws Exception {
+		assertSameResult("åsa", false, true, false);
+		assertSameResult("committer1@", false, true, false);
+	}
+
+	@Test
+	public void testMatchMessage() throws Exception {
+		assertSameResult("größe", false, false, true);
+		assertSameResult("parser 1", false, false, true);
+		assertSameResult("the*buffer", false, false, true);
+	}
+
+	@Test
+	public void testMatchAll() throws Exception {
+		assertSameResult("alice", true, true, true);
+		assertSameResult("no such text", true, true, true);
+	}
+
+	private void assertSameResult(String text, boolean author,
+			boolean committer, boolean message) throws Exception {
+		CommitSearchSettings settings = new CommitSearchSettings();
+		for (Repository repository : repositories)
+			settings.addRepository(repository.getDirectory()
+					.getAbsolutePath());
+		settings.setTextPattern(text);
+		settings.setMatchTree(false);
+		settings.setMatchAuthor(author);
+		settings.setMatchCommit(false);
+		settings.setMatchCommitter(committer);
+		settings.setMatchParents(false);
+		settings.setMatchMessage(message);
+		settings.setCaseSensitive(false);
+
+		// the index lookup
+		settings.setRegExSearch(false);
+		Set<String> expected = walk(PatternUtils.createPattern(text, false,
+				false), author, committer, message);
+		assertEquals(expected, search(settings));
+		if (!text.startsWith("no "))
+			assertFalse(expected.isEmpty());
+		// the walk of all commits
+		settings.setRegExSearch(true);
+		assertEquals(walk(PatternUtils.createPattern(text, false, true),
+				author, committer, message), search(settings));
+	}
+
+	private Set<String> search(CommitSearchSettings settings) {
+		CommitSearchQuery query = new CommitSearchQuery(settings);
+		IStatus status = query.run(new NullProgressMonitor());
+		assertTrue(status.isOK());
+		CommitSearchResult result = (CommitSearchResult) query
+				.getSearchResult();
+		Set<String> found = new HashSet<String>();
+		for (Object element : result.getElements()) {
+			RepositoryCommit commit = (RepositoryCommit) element;
+			assertTrue(found.add(key(commit.getRepository(), commit
+					.getRevCommit())));
+		}
+		return found;
+	}
+
+	private Set<String> walk(Pattern pattern, boolean author,
+			boolean committer, boolean message) throws Exception {
+		Set<String> found = new HashSet<String>();
+		for (Repository repository : repositories) {
+			RevWalk walk = new RevWalk(repository);
+			try {
+				walk.markStart(walk.parseCommit(repository
+						.resolve(Constants.HEAD)));
+				int count = 0;
+				for (RevCommit commit : walk) {
+					count++;
+					if ((author && matches(pattern, commit.getAuthorIdent()))
+							|| (committer && matches(pattern, commit
+									.getCommitterIdent()))
+							|| (message && pattern.matcher(
+									commit.getFullMessage()).find()))
+						found.add(key(repository, commit));
+				}
+				assertEquals(COMMITS, count);
+			} finally {
+				walk.release();
+			}
+		}
+		return found;
+	}
+
+	private static boolean matches(Pattern pattern, PersonIdent ident) {
+		return pattern.matcher(ident.getName()).find()
+				|| pattern.matcher(ident.getEmailAddress()).find();
+	}
+
+	private static String key(Repository repository, RevCommit commit) {
+		return repository.getDirectory().getAbsolutePath() + ' '
+				+ commit.name();
+	}
+
+}
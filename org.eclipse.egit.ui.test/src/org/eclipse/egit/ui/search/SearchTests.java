@@ -20,6 +20,8 @@
 @RunWith(Suite.class)
 @SuiteClasses({ CommitSearchDialogTest.class, //
 		CommitSearchQueryTest.class, //
+		CommitIndexTest.class, //
+		CommitSearchParallelTest.class, //
 })
 public class SearchTests {
 	// Intentionally left blank
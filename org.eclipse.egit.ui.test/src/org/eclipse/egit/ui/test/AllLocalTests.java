@@ -16,6 +16,7 @@
 import org.eclipse.egit.ui.search.SearchTests;
 import org.eclipse.egit.ui.submodule.SubmoduleTests;
 import org.eclipse.egit.ui.test.commit.CommitTests;
+import org.eclipse.egit.ui.test.history.HistoryViewLoadOnDemandTest;
 import org.eclipse.egit.ui.test.history.HistoryViewTest;
 import org.eclipse.egit.ui.test.team.actions.AllTeamActionTests;
 import org.eclipse.egit.ui.test.trace.TraceConfigurationDialogTest;
@@ -37,6 +38,7 @@
 		SharingWizardTest.class,					//
 		AllTeamActionTests.class,                   //
 		HistoryViewTest.class,                      //
+		HistoryViewLoadOnDemandTest.class,          //
 		PushTest.class,
 		GitScopeUtilTest.class,
 		SpellcheckableMessageAreaTest.class,
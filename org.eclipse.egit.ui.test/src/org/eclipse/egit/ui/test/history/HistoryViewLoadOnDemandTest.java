@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.test.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.ui.Activator;
+import org.eclipse.egit.ui.JobFamilies;
+import org.eclipse.egit.ui.UIPreferences;
+import org.eclipse.egit.ui.common.LocalRepositoryTestCase;
+import org.eclipse.egit.ui.internal.repository.tree.RepositoryNode;
+import org.eclipse.egit.ui.internal.repository.tree.TagNode;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swtbot.swt.finder.junit.SWTBotJunit4ClassRunner;
+import org.eclipse.swtbot.swt.finder.widgets.SWTBotTable;
+import org.eclipse.team.ui.history.IHistoryView;
+import org.eclipse.ui.PlatformUI;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests of the history view loading the commits on demand
+ */
+@RunWith(SWTBotJunit4ClassRunner.class)
+public class HistoryViewLoadOnDemandTest extends LocalRepositoryTestCase {
+
+	// more than the commits loaded initially
+	private static final int COMMITS = 700;
+
+	private static Repository repository;
+
+	private static RevCommit tagged;
+
+	private static int commitCount;
+
+	@BeforeClass
+	public static void setup() throws Exception {
+		File repoFile = createProjectAndCommitToRepository();
+		repository = lookupRepository(repoFile);
+		Git git = new Git(repository);
+		for (int i = 0; i < COMMITS; i++)
+			git.commit().setMessage("Commit " + i).call();
+		tagged = git.commit().setMessage("Tagged commit").call();
+		git.tag().setName("tagged").setObjectId(tagged).call();
+		for (int i = 0; i < COMMITS; i++)
+			git.commit().setMessage("Later commit " + i).call();
+		for (Iterator<RevCommit> it = git.log().call().iterator(); it
+				.hasNext(); it.next())
+			commitCount++;
+		Activator.getDefault().getPreferenceStore()
+				.setValue(UIPreferences.HISTORY_LOAD_ON_DEMAND, true);
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		Activator.getDefault().getPreferenceStore()
+				.setToDefault(UIPreferences.HISTORY_LOAD_ON_DEMAND);
+	}
+
+	@Test
+	public void testShowTagLoadsUntilTaggedCommit() throws Exception {
+		final Ref tag = repository.getRef(Constants.R_TAGS + "tagged");
+		Display.getDefault().syncExec(new Runnable() {
+			public void run() {
+				try {
+					IHistoryView view = (IHistoryView) PlatformUI
+							.getWorkbench().getActiveWorkbenchWindow()
+							.getActivePage().showView(IHistoryView.VIEW_ID);
+					view.showHistoryFor(new TagNode(new RepositoryNode(null,
+							repository), repository, tag));
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		final SWTBotTable table = bot.viewById(IHistoryView.VIEW_ID).bot()
+				.table();
+		final RevCommit[] selected = new RevCommit[1];
+		final int[] loaded = new int[1];
+		// the tagged commit is selected when the job has loaded it
+		for (int i = 0; i < 100 && !tagged.equals(selected[0]); i++) {
+			Job.getJobManager().join(JobFamilies.GENERATE_HISTORY, null);
+			Display.getDefault().syncExec(new Runnable() {
+				public void run() {
+					Table widget = table.widget;
+					loaded[0] = widget.getItemCount();
+					int index = widget.getSelectionIndex();
+					selected[0] = index < 0 ? null : (RevCommit) widget
+							.getItem(index).getData();
+				}
+			});
+			if (!tagged.equals(selected[0]))
+				Thread.sleep(100);
+		}
+		assertEquals(tagged, selected[0]);
+		assertTrue(loaded[0] > COMMITS);
+		// the commits older than the tagged commit are loaded on demand only
+		assertTrue(loaded[0] < commitCount);
+	}
+
+}
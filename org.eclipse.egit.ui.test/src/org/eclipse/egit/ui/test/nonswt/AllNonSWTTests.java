@@ -8,7 +8,12 @@
  *******************************************************************************/
 package org.eclipse.egit.ui.test.nonswt;
 
+import org.eclipse.egit.ui.internal.RepositoryChangeDetectorTest;
+import org.eclipse.egit.ui.internal.blame.BlameCacheTest;
+import org.eclipse.egit.ui.internal.decorators.BaselineCacheTest;
+import org.eclipse.egit.ui.internal.decorators.BranchStateCacheTest;
 import org.eclipse.egit.ui.internal.decorators.DecoratableResourceAdapterTest;
+import org.eclipse.egit.ui.internal.staging.StagingJobTest;
 import org.eclipse.egit.ui.internal.synchronize.model.AllGitModelTests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -16,6 +21,11 @@
 
 @RunWith(Suite.class)
 @SuiteClasses({ DecoratableResourceAdapterTest.class,
+		RepositoryChangeDetectorTest.class,
+		BranchStateCacheTest.class,
+		BaselineCacheTest.class,
+		BlameCacheTest.class,
+		StagingJobTest.class,
 		AllGitModelTests.class })
 public class AllNonSWTTests {
 	// Empty class
@@ -14,13 +14,18 @@
 import java.net.Authenticator;
 import java.net.ProxySelector;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.net.proxy.IProxyService;
@@ -31,12 +36,14 @@
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubProgressMonitor;
-import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.RepositoryUtil;
+import org.eclipse.egit.core.internal.util.IndexSnapshot;
+import org.eclipse.egit.core.internal.util.ProjectUtil;
 import org.eclipse.egit.core.project.RepositoryMapping;
+import org.eclipse.egit.ui.internal.RepositoryChangeDetector;
 import org.eclipse.egit.ui.internal.credentials.EGitCredentialsProvider;
+import org.eclipse.egit.ui.internal.search.CommitIndex;
 import org.eclipse.egit.ui.internal.trace.GitTraceLocation;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
@@ -304,6 +311,16 @@ public static synchronized void broadcastPropertyChange(PropertyChangeEvent even
 	/**
 	 * Refresh projects in repositories that we suspect may have resource
 	 * changes.
+	 * <p>
+	 * The index of a changed repository is compared with the
+	 * {@link IndexSnapshot} taken by the previous refresh and only the
+	 * resources whose index entries changed are refreshed, e.g. an added file
+	 * is not refreshed at all if its modification time did not change. The
+	 * projects are refreshed completely if no snapshot exists yet or too many
+	 * entries changed. Each project is refreshed by its own job under the
+	 * refresh rule of the project. The default refresh rule is the workspace
+	 * root, so the jobs run one after another, but other jobs may run between
+	 * the refreshes of two projects.
 	 */
 	static class ResourceRefreshJob extends Job implements IndexChangedListener {
 
@@ -311,39 +328,58 @@ static class ResourceRefreshJob extends Job implements IndexChangedListener {
 			super(UIText.Activator_refreshJobName);
 		}
 
-		private Set<IProject> projectsToScan = new LinkedHashSet<IProject>();
+		private Set<Repository> repositoriesToScan = new LinkedHashSet<Repository>();
 		private Set<Repository> repositoriesChanged = new HashSet<Repository>();
+		// only accessed by the job
+		private Map<Repository, IndexSnapshot> indexSnapshots = new WeakHashMap<Repository, IndexSnapshot>();
 
 		@Override
 		protected IStatus run(IProgressMonitor monitor) {
 			IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
-			monitor.beginTask(UIText.Activator_refreshingProjects, projects.length);
+			monitor.beginTask(UIText.Activator_refreshingProjects, IProgressMonitor.UNKNOWN);
 
-			while (projectsToScan.size() > 0) {
-				IProject p;
-				synchronized (projectsToScan) {
-					if (projectsToScan.size() == 0)
+			while (!monitor.isCanceled()) {
+				Repository repository;
+				synchronized (repositoriesToScan) {
+					if (repositoriesToScan.isEmpty())
 						break;
-					Iterator<IProject> i = projectsToScan.iterator();
-					p = i.next();
+					Iterator<Repository> i = repositoriesToScan.iterator();
+					repository = i.next();
 					i.remove();
 				}
-				ISchedulingRule rule = p.getWorkspace().getRuleFactory().refreshRule(p);
-				try {
-					getJobManager().beginRule(rule, monitor);
-					if(p.exists()) // handle missing projects after branch switch
-						p.refreshLocal(IResource.DEPTH_INFINITE, new SubProgressMonitor(monitor, 1));
-				} catch (CoreException e) {
-					handleError(UIText.Activator_refreshFailed, e, false);
-					return new Status(IStatus.ERROR, getPluginId(), e.getMessage());
-				} finally {
-					getJobManager().endRule(rule);
+				Collection<String> paths = getChangedPaths(repository);
+				if (paths != null && paths.isEmpty())
+					continue;
+				for (IProject p : projects) {
+					RepositoryMapping mapping = RepositoryMapping.getMapping(p);
+					if (mapping != null
+							&& mapping.getRepository() == repository)
+						new ProjectRefreshJob(p, repository, paths).schedule();
 				}
 			}
 			monitor.done();
 			return Status.OK_STATUS;
 		}
 
+		/**
+		 * @return the paths whose index entries changed since the last call,
+		 *         or <code>null</code> if unknown
+		 */
+		private Collection<String> getChangedPaths(Repository repository) {
+			IndexSnapshot index;
+			try {
+				index = new IndexSnapshot(repository.readDirCache());
+			} catch (IOException e) {
+				indexSnapshots.remove(repository);
+				logError(UIText.Activator_refreshFailed, e);
+				return null;
+			}
+			IndexSnapshot previous = indexSnapshots.put(repository, index);
+			if (previous == null)
+				return null;
+			return previous.getChangedPaths(index);
+		}
+
 		public void onIndexChanged(IndexChangedEvent e) {
 			if (Activator.getDefault().getPreferenceStore()
 					.getBoolean(UIPreferences.REFESH_ON_INDEX_CHANGE))
@@ -351,14 +387,16 @@ public void onIndexChanged(IndexChangedEvent e) {
 		}
 
 		/**
-		 * Record which projects have changes. Initiate a resource refresh job
-		 * if the user settings allow it.
+		 * Record which repositories have changes. Initiate a resource refresh
+		 * job if the user settings allow it.
 		 *
 		 * @param e
 		 *            The {@link RepositoryEvent} that triggered this refresh
 		 */
 		private void mayTriggerRefresh(RepositoryEvent e) {
-			repositoriesChanged.add(e.getRepository());
+			synchronized (repositoriesChanged) {
+				repositoriesChanged.add(e.getRepository());
+			}
 			if (!Activator.getDefault().getPreferenceStore()
 					.getBoolean(UIPreferences.REFESH_ONLY_WHEN_ACTIVE)
 					|| isActive())
@@ -366,50 +404,109 @@ private void mayTriggerRefresh(RepositoryEvent e) {
 		}
 
 		/**
-		 * Figure which projects belong to a repository, add them to a set of
-		 * project to refresh and schedule the refresh as a job.
+		 * Add the changed repositories to the set of repositories to refresh
+		 * and schedule the refresh as a job.
 		 */
 		void triggerRefresh() {
 			if (GitTraceLocation.REPOSITORYCHANGESCANNER.isActive())
 				GitTraceLocation.getTrace().trace(
 						GitTraceLocation.REPOSITORYCHANGESCANNER.getLocation(),
 						"Triggered refresh"); //$NON-NLS-1$
-			IProject[] projects = ResourcesPlugin.getWorkspace().getRoot()
-					.getProjects();
-			Set<IProject> toRefresh = new HashSet<IProject>();
+			boolean scan;
 			synchronized (repositoriesChanged) {
-				for (IProject p : projects) {
-					RepositoryMapping mapping = RepositoryMapping.getMapping(p);
-					if (mapping != null
-							&& repositoriesChanged.contains(mapping
-									.getRepository())) {
-						toRefresh.add(p);
-					}
+				synchronized (repositoriesToScan) {
+					repositoriesToScan.addAll(repositoriesChanged);
+					scan = !repositoriesToScan.isEmpty();
 				}
 				repositoriesChanged.clear();
 			}
-			synchronized (projectsToScan) {
-				projectsToScan.addAll(toRefresh);
-			}
-			if (projectsToScan.size() > 0)
+			if (scan)
 				schedule();
 		}
+
+		/**
+		 * Refreshes the resources of a project at the changed paths, or the
+		 * whole project if the paths are unknown
+		 */
+		class ProjectRefreshJob extends Job {
+
+			private final IProject project;
+
+			private final Repository repository;
+
+			private final Collection<String> paths;
+
+			ProjectRefreshJob(IProject project, Repository repository,
+					Collection<String> paths) {
+				super(UIText.Activator_refreshJobName);
+				this.project = project;
+				this.repository = repository;
+				this.paths = paths;
+				setRule(project.getWorkspace().getRuleFactory()
+						.refreshRule(project));
+				setSystem(true);
+			}
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				// handle missing projects after branch switch
+				if (!project.exists())
+					return Status.OK_STATUS;
+				try {
+					if (paths != null)
+						ProjectUtil.refreshPaths(project, repository, paths,
+								monitor);
+					else
+						project.refreshLocal(IResource.DEPTH_INFINITE, monitor);
+				} catch (CoreException e) {
+					handleError(UIText.Activator_refreshFailed, e, false);
+					return new Status(IStatus.ERROR, getPluginId(), e.getMessage());
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				return family == ResourceRefreshJob.this;
+			}
+		}
 	}
 
 	/**
 	 * A Job that looks at the repository meta data and triggers a refresh of
 	 * the resources in the affected projects.
+	 * <p>
+	 * Every {@link #CHECK_INTERVAL} the stamps of a few files of each
+	 * repository are compared by a {@link RepositoryChangeDetector}. Once the
+	 * changes of a repository settled, i.e. no further change was detected in
+	 * the next check or the changes go on for {@link #MAX_CHANGE_DELAY}, the
+	 * repository is scanned which raises the jgit events. Changes within the
+	 * resolution of the modification time are detected by checking racy
+	 * stamps once more, see {@link RepositoryChangeDetector}. Only as a last
+	 * resort all repositories are scanned every {@link #REPO_SCAN_INTERVAL}.
 	 */
 	static class RepositoryChangeScanner extends Job {
 		RepositoryChangeScanner() {
 			super(UIText.Activator_repoScanJobName);
 		}
 
-		// FIXME, need to be more intelligent about this to avoid too much work
-		private static final long REPO_SCAN_INTERVAL = 10000L;
+		private static final long CHECK_INTERVAL = 1000L;
+
+		private static final long MAX_CHANGE_DELAY = 3000L;
+
+		private static final long REPO_SCAN_INTERVAL = 60000L;
+
 		// volatile in order to ensure thread synchronization
 		private volatile boolean doReschedule = true;
 
+		private final RepositoryChangeDetector detector = new RepositoryChangeDetector();
+
+		// the repositories with changes which were not scanned yet, and the
+		// time of their first change
+		private final Map<Repository, Long> pendingChanges = new HashMap<Repository, Long>();
+
+		private long lastFullScan = System.currentTimeMillis();
+
 		void setReschedule(boolean reschedule){
 			doReschedule = reschedule;
 		}
@@ -430,24 +527,35 @@ protected IStatus run(IProgressMonitor monitor) {
 				if (!isActive()) {
 					monitor.done();
 					if (doReschedule)
-						schedule(REPO_SCAN_INTERVAL);
+						schedule(CHECK_INTERVAL);
 					return Status.OK_STATUS;
 				}
 			}
 
+			long now = System.currentTimeMillis();
+			boolean fullScan = now - lastFullScan >= REPO_SCAN_INTERVAL;
+			if (fullScan)
+				lastFullScan = now;
+			detector.retain(repos);
+			pendingChanges.keySet().retainAll(Arrays.asList(repos));
+
 			monitor.beginTask(UIText.Activator_scanningRepositories,
 					repos.length);
 			try {
 				for (Repository repo : repos) {
 					if (monitor.isCanceled())
 						break;
-					if (GitTraceLocation.REPOSITORYCHANGESCANNER.isActive())
-						GitTraceLocation.getTrace().trace(
-								GitTraceLocation.REPOSITORYCHANGESCANNER
-										.getLocation(),
-								"Scanning " + repo + " for changes"); //$NON-NLS-1$ //$NON-NLS-2$
-
-					repo.scanForRepoChanges();
+					if (needsScan(repo, now) || fullScan) {
+						if (GitTraceLocation.REPOSITORYCHANGESCANNER.isActive())
+							GitTraceLocation.getTrace().trace(
+									GitTraceLocation.REPOSITORYCHANGESCANNER
+											.getLocation(),
+									"Scanning " + repo + " for changes"); //$NON-NLS-1$ //$NON-NLS-2$
+
+						repo.scanForRepoChanges();
+						// reloads the configuration if it changed
+						repo.getConfig();
+					}
 					monitor.worked(1);
 				}
 			} catch (IOException e) {
@@ -465,15 +573,32 @@ protected IStatus run(IProgressMonitor monitor) {
 						GitTraceLocation.REPOSITORYCHANGESCANNER.getLocation(),
 						"Rescheduling " + getName() + " job"); //$NON-NLS-1$ //$NON-NLS-2$
 			if (doReschedule)
-				schedule(REPO_SCAN_INTERVAL);
+				schedule(CHECK_INTERVAL);
 			return Status.OK_STATUS;
 		}
+
+		/**
+		 * @return whether the changes detected for the repository settled
+		 */
+		private boolean needsScan(Repository repo, long now) {
+			Long firstChange = pendingChanges.get(repo);
+			if (detector.check(repo) != 0) {
+				if (firstChange == null)
+					pendingChanges.put(repo, Long.valueOf(now));
+				else if (now - firstChange.longValue() >= MAX_CHANGE_DELAY) {
+					pendingChanges.remove(repo);
+					return true;
+				}
+				return false;
+			}
+			return pendingChanges.remove(repo) != null;
+		}
 	}
 
 	private void setupRepoChangeScanner() {
 		rcs = new RepositoryChangeScanner();
 		rcs.setSystem(true);
-		rcs.schedule(RepositoryChangeScanner.REPO_SCAN_INTERVAL);
+		rcs.schedule(RepositoryChangeScanner.CHECK_INTERVAL);
 	}
 
 	private void setupSSH(final BundleContext context) {
@@ -523,8 +648,13 @@ public void stop(final BundleContext context) throws Exception {
 					"Trying to cancel " + refreshJob.getName() + " job"); //$NON-NLS-1$ //$NON-NLS-2$
 		refreshJob.cancel();
 
+		Job.getJobManager().cancel(refreshJob);
+
 		rcs.join();
 		refreshJob.join();
+		Job.getJobManager().join(refreshJob, null);
+
+		CommitIndex.dispose();
 
 		if (GitTraceLocation.REPOSITORYCHANGESCANNER.isActive())
 			GitTraceLocation.getTrace().trace(
@@ -142,4 +142,14 @@ public class JobFamilies {
 	 * Stash git job
 	 */
 	public static final Object STASH = new Object();
+
+	/**
+	 * Branch state calculation for decorations
+	 */
+	public static final Object BRANCH_STATE = new Object();
+
+	/**
+	 * Commit index update
+	 */
+	public static final Object COMMIT_INDEX = new Object();
 }
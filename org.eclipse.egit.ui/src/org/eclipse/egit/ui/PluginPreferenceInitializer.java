@@ -87,11 +87,15 @@ public void initializeDefaultPreferences() {
 		store.setDefault(UIPreferences.SYNC_VIEW_ALWAYS_SHOW_CHANGESET_MODEL,
 				false);
 		store.setDefault(UIPreferences.SYNC_VIEW_FETCH_BEFORE_LAUNCH, true);
+		store.setDefault(UIPreferences.SYNC_VIEW_PREFETCH_COMMIT_CHANGES,
+				false);
 		store.setDefault(UIPreferences.DATE_FORMAT,
 				GitChangeSetLabelProvider.DEFAULT_DATE_FORMAT);
 		store.setDefault(UIPreferences.HISTORY_MAX_NUM_COMMITS, 10000);
+		store.setDefault(UIPreferences.HISTORY_LOAD_ON_DEMAND, false);
 		store.setDefault(UIPreferences.HISTORY_SHOW_TAG_SEQUENCE, false);
 		store.setDefault(UIPreferences.BLAME_IGNORE_WHITESPACE, false);
+		store.setDefault(UIPreferences.BLAME_CACHE_ON_DISK, true);
 		store.setDefault(UIPreferences.REMOTE_CONNECTION_TIMEOUT, 30 /* seconds */);
 		store.setDefault(UIPreferences.STAGING_VIEW_FILENAME_MODE, true);
 		store.setDefault(UIPreferences.CLONE_WIZARD_STORE_SECURESTORE, false);
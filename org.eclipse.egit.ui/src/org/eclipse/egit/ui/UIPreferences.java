@@ -129,6 +129,8 @@ public class UIPreferences {
 	/** */
 	public static final String SYNC_VIEW_FETCH_BEFORE_LAUNCH = "sync_view_fetch_before_launch"; //$NON-NLS-1$
 	/** */
+	public static final String SYNC_VIEW_PREFETCH_COMMIT_CHANGES = "sync_view_prefetch_commit_changes"; //$NON-NLS-1$
+	/** */
 	public final static String DATE_FORMAT = "date_format"; //$NON-NLS-1$
 	/** */
 	public static final String REFESH_ON_INDEX_CHANGE = "refesh_on_index_change"; //$NON-NLS-1$
@@ -153,6 +155,8 @@ public class UIPreferences {
 	/** */
 	public static final String HISTORY_MAX_NUM_COMMITS = "HistoryView_MaxNumberOfCommmits"; //$NON-NLS-1$
 	/** */
+	public static final String HISTORY_LOAD_ON_DEMAND = "HistoryView_LoadOnDemand"; //$NON-NLS-1$
+	/** */
 	public static final String HISTORY_MAX_TAG_LENGTH = "HistoryView_MaxTagLength"; //$NON-NLS-1$
 	/** */
 	public static final String HISTORY_MAX_BRANCH_LENGTH = "HistoryView_MaxBranchLength"; //$NON-NLS-1$
@@ -171,6 +175,8 @@ public class UIPreferences {
 	/** */
 	public static final String BLAME_IGNORE_WHITESPACE = "Blame_IgnoreWhitespace"; //$NON-NLS-1$
 	/** */
+	public static final String BLAME_CACHE_ON_DISK = "Blame_CacheOnDisk"; //$NON-NLS-1$
+	/** */
 	public static final String CLONE_WIZARD_STORE_SECURESTORE = "CloneWizard_StoreInSecureStore"; //$NON-NLS-1$
 	/** */
 	public static final String CLONE_WIZARD_IMPORT_PROJECTS = "CloneWizard_ImportProjects"; //$NON-NLS-1$
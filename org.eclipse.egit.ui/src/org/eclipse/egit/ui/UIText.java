@@ -363,6 +363,9 @@ public class UIText extends NLS {
 	/** */
 	public static String GitDocument_errorRefreshQuickdiff;
 
+	/** */
+	public static String GitDocument_populateJobName;
+
 	/** */
 	public static String GitDocument_errorResolveQuickdiff;
 
@@ -570,9 +573,15 @@ public class UIText extends NLS {
 	/** */
 	public static String GitPreferenceRoot_BlameIgnoreWhitespaceLabel;
 
+	/** */
+	public static String GitPreferenceRoot_BlameCacheOnDiskLabel;
+
 	/** */
 	public static String GitPreferenceRoot_fetchBeforeSynchronization;
 
+	/** */
+	public static String GitPreferenceRoot_prefetchCommitChanges;
+
 	/** */
 	public static String GitPreferenceRoot_CloningRepoGroupHeader;
 
@@ -1680,6 +1689,9 @@ public class UIText extends NLS {
 	/** */
 	public static String HistoryPreferencePage_MaxBranchLength;
 
+	/** */
+	public static String HistoryPreferencePage_LoadOnDemand;
+
 	/** */
 	public static String HistoryPreferencePage_MaxTagLength;
 
@@ -4294,6 +4306,15 @@ public class UIText extends NLS {
 	/** */
 	public static String DecoratableResourceHelper_noHead;
 
+	/** */
+	public static String BranchStateCache_jobName;
+
+	/** */
+	public static String CommitIndex_JobName;
+
+	/** */
+	public static String CommitIndex_ErrorUpdatingIndex;
+
 	/** */
 	public static String StagingView_UnstagedChanges;
 
@@ -4375,6 +4396,15 @@ public class UIText extends NLS {
 	/** */
 	public static String StagingViewContentProvider_SubmoduleError;
 
+	/** */
+	public static String StagingJob_StageJobName;
+
+	/** */
+	public static String StagingJob_UnstageJobName;
+
+	/** */
+	public static String StagingJob_IndexUpdateFailed;
+
 	/** */
 	public static String StashApplyCommand_applyFailed;
 
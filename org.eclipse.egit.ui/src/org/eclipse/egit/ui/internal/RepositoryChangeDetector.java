@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Detects changes of the meta data of repositories by comparing the
+ * modification time and length of a few files instead of reading the index
+ * and all references.
+ * <p>
+ * The index, {@code HEAD}, {@code packed-refs} and {@code config} files are
+ * compared, as well as the directories below {@code refs}. Loose references
+ * are written to a lock file which is renamed afterwards, so updating,
+ * creating or deleting a loose reference modifies its directory.
+ * <p>
+ * Like a jgit {@code FileSnapshot}, a stamp whose modification time is too
+ * close to the time it was taken is racy: the file may be written again
+ * within the granularity of the file system timestamps without changing its
+ * modification time or length. Unlike a {@code FileSnapshot}, which reports
+ * such a file as modified on every check, a racy stamp is checked once more
+ * after {@link #RACY_INTERVAL} and reported as modified only then.
+ */
+public class RepositoryChangeDetector {
+
+	/** The index changed */
+	public static final int INDEX = 1;
+
+	/** The references changed */
+	public static final int REFS = 2;
+
+	/** The configuration changed */
+	public static final int CONFIG = 4;
+
+	/**
+	 * Time in milliseconds after which a modification time can be trusted,
+	 * covers file systems with a timestamp resolution of 2 seconds
+	 */
+	static final long RACY_INTERVAL = 2500L;
+
+	private static class Stamp {
+
+		final long lastModified;
+
+		final long length;
+
+		final long taken;
+
+		Stamp(File file) {
+			taken = System.currentTimeMillis();
+			lastModified = file.lastModified();
+			length = file.length();
+		}
+
+		boolean isModified(File file) {
+			if (file.lastModified() != lastModified || file.length() != length)
+				return true;
+			// a racy stamp is taken again once, when the modification time
+			// of a later write would differ
+			return taken - lastModified < RACY_INTERVAL
+					&& System.currentTimeMillis() - taken >= RACY_INTERVAL;
+		}
+	}
+
+	private static class State {
+
+		final Map<File, Stamp> files = new HashMap<File, Stamp>();
+
+		final Map<File, Stamp> refDirectories = new HashMap<File, Stamp>();
+	}
+
+	private final Map<File, State> states = new HashMap<File, State>();
+
+	/**
+	 * Compares the files of the repository with the stamps taken by the
+	 * previous call. The first call for a repository only takes the stamps.
+	 *
+	 * @param repository
+	 * @return the changes, a combination of {@link #INDEX}, {@link #REFS} and
+	 *         {@link #CONFIG}
+	 */
+	public int check(Repository repository) {
+		File gitDir = repository.getDirectory();
+		State state = states.get(gitDir);
+		if (state == null) {
+			state = new State();
+			for (File file : getFiles(gitDir))
+				state.files.put(file, new Stamp(file));
+			addRefDirectories(state, new File(gitDir, Constants.R_REFS));
+			states.put(gitDir, state);
+			return 0;
+		}
+
+		int changes = 0;
+		for (Map.Entry<File, Stamp> file : state.files.entrySet())
+			if (file.getValue().isModified(file.getKey())) {
+				file.setValue(new Stamp(file.getKey()));
+				changes |= getChange(file.getKey().getName());
+			}
+		boolean refDirectoryChanged = false;
+		for (Map.Entry<File, Stamp> directory : state.refDirectories
+				.entrySet())
+			if (directory.getValue().isModified(directory.getKey())) {
+				directory.setValue(new Stamp(directory.getKey()));
+				refDirectoryChanged = true;
+			}
+		if (refDirectoryChanged) {
+			// directories may have been created or deleted
+			for (Iterator<File> it = state.refDirectories.keySet().iterator(); it
+					.hasNext();)
+				if (!it.next().isDirectory())
+					it.remove();
+			addRefDirectories(state, new File(gitDir, Constants.R_REFS));
+			changes |= REFS;
+		}
+		return changes;
+	}
+
+	/**
+	 * Forgets the stamps of all repositories which are not contained in
+	 * the given ones
+	 *
+	 * @param repositories
+	 */
+	public void retain(Repository[] repositories) {
+		Set<File> gitDirs = new HashSet<File>();
+		for (Repository repository : repositories)
+			gitDirs.add(repository.getDirectory());
+		states.keySet().retainAll(gitDirs);
+	}
+
+	private static File[] getFiles(File gitDir) {
+		return new File[] { new File(gitDir, "index"), //$NON-NLS-1$
+				new File(gitDir, Constants.HEAD),
+				new File(gitDir, Constants.PACKED_REFS),
+				new File(gitDir, Constants.CONFIG) };
+	}
+
+	private static int getChange(String fileName) {
+		if (fileName.equals(Constants.CONFIG))
+			return CONFIG;
+		if (fileName.equals("index")) //$NON-NLS-1$
+			return INDEX;
+		return REFS;
+	}
+
+	private static void addRefDirectories(State state, File directory) {
+		if (!state.refDirectories.containsKey(directory))
+			state.refDirectories.put(directory, new Stamp(directory));
+		File[] children = directory.listFiles();
+		if (children == null)
+			return;
+		for (File child : children)
+			if (child.isDirectory())
+				addRefDirectories(state, child);
+	}
+
+}
@@ -0,0 +1,557 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.blame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.egit.ui.Activator;
+import org.eclipse.egit.ui.UIPreferences;
+import org.eclipse.jgit.blame.BlameGenerator;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Bounded cache of blame results.
+ * <p>
+ * A result is the id of the commit which introduced each line of a file. It
+ * is cached per start commit, repository relative path and whitespace mode.
+ * If the file was blamed before at an older start commit reachable through a
+ * short chain of non-merge commits, only the changes of these commits are
+ * blamed on top of the older result instead of walking the whole history of
+ * the file again.
+ * <p>
+ * The results are kept in memory up to a total number of lines. If enabled in
+ * the preferences, they are also written to the state location of the UI
+ * plug-in so they survive evictions and restarts.
+ */
+class BlameCache {
+
+	/**
+	 * Informed about the progress of a blame
+	 */
+	interface Listener {
+
+		/**
+		 * Called when a region of lines got attributed. The regions of a full
+		 * blame are reported in the order they are found, starting with the
+		 * newest commits.
+		 *
+		 * @param lines
+		 *            the result being built, lines not attributed yet are
+		 *            {@code null}. The array is modified by later
+		 *            attributions.
+		 * @param start
+		 *            first line of the region
+		 * @param end
+		 *            line after the last line of the region
+		 * @throws IOException
+		 */
+		void linesAttributed(ObjectId[] lines, int start, int end)
+				throws IOException;
+	}
+
+	private static final int MAX_LINES = 1000 * 1000;
+
+	private static final int MAX_FILES = 1000;
+
+	private static final int MAX_INCREMENTAL_COMMITS = 100;
+
+	private static final int MAX_SPILLED_RESULTS = 200;
+
+	private static final int MAGIC = 0x45474243; // EGBC
+
+	private static final int VERSION = 1;
+
+	private static final String CACHE_FOLDER = "blamecache"; //$NON-NLS-1$
+
+	private static final String CACHE_EXTENSION = ".bin"; //$NON-NLS-1$
+
+	private static final BlameCache INSTANCE = new BlameCache();
+
+	private final Map<String, ObjectId[]> results = new LinkedHashMap<String, ObjectId[]>(
+			16, 0.75f, true);
+
+	private int lineCount;
+
+	/** start commit of the latest result per file and whitespace mode */
+	private final Map<String, ObjectId> latestStarts = new LinkedHashMap<String, ObjectId>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ObjectId> eldest) {
+			return size() > MAX_FILES;
+		}
+	};
+
+	/**
+	 * @return the cache shared by all blame operations
+	 */
+	static BlameCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param repository
+	 * @param start
+	 *            the commit to blame the file at
+	 * @param path
+	 *            repository relative path
+	 * @param ignoreWhitespace
+	 * @param listener
+	 *            informed about the regions attributed if the file has to be
+	 *            blamed fully, may be {@code null}
+	 * @return the id of the commit introducing each line of the file, or
+	 *         {@code null} if the start commit does not contain the path
+	 * @throws IOException
+	 */
+	ObjectId[] getBlame(Repository repository, AnyObjectId start, String path,
+			boolean ignoreWhitespace, Listener listener) throws IOException {
+		String fileKey = getFileKey(repository, path, ignoreWhitespace);
+		String key = start.name() + ' ' + fileKey;
+		ObjectId[] lines = get(key);
+		if (lines != null)
+			return lines;
+
+		ObjectId previous;
+		synchronized (latestStarts) {
+			previous = latestStarts.get(fileKey);
+		}
+		if (previous != null && !previous.equals(start)) {
+			ObjectId[] previousLines = get(previous.name() + ' ' + fileKey);
+			if (previousLines != null)
+				lines = blameIncrementally(repository, previous,
+						previousLines, start, path, ignoreWhitespace);
+		}
+		if (lines == null)
+			lines = blameFully(repository, start, path, ignoreWhitespace,
+					listener);
+		if (lines == null)
+			return null;
+
+		put(key, lines);
+		synchronized (latestStarts) {
+			latestStarts.put(fileKey, start.copy());
+		}
+		if (isSpillEnabled())
+			spill(key, lines);
+		return lines;
+	}
+
+	/**
+	 * Blames the file as it is in the working tree: the lines of the
+	 * {@code HEAD} blame which are unchanged in the working tree, or the index
+	 * if the file is missing in the working tree, are attributed to their
+	 * commits, all other lines to {@code null}.
+	 *
+	 * @param repository
+	 *            a non-bare repository
+	 * @param path
+	 *            repository relative path
+	 * @param ignoreWhitespace
+	 * @param listener
+	 *            informed about the regions attributed if the file has to be
+	 *            blamed fully, the lines are those of the working tree file,
+	 *            may be {@code null}
+	 * @return the id of the commit introducing each line of the file, or
+	 *         {@code null} if neither the working tree, index nor
+	 *         {@code HEAD} contain the path
+	 * @throws IOException
+	 */
+	ObjectId[] getWorkingTreeBlame(Repository repository, String path,
+			boolean ignoreWhitespace, final Listener listener)
+			throws IOException {
+		ObjectId head = repository.resolve(Constants.HEAD);
+		RawText headText = null;
+		if (head != null) {
+			RevWalk walk = new RevWalk(repository);
+			try {
+				headText = getText(repository, walk.parseCommit(head)
+						.getTree(), path);
+			} finally {
+				walk.release();
+			}
+		}
+
+		RawText text = null;
+		File file = new File(repository.getWorkTree(), path);
+		if (file.isFile())
+			text = new RawText(file);
+		else {
+			DirCacheEntry entry = repository.readDirCache().getEntry(path);
+			if (entry != null)
+				text = new RawText(repository.open(entry.getObjectId(),
+						Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+		}
+		if (headText == null)
+			return text != null ? new ObjectId[text.size()] : null;
+		if (text == null)
+			return getBlame(repository, head, path, ignoreWhitespace,
+					listener);
+
+		final int[] headLineNumbers = getOldLineNumbers(headText, text,
+				getComparator(ignoreWhitespace));
+		Listener headListener = null;
+		if (listener != null) {
+			final int[] lineNumbers = new int[headText.size()];
+			Arrays.fill(lineNumbers, -1);
+			for (int i = 0; i < headLineNumbers.length; i++)
+				if (headLineNumbers[i] >= 0)
+					lineNumbers[headLineNumbers[i]] = i;
+			final ObjectId[] lines = new ObjectId[text.size()];
+			headListener = new Listener() {
+				public void linesAttributed(ObjectId[] headLines, int start,
+						int end) throws IOException {
+					int first = -1;
+					int last = -1;
+					for (int i = start; i < end; i++) {
+						int line = lineNumbers[i];
+						if (line < 0)
+							continue;
+						lines[line] = headLines[i];
+						if (first < 0)
+							first = line;
+						last = line;
+					}
+					if (first >= 0)
+						listener.linesAttributed(lines, first, last + 1);
+				}
+			};
+		}
+		ObjectId[] headLines = getBlame(repository, head, path,
+				ignoreWhitespace, headListener);
+		return applyChanges(headLineNumbers, headLines, null);
+	}
+
+	private ObjectId[] blameIncrementally(Repository repository,
+			AnyObjectId previous, ObjectId[] previousLines, AnyObjectId start,
+			String path, boolean ignoreWhitespace) throws IOException {
+		RevWalk walk = new RevWalk(repository);
+		try {
+			// the commits between the previous start commit and the new one,
+			// newest first
+			List<RevCommit> commits = new ArrayList<RevCommit>();
+			RevCommit commit = walk.parseCommit(start);
+			while (!commit.equals(previous)) {
+				if (commit.getParentCount() != 1
+						|| commits.size() == MAX_INCREMENTAL_COMMITS)
+					return null;
+				commits.add(commit);
+				commit = walk.parseCommit(commit.getParent(0));
+			}
+
+			RawTextComparator comparator = getComparator(ignoreWhitespace);
+			ObjectId[] lines = previousLines;
+			ObjectId blobId = getBlobId(repository, commit.getTree(), path);
+			RawText text = null;
+			if (blobId == null)
+				return null;
+			for (int i = commits.size() - 1; i >= 0; i--) {
+				commit = commits.get(i);
+				ObjectId newBlobId = getBlobId(repository, commit.getTree(),
+						path);
+				if (newBlobId == null)
+					// deleted or renamed, let the blame follow the rename
+					return null;
+				if (newBlobId.equals(blobId))
+					continue;
+				if (text == null)
+					text = getText(repository, blobId);
+				RawText newText = getText(repository, newBlobId);
+				lines = applyChanges(
+						getOldLineNumbers(text, newText, comparator), lines,
+						commit.copy());
+				blobId = newBlobId;
+				text = newText;
+			}
+			return lines;
+		} finally {
+			walk.release();
+		}
+	}
+
+	/**
+	 * @param oldText
+	 * @param newText
+	 * @param comparator
+	 * @return the number of the unchanged line in {@code oldText} for each
+	 *         line of {@code newText}, or -1 for changed lines
+	 */
+	private static int[] getOldLineNumbers(RawText oldText, RawText newText,
+			RawTextComparator comparator) {
+		DiffAlgorithm diff = new HistogramDiff();
+		int[] lineNumbers = new int[newText.size()];
+		int a = 0;
+		int b = 0;
+		for (Edit edit : diff.diff(comparator, oldText, newText)) {
+			while (b < edit.getBeginB())
+				lineNumbers[b++] = a++;
+			while (b < edit.getEndB())
+				lineNumbers[b++] = -1;
+			a = edit.getEndA();
+		}
+		while (b < lineNumbers.length)
+			lineNumbers[b++] = a++;
+		return lineNumbers;
+	}
+
+	/**
+	 * @param oldLineNumbers
+	 *            see {@link #getOldLineNumbers}
+	 * @param oldLines
+	 *            the blame of the old text
+	 * @param commit
+	 *            the commit to attribute the changed lines to
+	 * @return the blame of the new text
+	 */
+	private static ObjectId[] applyChanges(int[] oldLineNumbers,
+			ObjectId[] oldLines, ObjectId commit) {
+		ObjectId[] lines = new ObjectId[oldLineNumbers.length];
+		for (int i = 0; i < lines.length; i++)
+			lines[i] = oldLineNumbers[i] >= 0 ? oldLines[oldLineNumbers[i]]
+					: commit;
+		return lines;
+	}
+
+	private static ObjectId[] blameFully(Repository repository,
+			AnyObjectId start, String path, boolean ignoreWhitespace,
+			Listener listener) throws IOException {
+		BlameGenerator generator = new BlameGenerator(repository, path);
+		try {
+			generator.setFollowFileRenames(true);
+			generator.setTextComparator(getComparator(ignoreWhitespace));
+			generator.push(null, start);
+			RawText contents = generator.getResultContents();
+			if (contents == null)
+				return null;
+			ObjectId[] lines = new ObjectId[contents.size()];
+			// share one id instance per commit
+			ObjectIdSubclassMap<ObjectId> ids = new ObjectIdSubclassMap<ObjectId>();
+			while (generator.next()) {
+				RevCommit commit = generator.getSourceCommit();
+				ObjectId id = ids.get(commit);
+				if (id == null) {
+					id = commit.copy();
+					ids.add(id);
+				}
+				int end = generator.getResultEnd();
+				for (int i = generator.getResultStart(); i < end; i++)
+					lines[i] = id;
+				if (listener != null)
+					listener.linesAttributed(lines,
+							generator.getResultStart(), end);
+			}
+			return lines;
+		} finally {
+			generator.release();
+		}
+	}
+
+	private static RawTextComparator getComparator(boolean ignoreWhitespace) {
+		return ignoreWhitespace ? RawTextComparator.WS_IGNORE_ALL
+				: RawTextComparator.DEFAULT;
+	}
+
+	private static ObjectId getBlobId(Repository repository,
+			AnyObjectId treeId, String path) throws IOException {
+		TreeWalk tw = TreeWalk.forPath(repository, path, treeId);
+		if (tw == null)
+			return null;
+		try {
+			return tw.getObjectId(0);
+		} finally {
+			tw.release();
+		}
+	}
+
+	private static RawText getText(Repository repository, AnyObjectId treeId,
+			String path) throws IOException {
+		ObjectId blobId = getBlobId(repository, treeId, path);
+		return blobId != null ? getText(repository, blobId) : null;
+	}
+
+	private static RawText getText(Repository repository, AnyObjectId blobId)
+			throws IOException {
+		return new RawText(repository.open(blobId, Constants.OBJ_BLOB)
+				.getCachedBytes(Integer.MAX_VALUE));
+	}
+
+	private static String getFileKey(Repository repository, String path,
+			boolean ignoreWhitespace) {
+		return repository.getDirectory().getAbsolutePath() + ' '
+				+ ignoreWhitespace + ' ' + path;
+	}
+
+	private ObjectId[] get(String key) {
+		synchronized (results) {
+			ObjectId[] lines = results.get(key);
+			if (lines != null)
+				return lines;
+		}
+		if (!isSpillEnabled())
+			return null;
+		ObjectId[] lines = null;
+		try {
+			lines = load(key);
+		} catch (IOException e) {
+			// recompute the blame
+		}
+		if (lines != null)
+			put(key, lines);
+		return lines;
+	}
+
+	private void put(String key, ObjectId[] lines) {
+		if (lines.length > MAX_LINES / 4)
+			// don't let a single huge file evict everything else
+			return;
+		synchronized (results) {
+			ObjectId[] old = results.put(key, lines);
+			if (old != null)
+				lineCount -= old.length;
+			lineCount += lines.length;
+			Iterator<ObjectId[]> it = results.values().iterator();
+			while (lineCount > MAX_LINES && it.hasNext()) {
+				lineCount -= it.next().length;
+				it.remove();
+			}
+		}
+	}
+
+	private static boolean isSpillEnabled() {
+		return Activator.getDefault().getPreferenceStore()
+				.getBoolean(UIPreferences.BLAME_CACHE_ON_DISK);
+	}
+
+	private static File getFolder() {
+		return Activator.getDefault().getStateLocation().append(CACHE_FOLDER)
+				.toFile();
+	}
+
+	private static File getFile(String key) {
+		return new File(getFolder(), Integer.toHexString(key.hashCode())
+				+ CACHE_EXTENSION);
+	}
+
+	private static ObjectId[] load(String key) throws IOException {
+		File file = getFile(key);
+		if (!file.isFile())
+			return null;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(new FileInputStream(file))));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			if (!key.equals(in.readUTF()))
+				return null;
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			ObjectId[] ids = new ObjectId[in.readInt()];
+			for (int i = 0; i < ids.length; i++) {
+				in.readFully(raw);
+				ids[i] = ObjectId.fromRaw(raw);
+			}
+			ObjectId[] lines = new ObjectId[in.readInt()];
+			for (int i = 0; i < lines.length; i++)
+				lines[i] = ids[in.readInt()];
+			return lines;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void spill(String key, ObjectId[] lines) {
+		try {
+			File folder = getFolder();
+			if (!folder.isDirectory() && !folder.mkdirs())
+				throw new IOException(folder.getPath());
+			File file = getFile(key);
+			File tmp = new File(folder, file.getName() + ".tmp"); //$NON-NLS-1$
+			List<ObjectId> ids = new ArrayList<ObjectId>();
+			Map<ObjectId, Integer> indexes = new HashMap<ObjectId, Integer>();
+			int[] lineIndexes = new int[lines.length];
+			for (int i = 0; i < lines.length; i++) {
+				Integer index = indexes.get(lines[i]);
+				if (index == null) {
+					index = Integer.valueOf(ids.size());
+					ids.add(lines[i]);
+					indexes.put(lines[i], index);
+				}
+				lineIndexes[i] = index.intValue();
+			}
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new DeflaterOutputStream(
+							new FileOutputStream(tmp))));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(key);
+				out.writeInt(ids.size());
+				for (ObjectId id : ids)
+					id.copyRawTo(out);
+				out.writeInt(lineIndexes.length);
+				for (int index : lineIndexes)
+					out.writeInt(index);
+			} finally {
+				out.close();
+			}
+			if (file.exists() && !file.delete())
+				throw new IOException(file.getPath());
+			if (!tmp.renameTo(file))
+				throw new IOException(tmp.getPath());
+			prune(folder);
+		} catch (IOException e) {
+			Activator.logError(e.getMessage(), e);
+		}
+	}
+
+	private static void prune(File folder) {
+		File[] files = folder.listFiles();
+		if (files == null || files.length <= MAX_SPILLED_RESULTS)
+			return;
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				long m1 = f1.lastModified();
+				long m2 = f2.lastModified();
+				return m1 < m2 ? -1 : m1 == m2 ? 0 : 1;
+			}
+		});
+		for (int i = 0; i < files.length - MAX_SPILLED_RESULTS; i++)
+			files[i].delete();
+	}
+
+}
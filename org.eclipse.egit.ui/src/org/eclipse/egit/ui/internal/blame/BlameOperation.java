@@ -11,6 +11,7 @@
 package org.eclipse.egit.ui.internal.blame;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +28,8 @@
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.UIPreferences;
 import org.eclipse.egit.ui.internal.history.HistoryPageInput;
+import org.eclipse.jface.text.ITextOperationTarget;
+import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.revisions.IRevisionRulerColumn;
 import org.eclipse.jface.text.revisions.IRevisionRulerColumnExtension;
 import org.eclipse.jface.text.revisions.RevisionInformation;
@@ -34,12 +37,12 @@
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
-import org.eclipse.jgit.api.BlameCommand;
-import org.eclipse.jgit.blame.BlameResult;
-import org.eclipse.jgit.diff.RawTextComparator;
 import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.team.ui.history.IHistoryView;
 import org.eclipse.team.ui.history.RevisionAnnotationController;
@@ -53,6 +56,10 @@
  */
 public class BlameOperation implements IEGitOperation {
 
+	private static final long UPDATE_INTERVAL = 1000;
+
+	private static final long VISIBLE_UPDATE_INTERVAL = 200;
+
 	private static class BlameHistoryPageInput extends HistoryPageInput
 			implements IAdaptable {
 
@@ -161,29 +168,134 @@ public BlameOperation(Repository repository, IStorage storage, String path,
 	}
 
 	public void execute(IProgressMonitor monitor) throws CoreException {
-		final RevisionInformation info = new RevisionInformation();
+		// open the editor right away and show the annotations while they are
+		// computed
+		final AbstractDecoratedTextEditor[] editor = new AbstractDecoratedTextEditor[1];
+		final int[] visibleLines = new int[] { 0, Integer.MAX_VALUE };
+		shell.getDisplay().syncExec(new Runnable() {
+			public void run() {
+				editor[0] = openEditor();
+				ITextOperationTarget target = editor[0] != null ? AdapterUtils
+						.adapt(editor[0], ITextOperationTarget.class) : null;
+				if (target instanceof ITextViewer) {
+					visibleLines[0] = ((ITextViewer) target).getTopIndex();
+					visibleLines[1] = ((ITextViewer) target).getBottomIndex();
+				}
+			}
+		});
+		if (editor[0] == null)
+			return;
+
+		boolean ignoreWhitespace = Activator.getDefault().getPreferenceStore()
+				.getBoolean(UIPreferences.BLAME_IGNORE_WHITESPACE);
+		BlameCache cache = BlameCache.getInstance();
+		RevWalk walk = new RevWalk(repository);
+		monitor.beginTask("", IProgressMonitor.UNKNOWN); //$NON-NLS-1$
+		try {
+			RevisionPublisher publisher = new RevisionPublisher(editor[0],
+					walk, visibleLines[0], visibleLines[1]);
+			ObjectId[] lines;
+			if (startCommit != null)
+				lines = cache.getBlame(repository, startCommit, path,
+						ignoreWhitespace, publisher);
+			else if (!repository.isBare())
+				lines = cache.getWorkingTreeBlame(repository, path,
+						ignoreWhitespace, publisher);
+			else {
+				ObjectId head = repository.resolve(Constants.HEAD);
+				lines = head != null ? cache.getBlame(repository, head, path,
+						ignoreWhitespace, publisher) : null;
+			}
+			if (lines != null)
+				publisher.publish(lines);
+		} catch (IOException e) {
+			throw new CoreException(Activator.createErrorStatus(e.getMessage(),
+					e));
+		} finally {
+			walk.release();
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Shows the annotations of the lines attributed so far. The annotations
+	 * are updated at most once per {@link #UPDATE_INTERVAL}, or once per
+	 * {@link #VISIBLE_UPDATE_INTERVAL} if lines visible in the editor got
+	 * attributed.
+	 */
+	private class RevisionPublisher implements BlameCache.Listener {
+
+		private final AbstractDecoratedTextEditor editor;
+
+		private final RevWalk walk;
+
+		private final int firstVisibleLine;
+
+		private final int lastVisibleLine;
+
+		private long lastUpdate;
+
+		private boolean visibleLinesAttributed;
+
+		private boolean shown;
+
+		private RevisionPublisher(AbstractDecoratedTextEditor editor,
+				RevWalk walk, int firstVisibleLine, int lastVisibleLine) {
+			this.editor = editor;
+			this.walk = walk;
+			this.firstVisibleLine = firstVisibleLine;
+			this.lastVisibleLine = lastVisibleLine;
+		}
+
+		public void linesAttributed(ObjectId[] lines, int start, int end)
+				throws IOException {
+			if (start <= lastVisibleLine && end > firstVisibleLine)
+				visibleLinesAttributed = true;
+			long now = System.currentTimeMillis();
+			long interval = visibleLinesAttributed ? VISIBLE_UPDATE_INTERVAL
+					: UPDATE_INTERVAL;
+			if (now - lastUpdate < interval)
+				return;
+			lastUpdate = now;
+			visibleLinesAttributed = false;
+			publish(lines.clone());
+		}
+
+		/**
+		 * @param lines
+		 *            attributed lines, not modified anymore
+		 * @throws IOException
+		 */
+		void publish(ObjectId[] lines) throws IOException {
+			final RevisionInformation info = createRevisionInformation(lines,
+					walk);
+			shell.getDisplay().asyncExec(new Runnable() {
+				public void run() {
+					// the editor may have been closed in the meantime
+					if (editor.getDocumentProvider() == null)
+						return;
+					editor.showRevisionInformation(info,
+							"org.eclipse.egit.ui.internal.decorators.GitQuickDiffProvider"); //$NON-NLS-1$
+					if (!shown) {
+						shown = true;
+						addRevisionSelectionHandler(editor);
+					}
+				}
+			});
+		}
+	}
+
+	private RevisionInformation createRevisionInformation(ObjectId[] lines,
+			RevWalk walk) throws IOException {
+		RevisionInformation info = new RevisionInformation();
 		info.setHoverControlCreator(new BlameInformationControlCreator(false));
 		info.setInformationPresenterControlCreator(new BlameInformationControlCreator(
 				true));
 
-		final BlameCommand command = new BlameCommand(repository)
-				.setFollowFileRenames(true).setFilePath(path);
-		if (startCommit != null)
-			command.setStartCommit(startCommit);
-		if (Activator.getDefault().getPreferenceStore()
-				.getBoolean(UIPreferences.BLAME_IGNORE_WHITESPACE))
-			command.setTextComparator(RawTextComparator.WS_IGNORE_ALL);
-
-		final BlameResult result = command.call();
-		if (result == null)
-			return;
-
-		Map<RevCommit, BlameRevision> revisions = new HashMap<RevCommit, BlameRevision>();
-		int lineCount = result.getResultContents().size();
-		monitor.beginTask("", lineCount); //$NON-NLS-1$
+		Map<ObjectId, BlameRevision> revisions = new HashMap<ObjectId, BlameRevision>();
 		BlameRevision previous = null;
-		for (int i = 0; i < lineCount; i++) {
-			RevCommit commit = result.getSourceCommit(i);
+		for (int i = 0; i < lines.length; i++) {
+			ObjectId commit = lines[i];
 			if (commit == null) {
 				// Unregister the current revision
 				if (previous != null) {
@@ -196,7 +308,7 @@ public void execute(IProgressMonitor monitor) throws CoreException {
 			if (revision == null) {
 				revision = new BlameRevision();
 				revision.setRepository(repository);
-				revision.setCommit(commit);
+				revision.setCommit(walk.parseCommit(commit));
 				revisions.put(commit, revision);
 				info.addRevision(revision);
 			}
@@ -209,19 +321,13 @@ public void execute(IProgressMonitor monitor) throws CoreException {
 				}
 			else
 				previous = revision.reset(i);
-			monitor.worked(1);
 		}
 		if (previous != null)
 			previous.register();
-
-		shell.getDisplay().asyncExec(new Runnable() {
-			public void run() {
-				openEditor(info);
-			}
-		});
+		return info;
 	}
 
-	private void openEditor(final RevisionInformation info) {
+	private AbstractDecoratedTextEditor openEditor() {
 		AbstractDecoratedTextEditor editor;
 		try {
 			if (storage instanceof IFile)
@@ -233,10 +339,10 @@ private void openEditor(final RevisionInformation info) {
 		} catch (PartInitException e) {
 			Activator.handleError("Error displaying blame annotations", e, //$NON-NLS-1$
 					false);
-			return;
+			return null;
 		}
 		if (editor == null)
-			return;
+			return null;
 
 		// Show history view for path
 		try {
@@ -256,10 +362,10 @@ else if (!repository.isBare())
 			Activator.handleError("Error displaying blame annotations", e, //$NON-NLS-1$
 					false);
 		}
+		return editor;
+	}
 
-		editor.showRevisionInformation(info,
-				"org.eclipse.egit.ui.internal.decorators.GitQuickDiffProvider"); //$NON-NLS-1$
-
+	private void addRevisionSelectionHandler(AbstractDecoratedTextEditor editor) {
 		IRevisionRulerColumn revisionRuler = AdapterUtils.adapt(editor,
 				IRevisionRulerColumn.class);
 		if (revisionRuler instanceof IRevisionRulerColumnExtension)
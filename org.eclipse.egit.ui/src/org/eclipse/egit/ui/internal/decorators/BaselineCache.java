@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.decorators;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Bounded LRU caches for the quick diff baselines of all open editors.
+ * <p>
+ * The blob ids are cached per tree and path, the decoded texts per blob and
+ * charset. The text cache is bounded by the total number of characters.
+ */
+class BaselineCache {
+
+	private static final int MAX_BLOB_IDS = 1000;
+
+	private static final int MAX_TEXT_CHARS = 8 * 1024 * 1024;
+
+	private static final BaselineCache INSTANCE = new BaselineCache();
+
+	private final Map<String, ObjectId> blobIds = new LinkedHashMap<String, ObjectId>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ObjectId> eldest) {
+			return size() > MAX_BLOB_IDS;
+		}
+	};
+
+	private final Map<String, String> texts = new LinkedHashMap<String, String>(
+			16, 0.75f, true);
+
+	private int textChars;
+
+	/**
+	 * @return the cache shared by all quick diff documents
+	 */
+	static BaselineCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param repository
+	 * @param treeId
+	 * @param path
+	 *            repository relative path
+	 * @return the id of the blob at {@code path} in the given tree, or
+	 *         {@code null} if the tree does not contain the path
+	 * @throws IOException
+	 */
+	ObjectId getBlobId(Repository repository, AnyObjectId treeId, String path)
+			throws IOException {
+		String key = treeId.name() + ' ' + path;
+		synchronized (blobIds) {
+			if (blobIds.containsKey(key))
+				return blobIds.get(key);
+		}
+		ObjectId id = null;
+		TreeWalk tw = TreeWalk.forPath(repository, path, treeId);
+		if (tw != null)
+			try {
+				id = tw.getObjectId(0);
+			} finally {
+				tw.release();
+			}
+		synchronized (blobIds) {
+			blobIds.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @param repository
+	 * @param blobId
+	 * @param charset
+	 * @return the content of the blob decoded with the given charset
+	 * @throws IOException
+	 */
+	String getText(Repository repository, AnyObjectId blobId, String charset)
+			throws IOException {
+		String key = blobId.name() + ' ' + charset;
+		synchronized (texts) {
+			String text = texts.get(key);
+			if (text != null)
+				return text;
+		}
+		ObjectLoader loader = repository.open(blobId, Constants.OBJ_BLOB);
+		String text = new String(loader.getBytes(), charset);
+		if (text.length() > MAX_TEXT_CHARS / 4)
+			// don't let a single huge file evict everything else
+			return text;
+		synchronized (texts) {
+			String old = texts.put(key, text);
+			if (old != null)
+				textChars -= old.length();
+			textChars += text.length();
+			Iterator<String> it = texts.values().iterator();
+			while (textChars > MAX_TEXT_CHARS && it.hasNext()) {
+				textChars -= it.next().length();
+				it.remove();
+			}
+		}
+		return text;
+	}
+
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.decorators;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.ui.Activator;
+import org.eclipse.egit.ui.JobFamilies;
+import org.eclipse.egit.ui.UIText;
+import org.eclipse.jgit.events.IndexChangedEvent;
+import org.eclipse.jgit.events.IndexChangedListener;
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Caches the branch and tracking status shown in the decorations of
+ * repositories.
+ * <p>
+ * Calculating the tracking status walks the commits of the current branch and
+ * its upstream branch, so it must not be done on the decorator thread for
+ * every decorated resource. The state of a repository is calculated by a
+ * background job on first access and whenever refs or the index of the
+ * repository change. Until the new state is calculated the previous one is
+ * returned.
+ */
+class BranchStateCache {
+
+	private static final long DELAY = 100L;
+
+	private static BranchStateCache instance;
+
+	/**
+	 * The calculated state of a repository
+	 */
+	static class BranchState {
+
+		private final String branch;
+
+		private final String branchStatus;
+
+		BranchState(String branch, String branchStatus) {
+			this.branch = branch;
+			this.branchStatus = branchStatus;
+		}
+
+		/**
+		 * @return the short branch name or the description of the detached
+		 *         HEAD
+		 */
+		String getBranch() {
+			return branch;
+		}
+
+		/**
+		 * @return the formatted tracking status or {@code null} if the branch
+		 *         is not ahead or behind its upstream branch
+		 */
+		String getBranchStatus() {
+			return branchStatus;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BranchState))
+				return false;
+			BranchState other = (BranchState) obj;
+			return equal(branch, other.branch)
+					&& equal(branchStatus, other.branchStatus);
+		}
+
+		@Override
+		public int hashCode() {
+			return (branch == null ? 0 : branch.hashCode()) * 31
+					+ (branchStatus == null ? 0 : branchStatus.hashCode());
+		}
+
+		private static boolean equal(String s1, String s2) {
+			return s1 == null ? s2 == null : s1.equals(s2);
+		}
+	}
+
+	private final Map<Repository, BranchState> states = new WeakHashMap<Repository, BranchState>();
+
+	// repositories whose state must be calculated, in order of invalidation
+	private final Set<Repository> outdated = new LinkedHashSet<Repository>();
+
+	private final ListenerHandle refsChangedHandle;
+
+	private final ListenerHandle indexChangedHandle;
+
+	private final Job job;
+
+	/**
+	 * @return the shared instance
+	 */
+	static synchronized BranchStateCache getInstance() {
+		if (instance == null)
+			instance = new BranchStateCache();
+		return instance;
+	}
+
+	/**
+	 * Removes the listeners of the shared instance
+	 */
+	static synchronized void dispose() {
+		if (instance != null) {
+			instance.refsChangedHandle.remove();
+			instance.indexChangedHandle.remove();
+			instance.job.cancel();
+			instance = null;
+		}
+	}
+
+	private BranchStateCache() {
+		job = new Job(UIText.BranchStateCache_jobName) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				return calculateOutdatedStates(monitor);
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				if (family.equals(JobFamilies.BRANCH_STATE))
+					return true;
+				return super.belongsTo(family);
+			}
+		};
+		job.setSystem(true);
+		refsChangedHandle = Repository.getGlobalListenerList()
+				.addRefsChangedListener(new RefsChangedListener() {
+					public void onRefsChanged(RefsChangedEvent event) {
+						invalidate(event.getRepository());
+					}
+				});
+		// the repository state shown together with the branch changes with
+		// the index, e.g. when a merge is started or finished
+		indexChangedHandle = Repository.getGlobalListenerList()
+				.addIndexChangedListener(new IndexChangedListener() {
+					public void onIndexChanged(IndexChangedEvent event) {
+						invalidate(event.getRepository());
+					}
+				});
+	}
+
+	/**
+	 * Returns the cached state without calculating it. If there is no state
+	 * for the repository yet, its calculation is scheduled.
+	 *
+	 * @param repository
+	 * @return the state of the repository or {@code null} if it was not
+	 *         calculated yet
+	 */
+	BranchState getState(Repository repository) {
+		synchronized (states) {
+			BranchState state = states.get(repository);
+			if (state == null && !outdated.contains(repository)) {
+				outdated.add(repository);
+				job.schedule(DELAY);
+			}
+			return state;
+		}
+	}
+
+	private void invalidate(Repository repository) {
+		synchronized (states) {
+			// only repositories which were decorated before are of interest
+			if (!states.containsKey(repository))
+				return;
+			outdated.add(repository);
+		}
+		job.schedule(DELAY);
+	}
+
+	private IStatus calculateOutdatedStates(IProgressMonitor monitor) {
+		boolean changed = false;
+		while (!monitor.isCanceled()) {
+			Repository repository;
+			synchronized (states) {
+				if (outdated.isEmpty())
+					break;
+				repository = outdated.iterator().next();
+				outdated.remove(repository);
+			}
+			BranchState state;
+			try {
+				state = new BranchState(
+						DecoratableResourceHelper.getShortBranch(repository),
+						DecoratableResourceHelper.getBranchStatus(repository));
+			} catch (IOException e) {
+				Activator.logError(UIText.Decorator_exceptionMessage, e);
+				// don't retry on every decoration
+				state = new BranchState(null, null);
+			}
+			synchronized (states) {
+				BranchState oldState = states.put(repository, state);
+				if (!state.equals(oldState))
+					changed = true;
+			}
+		}
+		if (changed)
+			GitLightweightDecorator.refresh();
+		if (monitor.isCanceled())
+			return Status.CANCEL_STATUS;
+		return Status.OK_STATUS;
+	}
+
+}
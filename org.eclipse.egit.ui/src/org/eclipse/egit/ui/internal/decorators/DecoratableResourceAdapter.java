@@ -18,13 +18,12 @@
 
 import static org.eclipse.jgit.lib.Repository.stripWorkDir;
 
-import java.io.IOException;
-import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
 import org.eclipse.egit.core.project.RepositoryMapping;
+import org.eclipse.egit.ui.internal.decorators.BranchStateCache.BranchState;
 import org.eclipse.egit.ui.internal.trace.GitTraceLocation;
 import org.eclipse.jgit.lib.Repository;
 
@@ -38,8 +37,7 @@ class DecoratableResourceAdapter extends DecoratableResource {
 
 	private IndexDiffData indexDiffData;
 
-	public DecoratableResourceAdapter(IndexDiffData indexDiffData, IResource resourceToWrap)
-			throws IOException {
+	public DecoratableResourceAdapter(IndexDiffData indexDiffData, IResource resourceToWrap) {
 		super(resourceToWrap);
 		this.indexDiffData = indexDiffData;
 		trace = GitTraceLocation.DECORATION.isActive();
@@ -61,8 +59,14 @@ public DecoratableResourceAdapter(IndexDiffData indexDiffData, IResource resourc
 				return;
 			repositoryName = DecoratableResourceHelper
 					.getRepositoryName(repository);
-			branch = DecoratableResourceHelper.getShortBranch(repository);
-			branchStatus = DecoratableResourceHelper.getBranchStatus(repository);
+			// the branch state is calculated in the background, never walk
+			// commits while decorating
+			BranchState branchState = BranchStateCache.getInstance()
+					.getState(repository);
+			if (branchState != null) {
+				branch = branchState.getBranch();
+				branchStatus = branchState.getBranchStatus();
+			}
 			switch (resource.getType()) {
 			case IResource.FILE:
 				extractResourceProperties();
@@ -92,9 +96,8 @@ private void extractResourceProperties() {
 		String repoRelativePath = makeRepoRelative(resource);
 
 		// ignored
-		Set<String> ignoredFiles = indexDiffData.getIgnoredNotInIndex();
-		ignored = ignoredFiles.contains(repoRelativePath)
-				|| containsPrefixPath(ignoredFiles, repoRelativePath);
+		ignored = indexDiffData.getIgnoredPathIndex().containsPathOrParent(
+				repoRelativePath);
 		Set<String> untracked = indexDiffData.getUntracked();
 		tracked = !untracked.contains(repoRelativePath) && !ignored;
 
@@ -122,34 +125,32 @@ else if (changed.contains(repoRelativePath)) // changed and added into index
 	private void extractContainerProperties() {
 		String repoRelativePath = makeRepoRelative(resource) + "/"; //$NON-NLS-1$
 
-		Set<String> ignoredFiles = indexDiffData.getIgnoredNotInIndex();
-		Set<String> untrackedFolders = indexDiffData.getUntrackedFolders();
-		ignored = containsPrefixPath(ignoredFiles, repoRelativePath);
+		ignored = indexDiffData.getIgnoredPathIndex().containsPathOrParent(
+				repoRelativePath);
 
 		if (ignored)
 			tracked = false;
 		else
-			tracked = !containsPrefixPath(untrackedFolders, repoRelativePath);
+			tracked = !indexDiffData.getUntrackedFoldersPathIndex()
+					.containsPathOrParent(repoRelativePath);
 
 		// containers are marked as staged whenever file was added, removed or
 		// changed
-		Set<String> changed = new HashSet<String>(indexDiffData.getChanged());
-		changed.addAll(indexDiffData.getAdded());
-		changed.addAll(indexDiffData.getRemoved());
-		if (containsPrefix(changed, repoRelativePath))
+		if (indexDiffData.getStagedPathIndex().containsPathUnder(
+				repoRelativePath))
 			staged = Staged.MODIFIED;
 		else
 			staged = Staged.NOT_STAGED;
 
 		// conflicting
-		Set<String> conflicting = indexDiffData.getConflicting();
-		conflicts = containsPrefix(conflicting, repoRelativePath);
+		conflicts = indexDiffData.getConflictingPathIndex().containsPathUnder(
+				repoRelativePath);
 
 		// locally modified / untracked
-		Set<String> modified = indexDiffData.getModified();
-		Set<String> untracked = indexDiffData.getUntracked();
-		dirty = containsPrefix(modified, repoRelativePath)
-				|| containsPrefix(untracked, repoRelativePath);
+		dirty = indexDiffData.getModifiedPathIndex().containsPathUnder(
+				repoRelativePath)
+				|| indexDiffData.getUntrackedPathIndex().containsPathUnder(
+						repoRelativePath);
 	}
 
 	private String makeRepoRelative(IResource res) {
@@ -157,29 +158,4 @@ private String makeRepoRelative(IResource res) {
 				.toFile());
 	}
 
-	private boolean containsPrefix(Set<String> collection, String prefix) {
-		// when prefix is empty we are handling repository root, therefore we
-		// should return true whenever collection isn't empty
-		if (prefix.length() == 1 && !collection.isEmpty())
-			return true;
-
-		for (String path : collection)
-			if (path.startsWith(prefix))
-				return true;
-		return false;
-	}
-
-	private boolean containsPrefixPath(Set<String> collection, String path) {
-		for (String entry : collection) {
-			String entryPath;
-			if (entry.endsWith("/")) //$NON-NLS-1$
-				entryPath = entry;
-			else
-				entryPath = entry + "/"; //$NON-NLS-1$
-			if (path.startsWith(entryPath))
-				return true;
-		}
-		return false;
-	}
-
 }
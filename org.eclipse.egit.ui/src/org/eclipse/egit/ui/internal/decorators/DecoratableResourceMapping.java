@@ -11,8 +11,6 @@
 
 import static org.eclipse.jgit.lib.Repository.stripWorkDir;
 
-import java.util.Set;
-
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.mapping.ResourceMapping;
@@ -66,14 +64,11 @@ public DecoratableResourceMapping(ResourceMapping mapping) {
 
 			String repoRelative = makeRepoRelative(repoMapping.getRepository(), prj) + "/"; //$NON-NLS-1$
 
-			Set<String> modified = diffData.getModified();
-			Set<String> conflicting = diffData.getConflicting();
-
 			// attention - never reset these to false (so don't use the return value of the methods!)
-			if(containsPrefix(modified, repoRelative))
+			if(diffData.getModifiedPathIndex().containsPathUnder(repoRelative))
 				dirty = true;
 
-			if(containsPrefix(conflicting, repoRelative))
+			if(diffData.getConflictingPathIndex().containsPathUnder(repoRelative))
 				conflicts = true;
 		}
 	}
@@ -97,16 +92,4 @@ private String makeRepoRelative(Repository repository, IResource res) {
 		return stripWorkDir(repository.getWorkTree(), res.getLocation()
 				.toFile());
 	}
-
-	private boolean containsPrefix(Set<String> collection, String prefix) {
-		// when prefix is empty we are handling repository root, therefore we
-		// should return true whenever collection isn't empty
-		if (prefix.length() == 1 && !collection.isEmpty())
-			return true;
-
-		for (String path : collection)
-			if (path.startsWith(prefix))
-				return true;
-		return false;
-	}
 }
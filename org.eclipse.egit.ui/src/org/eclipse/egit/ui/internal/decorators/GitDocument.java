@@ -14,6 +14,10 @@
 import java.util.WeakHashMap;
 
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.GitProvider;
 import org.eclipse.egit.core.internal.CompareCoreUtils;
 import org.eclipse.egit.core.project.RepositoryMapping;
@@ -27,27 +31,27 @@
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.team.core.RepositoryProvider;
 
 class GitDocument extends Document implements RefsChangedListener {
 	private final IResource resource;
 
-	private ObjectId lastCommit;
+	private volatile ObjectId lastCommit;
 
-	private ObjectId lastTree;
+	private volatile ObjectId lastTree;
 
-	private ObjectId lastBlob;
+	private volatile ObjectId lastBlob;
+
+	private Job populateJob;
 
 	private ListenerHandle myRefsChangedHandle;
 
-	private boolean disposed;
+	private volatile boolean disposed;
 
 	static Map<GitDocument, Repository> doc2repo = new WeakHashMap<GitDocument, Repository>();
 
@@ -95,27 +99,63 @@ else if (GitTraceLocation.QUICKDIFF.isActive())
 	}
 
 	void populate() throws IOException {
+		Baseline baseline = resolve();
+		if (baseline != null)
+			baseline.apply();
+	}
+
+	/**
+	 * The resolved baseline of the document
+	 */
+	private class Baseline {
+
+		private final AnyObjectId commit;
+
+		private final AnyObjectId tree;
+
+		private final AnyObjectId blob;
+
+		private final String value;
+
+		Baseline(AnyObjectId commit, AnyObjectId tree, AnyObjectId blob,
+				String value) {
+			this.commit = commit;
+			this.tree = tree;
+			this.blob = blob;
+			this.value = value;
+		}
+
+		void apply() {
+			if (!disposed)
+				setResolved(commit, tree, blob, value);
+		}
+	}
+
+	/**
+	 * Resolves the baseline without changing the document. This may be called
+	 * from any thread.
+	 *
+	 * @return the new baseline or {@code null} if the document is already up
+	 *         to date
+	 * @throws IOException
+	 */
+	private Baseline resolve() throws IOException {
 		if (GitTraceLocation.QUICKDIFF.isActive())
 			GitTraceLocation.getTrace().traceEntry(
 					GitTraceLocation.QUICKDIFF.getLocation(), resource);
 
 		// Do not populate if already disposed
 		if (disposed)
-			return;
+			return null;
 
-		TreeWalk tw = null;
 		RevWalk rw = null;
 		try {
 			RepositoryMapping mapping = RepositoryMapping.getMapping(resource);
-			if (mapping == null) {
-				setResolved(null, null, null, ""); //$NON-NLS-1$
-				return;
-			}
+			if (mapping == null)
+				return new Baseline(null, null, null, ""); //$NON-NLS-1$
 			final String gitPath = mapping.getRepoRelativePath(resource);
-			if (gitPath == null) {
-				setResolved(null, null, null, ""); //$NON-NLS-1$
-				return;
-			}
+			if (gitPath == null)
+				return new Baseline(null, null, null, ""); //$NON-NLS-1$
 			final Repository repository = mapping.getRepository();
 			String baseline = GitQuickDiffProvider.baseline.get(repository);
 			if (baseline == null)
@@ -127,7 +167,7 @@ void populate() throws IOException {
 						GitTraceLocation.getTrace().trace(
 								GitTraceLocation.QUICKDIFF.getLocation(),
 								"(GitDocument) already resolved"); //$NON-NLS-1$
-					return;
+					return null;
 				}
 			} else {
 				if (repository.getRef(Constants.HEAD) == null) {
@@ -136,8 +176,7 @@ void populate() throws IOException {
 							new Object[] { baseline, resource, repository });
 					Activator.logError(msg, new Throwable());
 				}
-				setResolved(null, null, null, ""); //$NON-NLS-1$
-				return;
+				return new Baseline(null, null, null, ""); //$NON-NLS-1$
 			}
 			rw = new RevWalk(repository);
 			RevCommit baselineCommit;
@@ -148,8 +187,7 @@ void populate() throws IOException {
 						.bind(UIText.GitDocument_errorLoadCommit, new Object[] {
 								commitId, baseline, resource, repository });
 				Activator.logError(msg, err);
-				setResolved(null, null, null, ""); //$NON-NLS-1$
-				return;
+				return new Baseline(null, null, null, ""); //$NON-NLS-1$
 			}
 			RevTree treeId = baselineCommit.getTree();
 			if (treeId.equals(lastTree)) {
@@ -157,57 +195,51 @@ void populate() throws IOException {
 					GitTraceLocation.getTrace().trace(
 							GitTraceLocation.QUICKDIFF.getLocation(),
 							"(GitDocument) already resolved"); //$NON-NLS-1$
-				return;
+				return null;
 			}
 
-			tw = TreeWalk.forPath(repository, gitPath, treeId);
-			if (tw == null) {
+			BaselineCache cache = BaselineCache.getInstance();
+			ObjectId id = cache.getBlobId(repository, treeId, gitPath);
+			if (id == null) {
 				if (GitTraceLocation.QUICKDIFF.isActive())
 					GitTraceLocation
 							.getTrace()
 							.trace(
 									GitTraceLocation.QUICKDIFF.getLocation(),
 									"(GitDocument) resource " + resource + " not found in " + treeId + " in " + repository + ", baseline=" + baseline); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-				setResolved(null, null, null, ""); //$NON-NLS-1$
-				return;
+				return new Baseline(null, null, null, ""); //$NON-NLS-1$
 			}
-			ObjectId id = tw.getObjectId(0);
 			if (id.equals(ObjectId.zeroId())) {
-				setResolved(null, null, null, ""); //$NON-NLS-1$
 				String msg = NLS
 						.bind(UIText.GitDocument_errorLoadTree, new Object[] {
 								treeId.getName(), baseline, resource, repository });
 				Activator.logError(msg, new Throwable());
-				setResolved(null, null, null, ""); //$NON-NLS-1$
-				return;
+				return new Baseline(null, null, null, ""); //$NON-NLS-1$
 			}
 			if (!id.equals(lastBlob)) {
 				if (GitTraceLocation.QUICKDIFF.isActive())
 					GitTraceLocation.getTrace().trace(
 							GitTraceLocation.QUICKDIFF.getLocation(),
 							"(GitDocument) compareTo: " + baseline); //$NON-NLS-1$
-				ObjectLoader loader = repository.open(id, Constants.OBJ_BLOB);
-				byte[] bytes = loader.getBytes();
 				String charset;
 				charset = CompareCoreUtils.getResourceEncoding(resource);
 				// Finally we could consider validating the content with respect
 				// to the content. We don't do that here.
-				String s = new String(bytes, charset);
-				setResolved(commitId, treeId, id, s);
+				String s = cache.getText(repository, id, charset);
 				if (GitTraceLocation.QUICKDIFF.isActive())
 					GitTraceLocation
 							.getTrace()
 							.trace(GitTraceLocation.QUICKDIFF.getLocation(),
 									"(GitDocument) has reference doc, size=" + s.length() + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+				return new Baseline(commitId, treeId, id, s);
 			} else {
 				if (GitTraceLocation.QUICKDIFF.isActive())
 					GitTraceLocation.getTrace().trace(
 							GitTraceLocation.QUICKDIFF.getLocation(),
 							"(GitDocument) already resolved"); //$NON-NLS-1$
+				return null;
 			}
 		} finally {
-			if (tw != null)
-				tw.release();
 			if (rw != null)
 				rw.release();
 			if (GitTraceLocation.QUICKDIFF.isActive())
@@ -217,6 +249,42 @@ void populate() throws IOException {
 
 	}
 
+	/**
+	 * Resolves the baseline in a background job and updates the document in
+	 * the UI thread if the baseline changed
+	 */
+	void schedulePopulate() {
+		if (disposed)
+			return;
+		synchronized (this) {
+			if (populateJob == null) {
+				populateJob = new Job(UIText.GitDocument_populateJobName) {
+					@Override
+					protected IStatus run(IProgressMonitor monitor) {
+						final Baseline baseline;
+						try {
+							baseline = resolve();
+						} catch (IOException e) {
+							Activator.logError(
+									UIText.GitDocument_errorRefreshQuickdiff, e);
+							return Status.OK_STATUS;
+						}
+						if (baseline != null)
+							Activator.getDefault().getWorkbench().getDisplay()
+									.asyncExec(new Runnable() {
+										public void run() {
+											baseline.apply();
+										}
+									});
+						return Status.OK_STATUS;
+					}
+				};
+				populateJob.setSystem(true);
+			}
+		}
+		populateJob.schedule();
+	}
+
 	void dispose() {
 		if (GitTraceLocation.QUICKDIFF.isActive())
 			GitTraceLocation.getTrace().trace(
@@ -230,18 +298,14 @@ void dispose() {
 			myRefsChangedHandle = null;
 		}
 		disposed = true;
+		synchronized (this) {
+			if (populateJob != null)
+				populateJob.cancel();
+		}
 	}
 
 	public void onRefsChanged(final RefsChangedEvent e) {
-		Activator.getDefault().getWorkbench().getDisplay().asyncExec(new Runnable() {
-			public void run() {
-				try {
-					populate();
-				} catch (Exception e1) {
-					Activator.logError(UIText.GitDocument_errorRefreshQuickdiff, e1);
-				}
-			}
-		});
+		schedulePopulate();
 	}
 
 	private Repository getRepository() {
@@ -255,15 +319,14 @@ private Repository getRepository() {
 	 *
 	 * @param repository
 	 *            Repository which changed
-	 * @throws IOException
 	 */
-	static void refreshRelevant(final Repository repository) throws IOException {
+	static void refreshRelevant(final Repository repository) {
 		final Entry[] docs;
 		synchronized (doc2repo) {
 			docs = doc2repo.entrySet().toArray(new Entry[doc2repo.size()]);
 		}
 		for (Entry doc : docs)
 			if (doc.getValue() == repository)
-				((GitDocument) doc.getKey()).populate();
+				((GitDocument) doc.getKey()).schedulePopulate();
 	}
 }
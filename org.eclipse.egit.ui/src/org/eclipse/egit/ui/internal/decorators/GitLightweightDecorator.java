@@ -17,11 +17,24 @@
 package org.eclipse.egit.ui.internal.decorators;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.resources.mapping.ResourceMapping;
+import org.eclipse.core.resources.mapping.ResourceMappingContext;
+import org.eclipse.core.resources.mapping.ResourceTraversal;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -30,12 +43,10 @@
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffChangedListener;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
-import org.eclipse.egit.core.internal.util.ExceptionCollector;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.UIIcons;
 import org.eclipse.egit.ui.UIPreferences;
-import org.eclipse.egit.ui.UIText;
 import org.eclipse.egit.ui.internal.decorators.IDecoratableResource.Staged;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.resource.ImageDescriptor;
@@ -45,6 +56,8 @@
 import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProvider;
 import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.osgi.util.TextProcessor;
 import org.eclipse.swt.graphics.Color;
@@ -78,11 +91,21 @@ public class GitLightweightDecorator extends LabelProvider implements
 	public static final String DECORATOR_ID = "org.eclipse.egit.ui.internal.decorators.GitLightweightDecorator"; //$NON-NLS-1$
 
 	/**
-	 * Collector for keeping the error view from filling up with exceptions
+	 * Maximum number of resources for which a label event is fired, more
+	 * changed resources result in a generic label event
 	 */
-	private static ExceptionCollector exceptions = new ExceptionCollector(
-			UIText.Decorator_exceptionMessage, Activator.getPluginId(),
-			IStatus.ERROR, Activator.getDefault().getLog());
+	static final int MAX_LABEL_EVENT_RESOURCES = 1000;
+
+	// the last index diff and HEAD state per repository, used to find the
+	// resources whose labels changed
+	private final Map<Repository, IndexDiffData> lastIndexDiffData = new WeakHashMap<Repository, IndexDiffData>();
+
+	private final Map<Repository, String> lastHeadState = new WeakHashMap<Repository, String>();
+
+	// decorated elements like working sets, their labels depend on the
+	// resources they contain
+	private final Map<Object, Boolean> decoratedMappings = Collections
+			.synchronizedMap(new WeakHashMap<Object, Boolean>());
 
 	private static String[] fonts = new String[]  {
 		UIPreferences.THEME_UncommittedChangeFont};
@@ -142,6 +165,7 @@ public void dispose() {
 		TeamUI.removePropertyChangeListener(this);
 		Activator.removePropertyChangeListener(this);
 		org.eclipse.egit.core.Activator.getDefault().getIndexDiffCache().removeIndexDiffChangedListener(this);
+		BranchStateCache.dispose();
 	}
 
 	/**
@@ -162,13 +186,8 @@ public void decorate(Object element, IDecoration decoration) {
 		final IResource resource = getResource(element);
 		if (resource == null)
 			decorateResourceMapping(element, decoration);
-		else {
-			try {
-				decorateResource(resource, decoration);
-			} catch(CoreException e) {
-				handleException(resource, e);
-			}
-		}
+		else
+			decorateResource(resource, decoration);
 	}
 
 	/**
@@ -176,22 +195,17 @@ public void decorate(Object element, IDecoration decoration) {
 	 *
 	 * @param resource the resource to decorate
 	 * @param decoration the decoration
-	 * @throws CoreException
 	 */
-	private void decorateResource(IResource resource, IDecoration decoration) throws CoreException {
+	private void decorateResource(IResource resource, IDecoration decoration) {
 		IndexDiffData indexDiffData = getIndexDiffDataOrNull(resource);
 
 		if(indexDiffData == null)
 			return;
 
-		IDecoratableResource decoratableResource = null;
 		final DecorationHelper helper = new DecorationHelper(
 				Activator.getDefault().getPreferenceStore());
-		try {
-			decoratableResource = new DecoratableResourceAdapter(indexDiffData, resource);
-		} catch (IOException e) {
-			throw new CoreException(Activator.createErrorStatus(UIText.Decorator_exceptionMessage, e));
-		}
+		IDecoratableResource decoratableResource = new DecoratableResourceAdapter(
+				indexDiffData, resource);
 		helper.decorate(decoration, decoratableResource);
 	}
 
@@ -234,6 +248,9 @@ static IndexDiffData getIndexDiffDataOrNull(IResource resource) {
 	private void decorateResourceMapping(Object element, IDecoration decoration) {
 		@SuppressWarnings("restriction")
 		ResourceMapping mapping = Utils.getResourceMapping(element);
+		if (mapping == null)
+			return;
+		decoratedMappings.put(element, Boolean.TRUE);
 
 		IDecoratableResource decoRes = new DecoratableResourceMapping(mapping);
 
@@ -605,7 +622,210 @@ public void propertyChange(PropertyChangeEvent event) {
 
 	public void indexDiffChanged(Repository repository,
 			IndexDiffData indexDiffData) {
-		postLabelEvent();
+		Collection<Object> elements = getChangedElements(repository,
+				indexDiffData);
+		if (elements == null)
+			postLabelEvent();
+		else if (!elements.isEmpty())
+			postLabelEvent(elements);
+	}
+
+	/**
+	 * @param repository
+	 * @param indexDiffData
+	 *            the new index diff of the repository
+	 * @return the resources and decorated resource mappings whose labels
+	 *         changed since the last index diff of the repository, or
+	 *         {@code null} if all labels have to be updated
+	 */
+	Collection<Object> getChangedElements(Repository repository,
+			IndexDiffData indexDiffData) {
+		IndexDiffData oldData;
+		String oldHead;
+		String head = getHeadState(repository);
+		synchronized (lastIndexDiffData) {
+			oldData = lastIndexDiffData.put(repository, indexDiffData);
+			oldHead = lastHeadState.put(repository, head);
+		}
+		// HEAD or branch changes affect the labels of all resources of the
+		// repository
+		if (oldData == null || head == null || !head.equals(oldHead))
+			return null;
+		Collection<String> changedPaths = getChangedPaths(oldData,
+				indexDiffData);
+		if (changedPaths == null)
+			return null;
+		if (changedPaths.isEmpty())
+			return Collections.emptyList();
+		Collection<IResource> resources = getResources(repository,
+				changedPaths);
+		if (resources == null)
+			return null;
+		Collection<Object> result = new ArrayList<Object>(resources);
+		result.addAll(getMappingElements(resources));
+		return result;
+	}
+
+	/**
+	 * @return the decorated resource mapping elements which contain one of
+	 *         the resources
+	 */
+	private Collection<Object> getMappingElements(
+			Collection<IResource> resources) {
+		Object[] elements;
+		synchronized (decoratedMappings) {
+			elements = decoratedMappings.keySet().toArray();
+		}
+		List<Object> result = new ArrayList<Object>();
+		for (Object element : elements) {
+			@SuppressWarnings("restriction")
+			ResourceMapping mapping = Utils.getResourceMapping(element);
+			if (mapping != null && contains(mapping, resources))
+				result.add(element);
+		}
+		return result;
+	}
+
+	private static boolean contains(ResourceMapping mapping,
+			Collection<IResource> resources) {
+		try {
+			for (ResourceTraversal traversal : mapping.getTraversals(
+					ResourceMappingContext.LOCAL_CONTEXT, null))
+				for (IResource resource : resources)
+					if (traversal.contains(resource))
+						return true;
+			return false;
+		} catch (CoreException e) {
+			// update the label of the element to be safe
+			return true;
+		}
+	}
+
+	private static String getHeadState(Repository repository) {
+		try {
+			ObjectId head = repository.resolve(Constants.HEAD);
+			return repository.getFullBranch() + ' '
+					+ (head != null ? head.name() : null) + ' '
+					+ repository.getRepositoryState();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param oldData
+	 * @param newData
+	 * @return the repository relative paths whose state differs between the
+	 *         two index diffs or {@code null} if there are more than
+	 *         {@link #MAX_LABEL_EVENT_RESOURCES}
+	 */
+	static Collection<String> getChangedPaths(IndexDiffData oldData,
+			IndexDiffData newData) {
+		Set<String> result = new HashSet<String>();
+		if (!addChangedPaths(result, oldData.getAdded(), newData.getAdded())
+				|| !addChangedPaths(result, oldData.getChanged(),
+						newData.getChanged())
+				|| !addChangedPaths(result, oldData.getRemoved(),
+						newData.getRemoved())
+				|| !addChangedPaths(result, oldData.getMissing(),
+						newData.getMissing())
+				|| !addChangedPaths(result, oldData.getModified(),
+						newData.getModified())
+				|| !addChangedPaths(result, oldData.getUntracked(),
+						newData.getUntracked())
+				|| !addChangedPaths(result, oldData.getUntrackedFolders(),
+						newData.getUntrackedFolders())
+				|| !addChangedPaths(result, oldData.getConflicting(),
+						newData.getConflicting())
+				|| !addChangedPaths(result, oldData.getIgnoredNotInIndex(),
+						newData.getIgnoredNotInIndex()))
+			return null;
+		return result;
+	}
+
+	private static boolean addChangedPaths(Set<String> result,
+			Set<String> oldPaths, Set<String> newPaths) {
+		if (oldPaths == newPaths)
+			return true;
+		for (String path : newPaths)
+			if (!oldPaths.contains(path) && result.add(path)
+					&& result.size() > MAX_LABEL_EVENT_RESOURCES)
+				return false;
+		for (String path : oldPaths)
+			if (!newPaths.contains(path) && result.add(path)
+					&& result.size() > MAX_LABEL_EVENT_RESOURCES)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @param repository
+	 * @param changedPaths
+	 *            repository relative paths, folder paths may end with /
+	 * @return the resources of the shared projects of the repository for the
+	 *         given paths together with all their parents up to the project
+	 *         and, for folders like ignored or untracked ones, all their
+	 *         members, or {@code null} if there are more than
+	 *         {@link #MAX_LABEL_EVENT_RESOURCES}
+	 */
+	private static Collection<IResource> getResources(Repository repository,
+			Collection<String> changedPaths) {
+		Set<IResource> result = new HashSet<IResource>();
+		for (IProject project : ResourcesPlugin.getWorkspace().getRoot()
+				.getProjects()) {
+			if (!project.isAccessible())
+				continue;
+			RepositoryMapping mapping = RepositoryMapping.getMapping(project);
+			if (mapping == null || mapping.getRepository() != repository)
+				continue;
+			String projectPath = mapping.getRepoRelativePath(project);
+			if (projectPath == null)
+				continue;
+			String prefix = projectPath.length() == 0 ? "" : projectPath + '/'; //$NON-NLS-1$
+			for (String path : changedPaths) {
+				if (!path.startsWith(prefix))
+					continue;
+				String relativePath = path.substring(prefix.length());
+				if (relativePath.endsWith("/")) //$NON-NLS-1$
+					relativePath = relativePath.substring(0,
+							relativePath.length() - 1);
+				IResource resource = relativePath.length() == 0 ? project
+						: project.findMember(relativePath);
+				// deleted files are still shown until the viewer is refreshed
+				if (resource == null)
+					resource = project.getFile(relativePath);
+				IResource parent = resource;
+				while (parent != null && result.add(parent)
+						&& parent != project)
+					parent = parent.getParent();
+				// the state of a folder applies to all its members
+				if (resource instanceof IContainer
+						&& !addMembers((IContainer) resource, result))
+					return null;
+				if (result.size() > MAX_LABEL_EVENT_RESOURCES)
+					return null;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return {@code false} if there are more than
+	 *         {@link #MAX_LABEL_EVENT_RESOURCES} resources
+	 */
+	private static boolean addMembers(IContainer container,
+			final Set<IResource> result) {
+		try {
+			container.accept(new IResourceVisitor() {
+				public boolean visit(IResource resource) throws CoreException {
+					result.add(resource);
+					return result.size() <= MAX_LABEL_EVENT_RESOURCES;
+				}
+			});
+		} catch (CoreException e) {
+			return false;
+		}
+		return result.size() <= MAX_LABEL_EVENT_RESOURCES;
 	}
 
 	// -------- Helper methods --------
@@ -645,9 +865,26 @@ private void postLabelEvent() {
 		LabelEventJob.getInstance().postLabelEvent(this);
 	}
 
+	/**
+	 * Post a label event for the given elements to the LabelEventJob
+	 *
+	 * @param elements
+	 *            the resources and resource mapping elements whose
+	 *            decorations shall be invalidated
+	 */
+	private void postLabelEvent(Collection<Object> elements) {
+		LabelEventJob.getInstance().postLabelEvent(this, elements);
+	}
+
 	void fireLabelEvent() {
-		final LabelProviderChangedEvent event = new LabelProviderChangedEvent(
-				this);
+		fireLabelEvent(new LabelProviderChangedEvent(this));
+	}
+
+	void fireLabelEvent(Object[] elements) {
+		fireLabelEvent(new LabelProviderChangedEvent(this, elements));
+	}
+
+	private void fireLabelEvent(final LabelProviderChangedEvent event) {
 		// Re-trigger decoration process (in UI thread)
 		Display.getDefault().asyncExec(new Runnable() {
 			public void run() {
@@ -655,20 +892,6 @@ public void run() {
 			}
 		});
 	}
-
-	/**
-	 * Handle exceptions that occur in the decorator. Exceptions are only logged
-	 * for resources that are accessible (i.e. exist in an open project).
-	 *
-	 * @param resource
-	 *            The resource that triggered the exception
-	 * @param e
-	 *            The exception that occurred
-	 */
-	private static void handleException(IResource resource, CoreException e) {
-		if (resource == null || resource.isAccessible())
-			exceptions.handleException(e);
-	}
 }
 
 /**
@@ -700,6 +923,11 @@ private LabelEventJob(final String name) {
 
 	private GitLightweightDecorator glwDecorator = null;
 
+	// elements of the pending event, ignored if a generic event is pending
+	private final Set<Object> elements = new HashSet<Object>();
+
+	private boolean genericEvent;
+
 	/**
 	 * Post a label event
 	 *
@@ -708,6 +936,31 @@ private LabelEventJob(final String name) {
 	 *            LabelProviderChangedEvent
 	 */
 	void postLabelEvent(final GitLightweightDecorator decorator) {
+		synchronized (elements) {
+			genericEvent = true;
+			elements.clear();
+		}
+		scheduleEvent(decorator);
+	}
+
+	/**
+	 * Post a label event for the given elements
+	 *
+	 * @param decorator
+	 *            The GitLightweightDecorator that is used to fire a
+	 *            LabelProviderChangedEvent
+	 * @param changedElements
+	 */
+	void postLabelEvent(final GitLightweightDecorator decorator,
+			Collection<Object> changedElements) {
+		synchronized (elements) {
+			if (!genericEvent)
+				elements.addAll(changedElements);
+		}
+		scheduleEvent(decorator);
+	}
+
+	private void scheduleEvent(GitLightweightDecorator decorator) {
 		if (this.glwDecorator == null)
 			this.glwDecorator = decorator;
 		if (getState() == SLEEPING || getState() == WAITING)
@@ -717,8 +970,21 @@ void postLabelEvent(final GitLightweightDecorator decorator) {
 
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
-		if (glwDecorator != null)
+		boolean generic;
+		Object[] changedElements;
+		synchronized (elements) {
+			generic = genericEvent
+					|| elements.size() > GitLightweightDecorator.MAX_LABEL_EVENT_RESOURCES;
+			changedElements = elements.toArray();
+			genericEvent = false;
+			elements.clear();
+		}
+		if (glwDecorator == null)
+			return Status.OK_STATUS;
+		if (generic)
 			glwDecorator.fireLabelEvent();
+		else if (changedElements.length > 0)
+			glwDecorator.fireLabelEvent(changedElements);
 		return Status.OK_STATUS;
 	}
 }
@@ -105,9 +105,8 @@ public void setId(String id) {
 	 *
 	 * @param repository
 	 * @param baseline any commit reference, ref, symref or sha-1
-	 * @throws IOException
 	 */
-	public static void setBaselineReference(final Repository repository, final String baseline) throws IOException {
+	public static void setBaselineReference(final Repository repository, final String baseline) {
 		GitQuickDiffProvider.baseline.put(repository, baseline);
 		GitDocument.refreshRelevant(repository);
 	}
@@ -19,8 +19,11 @@
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.commands.Command;
@@ -137,8 +140,8 @@ static Font highlightFont() {
 
 	private SWTCommitList allCommits;
 
-	// used for resolving PlotCommit objects by ids
-	private HashMap<String, PlotCommit> commitsMap = null;
+	// used for resolving the indexes of the commits of the table by ids
+	private HashMap<String, Integer> commitIndexes = null;
 
 	private RevFlag highlight;
 
@@ -152,6 +155,9 @@ static Font highlightFont() {
 
 	private RevCommit commitToShow;
 
+	// commit to select which was not loaded yet, see selectCommit
+	private RevCommit commitToLoad;
+
 	private GraphLabelProvider graphLabelProvider;
 
 	CommitGraphTable(Composite parent) {
@@ -360,17 +366,54 @@ Control getControl() {
 
 	void selectCommitStored(final RevCommit c) {
 		commitToShow = c;
-		selectCommit(c);
+		selectLoadedCommit(c);
 	}
 
+	/**
+	 * Selects the commit. If it is not loaded yet, the job generating the
+	 * history is asked to load it and the commit is selected when the loaded
+	 * commits are shown.
+	 *
+	 * @param c
+	 */
 	void selectCommit(final RevCommit c) {
-		if (c instanceof PlotCommit)
-			table.setSelection(new StructuredSelection(c), true);
-		else if (commitsMap != null) {
-			PlotCommit swtCommit = commitsMap.get(c.getId().name());
-			if (swtCommit != null)
-				table.setSelection(new StructuredSelection(swtCommit), true);
+		commitToLoad = null;
+		if (selectLoadedCommit(c))
+			return;
+		commitToShow = c;
+		commitToLoad = c;
+		Object commits = table.getInput();
+		if (commits instanceof SWTCommitListView)
+			((SWTCommitListView) commits).requestCommit(c);
+	}
+
+	private boolean selectLoadedCommit(RevCommit c) {
+		Object commits = table.getInput();
+		if (commitIndexes == null || !(commits instanceof SWTCommitListView))
+			return false;
+		Integer index = commitIndexes.get(c.getId().name());
+		if (index == null
+				|| index.intValue() >= ((SWTCommitListView) commits).size())
+			return false;
+		select((SWTCommitListView) commits, Collections.singletonList(index),
+				true);
+		return true;
+	}
+
+	/**
+	 * Selecting an element of the virtual table which has no item yet makes
+	 * the viewer create the items of all rows before it, hence the items of
+	 * the selected commits are created first.
+	 */
+	private void select(SWTCommitListView commits, List<Integer> indexes,
+			boolean reveal) {
+		List<PlotCommit> selected = new ArrayList<PlotCommit>();
+		for (Integer index : indexes) {
+			PlotCommit commit = commits.get(index.intValue());
+			table.replace(commit, index.intValue());
+			selected.add(commit);
 		}
+		table.setSelection(new StructuredSelection(selected), reveal);
 	}
 
 	void addSelectionChangedListener(final ISelectionChangedListener l) {
@@ -415,21 +458,72 @@ private void doCopy() {
 	}
 
 	void setInput(final RevFlag hFlag, final SWTCommitList list,
-			final SWTCommit[] asArray, HistoryPageInput input) {
+			final SWTCommitListView commits, HistoryPageInput input,
+			boolean keepPosition) {
 		setHistoryPageInput(input);
 		final SWTCommitList oldList = allCommits;
+		List<String> selectedIds = null;
+		String topId = null;
+		if (keepPosition && oldList != null && oldList != list) {
+			// remember the position by commit id, the new list contains new
+			// commit objects
+			selectedIds = getSelectedIds();
+			topId = getTopId();
+		}
 		if (oldList != null && oldList != list)
 			oldList.dispose();
 		highlight = hFlag;
 		allCommits = list;
-		table.setInput(asArray);
-		if (asArray != null && asArray.length > 0) {
-			if (oldList != list)
-				initCommitsMap();
+		table.setInput(commits);
+		if (oldList != list)
+			commitIndexes = null;
+		if (commits != null && commits.size() > 0) {
+			updateCommitIndexes(commits);
+			if (selectedIds != null)
+				restorePosition(commits, selectedIds, topId);
 		} else
 			table.getTable().deselectAll();
-		if (commitToShow != null)
-			selectCommit(commitToShow);
+		if (commitToShow != null && !selectLoadedCommit(commitToShow)
+				&& commitToShow == commitToLoad && oldList != list
+				&& commits != null)
+			// the commit was selected before the job of this list was
+			// started
+			commits.requestCommit(commitToShow);
+	}
+
+	private List<String> getSelectedIds() {
+		List<String> ids = new ArrayList<String>();
+		Iterator<?> it = ((IStructuredSelection) table.getSelection())
+				.iterator();
+		while (it.hasNext())
+			ids.add(((RevCommit) it.next()).name());
+		return ids;
+	}
+
+	private String getTopId() {
+		Object commits = table.getInput();
+		int top = table.getTable().getTopIndex();
+		if (!(commits instanceof SWTCommitListView)
+				|| top >= ((SWTCommitListView) commits).size())
+			return null;
+		return ((SWTCommitListView) commits).get(top).name();
+	}
+
+	private void restorePosition(SWTCommitListView commits,
+			List<String> selectedIds, String topId) {
+		List<Integer> selected = new ArrayList<Integer>();
+		for (String id : selectedIds) {
+			Integer index = commitIndexes.get(id);
+			if (index != null)
+				selected.add(index);
+		}
+		if (!selected.isEmpty())
+			select(commits, selected, false);
+		if (topId == null)
+			return;
+		Integer top = commitIndexes.get(topId);
+		if (top != null)
+			table.getTable().setTopIndex(top.intValue());
 	}
 
 	void setHistoryPageInput(HistoryPageInput input) {
@@ -438,14 +532,13 @@ void setHistoryPageInput(HistoryPageInput input) {
 			menuListener.setInput(input);
 	}
 
-	private void initCommitsMap() {
-		commitsMap = new HashMap<String, PlotCommit>();
-		// ensure that filling (GenerateHistoryJob) and reading (here)
-		// the commit list is thread safe
-		synchronized (allCommits) {
-			for (PlotCommit commit : allCommits)
-				if (commit != null)
-					commitsMap.put(commit.getId().name(), commit);
+	private void updateCommitIndexes(SWTCommitListView commits) {
+		if (commitIndexes == null)
+			commitIndexes = new HashMap<String, Integer>();
+		// the commit list is only appended to, map the new commits only
+		for (int i = commitIndexes.size(); i < commits.size(); i++) {
+			PlotCommit commit = commits.get(i);
+			commitIndexes.put(commit.getId().name(), Integer.valueOf(i));
 		}
 	}
 
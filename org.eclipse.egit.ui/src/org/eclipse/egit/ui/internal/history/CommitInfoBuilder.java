@@ -21,7 +21,6 @@
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +32,7 @@
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.egit.core.internal.CompareCoreUtils;
+import org.eclipse.egit.core.internal.ReachabilityIndex;
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.UIPreferences;
 import org.eclipse.egit.ui.UIText;
@@ -42,16 +42,13 @@
 import org.eclipse.jgit.diff.RawText;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
-import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectIdSubclassMap;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revplot.PlotCommit;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.util.io.SafeBufferedOutputStream;
 import org.eclipse.osgi.util.NLS;
@@ -192,7 +189,64 @@ public String format(final List<StyleRange> styles,
 			d.append(LF);
 		}
 
-		List<Ref> branches = getBranches();
+		RevWalk walk = new RevWalk(db);
+		try {
+			formatRefs(d, styles, walk, monitor);
+		} finally {
+			walk.release();
+		}
+
+		makeGrayText(d, styles);
+		d.append(LF);
+		String msg = commit.getFullMessage();
+		Pattern p = Pattern.compile("\n([A-Z](?:[A-Za-z]+-)+by: [^\n]+)"); //$NON-NLS-1$
+		if (fill) {
+			Matcher spm = p.matcher(msg);
+			if (spm.find()) {
+				String subMsg = msg.substring(0, spm.end());
+				msg = subMsg.replaceAll("([\\w.,; \t])\n(\\w)", "$1 $2") //$NON-NLS-1$ //$NON-NLS-2$
+						+ msg.substring(spm.end());
+			}
+		}
+		int h0 = d.length();
+		d.append(msg);
+		d.append(LF);
+
+		Matcher matcher = p.matcher(msg);
+		while (matcher.find()) {
+			styles.add(new StyleRange(h0 + matcher.start(), matcher.end()
+					- matcher.start(), null, null, SWT.ITALIC));
+		}
+
+		if (!currentDiffs.isEmpty())
+			buildDiffs(d, styles, monitor, trace);
+
+		if (trace)
+			GitTraceLocation.getTrace().traceExit(
+					GitTraceLocation.HISTORYVIEW.getLocation());
+		return d.toString();
+	}
+
+	private void addLink(final StringBuilder d, String linkLabel,
+			final List<StyleRange> styles, final RevCommit to) {
+		final ObjectLink sr = new ObjectLink();
+		sr.targetCommit = to;
+		sr.foreground = linkColor;
+		sr.underline = true;
+		sr.start = d.length();
+		d.append(linkLabel);
+		sr.length = d.length() - sr.start;
+		styles.add(sr);
+	}
+
+	private void addLink(final StringBuilder d, final List<StyleRange> styles,
+			final RevCommit to) {
+		addLink(d, to.getId().name(), styles, to);
+	}
+
+	private void formatRefs(StringBuilder d, List<StyleRange> styles,
+			RevWalk walk, IProgressMonitor monitor) {
+		List<Ref> branches = getBranches(monitor);
 		if (!branches.isEmpty()) {
 			d.append(UIText.CommitMessageViewer_branches);
 			d.append(": "); //$NON-NLS-1$
@@ -201,7 +255,7 @@ public String format(final List<StyleRange> styles,
 				Ref head = i.next();
 				RevCommit p;
 				try {
-					p = new RevWalk(db).parseCommit(head.getObjectId());
+					p = walk.parseCommit(head.getObjectId());
 					addLink(d, formatHeadRef(head), styles, p);
 					if (i.hasNext()) {
 						if (count++ <= MAXBRANCHES) {
@@ -239,8 +293,7 @@ public String format(final List<StyleRange> styles,
 				if (followingTag != null) {
 					d.append(UIText.CommitMessageViewer_follows);
 					d.append(": "); //$NON-NLS-1$
-					RevCommit p = new RevWalk(db).parseCommit(followingTag
-							.getObjectId());
+					RevCommit p = walk.parseCommit(followingTag.getObjectId());
 					addLink(d, formatTagRef(followingTag), styles, p);
 					d.append(LF);
 				}
@@ -254,8 +307,7 @@ public String format(final List<StyleRange> styles,
 				if (precedingTag != null) {
 					d.append(UIText.CommitMessageViewer_precedes);
 					d.append(": "); //$NON-NLS-1$
-					RevCommit p = new RevWalk(db).parseCommit(precedingTag
-							.getObjectId());
+					RevCommit p = walk.parseCommit(precedingTag.getObjectId());
 					addLink(d, formatTagRef(precedingTag), styles, p);
 					d.append(LF);
 				}
@@ -263,105 +315,22 @@ public String format(final List<StyleRange> styles,
 				Activator.logError(e.getMessage(), e);
 			}
 		}
-
-		makeGrayText(d, styles);
-		d.append(LF);
-		String msg = commit.getFullMessage();
-		Pattern p = Pattern.compile("\n([A-Z](?:[A-Za-z]+-)+by: [^\n]+)"); //$NON-NLS-1$
-		if (fill) {
-			Matcher spm = p.matcher(msg);
-			if (spm.find()) {
-				String subMsg = msg.substring(0, spm.end());
-				msg = subMsg.replaceAll("([\\w.,; \t])\n(\\w)", "$1 $2") //$NON-NLS-1$ //$NON-NLS-2$
-						+ msg.substring(spm.end());
-			}
-		}
-		int h0 = d.length();
-		d.append(msg);
-		d.append(LF);
-
-		Matcher matcher = p.matcher(msg);
-		while (matcher.find()) {
-			styles.add(new StyleRange(h0 + matcher.start(), matcher.end()
-					- matcher.start(), null, null, SWT.ITALIC));
-		}
-
-		if (!currentDiffs.isEmpty())
-			buildDiffs(d, styles, monitor, trace);
-
-		if (trace)
-			GitTraceLocation.getTrace().traceExit(
-					GitTraceLocation.HISTORYVIEW.getLocation());
-		return d.toString();
-	}
-
-	private void addLink(final StringBuilder d, String linkLabel,
-			final List<StyleRange> styles, final RevCommit to) {
-		final ObjectLink sr = new ObjectLink();
-		sr.targetCommit = to;
-		sr.foreground = linkColor;
-		sr.underline = true;
-		sr.start = d.length();
-		d.append(linkLabel);
-		sr.length = d.length() - sr.start;
-		styles.add(sr);
-	}
-
-	private void addLink(final StringBuilder d, final List<StyleRange> styles,
-			final RevCommit to) {
-		addLink(d, to.getId().name(), styles, to);
 	}
 
 	/**
+	 * @param monitor
 	 * @return List of heads from those current commit is reachable
+	 * @throws OperationCanceledException
 	 */
-	private List<Ref> getBranches() {
-		RevWalk revWalk = new RevWalk(db);
-		List<Ref> result = new ArrayList<Ref>();
-
+	private List<Ref> getBranches(IProgressMonitor monitor)
+			throws OperationCanceledException {
 		try {
-			// searches from branches can be cut off early if any parent of the
-			// search-for commit is found. This is quite likely, so optimize for this.
-			revWalk.markStart(Arrays.asList(commit.getParents()));
-			ObjectIdSubclassMap<ObjectId> cutOff = new ObjectIdSubclassMap<ObjectId>();
-
-			final int SKEW = 24*3600; // one day clock skew
-
-			for (Ref ref : allRefs) {
-				RevCommit headCommit = revWalk.parseCommit(ref.getObjectId());
-
-				// if commit is in the ref branch, then the tip of ref should be
-				// newer than the commit we are looking for. Allow for a large
-				// clock skew.
-				if (headCommit.getCommitTime() + SKEW < commit.getCommitTime())
-					continue;
-
-				List<ObjectId> maybeCutOff = new ArrayList<ObjectId>(cutOff.size()); // guess rough size
-				revWalk.resetRetain();
-				revWalk.markStart(headCommit);
-				RevCommit current;
-				Ref found = null;
-				while ((current = revWalk.next()) != null) {
-					if (AnyObjectId.equals(current, commit)) {
-						found = ref;
-						break;
-					}
-					if (cutOff.contains(current))
-						break;
-					maybeCutOff.add(current.toObjectId());
-				}
-				if (found != null)
-					result.add(ref);
-				else
-					for (ObjectId id : maybeCutOff)
-						cutOff.addIfAbsent(id);
-
-			}
-			revWalk.dispose();
+			return ReachabilityIndex.get(db).getContainingRefs(commit,
+					allRefs, monitor);
 		} catch (IOException e) {
 			// skip exception
+			return new ArrayList<Ref>();
 		}
-		return result;
 	}
 
 	private String formatHeadRef(Ref ref) {
@@ -567,59 +536,10 @@ private Ref getNextTag(boolean searchDescendant, IProgressMonitor monitor)
 			throws IOException, OperationCanceledException {
 		if (monitor.isCanceled())
 			throw new OperationCanceledException();
-		RevWalk revWalk = new RevWalk(db);
-
-		Map<String, Ref> tagsMap = db.getTags();
-		Ref tagRef = null;
-
-		for (Ref ref : tagsMap.values()) {
-			if (monitor.isCanceled())
-				throw new OperationCanceledException();
-			// both RevCommits must be allocated using same RevWalk instance,
-			// otherwise isMergedInto returns wrong result!
-			RevCommit current = revWalk.parseCommit(commit);
-			// tags can point to any object, we only want tags pointing at
-			// commits
-			RevObject any = revWalk.peel(revWalk.parseAny(ref.getObjectId()));
-			if (!(any instanceof RevCommit))
-				continue;
-			RevCommit newTag = (RevCommit) any;
-			if (newTag.getId().equals(commit))
-				continue;
-
-			// check if newTag matches our criteria
-			if (isMergedInto(revWalk, newTag, current, searchDescendant)) {
-				if (monitor.isCanceled())
-					throw new OperationCanceledException();
-				if (tagRef != null) {
-					RevCommit oldTag = revWalk
-							.parseCommit(tagRef.getObjectId());
-
-					// both oldTag and newTag satisfy search criteria, so taking
-					// the closest one
-					if (isMergedInto(revWalk, oldTag, newTag, searchDescendant))
-						tagRef = ref;
-				} else
-					tagRef = ref;
-			}
-		}
-		return tagRef;
-	}
-
-	/**
-	 * @param rw
-	 * @param base
-	 * @param tip
-	 * @param swap
-	 *            if <code>true</code>, base and tip arguments are swapped
-	 * @return <code>true</code> if there is a path directly from tip to base
-	 *         (and thus base is fully merged into tip); <code>false</code>
-	 *         otherwise.
-	 * @throws IOException
-	 */
-	private boolean isMergedInto(final RevWalk rw, final RevCommit base,
-			final RevCommit tip, boolean swap) throws IOException {
-		return !swap ? rw.isMergedInto(base, tip) : rw.isMergedInto(tip, base);
+		ReachabilityIndex index = ReachabilityIndex.get(db);
+		if (searchDescendant)
+			return index.getNearestDescendantTag(commit, monitor);
+		return index.getNearestAncestorTag(commit, monitor);
 	}
 
 }
@@ -197,8 +197,8 @@ private void updateUi() {
 				.valueOf(allCommits.size()), repository.getDirectory()
 				.toString()));
 		setMessage(UIText.CommitSelectionDialog_DialogMessage);
-		table.setInput(highlightFlag, allCommits, allCommits
-				.toArray(new SWTCommit[allCommits.size()]), null);
+		table.setInput(highlightFlag, allCommits, new SWTCommitListView(
+				allCommits, allCommits.size(), null), null, false);
 	}
 
 	private void markStartAllRefs(RevWalk currentWalk, String prefix)
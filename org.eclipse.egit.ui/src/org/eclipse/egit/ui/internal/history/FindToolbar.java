@@ -20,6 +20,7 @@
 import org.eclipse.egit.ui.UIPreferences;
 import org.eclipse.egit.ui.UIText;
 import org.eclipse.jface.preference.IPersistentPreferenceStore;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
@@ -81,7 +82,9 @@ public class FindToolbar extends Composite {
 
 	private Table historyTable;
 
-	private SWTCommit[] fileRevisions;
+	private SWTCommitListView fileRevisions;
+
+	private Repository repository;
 
 	private Text patternField;
 
@@ -233,6 +236,7 @@ public void modifyText(ModifyEvent e) {
 				final FindToolbarThread finder = new FindToolbarThread();
 				finder.pattern = ((Text) e.getSource()).getText();
 				finder.fileRevisions = fileRevisions;
+				finder.repository = repository;
 				finder.toolbar = thisToolbar;
 				finder.ignoreCase = caseItem.getSelection();
 				finder.findInCommitId = commitIdItem.getSelection();
@@ -256,6 +260,7 @@ public void handleEvent(Event event) {
 					final FindToolbarThread finder = new FindToolbarThread();
 					finder.pattern = patternField.getText();
 					finder.fileRevisions = fileRevisions;
+					finder.repository = repository;
 					finder.toolbar = thisToolbar;
 					finder.ignoreCase = caseItem.getSelection();
 					finder.findInCommitId = commitIdItem.getSelection();
@@ -435,14 +440,14 @@ private void prefsItemChanged(int findin, MenuItem item) {
 	 *
 	 * @param hFlag
 	 * @param historyTable
-	 * @param commitArray
+	 * @param commits
+	 * @param repository
+	 *            the repository of the commits
 	 */
 	void setInput(final RevFlag hFlag, final Table historyTable,
-			final SWTCommit[] commitArray) {
-		// this may cause a FindBugs warning, but
-		// copying the array is probably not a good
-		// idea
-		this.fileRevisions = commitArray;
+			final SWTCommitListView commits, Repository repository) {
+		this.fileRevisions = commits;
+		this.repository = repository;
 		this.historyTable = historyTable;
 		findResults.setHighlightFlag(hFlag);
 	}
@@ -546,7 +551,7 @@ private void sendEvent(Widget widget, int index) {
 		event.type = SWT.Selection;
 		event.index = index;
 		event.widget = widget;
-		event.data = fileRevisions[index];
+		event.data = fileRevisions.get(index);
 		for (Listener listener : eventList) {
 			listener.handleEvent(event);
 		}
@@ -8,6 +8,13 @@
  *******************************************************************************/
 package org.eclipse.egit.ui.internal.history;
 
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.eclipse.egit.ui.internal.search.CommitIndex;
+import org.eclipse.jgit.lib.Repository;
+
 /**
  * This class executes the search function for the find toolbar. Only one thread
  * is executed at a time.
@@ -23,6 +30,10 @@
  * To avoid consuming all the memory in the system, this class limits the
  * maximum results it stores.
  * </p>
+ * <p>
+ * Commits contained in the {@link CommitIndex} of the repository are only
+ * checked if the index reports them as candidates.
+ * </p>
  *
  * @see FindToolbar
  * @see FindResults
@@ -35,7 +46,9 @@ public class FindToolbarThread extends Thread {
 
 	String pattern;
 
-	SWTCommit[] fileRevisions;
+	SWTCommitListView fileRevisions;
+
+	Repository repository;
 
 	FindToolbar toolbar;
 
@@ -87,7 +100,27 @@ private void execFind() {
 
 			long lastUIUpdate = System.currentTimeMillis();
 
-			int totalRevisions = fileRevisions.length;
+			CommitIndex index = null;
+			BitSet candidates = null;
+			int fields = 0;
+			if (findInComments)
+				fields |= CommitIndex.MESSAGE;
+			if (findInAuthor)
+				fields |= CommitIndex.AUTHOR;
+			if (findInCommitter)
+				fields |= CommitIndex.COMMITTER;
+			if (repository != null && fields != 0) {
+				index = CommitIndex.getIndex(repository);
+				// build or extend the index for the next find
+				index.scheduleUpdate(repository);
+				Pattern quoted = Pattern.compile(Pattern.quote(pattern),
+						ignoreCase ? Pattern.CASE_INSENSITIVE
+								| Pattern.UNICODE_CASE : 0);
+				candidates = index.find(fields, quoted,
+						Collections.singleton(pattern));
+			}
+
+			int totalRevisions = fileRevisions.size();
 			int totalMatches = 0;
 			boolean notFound = true;
 			for (int i = 0; i < totalRevisions; i++) {
@@ -113,7 +146,7 @@ public void run() {
 
 				// Finds for the pattern in the revision history.
 				notFound = true;
-				SWTCommit revision = fileRevisions[i];
+				SWTCommit revision = fileRevisions.get(i);
 
 				if (findInCommitId) {
 					String contentId = revision.getId().name();
@@ -129,6 +162,13 @@ public void run() {
 					}
 				}
 
+				if (notFound && candidates != null) {
+					int ordinal = index.getOrdinal(revision);
+					// commits which are not indexed yet are checked below
+					if (ordinal >= 0 && !candidates.get(ordinal))
+						continue;
+				}
+
 				if (findInComments && notFound) {
 					String comment = revision.getFullMessage();
 					if (comment != null) {
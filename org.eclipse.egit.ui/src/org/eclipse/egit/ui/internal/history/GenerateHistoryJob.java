@@ -10,6 +10,8 @@
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -22,6 +24,9 @@
 import org.eclipse.egit.ui.UIPreferences;
 import org.eclipse.egit.ui.UIText;
 import org.eclipse.egit.ui.internal.trace.GitTraceLocation;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.osgi.util.NLS;
@@ -34,6 +39,10 @@ class GenerateHistoryJob extends Job {
 	private final int maxCommits = Activator.getDefault().getPreferenceStore()
 			.getInt(UIPreferences.HISTORY_MAX_NUM_COMMITS);
 
+	private final boolean loadOnDemand = Activator.getDefault()
+			.getPreferenceStore()
+			.getBoolean(UIPreferences.HISTORY_LOAD_ON_DEMAND);
+
 	private final GitHistoryPage page;
 
 	private final SWTCommitList allCommits;
@@ -42,16 +51,49 @@ class GenerateHistoryJob extends Job {
 
 	private long lastUpdateAt;
 
+	private RevFlag highlightFlag;
+
 	private boolean trace;
 
 	private final RevWalk walk;
 
-	GenerateHistoryJob(final GitHistoryPage ghp, Control control, RevWalk walk) {
+	// number of commits to load in on demand mode
+	private int loadTarget = 2 * BATCH_SIZE;
+
+	// commit to load in on demand mode, see loadUntil
+	private ObjectId targetCommit;
+
+	// number of commits already compared with the target commit
+	private int targetChecked;
+
+	// set when all commits are loaded or the commit limit is reached
+	private volatile boolean finished;
+
+	private volatile boolean released;
+
+	// keep the selection and top row of the previously shown history
+	private boolean keepPosition;
+
+	// number of commits to load before the list is shown for the first time
+	private int initialCount;
+
+	// set in the UI thread when the list was handed to the commit table
+	private boolean shown;
+
+	// ids of the refs the history is calculated for
+	private final Map<String, ObjectId> refIds;
+
+	// set when the refs may have changed, see checkRefs
+	private boolean refsToCheck;
+
+	GenerateHistoryJob(final GitHistoryPage ghp, Control control, RevWalk walk,
+			Map<String, ObjectId> refIds) {
 		super(NLS.bind(UIText.HistoryPage_refreshJob, Activator.getDefault()
 				.getRepositoryUtil().getRepositoryName(
 						ghp.getInputInternal().getRepository())));
 		page = ghp;
 		this.walk = walk;
+		this.refIds = refIds;
 		allCommits = new SWTCommitList(control);
 		allCommits.source(walk);
 		trace = GitTraceLocation.HISTORYVIEW.isActive();
@@ -69,9 +111,16 @@ protected IStatus run(final IProgressMonitor monitor) {
 			if (trace)
 				GitTraceLocation.getTrace().traceEntry(
 						GitTraceLocation.HISTORYVIEW.getLocation());
+			if (takeRefsToCheck()) {
+				compareRefs();
+				if (finished)
+					return status;
+			}
 			try {
 				for (;;) {
 					final int oldsz = allCommits.size();
+					if (loadOnDemand && oldsz >= checkTargetCommit())
+						break;
 					if (trace)
 						GitTraceLocation.getTrace().trace(
 								GitTraceLocation.HISTORYVIEW.getLocation(),
@@ -85,8 +134,10 @@ protected IStatus run(final IProgressMonitor monitor) {
 						return Status.CANCEL_STATUS;
 					if (maxCommits > 0 && allCommits.size() > maxCommits)
 						incomplete = true;
-					if (incomplete || oldsz == allCommits.size())
+					if (incomplete || oldsz == allCommits.size()) {
+						finished = true;
 						break;
+					}
 
 					if (allCommits.size() != 1)
 						monitor.setTaskName(MessageFormat
@@ -95,6 +146,10 @@ protected IStatus run(final IProgressMonitor monitor) {
 					else
 						monitor.setTaskName(UIText.GenerateHistoryJob_taskFoundSingleCommit);
 
+					// keep showing the previous history until the new one
+					// covers as many commits
+					if (lastUpdateCnt == 0 && allCommits.size() < initialCount)
+						continue;
 					final long now = System.currentTimeMillis();
 					if (now - lastUpdateAt < 2000 && lastUpdateCnt > 0)
 						continue;
@@ -102,6 +157,7 @@ protected IStatus run(final IProgressMonitor monitor) {
 					lastUpdateAt = now;
 				}
 			} catch (IOException e) {
+				finished = true;
 				status = new Status(IStatus.ERROR, Activator.getPluginId(),
 						UIText.GenerateHistoryJob_errorComputingHistory, e);
 			}
@@ -123,11 +179,16 @@ void updateUI(boolean incomplete) {
 			if (!incomplete && allCommits.size() == lastUpdateCnt)
 				return;
 
-			final SWTCommit[] asArray = new SWTCommit[allCommits.size()];
-			allCommits.toArray(asArray);
-			RevFlag highlightFlag = walk.newFlag("highlight"); //$NON-NLS-1$
-			page.showCommitList(this, allCommits, asArray, incomplete, highlightFlag);
-			lastUpdateCnt = allCommits.size();
+			// the list is only appended to, so a view of the loaded commits
+			// can be shown without copying them
+			final int size = allCommits.size();
+			SWTCommitListView commits = new SWTCommitListView(allCommits,
+					size, loadOnDemand ? this : null);
+			if (highlightFlag == null)
+				highlightFlag = walk.newFlag("highlight"); //$NON-NLS-1$
+			page.showCommitList(this, allCommits, commits, incomplete,
+					highlightFlag, keepPosition);
+			lastUpdateCnt = size;
 		} finally {
 			if (trace)
 				GitTraceLocation.getTrace().traceExit(
@@ -135,7 +196,160 @@ void updateUI(boolean incomplete) {
 		}
 	}
 
+	/**
+	 * Replaces the currently shown history without losing the selection and
+	 * the scroll position. The current history is shown until as many
+	 * commits are loaded.
+	 *
+	 * @param shownCount
+	 *            number of commits of the currently shown history
+	 */
+	synchronized void keepPosition(int shownCount) {
+		keepPosition = true;
+		initialCount = shownCount;
+		if (loadTarget < shownCount)
+			loadTarget = shownCount;
+	}
+
+	/**
+	 * Called in the UI thread when the commit list is shown in the commit
+	 * table, which disposes it when it is replaced
+	 */
+	void setShown() {
+		shown = true;
+	}
+
+	/**
+	 * Compares the refs with the ones the history is calculated for in the
+	 * background. If they have changed, the page calculates a new history.
+	 */
+	void checkRefs() {
+		if (released)
+			return;
+		synchronized (this) {
+			refsToCheck = true;
+		}
+		schedule();
+	}
+
+	private synchronized boolean takeRefsToCheck() {
+		boolean result = refsToCheck;
+		refsToCheck = false;
+		return result;
+	}
+
+	private void compareRefs() {
+		Repository db = walk.getRepository();
+		Map<String, ObjectId> newIds;
+		try {
+			newIds = page.getRefIds(db);
+		} catch (IOException e) {
+			// let the page report the error
+			page.refsChanged(this, false);
+			return;
+		}
+		// a refs changed event doesn't tell which refs have changed, the
+		// history is still valid if none of them moved
+		if (newIds.equals(refIds))
+			return;
+		// if refs only moved forward, all shown commits are still shown after
+		// the refresh
+		page.refsChanged(this, isFastForward(db, refIds, newIds));
+	}
+
+	/**
+	 * @param db
+	 * @param oldIds
+	 * @param newIds
+	 * @return {@code true} if no ref was deleted and all refs which have
+	 *         changed point to descendants of their previous commits
+	 */
+	private static boolean isFastForward(Repository db,
+			Map<String, ObjectId> oldIds, Map<String, ObjectId> newIds) {
+		RevWalk rw = new RevWalk(db);
+		try {
+			for (Entry<String, ObjectId> entry : oldIds.entrySet()) {
+				ObjectId oldId = entry.getValue();
+				ObjectId newId = newIds.get(entry.getKey());
+				if (oldId == null || oldId.equals(newId))
+					continue;
+				if (newId == null)
+					return false;
+				if (!rw.isMergedInto(rw.parseCommit(oldId),
+						rw.parseCommit(newId)))
+					return false;
+			}
+			return true;
+		} catch (IOException e) {
+			// e.g. a ref which doesn't point to a commit
+			return false;
+		} finally {
+			rw.release();
+		}
+	}
+
+	/**
+	 * @return {@code true} if no more commits will be loaded
+	 */
+	boolean isFinished() {
+		return finished || !loadOnDemand;
+	}
+
+	/**
+	 * Loads more commits if the history is loaded on demand and the commit
+	 * at the given index is not loaded yet
+	 *
+	 * @param index
+	 */
+	void loadUpTo(int index) {
+		if (!loadOnDemand || finished || released)
+			return;
+		synchronized (this) {
+			if (index < loadTarget)
+				return;
+			loadTarget = index + BATCH_SIZE;
+		}
+		schedule();
+	}
+
+	/**
+	 * Loads commits until the given commit is loaded if the history is
+	 * loaded on demand. The commit table selects the commit when the loaded
+	 * commits are shown.
+	 *
+	 * @param id
+	 */
+	void loadUntil(AnyObjectId id) {
+		if (!loadOnDemand || finished || released)
+			return;
+		synchronized (this) {
+			targetCommit = id.copy();
+			targetChecked = 0;
+			loadTarget = Integer.MAX_VALUE;
+		}
+		schedule();
+	}
+
+	/**
+	 * Called by the job only, which is the only one modifying the commit
+	 * list
+	 *
+	 * @return the number of commits to load
+	 */
+	private synchronized int checkTargetCommit() {
+		if (targetCommit == null)
+			return loadTarget;
+		for (; targetChecked < allCommits.size(); targetChecked++)
+			if (targetCommit.equals(allCommits.get(targetChecked))) {
+				targetCommit = null;
+				loadTarget = allCommits.size();
+				break;
+			}
+		return loadTarget;
+	}
+
 	void release() {
+		released = true;
 		if (getState() == Job.NONE)
 			dispose();
 		else
@@ -153,7 +367,10 @@ private void dispose() {
 		Display.getDefault().asyncExec(new Runnable() {
 
 			public void run() {
-				allCommits.dispose();
+				// a shown list is still needed until the table gets a new
+				// input
+				if (!shown)
+					allCommits.dispose();
 			}
 		});
 	}
@@ -16,7 +16,9 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import org.eclipse.core.resources.IResource;
@@ -1063,7 +1065,12 @@ public void run() {
 														.getLocation(),
 												"Executing async repository changed event"); //$NON-NLS-1$
 							refschangedRunnable = null;
-							initAndStartRevWalk(true);
+							if (job != null)
+								// the job compares the refs with the ones
+								// the shown history was calculated for
+								job.checkRefs();
+							else
+								initAndStartRevWalk(false);
 						}
 					}
 				};
@@ -1431,7 +1438,8 @@ public HistoryPageInput getInputInternal() {
 	}
 
 	void showCommitList(final Job j, final SWTCommitList list,
-			final SWTCommit[] asArray, final boolean incomplete, final RevFlag highlightFlag) {
+			final SWTCommitListView commits, final boolean incomplete,
+			final RevFlag highlightFlag, final boolean keepPosition) {
 		if (trace)
 			GitTraceLocation.getTrace().traceEntry(
 					GitTraceLocation.HISTORYVIEW.getLocation(),
@@ -1442,13 +1450,15 @@ void showCommitList(final Job j, final SWTCommitList list,
 		graph.getControl().getDisplay().asyncExec(new Runnable() {
 			public void run() {
 				if (!graph.getControl().isDisposed() && job == j) {
-					graph.setInput(highlightFlag, list, asArray, input);
+					((GenerateHistoryJob) j).setShown();
+					graph.setInput(highlightFlag, list, commits, input,
+							keepPosition);
 					if (trace)
 						GitTraceLocation.getTrace().trace(
 								GitTraceLocation.HISTORYVIEW.getLocation(),
 								"Setting input to table"); //$NON-NLS-1$
 					findToolbar.setInput(highlightFlag, graph.getTableView()
-							.getTable(), asArray);
+							.getTable(), commits, input.getRepository());
 					if (incomplete)
 						setWarningText(UIText.GitHistoryPage_ListIncompleteWarningMessage);
 					else
@@ -1475,7 +1485,33 @@ private void setWarningText(String warning) {
 		warningComposite.getParent().layout(true);
 	}
 
-	void initAndStartRevWalk(boolean forceNewWalk) throws IllegalStateException {
+	/**
+	 * Called by the job of the shown history if the refs have changed since
+	 * the history was calculated
+	 *
+	 * @param j
+	 * @param keepPosition
+	 *            whether all shown commits are still shown in the new history
+	 */
+	void refsChanged(final GenerateHistoryJob j, final boolean keepPosition) {
+		if (job != j || graph.getControl().isDisposed())
+			return;
+
+		graph.getControl().getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				if (!graph.getControl().isDisposed() && job == j)
+					initAndStartRevWalk(true, keepPosition);
+			}
+		});
+	}
+
+	void initAndStartRevWalk(boolean forceNewWalk)
+			throws IllegalStateException {
+		initAndStartRevWalk(forceNewWalk, false);
+	}
+
+	private void initAndStartRevWalk(boolean forceNewWalk,
+			boolean keepPosition) throws IllegalStateException {
 		try {
 			if (trace)
 				GitTraceLocation.getTrace().traceEntry(
@@ -1491,7 +1527,7 @@ void initAndStartRevWalk(boolean forceNewWalk) throws IllegalStateException {
 
 			AnyObjectId headId = resolveHead(db, true);
 			if (headId == null) {
-				graph.getTableView().setInput(new SWTCommit[0]);
+				graph.getTableView().setInput(SWTCommitListView.EMPTY);
 				currentHeadId = null;
 				return;
 			}
@@ -1499,8 +1535,21 @@ void initAndStartRevWalk(boolean forceNewWalk) throws IllegalStateException {
 			List<FilterPath> paths = buildFilterPaths(input.getItems(), input
 					.getFileList(), db);
 
-			if (forceNewWalk || shouldRedraw(db, headId, paths)) {
+			boolean headChanged = !headId.equals(currentHeadId);
+			boolean inputChanged = shouldRedraw(db, paths);
+			if (forceNewWalk || inputChanged || headChanged) {
 				releaseGenerateHistoryJob();
+				// read before the start points are set, so that a ref which
+				// moves later is detected by the job
+				Map<String, ObjectId> refIds;
+				try {
+					refIds = getRefIds(db);
+				} catch (IOException e) {
+					throw new IllegalStateException(NLS.bind(
+							UIText.GitHistoryPage_errorReadingAdditionalRefs,
+							Activator.getDefault().getRepositoryUtil()
+									.getRepositoryName(db)), e);
+				}
 
 				SWTWalk walk = createNewWalk(db, headId);
 				setWalkStartPoints(walk, db, headId);
@@ -1508,7 +1557,8 @@ void initAndStartRevWalk(boolean forceNewWalk) throws IllegalStateException {
 				setupFileViewer(walk, db, paths);
 				setupCommentViewer(db);
 
-				scheduleNewGenerateHistoryJob(walk);
+				scheduleNewGenerateHistoryJob(walk, refIds, keepPosition
+						&& !inputChanged);
 			} else
 				// needed for context menu and double click
 				graph.setHistoryPageInput(input);
@@ -1520,9 +1570,8 @@ void initAndStartRevWalk(boolean forceNewWalk) throws IllegalStateException {
 		}
 	}
 
-	private boolean shouldRedraw(Repository db, AnyObjectId headId, List<FilterPath> paths) {
+	private boolean shouldRedraw(Repository db, List<FilterPath> paths) {
 		boolean pathChanged = pathChanged(pathFilters, paths);
-		boolean headChanged = headId == null || !headId.equals(currentHeadId);
 		boolean repoChanged = false;
 
 		boolean allBranchesChanged = currentShowAllBranches != store
@@ -1548,10 +1597,25 @@ private boolean shouldRedraw(Repository db, AnyObjectId headId, List<FilterPath>
 		}
 
 		return pathChanged
-			|| headChanged || repoChanged || allBranchesChanged
+			|| repoChanged || allBranchesChanged
 			|| additionalRefsChange || showNotesChanged || followRenamesChanged;
 	}
 
+	/**
+	 * @param db
+	 * @return the ids of the refs which are shown as labels by the walk
+	 * @throws IOException
+	 */
+	Map<String, ObjectId> getRefIds(Repository db) throws IOException {
+		Map<String, ObjectId> ids = new HashMap<String, ObjectId>();
+		for (Ref ref : db.getAllRefs().values())
+			ids.put(ref.getName(), ref.getObjectId());
+		if (store.getBoolean(UIPreferences.RESOURCEHISTORY_SHOW_ADDITIONAL_REFS))
+			for (Ref ref : db.getRefDatabase().getAdditionalRefs())
+				ids.put(ref.getName(), ref.getObjectId());
+		return ids;
+	}
+
 	/**
 	 * @return whether following renames is currently enabled
 	 */
@@ -1779,23 +1843,22 @@ private boolean allRegularFiles(List<FilterPath> paths) {
 		return true;
 	}
 
-	private void scheduleNewGenerateHistoryJob(RevWalk walk) {
+	private void scheduleNewGenerateHistoryJob(RevWalk walk,
+			Map<String, ObjectId> refIds, boolean keepPosition) {
 		final GenerateHistoryJob rj = new GenerateHistoryJob(this,
-				graph.getControl(), walk);
+				graph.getControl(), walk, refIds);
 		rj.setRule(this);
+		if (keepPosition)
+			rj.keepPosition(graph.getTableView().getTable().getItemCount());
 		rj.addJobChangeListener(new JobChangeAdapter() {
 			@Override
 			public void done(final IJobChangeEvent event) {
-				rj.getWalk().release();
-				final Control graphctl = graph.getControl();
-				if (job != rj || graphctl.isDisposed())
+				// in on demand mode the job runs again when more commits
+				// are needed
+				if (!rj.isFinished() && event.getResult().isOK())
 					return;
-				graphctl.getDisplay().asyncExec(new Runnable() {
-					public void run() {
-						if (job == rj)
-							job = null;
-					}
-				});
+				// the job is kept to check the refs of the shown history
+				rj.getWalk().release();
 			}
 		});
 		job = rj;
@@ -8,19 +8,49 @@
  *******************************************************************************/
 package org.eclipse.egit.ui.internal.history;
 
-import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Table;
 
-class GraphContentProvider implements IStructuredContentProvider {
-	private SWTCommit[] list;
+/**
+ * Provides the rows of the virtual history table on demand. Requests for rows
+ * near the end of the loaded commits are passed on to the job generating the
+ * history.
+ */
+class GraphContentProvider implements ILazyContentProvider {
+	// rows before the end of the loaded commits at which more are requested
+	private static final int LOAD_AHEAD = 64;
+
+	private TableViewer viewer;
+
+	private SWTCommitListView list;
 
 	public void inputChanged(final Viewer newViewer, final Object oldInput,
 			final Object newInput) {
-		list = (SWTCommit[]) newInput;
+		viewer = (TableViewer) newViewer;
+		list = newInput != null ? (SWTCommitListView) newInput
+				: SWTCommitListView.EMPTY;
+		if (viewer != null)
+			viewer.setItemCount(list.size());
+	}
+
+	public void updateElement(int index) {
+		if (index >= list.size())
+			return;
+		viewer.replace(list.get(index), index);
+		if (index >= list.size() - LOAD_AHEAD && isVisible(index))
+			list.requestCommits(index + LOAD_AHEAD);
 	}
 
-	public Object[] getElements(final Object inputElement) {
-		return list;
+	private boolean isVisible(int index) {
+		// rows materialized e.g. when restoring the selection must not
+		// trigger loading
+		Table table = viewer.getTable();
+		int itemHeight = Math.max(1, table.getItemHeight());
+		int visibleRows = table.getClientArea().height / itemHeight + 1;
+		int top = table.getTopIndex();
+		return index >= top && index <= top + visibleRows;
 	}
 
 	public void dispose() {
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.history;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+
+/**
+ * Read-only view of the first commits of a {@link SWTCommitList}.
+ * <p>
+ * The commit list is only appended to while the history is generated, so the
+ * commits already contained in the view never change. This avoids copying the
+ * list into a new array for every update of the history table.
+ */
+class SWTCommitListView extends AbstractList<SWTCommit> implements
+		RandomAccess {
+
+	/** A view without commits */
+	static final SWTCommitListView EMPTY = new SWTCommitListView(null, 0,
+			null);
+
+	private final SWTCommitList list;
+
+	private final int size;
+
+	private final GenerateHistoryJob loader;
+
+	/**
+	 * @param list
+	 * @param size
+	 *            number of commits of the list visible in this view
+	 * @param loader
+	 *            the job filling the list, used to load more commits on
+	 *            demand, may be {@code null}
+	 */
+	SWTCommitListView(SWTCommitList list, int size, GenerateHistoryJob loader) {
+		this.list = list;
+		this.size = size;
+		this.loader = loader;
+	}
+
+	@Override
+	public SWTCommit get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		// ensure that filling (GenerateHistoryJob) and reading (here) the
+		// commit list is thread safe
+		synchronized (list) {
+			return (SWTCommit) list.get(index);
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Tells the job filling the commit list that the commit at the given
+	 * index is about to be shown
+	 *
+	 * @param index
+	 */
+	void requestCommits(int index) {
+		if (loader != null)
+			loader.loadUpTo(index);
+	}
+
+	/**
+	 * Tells the job filling the commit list that the given commit is about to
+	 * be selected
+	 *
+	 * @param id
+	 */
+	void requestCommit(AnyObjectId id) {
+		if (loader != null)
+			loader.loadUntil(id);
+	}
+
+}
@@ -8,8 +8,6 @@
  *******************************************************************************/
 package org.eclipse.egit.ui.internal.history.command;
 
-import java.io.IOException;
-
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.egit.ui.UIText;
@@ -31,11 +29,7 @@ public Object execute(ExecutionEvent event) throws ExecutionException {
 			throw new ExecutionException(
 					UIText.ResetQuickdiffBaselineHandler_NoTargetMessage);
 
-		try {
-			GitQuickDiffProvider.setBaselineReference(repo, baseline);
-		} catch (IOException e) {
-			throw new ExecutionException(e.getMessage(), e);
-		}
+		GitQuickDiffProvider.setBaselineReference(repo, baseline);
 		return null;
 	}
 }
@@ -197,6 +197,8 @@ public void widgetSelected(SelectionEvent e) {
 		blameGroup.setText(UIText.GitPreferenceRoot_BlameGroupHeader);
 		addField(new BooleanFieldEditor(UIPreferences.BLAME_IGNORE_WHITESPACE,
 				UIText.GitPreferenceRoot_BlameIgnoreWhitespaceLabel, blameGroup));
+		addField(new BooleanFieldEditor(UIPreferences.BLAME_CACHE_ON_DISK,
+				UIText.GitPreferenceRoot_BlameCacheOnDiskLabel, blameGroup));
 		updateMargins(blameGroup);
 
 		Group secureGroup = new Group(main, SWT.SHADOW_ETCHED_IN);
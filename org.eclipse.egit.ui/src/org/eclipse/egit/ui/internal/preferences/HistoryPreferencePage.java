@@ -77,6 +77,9 @@ protected void createFieldEditors() {
 		addField(new IntegerFieldEditor(UIPreferences.HISTORY_MAX_NUM_COMMITS,
 				UIText.ResourceHistory_MaxNumCommitsInList,
 				getFieldEditorParent()));
+		addField(new BooleanFieldEditor(UIPreferences.HISTORY_LOAD_ON_DEMAND,
+				UIText.HistoryPreferencePage_LoadOnDemand,
+				getFieldEditorParent()));
 		addField(new IntegerFieldEditor(UIPreferences.HISTORY_MAX_TAG_LENGTH,
 				UIText.HistoryPreferencePage_MaxTagLength,
 				getFieldEditorParent()));
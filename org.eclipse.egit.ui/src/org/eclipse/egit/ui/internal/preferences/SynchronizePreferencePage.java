@@ -46,5 +46,9 @@ protected void createFieldEditors() {
 				UIPreferences.SYNC_VIEW_ALWAYS_SHOW_CHANGESET_MODEL,
 				UIText.GitPreferenceRoot_automaticallyEnableChangesetModel,
 				getFieldEditorParent()));
+		addField(new BooleanFieldEditor(
+				UIPreferences.SYNC_VIEW_PREFETCH_COMMIT_CHANGES,
+				UIText.GitPreferenceRoot_prefetchCommitChanges,
+				getFieldEditorParent()));
 	}
 }
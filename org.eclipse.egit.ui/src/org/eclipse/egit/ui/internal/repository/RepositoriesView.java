@@ -34,6 +34,7 @@
 import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
 import org.eclipse.egit.core.RepositoryCache;
 import org.eclipse.egit.core.RepositoryUtil;
+import org.eclipse.egit.core.internal.RefIndex;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.JobFamilies;
@@ -140,6 +141,8 @@ public class RepositoriesView extends CommonNavigator {
 
 	private final ConfigChangedListener myConfigChangeListener;
 
+	private final RefIndex.UpdateListener myRefIndexListener;
+
 	private final List<ListenerHandle> myListeners = new LinkedList<ListenerHandle>();
 
 	private Job scheduledJob;
@@ -201,6 +204,14 @@ public void onConfigChanged(ConfigChangedEvent event) {
 			}
 		};
 
+		myRefIndexListener = new RefIndex.UpdateListener() {
+			public void indexUpdated(Repository repository) {
+				lastRepositoryChange = System.currentTimeMillis();
+				scheduleRefresh(DEFAULT_REFRESH_DELAY);
+			}
+		};
+		RefIndex.addUpdateListener(myRefIndexListener);
+
 		selectionChangedListener = new ISelectionListener() {
 			public void selectionChanged(IWorkbenchPart part,
 					ISelection selection) {
@@ -471,6 +482,7 @@ public void dispose() {
 
 		// remove RepositoryChangedListener
 		unregisterRepositoryListener();
+		RefIndex.removeUpdateListener(myRefIndexListener);
 		repositories.clear();
 
 		super.dispose();
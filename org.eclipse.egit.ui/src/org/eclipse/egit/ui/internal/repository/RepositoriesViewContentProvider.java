@@ -18,13 +18,11 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 import org.eclipse.core.commands.IStateListener;
 import org.eclipse.core.commands.State;
@@ -33,6 +31,7 @@
 import org.eclipse.core.runtime.Path;
 import org.eclipse.egit.core.RepositoryCache;
 import org.eclipse.egit.core.RepositoryUtil;
+import org.eclipse.egit.core.internal.RefIndex;
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.UIText;
 import org.eclipse.egit.ui.internal.repository.tree.AdditionalRefNode;
@@ -61,9 +60,6 @@
 import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.events.ListenerHandle;
-import org.eclipse.jgit.events.RefsChangedEvent;
-import org.eclipse.jgit.events.RefsChangedListener;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
@@ -88,10 +84,6 @@ public class RepositoriesViewContentProvider implements ITreeContentProvider,
 
 	private boolean branchHierarchyMode = false;
 
-	private Map<Repository, Map<String, Ref>> branchRefs = new WeakHashMap<Repository, Map<String, Ref>>();
-
-	private Map<Repository, ListenerHandle> refsChangedListeners = new WeakHashMap<Repository, ListenerHandle>();
-
 	/**
 	 * Constructs this instance
 	 */
@@ -135,8 +127,12 @@ else if (next instanceof String)
 			try {
 				File gitDir = new File(directory);
 				if (gitDir.exists()) {
-					RepositoryNode rNode = new RepositoryNode(null,
-							repositoryCache.lookupRepository(gitDir));
+					Repository repository = repositoryCache
+							.lookupRepository(gitDir);
+					// the labels of the branches and tags are computed from
+					// the index of the references
+					RefIndex.updateInBackground(repository);
+					RepositoryNode rNode = new RepositoryNode(null, repository);
 					nodes.add(rNode);
 				} else
 					repositoryUtil.removeDir(gitDir);
@@ -151,9 +147,6 @@ else if (next instanceof String)
 
 	public void dispose() {
 		commandState.removeListener(this);
-		for (ListenerHandle handle : refsChangedListeners.values())
-			handle.remove();
-		refsChangedListeners.clear();
 	}
 
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
@@ -261,13 +254,9 @@ public Object[] getChildren(Object parentElement) {
 		case TAGS: {
 			List<RepositoryTreeNode<Ref>> refs = new ArrayList<RepositoryTreeNode<Ref>>();
 
-			try {
-				for (Entry<String, Ref> refEntry : repo.getRefDatabase()
-						.getRefs(Constants.R_TAGS).entrySet()) {
-					refs.add(new TagNode(node, repo, refEntry.getValue()));
-				}
-			} catch (IOException e) {
-				return handleException(e, node);
+			for (Entry<String, Ref> refEntry : getRefs(repo, Constants.R_TAGS)
+					.entrySet()) {
+				refs.add(new TagNode(node, repo, refEntry.getValue()));
 			}
 
 			return refs.toArray();
@@ -509,12 +498,7 @@ public boolean hasChildren(Object element) {
 		case SUBMODULES:
 			return true;
 		case TAGS:
-			try {
-				return !repo.getRefDatabase().getRefs(Constants.R_TAGS)
-						.isEmpty();
-			} catch (IOException e) {
-				return true;
-			}
+			return RefIndex.getCurrent(repo).hasRefs(Constants.R_TAGS);
 		case WORKINGDIR:
 			if (node.getRepository().isBare())
 				return false;
@@ -537,32 +521,8 @@ public void handleStateChange(State state, Object oldValue) {
 		}
 	}
 
-	private synchronized Map<String, Ref> getRefs(final Repository repo, final String prefix) throws IOException {
-		Map<String, Ref> allRefs = branchRefs.get(repo);
-		if (allRefs == null) {
-			allRefs = repo.getRefDatabase().getRefs(RefDatabase.ALL);
-			branchRefs.put(repo, allRefs);
-			if (refsChangedListeners.get(repo) == null) {
-				RefsChangedListener listener = new RefsChangedListener() {
-					public void onRefsChanged(RefsChangedEvent event) {
-						synchronized (RepositoriesViewContentProvider.this) {
-							branchRefs.remove(repo);
-						}
-					}
-				};
-				refsChangedListeners.put(repo, repo.getListenerList()
-						.addRefsChangedListener(listener));
-			}
-		}
-		if (prefix.equals(RefDatabase.ALL))
-			return allRefs;
-
-		Map<String, Ref> filtered = new HashMap<String, Ref>();
-		for (Map.Entry<String, Ref> entry : allRefs.entrySet()) {
-			if (entry.getKey().startsWith(prefix))
-				filtered.put(entry.getKey(), entry.getValue());
-		}
-		return filtered;
+	private Map<String, Ref> getRefs(final Repository repo, final String prefix) {
+		return RefIndex.getCurrent(repo).getRefs(prefix);
 	}
 
 	/**
@@ -21,6 +21,7 @@
 import org.eclipse.core.commands.State;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.RefIndex;
 import org.eclipse.egit.ui.UIIcons;
 import org.eclipse.egit.ui.UIText;
 import org.eclipse.egit.ui.internal.GitLabelProvider;
@@ -35,15 +36,11 @@
 import org.eclipse.jface.resource.ResourceManager;
 import org.eclipse.jface.viewers.DelegatingStyledCellLabelProvider.IStyledLabelProvider;
 import org.eclipse.jface.viewers.StyledString;
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Point;
@@ -95,21 +92,8 @@ public Image getImage(Object element) {
 		if (type == RepositoryTreeNodeType.TAG) {
 			// determine if we have a lightweight tag and
 			// use the corresponding icon
-			RevObject any;
-			try {
-				ObjectId id = node.getRepository().resolve(
-						((Ref) node.getObject()).getName());
-				if (id == null)
-					return null;
-				any = new RevWalk(node.getRepository()).parseAny(id);
-			} catch (MissingObjectException e) {
-				Activator.logError(e.getMessage(), e);
-				return null;
-			} catch (IOException e) {
-				Activator.logError(e.getMessage(), e);
-				return null;
-			}
-			if (any instanceof RevTag)
+			if (RefIndex.getCurrent(node.getRepository()).isAnnotatedTag(
+					((Ref) node.getObject()).getName()))
 				return decorateImage(annotatedTagImage, element);
 		} else if (type == RepositoryTreeNodeType.FILE) {
 			Object object = node.getObject();
@@ -173,28 +157,15 @@ private Image decorateImage(final Image image, Object element) {
 				if (refName.startsWith(Constants.R_HEADS)) {
 					// local branch: HEAD would be on the branch
 					compareString = refName;
-				} else if (refName.startsWith(Constants.R_TAGS)) {
-					// tag: HEAD would be on the commit id to which the tag is
-					// pointing
-					ObjectId id = node.getRepository().resolve(refName);
-					if (id == null)
-						return image;
-					RevWalk rw = new RevWalk(node.getRepository());
-					try {
-						compareString = rw.parseTag(id).getObject().name();
-					} catch (IncorrectObjectTypeException e) {
-						// Ref is a lightweight tag, not an annotated tag
-						compareString = id.name();
-					}
-				} else if (refName.startsWith(Constants.R_REMOTES)) {
-					// remote branch: HEAD would be on the commit id to which
-					// the branch is pointing
-					ObjectId id = node.getRepository().resolve(refName);
+				} else if (refName.startsWith(Constants.R_TAGS)
+						|| refName.startsWith(Constants.R_REMOTES)) {
+					// tag or remote branch: HEAD would be on the commit id to
+					// which the tag or branch is pointing
+					ObjectId id = RefIndex.getCurrent(node.getRepository())
+							.getPeeledId(refName);
 					if (id == null)
 						return image;
-					RevWalk rw = new RevWalk(node.getRepository());
-					RevCommit commit = rw.parseCommit(id);
-					compareString = commit.getId().name();
+					compareString = id.name();
 				} else if (refName.equals(Constants.HEAD))
 					return getDecoratedImage(image);
 				else {
@@ -318,6 +289,8 @@ else if (head.getObjectId() != null)
 							StyledString.QUALIFIER_STYLER);
 				} catch (IOException ignored) {
 					// Ignored
+				} finally {
+					walk.release();
 				}
 			}
 		}
@@ -17,6 +17,7 @@
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.egit.core.internal.RefIndex;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 
@@ -47,7 +48,7 @@ public BranchHierarchyNode(RepositoryTreeNode parent,
 	 */
 	public List<IPath> getChildPaths() throws IOException {
 		List<IPath> result = new ArrayList<IPath>();
-		for (IPath myPath : getPathList()) {
+		for (IPath myPath : getPathList(getRefs())) {
 			if (getObject().isPrefixOf(myPath)) {
 				int segmentDiff = myPath.segmentCount()
 						- getObject().segmentCount();
@@ -68,12 +69,13 @@ public List<IPath> getChildPaths() throws IOException {
 	 */
 	public List<Ref> getChildRefs() throws IOException {
 		List<Ref> childRefs = new ArrayList<Ref>();
-		for (IPath myPath : getPathList()) {
+		Map<String, Ref> refsMap = getRefs();
+		for (IPath myPath : getPathList(refsMap)) {
 			if (getObject().isPrefixOf(myPath)) {
 				int segmentDiff = myPath.segmentCount()
 						- getObject().segmentCount();
 				if (segmentDiff == 1) {
-					Ref ref = getRepository().getRef(myPath.toPortableString());
+					Ref ref = refsMap.get(myPath.toPortableString());
 					childRefs.add(ref);
 				}
 			}
@@ -81,14 +83,18 @@ public List<Ref> getChildRefs() throws IOException {
 		return childRefs;
 	}
 
-	private List<IPath> getPathList() throws IOException {
+	private Map<String, Ref> getRefs() {
+		// getObject() returns path ending with /
+		return RefIndex.getCurrent(getRepository()).getRefs(
+				getObject().toPortableString());
+	}
+
+	private List<IPath> getPathList(Map<String, Ref> refsMap) {
 		List<IPath> result = new ArrayList<IPath>();
-		Map<String, Ref> refsMap = getRepository().getRefDatabase().getRefs(
-				getObject().toPortableString()); // getObject() returns path ending with /
 		for (Map.Entry<String, Ref> entry : refsMap.entrySet()) {
 			if (entry.getValue().isSymbolic())
 				continue;
-			result.add(getObject().append(new Path(entry.getKey())));
+			result.add(new Path(entry.getKey()));
 		}
 		return result;
 	}
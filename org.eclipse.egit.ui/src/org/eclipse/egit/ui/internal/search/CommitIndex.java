@@ -0,0 +1,822 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.ui.Activator;
+import org.eclipse.egit.ui.JobFamilies;
+import org.eclipse.egit.ui.UIText;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.IntList;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Index of the metadata of the commits of a repository, used to search
+ * commits without walking and parsing all of them.
+ * <p>
+ * The index contains the id, tree, parents, author and committer of all
+ * commits reachable from any ref and the lower case terms of their messages.
+ * It is stored in the state location of the UI plug-in and extended with the
+ * commits which became reachable since its last update. Commits which are no
+ * longer reachable stay in the index, searches limit their results to the
+ * commits reachable from their start points. The index is written back when
+ * the update job ends or the index is disposed, not after every update.
+ * <p>
+ * Matches of idents and ids are exact. Matches of messages are candidates
+ * which must be verified against the message, since the terms neither retain
+ * case nor the separators between them.
+ */
+public class CommitIndex {
+
+	/** Match the author name and email address */
+	public static final int AUTHOR = 1;
+
+	/** Match the committer name and email address */
+	public static final int COMMITTER = 1 << 1;
+
+	/** Match the message */
+	public static final int MESSAGE = 1 << 2;
+
+	/** Match the commit id */
+	public static final int COMMIT_ID = 1 << 3;
+
+	/** Match the tree id */
+	public static final int TREE_ID = 1 << 4;
+
+	/** Match the parent ids */
+	public static final int PARENT_IDS = 1 << 5;
+
+	private static final int MAGIC = 0x45474349; // EGCI
+
+	private static final int VERSION = 2;
+
+	private static final String INDEX_FOLDER = "commitindex"; //$NON-NLS-1$
+
+	private static final String INDEX_EXTENSION = ".bin"; //$NON-NLS-1$
+
+	// longer terms can't be stored, their messages are always candidates
+	private static final int MAX_TERM_LENGTH = 256;
+
+	private static final long UPDATE_DELAY = 1000L;
+
+	private static final Map<Repository, CommitIndex> indexes = new WeakHashMap<Repository, CommitIndex>();
+
+	private static ListenerHandle refsChangedHandle;
+
+	private static class Entry extends ObjectId {
+
+		final int ordinal;
+
+		ObjectId tree;
+
+		int time;
+
+		int author;
+
+		int committer;
+
+		int[] parents;
+
+		Entry(AnyObjectId id, int ordinal) {
+			super(id);
+			this.ordinal = ordinal;
+		}
+	}
+
+	// the index does not keep its repository, so that the repository and
+	// its entry in the map of indexes can be collected
+	private final File gitDir;
+
+	// set while an update is scheduled
+	private Repository repositoryToUpdate;
+
+	// entries by ordinal, ordinals are assigned in the order of indexing
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	private final ObjectIdSubclassMap<Entry> entryMap = new ObjectIdSubclassMap<Entry>();
+
+	private final List<String> identNames = new ArrayList<String>();
+
+	private final List<String> identEmails = new ArrayList<String>();
+
+	private final Map<String, Integer> identOrdinals = new HashMap<String, Integer>();
+
+	// ordinals of the commits whose message contains the term, ascending
+	private final Map<String, IntList> terms = new HashMap<String, IntList>();
+
+	// the terms sorted for prefix lookups, null after new terms were added
+	private String[] sortedTerms;
+
+	// the reversed terms sorted for suffix lookups
+	private String[] sortedReversedTerms;
+
+	private final BitSet unindexedMessages = new BitSet();
+
+	// the commits reachable from these ids are indexed
+	private final Set<ObjectId> tips = new HashSet<ObjectId>();
+
+	private final Object updateLock = new Object();
+
+	private boolean loaded;
+
+	// entries were added since the index was loaded or saved
+	private boolean dirty;
+
+	private final Job updateJob;
+
+	/**
+	 * @param repository
+	 * @return the shared index of the repository, which is not necessarily up
+	 *         to date or even loaded
+	 */
+	public static CommitIndex getIndex(Repository repository) {
+		synchronized (indexes) {
+			CommitIndex index = indexes.get(repository);
+			if (index == null) {
+				index = new CommitIndex(repository.getDirectory(), Activator
+						.getDefault().getRepositoryUtil()
+						.getRepositoryName(repository));
+				indexes.put(repository, index);
+			}
+			if (refsChangedHandle == null)
+				refsChangedHandle = Repository.getGlobalListenerList()
+						.addRefsChangedListener(new RefsChangedListener() {
+							public void onRefsChanged(RefsChangedEvent event) {
+								CommitIndex changed;
+								synchronized (indexes) {
+									changed = indexes.get(event
+											.getRepository());
+								}
+								// only indexes which were used before are
+								// kept up to date
+								if (changed != null)
+									changed.scheduleUpdate(event
+											.getRepository());
+							}
+						});
+			return index;
+		}
+	}
+
+	/**
+	 * Forgets all indexes and stops their updates
+	 */
+	public static void dispose() {
+		synchronized (indexes) {
+			if (refsChangedHandle != null) {
+				refsChangedHandle.remove();
+				refsChangedHandle = null;
+			}
+			for (CommitIndex index : indexes.values()) {
+				index.updateJob.cancel();
+				try {
+					index.save();
+				} catch (IOException e) {
+					Activator.logError(e.getMessage(), e);
+				}
+			}
+			indexes.clear();
+		}
+	}
+
+	private CommitIndex(File gitDir, final String name) {
+		this.gitDir = gitDir;
+		updateJob = new Job(NLS.bind(UIText.CommitIndex_JobName, name)) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				Repository repository = takeRepositoryToUpdate();
+				if (repository == null)
+					return Status.OK_STATUS;
+				try {
+					boolean completed = doUpdate(repository, monitor);
+					// also keeps the entries of a canceled update
+					save();
+					if (!completed)
+						return Status.CANCEL_STATUS;
+				} catch (IOException e) {
+					return Activator.createErrorStatus(NLS.bind(
+							UIText.CommitIndex_ErrorUpdatingIndex, name), e);
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				if (family.equals(JobFamilies.COMMIT_INDEX))
+					return true;
+				return super.belongsTo(family);
+			}
+		};
+		updateJob.setSystem(true);
+	}
+
+	/**
+	 * Updates the index in the background
+	 *
+	 * @param repository
+	 *            the repository of the index
+	 */
+	public void scheduleUpdate(Repository repository) {
+		synchronized (updateJob) {
+			repositoryToUpdate = repository;
+		}
+		updateJob.schedule(UPDATE_DELAY);
+	}
+
+	private Repository takeRepositoryToUpdate() {
+		synchronized (updateJob) {
+			Repository result = repositoryToUpdate;
+			repositoryToUpdate = null;
+			return result;
+		}
+	}
+
+	/**
+	 * Loads the stored index if necessary and adds the commits which became
+	 * reachable since the last update. The index is written by the update job
+	 * afterwards.
+	 *
+	 * @param repository
+	 *            the repository of the index
+	 * @param monitor
+	 * @return {@code false} if the update was canceled
+	 * @throws IOException
+	 */
+	public boolean update(Repository repository, IProgressMonitor monitor)
+			throws IOException {
+		boolean completed = doUpdate(repository, monitor);
+		if (isDirty())
+			scheduleUpdate(repository);
+		return completed;
+	}
+
+	private synchronized boolean isDirty() {
+		return dirty;
+	}
+
+	private boolean doUpdate(Repository repository, IProgressMonitor monitor)
+			throws IOException {
+		synchronized (updateLock) {
+			if (!loaded) {
+				try {
+					load();
+				} catch (IOException e) {
+					// a damaged index is built again
+					clear();
+				}
+				loaded = true;
+			}
+			RevWalk walk = new RevWalk(repository);
+			try {
+				Set<ObjectId> newTips = getTips(repository, walk);
+				Set<ObjectId> oldTips;
+				synchronized (this) {
+					if (newTips.equals(tips))
+						return true;
+					oldTips = new HashSet<ObjectId>(tips);
+				}
+				for (ObjectId tip : newTips)
+					walk.markStart(walk.parseCommit(tip));
+				for (ObjectId tip : oldTips)
+					try {
+						walk.markUninteresting(walk.parseCommit(tip));
+					} catch (MissingObjectException e) {
+						// removed by gc, its commits are still indexed
+					}
+				List<Entry> added = new ArrayList<Entry>();
+				List<RevCommit[]> addedParents = new ArrayList<RevCommit[]>();
+				for (RevCommit commit : walk) {
+					// commits added by a canceled update have no parents yet
+					// and are not reachable from the old tips
+					if (monitor.isCanceled())
+						return false;
+					synchronized (this) {
+						Entry entry = entryMap.get(commit);
+						if (entry == null) {
+							entry = add(commit);
+							dirty = true;
+						} else if (entry.parents != null)
+							continue;
+						added.add(entry);
+					}
+					addedParents.add(commit.getParents());
+					commit.disposeBody();
+				}
+				synchronized (this) {
+					for (int i = 0; i < added.size(); i++)
+						added.get(i).parents = getOrdinals(addedParents.get(i));
+					tips.clear();
+					tips.addAll(newTips);
+					dirty = true;
+				}
+			} finally {
+				walk.release();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @param commit
+	 * @return the ordinal of the commit in this index or -1 if it is not
+	 *         indexed yet
+	 */
+	public synchronized int getOrdinal(AnyObjectId commit) {
+		Entry entry = entryMap.get(commit);
+		return entry != null ? entry.ordinal : -1;
+	}
+
+	/**
+	 * Finds the indexed commits which may match the given pattern. The
+	 * returned set may contain commits whose message doesn't match, the
+	 * message of these commits must be checked by the caller.
+	 *
+	 * @param fields
+	 *            the fields to search, a combination of {@link #AUTHOR},
+	 *            {@link #COMMITTER}, {@link #MESSAGE}, {@link #COMMIT_ID},
+	 *            {@link #TREE_ID} and {@link #PARENT_IDS}
+	 * @param pattern
+	 *            the pattern to match idents and ids with
+	 * @param messageFragments
+	 *            texts which are all contained in a matching message, the
+	 *            case is ignored
+	 * @return the ordinals of the commits which may match
+	 */
+	public synchronized BitSet find(int fields, Pattern pattern,
+			Collection<String> messageFragments) {
+		BitSet result = new BitSet(entries.size());
+		if ((fields & (AUTHOR | COMMITTER)) != 0) {
+			BitSet idents = new BitSet(identNames.size());
+			for (int i = 0; i < identNames.size(); i++)
+				if (matches(pattern, identNames.get(i))
+						|| matches(pattern, identEmails.get(i)))
+					idents.set(i);
+			if (!idents.isEmpty())
+				for (Entry entry : entries)
+					if ((fields & AUTHOR) != 0 && entry.author >= 0
+							&& idents.get(entry.author)
+							|| (fields & COMMITTER) != 0
+							&& entry.committer >= 0
+							&& idents.get(entry.committer))
+						result.set(entry.ordinal);
+		}
+		if ((fields & (COMMIT_ID | TREE_ID | PARENT_IDS)) != 0)
+			for (Entry entry : entries)
+				if (!result.get(entry.ordinal) && matchesIds(fields, pattern, entry))
+					result.set(entry.ordinal);
+		if ((fields & MESSAGE) != 0)
+			result.or(findMessageCandidates(messageFragments));
+		return result;
+	}
+
+	/**
+	 * @param starts
+	 *            the commits whose history is searched
+	 * @param ordinals
+	 *            the result of {@link #find(int, Pattern, Collection)}
+	 * @return the ids of the given commits which are reachable from the start
+	 *         commits, the newest commits first
+	 */
+	public synchronized List<ObjectId> getReachable(
+			Collection<? extends AnyObjectId> starts, BitSet ordinals) {
+		BitSet reachable = new BitSet(entries.size());
+		IntList queue = new IntList();
+		for (AnyObjectId start : starts) {
+			Entry entry = entryMap.get(start);
+			if (entry != null && !reachable.get(entry.ordinal)) {
+				reachable.set(entry.ordinal);
+				queue.add(entry.ordinal);
+			}
+		}
+		for (int i = 0; i < queue.size(); i++) {
+			int[] parents = entries.get(queue.get(i)).parents;
+			if (parents != null)
+				for (int parent : parents)
+					if (!reachable.get(parent)) {
+						reachable.set(parent);
+						queue.add(parent);
+					}
+		}
+		reachable.and(ordinals);
+		List<Entry> result = new ArrayList<Entry>(reachable.cardinality());
+		for (int i = reachable.nextSetBit(0); i >= 0; i = reachable
+				.nextSetBit(i + 1))
+			result.add(entries.get(i));
+		Collections.sort(result, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				if (e1.time != e2.time)
+					return e1.time > e2.time ? -1 : 1;
+				return e1.ordinal - e2.ordinal;
+			}
+		});
+		return new ArrayList<ObjectId>(result);
+	}
+
+	private boolean matchesIds(int fields, Pattern pattern, Entry entry) {
+		if ((fields & COMMIT_ID) != 0 && matches(pattern, entry.name()))
+			return true;
+		if ((fields & TREE_ID) != 0 && entry.tree != null
+				&& matches(pattern, entry.tree.name()))
+			return true;
+		if ((fields & PARENT_IDS) != 0 && entry.parents != null)
+			for (int parent : entry.parents)
+				if (matches(pattern, entries.get(parent).name()))
+					return true;
+		return false;
+	}
+
+	private static boolean matches(Pattern pattern, String input) {
+		return input != null && input.length() > 0
+				&& pattern.matcher(input).find();
+	}
+
+	private BitSet findMessageCandidates(Collection<String> fragments) {
+		BitSet candidates = null;
+		if (fragments != null)
+			for (String fragment : fragments) {
+				String text = fragment.toLowerCase();
+				int i = 0;
+				while (i < text.length()) {
+					if (!Character.isLetterOrDigit(text.charAt(i))) {
+						i++;
+						continue;
+					}
+					int start = i;
+					while (i < text.length()
+							&& Character.isLetterOrDigit(text.charAt(i)))
+						i++;
+					// a token at the start or end of a fragment may be part
+					// of a longer term
+					BitSet tokenCandidates = findTermCandidates(
+							text.substring(start, i), start == 0,
+							i == text.length());
+					if (candidates == null)
+						candidates = tokenCandidates;
+					else
+						candidates.and(tokenCandidates);
+				}
+			}
+		if (candidates == null) {
+			// nothing to look up
+			candidates = new BitSet(entries.size());
+			candidates.set(0, entries.size());
+		}
+		return candidates;
+	}
+
+	private BitSet findTermCandidates(String token, boolean openStart,
+			boolean openEnd) {
+		BitSet candidates = new BitSet(entries.size());
+		if (openStart && openEnd) {
+			// a substring can't be looked up in the sorted terms
+			for (Map.Entry<String, IntList> term : terms.entrySet())
+				if (term.getKey().indexOf(token) >= 0)
+					addOrdinals(candidates, term.getValue());
+		} else if (openStart) {
+			String[] reversed = getSortedReversedTerms();
+			String reversedToken = reverse(token);
+			for (int i = findFirst(reversed, reversedToken); i < reversed.length
+					&& reversed[i].startsWith(reversedToken); i++)
+				addOrdinals(candidates, terms.get(reverse(reversed[i])));
+		} else if (openEnd) {
+			String[] sorted = getSortedTerms();
+			for (int i = findFirst(sorted, token); i < sorted.length
+					&& sorted[i].startsWith(token); i++)
+				addOrdinals(candidates, terms.get(sorted[i]));
+		} else {
+			IntList ordinals = terms.get(token);
+			if (ordinals != null)
+				addOrdinals(candidates, ordinals);
+		}
+		candidates.or(unindexedMessages);
+		return candidates;
+	}
+
+	private static void addOrdinals(BitSet candidates, IntList ordinals) {
+		for (int i = 0; i < ordinals.size(); i++)
+			candidates.set(ordinals.get(i));
+	}
+
+	/**
+	 * @return the index of the first element which is not less than the key
+	 */
+	private static int findFirst(String[] sorted, String key) {
+		int index = Arrays.binarySearch(sorted, key);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	private String[] getSortedTerms() {
+		if (sortedTerms == null) {
+			sortedTerms = terms.keySet().toArray(new String[terms.size()]);
+			Arrays.sort(sortedTerms);
+		}
+		return sortedTerms;
+	}
+
+	private String[] getSortedReversedTerms() {
+		if (sortedReversedTerms == null) {
+			String[] reversed = new String[terms.size()];
+			int i = 0;
+			for (String term : terms.keySet())
+				reversed[i++] = reverse(term);
+			Arrays.sort(reversed);
+			sortedReversedTerms = reversed;
+		}
+		return sortedReversedTerms;
+	}
+
+	private static String reverse(String text) {
+		return new StringBuilder(text).reverse().toString();
+	}
+
+	private Set<ObjectId> getTips(Repository repository, RevWalk walk)
+			throws IOException {
+		Set<ObjectId> result = new HashSet<ObjectId>();
+		for (Ref ref : repository.getAllRefs().values()) {
+			ObjectId id = ref.getObjectId();
+			if (id == null)
+				continue;
+			try {
+				RevObject object = walk.peel(walk.parseAny(id));
+				if (object instanceof RevCommit)
+					result.add(object.copy());
+			} catch (MissingObjectException e) {
+				// ignore broken refs
+			}
+		}
+		return result;
+	}
+
+	private Entry add(RevCommit commit) {
+		Entry entry = new Entry(commit, entries.size());
+		entry.tree = commit.getTree().copy();
+		entry.time = commit.getCommitTime();
+		entry.author = getIdentOrdinal(commit.getAuthorIdent());
+		entry.committer = getIdentOrdinal(commit.getCommitterIdent());
+		entries.add(entry);
+		entryMap.add(entry);
+		String message = commit.getFullMessage().toLowerCase();
+		int i = 0;
+		while (i < message.length()) {
+			if (!Character.isLetterOrDigit(message.charAt(i))) {
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < message.length()
+					&& Character.isLetterOrDigit(message.charAt(i)))
+				i++;
+			if (i - start > MAX_TERM_LENGTH)
+				unindexedMessages.set(entry.ordinal);
+			else
+				addTerm(message.substring(start, i), entry.ordinal);
+		}
+		return entry;
+	}
+
+	private void addTerm(String term, int ordinal) {
+		IntList ordinals = terms.get(term);
+		if (ordinals == null) {
+			ordinals = new IntList(4);
+			terms.put(term, ordinals);
+			sortedTerms = null;
+			sortedReversedTerms = null;
+		}
+		if (ordinals.size() == 0
+				|| ordinals.get(ordinals.size() - 1) != ordinal)
+			ordinals.add(ordinal);
+	}
+
+	private int getIdentOrdinal(PersonIdent ident) {
+		if (ident == null)
+			return -1;
+		return getIdentOrdinal(ident.getName(), ident.getEmailAddress());
+	}
+
+	private int getIdentOrdinal(String name, String email) {
+		String key = name + '\n' + email;
+		Integer ordinal = identOrdinals.get(key);
+		if (ordinal == null) {
+			ordinal = Integer.valueOf(identNames.size());
+			identNames.add(name);
+			identEmails.add(email);
+			identOrdinals.put(key, ordinal);
+		}
+		return ordinal.intValue();
+	}
+
+	private int[] getOrdinals(RevCommit[] parents) {
+		IntList ordinals = new IntList(parents.length);
+		for (RevCommit parent : parents) {
+			Entry entry = entryMap.get(parent);
+			// parents missing in a shallow repository are not indexed
+			if (entry != null)
+				ordinals.add(entry.ordinal);
+		}
+		int[] result = new int[ordinals.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = ordinals.get(i);
+		return result;
+	}
+
+	private synchronized void clear() {
+		entries.clear();
+		entryMap.clear();
+		identNames.clear();
+		identEmails.clear();
+		identOrdinals.clear();
+		terms.clear();
+		sortedTerms = null;
+		sortedReversedTerms = null;
+		unindexedMessages.clear();
+		tips.clear();
+		dirty = false;
+	}
+
+	private synchronized void load() throws IOException {
+		File file = getIndexFile();
+		if (!file.isFile())
+			return;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(new FileInputStream(file))));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return;
+			if (!getRepositoryKey().equals(in.readUTF()))
+				return;
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			int tipCount = in.readInt();
+			for (int i = 0; i < tipCount; i++) {
+				in.readFully(raw);
+				tips.add(ObjectId.fromRaw(raw));
+			}
+			int identCount = in.readInt();
+			for (int i = 0; i < identCount; i++)
+				getIdentOrdinal(in.readUTF(), in.readUTF());
+			int entryCount = in.readInt();
+			for (int i = 0; i < entryCount; i++) {
+				in.readFully(raw);
+				Entry entry = new Entry(ObjectId.fromRaw(raw), i);
+				in.readFully(raw);
+				entry.tree = ObjectId.fromRaw(raw);
+				entry.time = in.readInt();
+				entry.author = in.readInt();
+				entry.committer = in.readInt();
+				int parentCount = in.readInt();
+				// -1 marks an entry whose update was canceled
+				if (parentCount >= 0) {
+					entry.parents = new int[parentCount];
+					for (int p = 0; p < parentCount; p++)
+						entry.parents[p] = in.readInt();
+				}
+				entries.add(entry);
+				entryMap.add(entry);
+			}
+			int termCount = in.readInt();
+			for (int i = 0; i < termCount; i++) {
+				String term = in.readUTF();
+				int count = in.readInt();
+				IntList ordinals = new IntList(count);
+				int ordinal = 0;
+				for (int o = 0; o < count; o++) {
+					// stored as differences to the previous ordinal
+					ordinal += in.readInt();
+					ordinals.add(ordinal);
+				}
+				terms.put(term, ordinals);
+			}
+			sortedTerms = null;
+			sortedReversedTerms = null;
+			int unindexedCount = in.readInt();
+			for (int i = 0; i < unindexedCount; i++)
+				unindexedMessages.set(in.readInt());
+		} catch (IOException e) {
+			clear();
+			throw e;
+		} finally {
+			in.close();
+		}
+	}
+
+	private synchronized void save() throws IOException {
+		if (!dirty)
+			return;
+		File file = getIndexFile();
+		File folder = file.getParentFile();
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException(folder.getPath());
+		File tmp = new File(folder, file.getName() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new DeflaterOutputStream(new FileOutputStream(tmp))));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(getRepositoryKey());
+			out.writeInt(tips.size());
+			for (ObjectId tip : tips)
+				tip.copyRawTo(out);
+			out.writeInt(identNames.size());
+			for (int i = 0; i < identNames.size(); i++) {
+				out.writeUTF(identNames.get(i));
+				out.writeUTF(identEmails.get(i));
+			}
+			out.writeInt(entries.size());
+			for (Entry entry : entries) {
+				entry.copyRawTo(out);
+				entry.tree.copyRawTo(out);
+				out.writeInt(entry.time);
+				out.writeInt(entry.author);
+				out.writeInt(entry.committer);
+				if (entry.parents == null)
+					// added by a canceled update, the next update which
+					// reaches the commit adds its parents
+					out.writeInt(-1);
+				else {
+					out.writeInt(entry.parents.length);
+					for (int parent : entry.parents)
+						out.writeInt(parent);
+				}
+			}
+			out.writeInt(terms.size());
+			for (Map.Entry<String, IntList> term : terms.entrySet()) {
+				out.writeUTF(term.getKey());
+				IntList ordinals = term.getValue();
+				out.writeInt(ordinals.size());
+				int previous = 0;
+				for (int i = 0; i < ordinals.size(); i++) {
+					out.writeInt(ordinals.get(i) - previous);
+					previous = ordinals.get(i);
+				}
+			}
+			out.writeInt(unindexedMessages.cardinality());
+			for (int i = unindexedMessages.nextSetBit(0); i >= 0; i = unindexedMessages
+					.nextSetBit(i + 1))
+				out.writeInt(i);
+		} finally {
+			out.close();
+		}
+		if (file.exists() && !file.delete())
+			throw new IOException(file.getPath());
+		if (!tmp.renameTo(file))
+			throw new IOException(tmp.getPath());
+		dirty = false;
+	}
+
+	private String getRepositoryKey() {
+		return gitDir.getAbsolutePath();
+	}
+
+	private File getIndexFile() {
+		File folder = Activator.getDefault().getStateLocation()
+				.append(INDEX_FOLDER).toFile();
+		String name = Integer.toHexString(getRepositoryKey().hashCode());
+		return new File(folder, name + INDEX_EXTENSION);
+	}
+
+}
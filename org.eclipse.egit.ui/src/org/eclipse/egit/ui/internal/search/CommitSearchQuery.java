@@ -13,12 +13,23 @@
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.egit.core.Activator;
@@ -32,13 +43,19 @@
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.RawCharSequence;
+import org.eclipse.jgit.util.RawParseUtils;
 import org.eclipse.search.ui.ISearchQuery;
 import org.eclipse.search.ui.ISearchResult;
 
 /**
- * Commit search query class that runs a {@link RevWalk} for all
- * {@link Repository} objects included in the {@link CommitSearchSettings} and
- * matches all {@link RevCommit} objects against the search settings.
+ * Commit search query class that searches all {@link Repository} objects
+ * included in the {@link CommitSearchSettings} and matches {@link RevCommit}
+ * objects against the search settings.
+ * <p>
+ * The candidates are looked up in the {@link CommitIndex} of the repository.
+ * Regular expressions can't be looked up in the index of the messages, for
+ * them all commits are walked.
  */
 public class CommitSearchQuery implements ISearchQuery {
 
@@ -46,41 +63,91 @@ private abstract class SearchMatcher {
 
 		abstract boolean matches(Pattern pattern, RevCommit commit);
 
-		protected boolean matches(Pattern pattern, String input) {
+		protected boolean matches(Pattern pattern, CharSequence input) {
 			return input != null && input.length() > 0
 					&& pattern.matcher(input).find();
 		}
 
+		/**
+		 * Returns a range of the raw commit buffer as text. Only ranges with
+		 * non ASCII characters are decoded, the ASCII encoding is the same in
+		 * all encodings used for commits.
+		 *
+		 * @param commit
+		 * @param start
+		 * @param end
+		 * @return the text
+		 */
+		protected CharSequence getText(RevCommit commit, int start, int end) {
+			byte[] buffer = commit.getRawBuffer();
+			for (int i = start; i < end; i++)
+				if (buffer[i] < 0)
+					return RawParseUtils.decode(commit.getEncoding(), buffer,
+							start, end);
+			return new RawCharSequence(buffer, start, end);
+		}
+
+		/**
+		 * Matches the name and email address of an ident line without
+		 * creating a {@link PersonIdent}
+		 *
+		 * @param pattern
+		 * @param commit
+		 * @param nameStart
+		 *            start of the name in the raw buffer or -1 if the ident
+		 *            is missing
+		 * @return whether the name or email address matches
+		 */
+		protected boolean matchesIdent(Pattern pattern, RevCommit commit,
+				int nameStart) {
+			if (nameStart < 0)
+				return false;
+			byte[] buffer = commit.getRawBuffer();
+			int lt = nameStart;
+			while (lt < buffer.length && buffer[lt] != '<'
+					&& buffer[lt] != '\n')
+				lt++;
+			if (lt == buffer.length || buffer[lt] != '<')
+				return false;
+			int gt = lt + 1;
+			while (gt < buffer.length && buffer[gt] != '>'
+					&& buffer[gt] != '\n')
+				gt++;
+			if (gt == buffer.length || buffer[gt] != '>')
+				return false;
+			int nameEnd = lt;
+			while (nameEnd > nameStart && buffer[nameEnd - 1] == ' ')
+				nameEnd--;
+			return matches(pattern, getText(commit, nameStart, nameEnd))
+					|| matches(pattern, getText(commit, lt + 1, gt));
+		}
+
 	}
 
 	private class AuthorMatcher extends SearchMatcher {
 
 		public boolean matches(Pattern pattern, RevCommit commit) {
-			PersonIdent author = commit.getAuthorIdent();
-			if (author != null)
-				return matches(pattern, author.getName())
-						|| matches(pattern, author.getEmailAddress());
-			else
-				return false;
+			return matchesIdent(pattern, commit,
+					RawParseUtils.author(commit.getRawBuffer(), 0));
 		}
 	}
 
 	private class CommitterMatcher extends SearchMatcher {
 
 		public boolean matches(Pattern pattern, RevCommit commit) {
-			PersonIdent committer = commit.getCommitterIdent();
-			if (committer != null)
-				return matches(pattern, committer.getName())
-						|| matches(pattern, committer.getEmailAddress());
-			else
-				return false;
+			return matchesIdent(pattern, commit,
+					RawParseUtils.committer(commit.getRawBuffer(), 0));
 		}
 	}
 
 	private class MessageMatcher extends SearchMatcher {
 
 		public boolean matches(Pattern pattern, RevCommit commit) {
-			return matches(pattern, commit.getFullMessage());
+			byte[] buffer = commit.getRawBuffer();
+			int start = RawParseUtils.commitMessage(buffer, 0);
+			if (start < 0)
+				return false;
+			return matches(pattern, getText(commit, start, buffer.length));
 		}
 	}
 
@@ -115,8 +182,13 @@ public boolean matches(Pattern pattern, RevCommit commit) {
 
 	private CommitSearchSettings settings;
 
+	private static final long POLL_INTERVAL = 100;
+
 	private List<SearchMatcher> matchers = new LinkedList<SearchMatcher>();
 
+	// the fields to look up in the commit index
+	private int indexFields;
+
 	/**
 	 * Create git search query
 	 *
@@ -125,18 +197,30 @@ public boolean matches(Pattern pattern, RevCommit commit) {
 	public CommitSearchQuery(CommitSearchSettings settings) {
 		this.settings = settings;
 
-		if (this.settings.isMatchAuthor())
+		if (this.settings.isMatchAuthor()) {
 			matchers.add(new AuthorMatcher());
-		if (this.settings.isMatchCommitter())
+			indexFields |= CommitIndex.AUTHOR;
+		}
+		if (this.settings.isMatchCommitter()) {
 			matchers.add(new CommitterMatcher());
-		if (this.settings.isMatchMessage())
+			indexFields |= CommitIndex.COMMITTER;
+		}
+		if (this.settings.isMatchMessage()) {
 			matchers.add(new MessageMatcher());
-		if (this.settings.isMatchCommit())
+			indexFields |= CommitIndex.MESSAGE;
+		}
+		if (this.settings.isMatchCommit()) {
 			matchers.add(new CommitNameMatcher());
-		if (this.settings.isMatchTree())
+			indexFields |= CommitIndex.COMMIT_ID;
+		}
+		if (this.settings.isMatchTree()) {
 			matchers.add(new TreeMatcher());
-		if (this.settings.isMatchParents())
+			indexFields |= CommitIndex.TREE_ID;
+		}
+		if (this.settings.isMatchParents()) {
 			matchers.add(new ParentMatcher());
+			indexFields |= CommitIndex.PARENT_IDS;
+		}
 	}
 
 	/**
@@ -158,69 +242,160 @@ private Repository getRepository(String name) throws IOException {
 	}
 
 	/**
+	 * Searches the repositories concurrently, the matches are added to the
+	 * result as soon as they are found.
+	 *
 	 * @see org.eclipse.search.ui.ISearchQuery#run(org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public IStatus run(IProgressMonitor monitor)
+	public IStatus run(final IProgressMonitor monitor)
 			throws OperationCanceledException {
 		this.result.removeAll();
 
-		Pattern pattern = PatternUtils.createPattern(
+		final Pattern pattern = PatternUtils.createPattern(
 				this.settings.getTextPattern(),
 				this.settings.isCaseSensitive(), this.settings.isRegExSearch());
 		List<String> paths = settings.getRepositories();
+		List<Repository> repositories = new ArrayList<Repository>();
 		try {
 			for (String path : paths) {
-				if (monitor.isCanceled())
-					throw new OperationCanceledException();
-
 				Repository repo = getRepository(path);
-				if (repo == null)
-					continue;
-
-				monitor.setTaskName(MessageFormat.format(
-						UIText.CommitSearchQuery_TaskSearchCommits, repo
-								.getDirectory().getParentFile().getName()));
-				walkRepository(repo, pattern, monitor);
+				if (repo != null)
+					repositories.add(repo);
 			}
 		} catch (IOException e) {
 			org.eclipse.egit.ui.Activator.handleError(
 					"Error searching commits", e, true); //$NON-NLS-1$
+			return Status.OK_STATUS;
+		}
+		if (repositories.isEmpty())
+			return Status.OK_STATUS;
+
+		// the workers only use the monitor to check for cancellation
+		final IProgressMonitor cancelMonitor = new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return monitor.isCanceled();
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				repositories.size(), Runtime.getRuntime()
+						.availableProcessors()), new ThreadFactory() {
+			private int count;
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r,
+						"EGit commit search worker " + (++count)); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		monitor.beginTask(UIText.CommitSearchQuery_Label, repositories.size());
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for (final Repository repo : repositories)
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws IOException {
+						searchRepository(repo, pattern, cancelMonitor);
+						return null;
+					}
+				}));
+			for (int i = 0; i < futures.size(); i++) {
+				monitor.setTaskName(MessageFormat.format(
+						UIText.CommitSearchQuery_TaskSearchCommits,
+						repositories.get(i).getDirectory().getParentFile()
+								.getName()));
+				try {
+					waitFor(futures.get(i), monitor);
+				} catch (IOException e) {
+					// the other repositories are still searched
+					org.eclipse.egit.ui.Activator.handleError(
+							"Error searching commits", e, true); //$NON-NLS-1$
+				}
+				monitor.worked(1);
+			}
+		} finally {
+			executor.shutdownNow();
+			monitor.done();
 		}
 		return Status.OK_STATUS;
 	}
 
+	private void waitFor(Future<Object> future, IProgressMonitor monitor)
+			throws IOException {
+		for (;;) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+			try {
+				future.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				return;
+			} catch (TimeoutException e) {
+				// check for cancellation and wait again
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				IOException ioe = new IOException(cause.getMessage());
+				ioe.initCause(cause);
+				throw ioe;
+			}
+		}
+	}
+
+	private void searchRepository(Repository repository, Pattern pattern,
+			IProgressMonitor monitor) throws IOException {
+		if (this.settings.isRegExSearch())
+			walkRepository(repository, pattern, monitor);
+		else
+			searchIndex(repository, pattern, monitor);
+	}
+
+	private List<RevCommit> getStartCommits(Repository repository,
+			RevWalk walk) throws IOException {
+		List<RevCommit> commits = new LinkedList<RevCommit>();
+		if (this.settings.isAllBranches()) {
+			for (Ref ref : repository.getRefDatabase()
+					.getRefs(Constants.R_HEADS).values())
+				if (!ref.isSymbolic())
+					commits.add(walk.parseCommit(ref.getObjectId()));
+			for (Ref ref : repository.getRefDatabase()
+					.getRefs(Constants.R_REMOTES).values())
+				if (!ref.isSymbolic())
+					commits.add(walk.parseCommit(ref.getObjectId()));
+		} else {
+			ObjectId headCommit = repository.resolve(Constants.HEAD);
+			if (headCommit != null)
+				commits.add(walk.parseCommit(headCommit));
+		}
+		return commits;
+	}
+
+	private void match(Repository repository, RevCommit commit, Pattern pattern) {
+		for (SearchMatcher matcher : this.matchers)
+			if (matcher.matches(pattern, commit)) {
+				result.addResult(new RepositoryCommit(repository, commit));
+				break;
+			}
+	}
+
 	private void walkRepository(Repository repository, Pattern pattern,
 			IProgressMonitor monitor) throws IOException {
 		RevWalk walk = new RevWalk(repository);
 		try {
 			walk.setRetainBody(true);
-			List<RevCommit> commits = new LinkedList<RevCommit>();
-			if (this.settings.isAllBranches()) {
-				for (Ref ref : repository.getRefDatabase()
-						.getRefs(Constants.R_HEADS).values())
-					if (!ref.isSymbolic())
-						commits.add(walk.parseCommit(ref.getObjectId()));
-				for (Ref ref : repository.getRefDatabase()
-						.getRefs(Constants.R_REMOTES).values())
-					if (!ref.isSymbolic())
-						commits.add(walk.parseCommit(ref.getObjectId()));
-			} else {
-				ObjectId headCommit = repository.resolve(Constants.HEAD);
-				if (headCommit != null)
-					commits.add(walk.parseCommit(headCommit));
-			}
-
+			List<RevCommit> commits = getStartCommits(repository, walk);
 			if (!commits.isEmpty()) {
 				walk.markStart(commits);
 				for (RevCommit commit : walk) {
 					if (monitor.isCanceled())
 						throw new OperationCanceledException();
-					for (SearchMatcher matcher : this.matchers)
-						if (matcher.matches(pattern, commit)) {
-							result.addResult(new RepositoryCommit(repository,
-									commit));
-							break;
-						}
+					match(repository, commit, pattern);
 				}
 			}
 		} finally {
@@ -228,6 +403,51 @@ private void walkRepository(Repository repository, Pattern pattern,
 		}
 	}
 
+	private void searchIndex(Repository repository, Pattern pattern,
+			IProgressMonitor monitor) throws IOException {
+		CommitIndex index = CommitIndex.getIndex(repository);
+		if (!index.update(repository, monitor))
+			throw new OperationCanceledException();
+		RevWalk walk = new RevWalk(repository);
+		try {
+			walk.setRetainBody(true);
+			List<RevCommit> commits = getStartCommits(repository, walk);
+			for (RevCommit commit : commits)
+				if (index.getOrdinal(commit) < 0) {
+					// refs changed after the update
+					walkRepository(repository, pattern, monitor);
+					return;
+				}
+			BitSet candidates = index.find(indexFields, pattern,
+					getMessageFragments());
+			// the candidates are verified, the message candidates only
+			// contain the terms of the pattern
+			for (ObjectId id : index.getReachable(commits, candidates)) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				match(repository, walk.parseCommit(id), pattern);
+			}
+		} finally {
+			walk.dispose();
+		}
+	}
+
+	private List<String> getMessageFragments() {
+		// the texts between the wildcards and escapes of the pattern are
+		// contained in all matching messages
+		List<String> fragments = new ArrayList<String>();
+		String text = this.settings.getTextPattern();
+		int start = 0;
+		for (int i = 0; i <= text.length(); i++)
+			if (i == text.length() || text.charAt(i) == '*'
+					|| text.charAt(i) == '?' || text.charAt(i) == '\\') {
+				if (i > start)
+					fragments.add(text.substring(start, i));
+				start = i + 1;
+			}
+		return fragments;
+	}
+
 	/**
 	 * @see org.eclipse.search.ui.ISearchQuery#getLabel()
 	 */
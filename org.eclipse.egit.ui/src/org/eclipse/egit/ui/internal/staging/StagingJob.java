@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (C) 2012, Christian Halstrick <christian.halstrick@sap.com>
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.staging;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffCacheEntry;
+import org.eclipse.egit.core.internal.job.RuleUtil;
+import org.eclipse.egit.ui.Activator;
+import org.eclipse.egit.ui.JobFamilies;
+import org.eclipse.egit.ui.UIText;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.RmCommand;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.NoFilepatternException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+/**
+ * Stages or unstages the entries of the staging view in the background.
+ * <p>
+ * Staging adds the files to the index in batches so that it can be canceled
+ * in between. Unstaging resets the index entries to their {@code HEAD}
+ * version, which is looked up for all entries by a single tree walk. The index
+ * diff is then updated for the edited files only.
+ */
+class StagingJob extends Job {
+
+	private static final int BATCH_SIZE = 500;
+
+	private final Repository repository;
+
+	private final boolean stage;
+
+	private final List<String> addPaths = new ArrayList<String>();
+
+	private final List<String> rmPaths = new ArrayList<String>();
+
+	private final List<String> headPaths = new ArrayList<String>();
+
+	private final List<String> allPaths = new ArrayList<String>();
+
+	/**
+	 * @param repository
+	 * @param entries
+	 *            the entries to stage or unstage
+	 * @param stage
+	 *            {@code true} to stage, {@code false} to unstage the entries
+	 */
+	StagingJob(Repository repository, Collection<StagingEntry> entries,
+			boolean stage) {
+		super(stage ? UIText.StagingJob_StageJobName
+				: UIText.StagingJob_UnstageJobName);
+		this.repository = repository;
+		this.stage = stage;
+		for (StagingEntry entry : entries)
+			if (stage)
+				addStagePath(entry);
+			else
+				addUnstagePath(entry);
+		setRule(RuleUtil.getRule(repository));
+	}
+
+	private void addStagePath(StagingEntry entry) {
+		switch (entry.getState()) {
+		case ADDED:
+		case CHANGED:
+		case REMOVED:
+			// already staged
+			return;
+		case CONFLICTING:
+		case MODIFIED:
+		case PARTIALLY_MODIFIED:
+		case UNTRACKED:
+			addPaths.add(entry.getPath());
+			break;
+		case MISSING:
+			rmPaths.add(entry.getPath());
+			break;
+		}
+		allPaths.add(entry.getPath());
+	}
+
+	private void addUnstagePath(StagingEntry entry) {
+		switch (entry.getState()) {
+		case ADDED:
+			rmPaths.add(entry.getPath());
+			break;
+		case CHANGED:
+		case REMOVED:
+			// set the index entry back to the head revision
+			headPaths.add(entry.getPath());
+			break;
+		default:
+			// unstaged
+			return;
+		}
+		allPaths.add(entry.getPath());
+	}
+
+	/**
+	 * @return whether there is anything to stage or unstage
+	 */
+	boolean hasPaths() {
+		return !allPaths.isEmpty();
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		IndexDiffCacheEntry cacheEntry = org.eclipse.egit.core.Activator
+				.getDefault().getIndexDiffCache()
+				.getIndexDiffCacheEntry(repository);
+		monitor.beginTask(getName(), allPaths.size());
+		cacheEntry.beginIndexEdit(allPaths);
+		try {
+			if (stage)
+				stage(monitor);
+			else
+				unstage(monitor);
+			return monitor.isCanceled() ? Status.CANCEL_STATUS
+					: Status.OK_STATUS;
+		} catch (IOException e) {
+			return Activator.createErrorStatus(
+					UIText.StagingJob_IndexUpdateFailed, e);
+		} catch (JGitInternalException e) {
+			return Activator.createErrorStatus(
+					UIText.StagingJob_IndexUpdateFailed, e);
+		} finally {
+			cacheEntry.endIndexEdit();
+			monitor.done();
+		}
+	}
+
+	private void stage(IProgressMonitor monitor) {
+		Git git = new Git(repository);
+		for (int i = 0; i < addPaths.size(); i += BATCH_SIZE) {
+			if (monitor.isCanceled())
+				return;
+			AddCommand add = git.add();
+			List<String> batch = addPaths.subList(i,
+					Math.min(i + BATCH_SIZE, addPaths.size()));
+			for (String path : batch)
+				add.addFilepattern(path);
+			try {
+				add.call();
+			} catch (NoFilepatternException e) {
+				// cannot happen
+			}
+			monitor.worked(batch.size());
+		}
+		for (int i = 0; i < rmPaths.size(); i += BATCH_SIZE) {
+			if (monitor.isCanceled())
+				return;
+			RmCommand rm = git.rm();
+			List<String> batch = rmPaths.subList(i,
+					Math.min(i + BATCH_SIZE, rmPaths.size()));
+			for (String path : batch)
+				rm.addFilepattern(path);
+			try {
+				rm.call();
+			} catch (NoFilepatternException e) {
+				// cannot happen
+			}
+			monitor.worked(batch.size());
+		}
+	}
+
+	private void unstage(IProgressMonitor monitor) throws IOException {
+		DirCache dirCache = repository.lockDirCache();
+		try {
+			DirCacheEditor edit = dirCache.editor();
+			for (String path : rmPaths)
+				edit.add(new DirCacheEditor.DeletePath(path));
+			monitor.worked(rmPaths.size());
+
+			ObjectId head = repository.resolve(Constants.HEAD);
+			if (!headPaths.isEmpty() && head != null) {
+				RevWalk rw = new RevWalk(repository);
+				TreeWalk tw = new TreeWalk(repository);
+				try {
+					tw.addTree(rw.parseCommit(head).getTree());
+					tw.setRecursive(true);
+					tw.setFilter(PathFilterGroup.createFromStrings(headPaths));
+					while (tw.next()) {
+						if (monitor.isCanceled())
+							return;
+						final FileMode mode = tw.getFileMode(0);
+						final ObjectId id = tw.getObjectId(0);
+						edit.add(new DirCacheEditor.PathEdit(tw.getPathString()) {
+							@Override
+							public void apply(DirCacheEntry ent) {
+								ent.setFileMode(mode);
+								ent.setObjectId(id);
+								// for index & working tree compare
+								ent.setLastModified(0);
+							}
+						});
+						monitor.worked(1);
+					}
+				} finally {
+					tw.release();
+					rw.release();
+				}
+			}
+			if (!monitor.isCanceled())
+				edit.commit();
+		} finally {
+			dirCache.unlock();
+		}
+	}
+
+	@Override
+	public boolean belongsTo(Object family) {
+		if (family == (stage ? JobFamilies.ADD_TO_INDEX
+				: JobFamilies.REMOVE_FROM_INDEX))
+			return true;
+		return super.belongsTo(family);
+	}
+
+}
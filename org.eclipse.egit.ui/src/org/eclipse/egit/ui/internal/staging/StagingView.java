@@ -13,7 +13,6 @@
 import static org.eclipse.ui.menus.CommandContributionItem.STYLE_PUSH;
 
 import java.io.File;
-import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -81,23 +80,14 @@
 import org.eclipse.jface.viewers.OpenEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TableViewer;
-import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CheckoutCommand;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.RmCommand;
-import org.eclipse.jgit.api.errors.NoFilepatternException;
-import org.eclipse.jgit.dircache.DirCache;
-import org.eclipse.jgit.dircache.DirCacheEditor;
-import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryState;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.SashForm;
@@ -134,6 +124,7 @@
 import org.eclipse.ui.menus.CommandContributionItem;
 import org.eclipse.ui.menus.CommandContributionItemParameter;
 import org.eclipse.ui.part.ViewPart;
+import org.eclipse.ui.progress.IWorkbenchSiteProgressService;
 
 /**
  * A GitX style staging view with embedded commit dialog.
@@ -966,133 +957,28 @@ private void showResource(final IResource resource) {
 	}
 
 	private void stage(IStructuredSelection selection) {
-		Git git = new Git(currentRepository);
-		AddCommand add = null;
-		RmCommand rm = null;
-		Iterator iterator = selection.iterator();
-		while (iterator.hasNext()) {
-			StagingEntry entry = (StagingEntry) iterator.next();
-			switch (entry.getState()) {
-			case ADDED:
-			case CHANGED:
-			case REMOVED:
-				// already staged
-				break;
-			case CONFLICTING:
-			case MODIFIED:
-			case PARTIALLY_MODIFIED:
-			case UNTRACKED:
-				if (add == null)
-					add = git.add();
-				add.addFilepattern(entry.getPath());
-				break;
-			case MISSING:
-				if (rm == null)
-					rm = git.rm();
-				rm.addFilepattern(entry.getPath());
-				break;
-			}
-		}
-
-		if (add != null)
-			try {
-				add.call();
-			} catch (NoFilepatternException e1) {
-				// cannot happen
-			}
-		if (rm != null)
-			try {
-				rm.call();
-			} catch (NoFilepatternException e) {
-				// cannot happen
-			}
+		scheduleStagingJob(selection, true);
 	}
 
 	private void unstage(IStructuredSelection selection) {
-		if (selection.isEmpty())
-			return;
-
-		RevCommit headRev = null;
-		try {
-			final Ref head = currentRepository.getRef(Constants.HEAD);
-			// head.getObjectId() is null if the repository does not contain any
-			// commit
-			if (head.getObjectId() != null)
-				headRev = new RevWalk(currentRepository).parseCommit(head
-						.getObjectId());
-		} catch (IOException e1) {
-			// TODO fix text
-			MessageDialog.openError(getSite().getShell(),
-					UIText.CommitAction_MergeHeadErrorTitle,
-					UIText.CommitAction_ErrorReadingMergeMsg);
-			return;
-		}
-
-		final DirCache dirCache;
-		final DirCacheEditor edit;
-		try {
-			dirCache = currentRepository.lockDirCache();
-			edit = dirCache.editor();
-		} catch (IOException e) {
-			// TODO fix text
-			MessageDialog.openError(getSite().getShell(),
-					UIText.CommitAction_MergeHeadErrorTitle,
-					UIText.CommitAction_ErrorReadingMergeMsg);
-			return;
-		}
-
-		try {
-			updateDirCache(selection, headRev, edit);
-
-			try {
-				edit.commit();
-			} catch (IOException e) {
-				// TODO fix text
-				MessageDialog.openError(getSite().getShell(),
-						UIText.CommitAction_MergeHeadErrorTitle,
-						UIText.CommitAction_ErrorReadingMergeMsg);
-			}
-		} finally {
-			dirCache.unlock();
-		}
+		scheduleStagingJob(selection, false);
 	}
 
-	private void updateDirCache(IStructuredSelection selection,
-			final RevCommit headRev, final DirCacheEditor edit) {
+	private void scheduleStagingJob(IStructuredSelection selection,
+			boolean stage) {
+		List<StagingEntry> entries = new ArrayList<StagingEntry>();
 		Iterator iterator = selection.iterator();
-		while (iterator.hasNext()) {
-			StagingEntry entry = (StagingEntry) iterator.next();
-			switch (entry.getState()) {
-			case ADDED:
-				edit.add(new DirCacheEditor.DeletePath(entry.getPath()));
-				break;
-			case CHANGED:
-			case REMOVED:
-				// set the index object id/file mode back to our head revision
-				try {
-					final TreeWalk tw = TreeWalk.forPath(currentRepository,
-							entry.getPath(), headRev.getTree());
-					if (tw != null)
-						edit.add(new DirCacheEditor.PathEdit(entry.getPath()) {
-							@Override
-							public void apply(DirCacheEntry ent) {
-								ent.setFileMode(tw.getFileMode(0));
-								ent.setObjectId(tw.getObjectId(0));
-								// for index & working tree compare
-								ent.setLastModified(0);
-							}
-						});
-				} catch (IOException e) {
-					// TODO fix text
-					MessageDialog.openError(getSite().getShell(),
-							UIText.CommitAction_MergeHeadErrorTitle,
-							UIText.CommitAction_ErrorReadingMergeMsg);
-				}
-				break;
-			default:
-				// unstaged
-			}
-		}
+		while (iterator.hasNext())
+			entries.add((StagingEntry) iterator.next());
+		StagingJob job = new StagingJob(currentRepository, entries, stage);
+		if (!job.hasPaths())
+			return;
+		IWorkbenchSiteProgressService service = (IWorkbenchSiteProgressService) getSite()
+				.getAdapter(IWorkbenchSiteProgressService.class);
+		if (service != null)
+			service.schedule(job, 0, true);
+		else
+			job.schedule();
 	}
 
 	private boolean isValidRepo(final Repository repository) {
@@ -1146,8 +1032,16 @@ public void run() {
 				boolean indexDiffAvailable = indexDiff !=  null;
 
 				final StagingViewUpdate update = new StagingViewUpdate(currentRepository, indexDiff, null);
-				unstagedTableViewer.setInput(update);
-				stagedTableViewer.setInput(update);
+				if (repositoryChanged || unstagedTableViewer.getInput() == null) {
+					unstagedTableViewer.setInput(update);
+					stagedTableViewer.setInput(update);
+				} else {
+					// only update the rows which changed
+					getContentProvider(unstagedTableViewer).update(
+							unstagedTableViewer, update);
+					getContentProvider(stagedTableViewer).update(
+							stagedTableViewer, update);
+				}
 				enableCommitWidgets(indexDiffAvailable);
 				commitAction.setEnabled(indexDiffAvailable && repository.getRepositoryState()
 						.canCommit());
@@ -17,29 +17,103 @@
 import static org.eclipse.egit.ui.internal.staging.StagingEntry.State.REMOVED;
 import static org.eclipse.egit.ui.internal.staging.StagingEntry.State.UNTRACKED;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.UIText;
+import org.eclipse.egit.ui.internal.staging.StagingEntry.State;
 import org.eclipse.egit.ui.internal.staging.StagingView.StagingViewUpdate;
 import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileSnapshot;
 import org.eclipse.jgit.submodule.SubmoduleWalk;
 
 /**
  * ContentProvider for staged and unstaged table nodes
+ * <p>
+ * The entries are kept in a map sorted by path. Updates of the index diff
+ * which were calculated for a set of changed files are applied for these
+ * files only, and only the table rows of the entries which changed are
+ * updated.
  */
 public class StagingViewContentProvider implements
 		IStructuredContentProvider {
+
+	// above this number of changed rows the table is refreshed completely
+	private static final int MAX_ROW_UPDATES = 500;
+
+	private static final Comparator<StagingEntry> PATH_ORDER = new Comparator<StagingEntry>() {
+		public int compare(StagingEntry o1, StagingEntry o2) {
+			return o1.getPath().compareTo(o2.getPath());
+		}
+	};
+
+	// submodule paths of the index of each repository, shared by the staged
+	// and unstaged content providers
+	private static final Map<Repository, SubmodulePaths> submodulePaths = new WeakHashMap<Repository, SubmodulePaths>();
+
+	private static class SubmodulePaths {
+
+		final FileSnapshot snapshot;
+
+		final Set<String> paths;
+
+		SubmodulePaths(FileSnapshot snapshot, Set<String> paths) {
+			this.snapshot = snapshot;
+			this.paths = paths;
+		}
+	}
+
+	/**
+	 * The entries which changed by an update
+	 */
+	private static class RowChanges {
+
+		final List<StagingEntry> removed = new ArrayList<StagingEntry>();
+
+		final List<StagingEntry> added = new ArrayList<StagingEntry>();
+
+		final List<StagingEntry> updated = new ArrayList<StagingEntry>();
+
+		boolean isEmpty() {
+			return removed.isEmpty() && added.isEmpty() && updated.isEmpty();
+		}
+
+		int size() {
+			return removed.size() + added.size() + updated.size();
+		}
+	}
+
+	private final SortedMap<String, StagingEntry> entries = new TreeMap<String, StagingEntry>();
+
 	private StagingEntry[] content = new StagingEntry[0];
+
 	private boolean isWorkspace;
 
+	private Repository repository;
+
+	private IndexDiffData indexDiff;
+
+	private Set<String> submodules = Collections.emptySet();
+
 	StagingViewContentProvider(boolean workspace) {
 		this.isWorkspace = workspace;
 	}
@@ -56,64 +130,240 @@ public void inputChanged(Viewer viewer, Object oldInput,
 			Object newInput) {
 		if (!(newInput instanceof StagingViewUpdate))
 			return;
+		// the viewer is refreshed completely after a new input was set
+		apply((StagingViewUpdate) newInput);
+	}
 
-		StagingViewUpdate update = (StagingViewUpdate) newInput;
+	/**
+	 * Applies an update without setting a new input, only the rows of the
+	 * entries which changed are updated in the viewer.
+	 *
+	 * @param viewer
+	 *            the viewer showing the entries of this provider
+	 * @param update
+	 */
+	void update(TableViewer viewer, StagingViewUpdate update) {
+		RowChanges changes = apply(update);
+		if (changes == null || changes.size() > MAX_ROW_UPDATES) {
+			viewer.refresh();
+			return;
+		}
+		if (changes.isEmpty())
+			return;
+		viewer.getTable().setRedraw(false);
+		try {
+			if (!changes.removed.isEmpty())
+				viewer.remove(changes.removed.toArray());
+			// insert in ascending order so that all preceding rows exist
+			Collections.sort(changes.added, PATH_ORDER);
+			for (StagingEntry entry : changes.added)
+				viewer.insert(entry,
+						Arrays.binarySearch(content, entry, PATH_ORDER));
+			if (!changes.updated.isEmpty())
+				viewer.update(changes.updated.toArray(), null);
+		} finally {
+			viewer.getTable().setRedraw(true);
+		}
+	}
 
+	/**
+	 * @param update
+	 * @return the changed entries, or {@code null} if all entries were
+	 *         removed
+	 */
+	private RowChanges apply(StagingViewUpdate update) {
 		if (update.repository == null || update.indexDiff == null) {
+			entries.clear();
 			content = new StagingEntry[0];
-			return;
+			repository = null;
+			indexDiff = null;
+			submodules = Collections.emptySet();
+			return null;
+		}
+
+		// the paths which may have changed, null if all paths have to be
+		// compared
+		Collection<String> changedPaths = null;
+		if (update.repository == repository && indexDiff != null)
+			if (update.changedResources != null)
+				changedPaths = update.changedResources;
+			else
+				changedPaths = update.indexDiff.getChangedFilesSince(indexDiff);
+		if (update.repository != repository)
+			entries.clear();
+		repository = update.repository;
+		indexDiff = update.indexDiff;
+		Set<String> oldSubmodules = submodules;
+		submodules = getSubmodulePaths(repository);
+
+		RowChanges changes = new RowChanges();
+		if (changedPaths != null && !containsFolder(changedPaths))
+			for (String path : changedPaths)
+				updateEntry(path, getState(path), changes);
+		else
+			updateAllEntries(changes);
+
+		if (submodules != oldSubmodules) {
+			updateSubmodule(oldSubmodules, submodules, changes);
+			updateSubmodule(submodules, oldSubmodules, changes);
+		}
+
+		if (!changes.added.isEmpty() || !changes.removed.isEmpty())
+			content = entries.values().toArray(
+					new StagingEntry[entries.size()]);
+		return changes;
+	}
+
+	private void updateAllEntries(RowChanges changes) {
+		Map<String, State> states = getStates();
+		for (Iterator<StagingEntry> it = entries.values().iterator(); it
+				.hasNext();) {
+			StagingEntry entry = it.next();
+			if (entry.getState() != states.get(entry.getPath())) {
+				it.remove();
+				changes.removed.add(entry);
+			}
+		}
+		for (Map.Entry<String, State> state : states.entrySet())
+			if (!entries.containsKey(state.getKey()))
+				addEntry(state.getKey(), state.getValue(), changes);
+	}
+
+	private void updateEntry(String path, State state, RowChanges changes) {
+		StagingEntry entry = entries.get(path);
+		if (entry != null) {
+			if (entry.getState() == state)
+				return;
+			entries.remove(path);
+			changes.removed.add(entry);
 		}
+		if (state != null)
+			addEntry(path, state, changes);
+	}
 
-		Set<StagingEntry> nodes = new TreeSet<StagingEntry>(
-				new Comparator<StagingEntry>() {
-					public int compare(StagingEntry o1, StagingEntry o2) {
-						return o1.getPath().compareTo(o2.getPath());
-					}
-				});
+	private void addEntry(String path, State state, RowChanges changes) {
+		StagingEntry entry = new StagingEntry(repository, state, path);
+		entry.setSubmodule(submodules.contains(path));
+		entries.put(path, entry);
+		changes.added.add(entry);
+	}
 
-		if (update.changedResources != null
-				&& !update.changedResources.isEmpty()) {
-			nodes.addAll(Arrays.asList(content));
-			for (String res : update.changedResources)
-				for (StagingEntry entry : content)
-					if (entry.getPath().equals(res))
-						nodes.remove(entry);
+	/**
+	 * Updates the submodule flag of the entries of the given paths which are
+	 * not contained in {@code others}
+	 */
+	private void updateSubmodule(Set<String> paths, Set<String> others,
+			RowChanges changes) {
+		for (String path : paths) {
+			if (others.contains(path))
+				continue;
+			StagingEntry entry = entries.get(path);
+			boolean submodule = submodules.contains(path);
+			if (entry != null && entry.isSubmodule() != submodule) {
+				entry.setSubmodule(submodule);
+				changes.updated.add(entry);
+			}
 		}
+	}
 
-		final IndexDiffData indexDiff = update.indexDiff;
-		final Repository repository = update.repository;
+	/**
+	 * @param path
+	 * @return the state of the path shown by this provider, {@code null} if
+	 *         the path is not shown
+	 */
+	private State getState(String path) {
 		if (isWorkspace) {
-			for (String file : indexDiff.getMissing())
-				nodes.add(new StagingEntry(repository, MISSING, file));
+			if (indexDiff.getMissing().contains(path))
+				return MISSING;
+			if (indexDiff.getModified().contains(path))
+				return indexDiff.getChanged().contains(path) ? PARTIALLY_MODIFIED
+						: MODIFIED;
+			if (indexDiff.getUntracked().contains(path))
+				return UNTRACKED;
+			if (indexDiff.getConflicting().contains(path))
+				return CONFLICTING;
+		} else {
+			if (indexDiff.getAdded().contains(path))
+				return ADDED;
+			if (indexDiff.getChanged().contains(path))
+				return CHANGED;
+			if (indexDiff.getRemoved().contains(path))
+				return REMOVED;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the states of all paths shown by this provider
+	 */
+	private Map<String, State> getStates() {
+		Map<String, State> states = new HashMap<String, State>();
+		if (isWorkspace) {
+			putStates(states, indexDiff.getMissing(), MISSING);
 			for (String file : indexDiff.getModified())
 				if (indexDiff.getChanged().contains(file))
-					nodes.add(new StagingEntry(repository, PARTIALLY_MODIFIED,
-							file));
+					putState(states, file, PARTIALLY_MODIFIED);
 				else
-					nodes.add(new StagingEntry(repository, MODIFIED, file));
-			for (String file : indexDiff.getUntracked())
-				nodes.add(new StagingEntry(repository, UNTRACKED, file));
-			for (String file : indexDiff.getConflicting())
-				nodes.add(new StagingEntry(repository, CONFLICTING, file));
+					putState(states, file, MODIFIED);
+			putStates(states, indexDiff.getUntracked(), UNTRACKED);
+			putStates(states, indexDiff.getConflicting(), CONFLICTING);
 		} else {
-			for (String file : indexDiff.getAdded())
-				nodes.add(new StagingEntry(repository, ADDED, file));
-			for (String file : indexDiff.getChanged())
-				nodes.add(new StagingEntry(repository, CHANGED, file));
-			for (String file : indexDiff.getRemoved())
-				nodes.add(new StagingEntry(repository, REMOVED, file));
+			putStates(states, indexDiff.getAdded(), ADDED);
+			putStates(states, indexDiff.getChanged(), CHANGED);
+			putStates(states, indexDiff.getRemoved(), REMOVED);
 		}
+		return states;
+	}
+
+	private static void putStates(Map<String, State> states,
+			Set<String> files, State state) {
+		for (String file : files)
+			putState(states, file, state);
+	}
 
+	private static void putState(Map<String, State> states, String file,
+			State state) {
+		// the first state found for a path wins, see getState
+		if (!states.containsKey(file))
+			states.put(file, state);
+	}
+
+	private static boolean containsFolder(Collection<String> paths) {
+		for (String path : paths)
+			if (path.endsWith("/")) //$NON-NLS-1$
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param repository
+	 * @return the paths of the submodules in the index, only walked again if
+	 *         the index file changed
+	 */
+	private static Set<String> getSubmodulePaths(Repository repository) {
+		File indexFile = repository.getIndexFile();
+		synchronized (submodulePaths) {
+			SubmodulePaths cached = submodulePaths.get(repository);
+			if (cached != null && !cached.snapshot.isModified(indexFile))
+				return cached.paths;
+		}
+		FileSnapshot snapshot = FileSnapshot.save(indexFile);
+		Set<String> paths = new HashSet<String>();
 		try {
-		SubmoduleWalk walk = SubmoduleWalk.forIndex(repository);
-		while(walk.next())
-			for (StagingEntry entry : nodes)
-				entry.setSubmodule(entry.getPath().equals(walk.getPath()));
-		} catch(IOException e) {
+			SubmoduleWalk walk = SubmoduleWalk.forIndex(repository);
+			try {
+				while (walk.next())
+					paths.add(walk.getPath());
+			} finally {
+				walk.release();
+			}
+		} catch (IOException e) {
 			Activator.error(UIText.StagingViewContentProvider_SubmoduleError, e);
 		}
-
-		content = nodes.toArray(new StagingEntry[nodes.size()]);
+		synchronized (submodulePaths) {
+			submodulePaths.put(repository, new SubmodulePaths(snapshot, paths));
+		}
+		return paths;
 	}
 
 	public void dispose() {
@@ -19,6 +19,7 @@
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.synchronize.GitCommitsModelCache;
 import org.eclipse.egit.core.synchronize.GitCommitsModelCache.Change;
 import org.eclipse.egit.core.synchronize.GitCommitsModelCache.Commit;
@@ -26,6 +27,7 @@
 import org.eclipse.egit.core.synchronize.WorkingTreeChangeCache;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
 import org.eclipse.egit.ui.Activator;
+import org.eclipse.egit.ui.UIPreferences;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -43,6 +45,8 @@ public class GitModelRepository extends GitModelObjectContainer implements HasPr
 
 	private GitModelObject[] children;
 
+	private List<Commit> commits;
+
 	/**
 	 * @param gsd
 	 *            synchronization data
@@ -77,6 +81,14 @@ public GitModelObject[] getChildren() {
 		result.addAll(getWorkingChanges());
 		disposeOldChildren();
 		children = result.toArray(new GitModelObjectContainer[result.size()]);
+		if (commitCache != null && !commitCache.isEmpty()
+				&& Activator.getDefault().getPreferenceStore().getBoolean(
+						UIPreferences.SYNC_VIEW_PREFETCH_COMMIT_CHANGES)) {
+			// the changes of the commits are computed when they are shown,
+			// compute them in the background to have them ready
+			commits = commitCache;
+			GitCommitsModelCache.prefetch(commits);
+		}
 
 		return children;
 	}
@@ -192,6 +204,10 @@ public Repository getRepository() {
 	}
 
 	private void disposeOldChildren() {
+		if (commits != null) {
+			Job.getJobManager().cancel(commits);
+			commits = null;
+		}
 		if (children == null)
 			return;
 		for (GitModelObject child : children)